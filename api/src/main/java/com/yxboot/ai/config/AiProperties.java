@@ -1,5 +1,10 @@
 package com.yxboot.ai.config;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.yxboot.modules.account.enums.TenantPlan;
 import com.yxboot.modules.dataset.enums.SegmentMethod;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -15,6 +20,12 @@ public class AiProperties {
     private RetrieverConfig retriever = new RetrieverConfig();
     private RagConfig rag = new RagConfig();
     private DocumentConfig document = new DocumentConfig();
+    private TenantQuotaConfig tenantQuota = new TenantQuotaConfig();
+    private ExecutorConfig executor = new ExecutorConfig();
+    private ChatAdmissionConfig chatAdmission = new ChatAdmissionConfig();
+    private ChatStreamConfig chatStream = new ChatStreamConfig();
+    private ChatHistoryConfig chatHistory = new ChatHistoryConfig();
+    private AnswerCacheConfig answerCache = new AnswerCacheConfig();
 
     @Data
     public static class ChatConfig {
@@ -36,8 +47,28 @@ public class AiProperties {
         private String baseUrl = "https://dashscope.aliyuncs.com/compatible-mode";
         /** HTTP 读超时（秒） */
         private Integer readTimeoutSeconds = 60;
-        /** 单次 embedding 请求的分段数量（百炼 text-embedding-v4 上限为 10） */
+        /** 单次 embedding 请求的分段数量上限（百炼 text-embedding-v4 上限为 10），自适应批大小从上下限中点开始增长到该值 */
         private Integer batchSize = 10;
+        /** 自适应批大小下限 */
+        private Integer minBatchSize = 1;
+        /** 单批次目标耗时（毫秒），低于该值时逐步增大批次，远超时缩小批次 */
+        private Integer targetBatchLatencyMs = 3000;
+        /** 同一 embedding 提供商全局在途批次数上限 */
+        private Integer concurrency = 4;
+        /** 单个租户在途批次数上限（仅用于没有租户ID的文档，租户按 tenant-quota 套餐配额） */
+        private Integer tenantConcurrency = 2;
+        /** 限流（429）或超时后的最大重试次数 */
+        private Integer maxRetries = 3;
+        /** 是否启用本地 embedding 缓存（按模型 + 内容哈希） */
+        private Boolean cacheEnabled = true;
+        /** embedding 缓存目录 */
+        private String cacheDir = "./data/embedding-cache";
+        /** embedding 缓存最大条目数，超出后按 LRU 淘汰 */
+        private Integer cacheMaxEntries = 200000;
+        /** 查询向量内存缓存条目数 */
+        private Integer queryCacheMaxEntries = 1000;
+        /** 查询向量内存缓存有效期（秒） */
+        private Integer queryCacheTtlSeconds = 300;
 
         /** 返回向量模型标识，格式 provider:model */
         public String toModelKey() {
@@ -54,6 +85,16 @@ public class AiProperties {
     public static class RetrieverConfig {
         private int defaultLimit = 10;
         private float defaultMinScore = 0.0f;
+        /** Qdrant 集合存在性缓存有效期（秒），0 表示每次都向 Qdrant 确认 */
+        private Integer collectionCacheTtlSeconds = 300;
+        /** 混合检索：向量检索与关键词（BM25）检索结果按 RRF 融合 */
+        private boolean hybridEnabled = false;
+        /** RRF 融合常数 k */
+        private int rrfK = 60;
+        /** 关键词索引本地目录 */
+        private String keywordIndexDir = "./data/keyword-index";
+        /** 关键词索引与数据库内容版本的比对间隔（秒），其他节点修改知识库后最迟在该间隔后重建；0 为不比对 */
+        private long keywordIndexRefreshSeconds = 30;
     }
 
     @Data
@@ -86,6 +127,10 @@ public class AiProperties {
         private int limit = 10;
         /** 检索最低相似度阈值 */
         private float minScore = 0.5f;
+        /** 多知识库并发检索 */
+        private boolean parallelRetrieval = true;
+        /** 单个知识库检索超时（毫秒），超时的知识库结果被丢弃 */
+        private long retrievalTimeoutMs = 3000;
     }
 
     @Data
@@ -98,6 +143,38 @@ public class AiProperties {
         private Integer overlapLength = 50;
         /** 父块大小（字符数，仅 parent_child 模式有效） */
         private Integer parentChunkSize = 1200;
+        /** 入库流水线每个窗口的分段数量（切分 → 持久化 → 向量化按窗口流转） */
+        private Integer pipelineWindowSize = 200;
+        /** 已持久化、等待向量化的窗口上限，队列满时切分阶段阻塞等待 */
+        private Integer pipelineQueueCapacity = 2;
+        /** PDF 按页区间并行抽取文本（每个分片独立内存映射打开文档） */
+        private Boolean pdfParallelExtraction = true;
+        /** PDF 抽取线程数，即单个文档的最大分片数，0 表示 CPU 核数 */
+        private Integer pdfExtractionThreads = 0;
+        /** 每个分片的最少页数，页数不足两片时串行抽取 */
+        private Integer pdfMinPagesPerSlice = 50;
+        /** 启动时为缺少入库任务的待处理 / 处理中文档补建任务，从检查点继续 */
+        private Boolean recoverOnStartup = true;
+        /** 入库任务工作线程数（本节点同时处理的文档数），0 表示 CPU 核数 */
+        private Integer jobWorkerThreads = 0;
+        /** 入库任务队列轮询间隔（毫秒），上传后会立即触发一次调度 */
+        private Long jobPollIntervalMs = 2000L;
+        /** 入库任务租约时长（秒），执行中由心跳续期，节点宕机后过期重新排队 */
+        private Integer jobLeaseSeconds = 120;
+        /** 心跳与过期租约回收间隔（秒），应明显小于租约时长 */
+        private Integer jobHeartbeatSeconds = 30;
+        /** 入库任务最大领取次数（租约过期重新排队计入），防止导致节点崩溃的文档反复执行 */
+        private Integer jobMaxAttempts = 3;
+
+        public int resolveJobWorkerThreads() {
+            return jobWorkerThreads != null && jobWorkerThreads > 0 ? jobWorkerThreads
+                    : Runtime.getRuntime().availableProcessors();
+        }
+
+        public int resolvePdfExtractionThreads() {
+            return pdfExtractionThreads != null && pdfExtractionThreads > 0 ? pdfExtractionThreads
+                    : Runtime.getRuntime().availableProcessors();
+        }
 
         public SegmentMethod resolveSegmentMethod() {
             for (SegmentMethod method : SegmentMethod.values()) {
@@ -108,4 +185,161 @@ public class AiProperties {
             return SegmentMethod.PARENT_CHILD;
         }
     }
+
+    @Data
+    public static class TenantQuotaConfig {
+        /** 租户套餐缓存有效期（秒），套餐变更后最迟在该时间后生效 */
+        private Integer planCacheTtlSeconds = 60;
+        /** 按套餐的配额，key 为套餐值（free / basic / pro），未配置的套餐使用 free 的配额 */
+        private Map<String, TenantQuota> plans = defaultPlans();
+
+        public TenantQuota resolve(TenantPlan plan) {
+            TenantQuota quota = plan != null ? plans.get(plan.getValue()) : null;
+            if (quota == null) {
+                quota = plans.get(TenantPlan.FREE.getValue());
+            }
+            return quota != null ? quota : new TenantQuota();
+        }
+
+        private static Map<String, TenantQuota> defaultPlans() {
+            Map<String, TenantQuota> plans = new LinkedHashMap<>();
+            plans.put(TenantPlan.FREE.getValue(), new TenantQuota(1, 1, 1, 5));
+            plans.put(TenantPlan.BASIC.getValue(), new TenantQuota(2, 2, 2, 20));
+            plans.put(TenantPlan.PRO.getValue(), new TenantQuota(4, 4, 4, 50));
+            return plans;
+        }
+    }
+
+    @Data
+    public static class TenantQuota {
+        /** 调度权重：同一优先级下各租户按权重比例领取入库任务 */
+        private Integer weight = 1;
+        /** 同时处理的文档数上限（按任务表统计，集群内生效） */
+        private Integer maxConcurrentDocuments = 1;
+        /** 同时在途的 embedding 批次上限（单节点） */
+        private Integer maxConcurrentEmbeddings = 1;
+        /** 同时进行的对话生成数上限（单节点） */
+        private Integer maxConcurrentChats = 5;
+
+        public TenantQuota() {
+        }
+
+        public TenantQuota(Integer weight, Integer maxConcurrentDocuments, Integer maxConcurrentEmbeddings,
+                Integer maxConcurrentChats) {
+            this.weight = weight;
+            this.maxConcurrentDocuments = maxConcurrentDocuments;
+            this.maxConcurrentEmbeddings = maxConcurrentEmbeddings;
+            this.maxConcurrentChats = maxConcurrentChats;
+        }
+    }
+
+    @Data
+    public static class ExecutorConfig {
+        /**
+         * 阻塞型编排任务（文档入库、向量化阶段、embedding 批次、多知识库检索、对话编排）的执行模式：
+         * platform - 平台线程池；virtual - 虚拟线程（需 JDK 21+ 运行时，低版本自动回退为 platform）。
+         * 项目按 JDK 17 构建，默认镜像运行在 JDK 17 上，virtual 仅在换用 JDK 21+ 运行时后生效。
+         * PDF 文本抽取为 CPU 密集任务，始终使用平台线程池。
+         */
+        private String mode = "platform";
+        /** 同时进行的对话编排数上限 */
+        private Integer chatConcurrency = 200;
+        /** 虚拟线程模式下同时进行的知识库检索数上限（平台线程模式由线程池大小决定） */
+        private Integer retrievalConcurrency = 64;
+        /** 共用定时任务线程数（流式合并定时写出、缓冲过期清理、消息写回、入库调度等），定时任务只做轻量工作或转交执行器 */
+        private Integer schedulerThreads = 4;
+
+        public boolean isVirtualThreads() {
+            return "virtual".equalsIgnoreCase(mode);
+        }
+    }
+
+    @Data
+    public static class ChatAdmissionConfig {
+        /**
+         * 单节点同时进行的对话生成数上限（从建立 SSE 到流式输出结束）。
+         * 不应大于 executor.chat-concurrency，否则编排线程池可能在准入后拒绝任务。
+         */
+        private Integer maxConcurrentStreams = 200;
+        /**
+         * 并发已满时排队等待的最长时间（毫秒），0 为不等待直接拒绝。
+         * 排队阻塞请求线程，租户与节点两级合计不超过该值，且最多 10000。
+         */
+        private Long queueTimeoutMs = 2000L;
+        /** 同时排队等待的请求数上限（即最多被准入排队阻塞的请求线程数），超出后直接拒绝，避免请求线程堆积 */
+        private Integer maxQueued = 100;
+        /** SSE 连接超时（毫秒） */
+        private Long streamTimeoutMs = 300000L;
+        /** 拒绝时建议客户端重试的间隔（秒），写入 Retry-After 响应头 */
+        private Integer retryAfterSeconds = 5;
+    }
+
+    @Data
+    public static class ChatStreamConfig {
+        /** 合并模型输出片段后再推送，关闭时每个 token 单独序列化并 flush 一次 */
+        private Boolean coalesceEnabled = true;
+        /** 片段最长缓冲时间（毫秒） */
+        private Long coalesceMaxDelayMs = 50L;
+        /** 缓冲达到该字节数（UTF-8）时立即推送 */
+        private Integer coalesceMaxBytes = 1024;
+        /** 生成过程中每收到该数量的模型片段保存一次部分回答，0 为不按片段数保存 */
+        private Integer checkpointChunks = 50;
+        /** 距上次保存超过该时间（毫秒）时保存一次部分回答，0 为不按时间保存 */
+        private Long checkpointIntervalMs = 3000L;
+        /** 消息写回日志的合并写出间隔（毫秒） */
+        private Long journalFlushIntervalMs = 500L;
+        /** 单条批量 UPDATE 语句包含的消息数上限 */
+        private Integer journalBatchSize = 200;
+        /**
+         * 启动时把超过该时间（秒）未写入回答、仍在处理中的消息标记为失败（节点中断的生成），0 为不处理。
+         * 生成中每 checkpoint-interval-ms 刷新一次写入时间，其他节点进行中的生成不受影响；应大于首个片段前的最长等待
+         */
+        private Integer interruptedAfterSeconds = 600;
+        /** 每条消息保留的最近片段数（断线重连补发），超出后丢弃最早的片段 */
+        private Integer replayBufferSize = 1024;
+        /** 生成结束后片段缓冲保留时间（秒），期间仍可断线重连 */
+        private Integer replayRetentionSeconds = 120;
+        /** SSE 写出线程数，各连接在写出线程中按自己的进度写出，慢连接不阻塞生成 */
+        private Integer writerThreads = 8;
+        /** SSE 写出任务队列容量（每个待写出的连接占一项），队列满时关闭新到的连接，客户端按 Last-Event-ID 重连 */
+        private Integer writerQueueCapacity = 1024;
+    }
+
+    @Data
+    public static class ChatHistoryConfig {
+        /** 客户端未携带 messages 时由服务端按 conversationId 组装历史对话 */
+        private Boolean enabled = true;
+        /** 最多带入的历史轮数（一问一答为一轮） */
+        private Integer maxTurns = 10;
+        /** 输入上下文 token 预算（系统提示词含检索内容 + 历史 + 问题），超出时从最早的历史开始丢弃 */
+        private Integer contextTokenBudget = 8000;
+        /** 缓存最近历史窗口的会话数上限，超出后淘汰最久未使用的会话 */
+        private Integer cacheMaxConversations = 2000;
+        /** 历史窗口缓存有效期（秒），过期后重新从数据库读取 */
+        private Integer cacheTtlSeconds = 600;
+        /** 未摘要的历史超过 summary-trigger-tokens 时在后台把较早的几轮压缩为摘要，保存在会话上 */
+        private Boolean summaryEnabled = true;
+        /** 触发摘要的未摘要历史 token 数 */
+        private Integer summaryTriggerTokens = 3000;
+        /** 摘要时保留原文的最近轮数 */
+        private Integer summaryKeepTurns = 4;
+        /** 摘要的最大输出 token 数 */
+        private Integer summaryMaxTokens = 600;
+        /** 同时进行的摘要生成数 */
+        private Integer summaryConcurrency = 2;
+    }
+
+    @Data
+    public static class AnswerCacheConfig {
+        /** 语义回答缓存总开关，开启后仍只对 app-ids 中的应用生效 */
+        private Boolean enabled = false;
+        /** 启用缓存的应用 */
+        private List<Long> appIds = new ArrayList<>();
+        /** 问题向量余弦相似度不低于该值时视为同一问题 */
+        private Double similarityThreshold = 0.92;
+        /** 每个应用缓存的回答数上限，超出后淘汰最早写入的回答 */
+        private Integer maxEntriesPerApp = 500;
+        /** 回答缓存有效期（秒） */
+        private Integer ttlSeconds = 86400;
+    }
 }
@@ -1,5 +1,6 @@
 package com.yxboot.ai.config;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.MetadataMode;
@@ -23,12 +24,15 @@ import org.springframework.http.client.ReactorClientHttpRequestFactory;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.reactive.function.client.WebClient;
+import com.yxboot.ai.embedding.CachingEmbeddingModel;
+import com.yxboot.ai.embedding.EmbeddingCacheStore;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import reactor.netty.http.client.HttpClient;
 
 /**
  * Spring AI 基础设施配置：根据 yxboot.ai 静态配置初始化 ChatModel、EmbeddingModel 及 Qdrant 客户端。
+ * EmbeddingModel 默认包装一层本地内容哈希缓存（见 {@link CachingEmbeddingModel}）。
  */
 @Configuration
 public class SpringAIConfig {
@@ -47,12 +51,22 @@ public class SpringAIConfig {
     @ConditionalOnMissingBean
     public EmbeddingModel embeddingModel(AiProperties props) {
         AiProperties.EmbeddingConfig cfg = props.getEmbedding();
-        return switch (cfg.getProvider().toLowerCase()) {
+        EmbeddingModel embeddingModel = switch (cfg.getProvider().toLowerCase()) {
             case "zhipuai", "zhipu" -> buildZhiPuEmbeddingModel(cfg);
             case "dashscope", "bailian", "alibaba" -> buildDashScopeEmbeddingModel(cfg);
             case "ollama" -> buildOllamaEmbeddingModel(cfg);
             default -> throw new IllegalArgumentException("不支持的 Embedding 提供商: " + cfg.getProvider());
         };
+        if (!Boolean.TRUE.equals(cfg.getCacheEnabled())) {
+            return embeddingModel;
+        }
+        int maxEntries = cfg.getCacheMaxEntries() != null && cfg.getCacheMaxEntries() > 0
+                ? cfg.getCacheMaxEntries()
+                : 200000;
+        String cacheDir = StringUtils.hasText(cfg.getCacheDir()) ? cfg.getCacheDir() : "./data/embedding-cache";
+        EmbeddingCacheStore cacheStore = new EmbeddingCacheStore(Path.of(cacheDir), maxEntries);
+        return new CachingEmbeddingModel(embeddingModel, cacheStore, props.getEmbeddingModelKey(), cfg.getModel(),
+                cfg.getDimensions());
     }
 
     @Bean
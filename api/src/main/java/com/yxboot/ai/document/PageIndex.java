@@ -0,0 +1,63 @@
+package com.yxboot.ai.document;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 文档全文的页边界索引：记录每页在全文中的起始偏移，把字符位置换算为页码。
+ * <p>
+ * 分割器在分段元数据中记录分段在全文中的位置（start_position / end_position），
+ * 由本索引换算为起止页码（start_page / end_page），持久化后供检索引用按页回查原文。
+ */
+public final class PageIndex {
+
+    /** 在原始文档元数据中传递页索引的 key，不会复制到分段元数据 */
+    public static final String METADATA_KEY = "page_index";
+
+    private final int[] pageOffsets;
+
+    /**
+     * @param pageOffsets 每页在全文中的起始偏移，下标为页码 - 1，非递减
+     */
+    public PageIndex(int[] pageOffsets) {
+        this.pageOffsets = pageOffsets;
+    }
+
+    public int getPageCount() {
+        return pageOffsets.length;
+    }
+
+    /**
+     * 全文偏移所在的页码（从 1 开始）
+     */
+    public int getPageNumber(int offset) {
+        if (pageOffsets.length == 0) {
+            return 1;
+        }
+        int index = Arrays.binarySearch(pageOffsets, offset);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // 空白页与下一页起始偏移相同，取最后一个
+            while (index + 1 < pageOffsets.length && pageOffsets[index + 1] == offset) {
+                index++;
+            }
+        }
+        return Math.max(index, 0) + 1;
+    }
+
+    /**
+     * 根据分段的 start_position / end_position 元数据写入 start_page / end_page，没有位置信息的分段跳过
+     */
+    public void annotate(List<DocumentSegment> segments) {
+        for (DocumentSegment segment : segments) {
+            if (segment.getMetadata().get("start_position") instanceof Number start
+                    && segment.getMetadata().get("end_position") instanceof Number end) {
+                int startPage = getPageNumber(start.intValue());
+                int endPage = getPageNumber(Math.max(end.intValue() - 1, start.intValue()));
+                segment.addMetadata("start_page", startPage);
+                segment.addMetadata("end_page", Math.max(endPage, startPage));
+            }
+        }
+    }
+}
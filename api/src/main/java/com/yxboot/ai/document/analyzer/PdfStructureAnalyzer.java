@@ -3,12 +3,10 @@ package com.yxboot.ai.document.analyzer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.stereotype.Component;
+import com.yxboot.ai.document.loader.PdfDocumentSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -22,25 +20,44 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
 
     private final TextStructureAnalyzer textAnalyzer;
 
+    /**
+     * 分析PDF结构
+     *
+     * @param document {@link PdfDocumentSession}（复用已有解析结果）或 PDF 字节数组
+     */
     @Override
     public List<ChapterInfo> analyzeStructure(Object document) {
+        if (document instanceof PdfDocumentSession session) {
+            return analyzeStructure(session);
+        }
         if (!(document instanceof byte[])) {
-            throw new IllegalArgumentException("PDF分析器只支持字节数组格式的文档");
+            throw new IllegalArgumentException("PDF分析器只支持解析会话或字节数组格式的文档");
         }
 
-        byte[] pdfBytes = (byte[]) document;
-        List<ChapterInfo> chapters = new ArrayList<>();
+        try (PdfDocumentSession session = PdfDocumentSession.open((byte[]) document)) {
+            return analyzeStructure(session);
+        } catch (IOException e) {
+            log.error("PDF文档结构分析失败", e);
+            throw new RuntimeException("PDF文档结构分析失败", e);
+        }
+    }
+
+    /**
+     * 基于已打开的解析会话分析结构，书签与文本分析共用会话中的全文
+     */
+    public List<ChapterInfo> analyzeStructure(PdfDocumentSession session) {
+        List<ChapterInfo> chapters;
 
-        try (PDDocument pdDocument = Loader.loadPDF(pdfBytes)) {
-            log.info("开始分析PDF文档结构，总页数: {}", pdDocument.getNumberOfPages());
+        try {
+            log.info("开始分析PDF文档结构，总页数: {}", session.getPageCount());
 
             // 首先尝试从书签提取章节信息
-            chapters = extractFromBookmarks(pdDocument);
+            chapters = extractFromBookmarks(session);
 
             // 如果没有书签，则回退到智能文本分析
             if (chapters.isEmpty()) {
                 log.info("PDF文档没有书签信息，使用智能文本分析");
-                chapters = extractFromTextAnalysis(pdDocument);
+                chapters = extractFromTextAnalysis(session);
             }
 
             log.info("PDF结构分析完成，提取到 {} 个章节", chapters.size());
@@ -61,9 +78,9 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
     /**
      * 从PDF书签提取章节信息
      */
-    private List<ChapterInfo> extractFromBookmarks(PDDocument document) throws IOException {
+    private List<ChapterInfo> extractFromBookmarks(PdfDocumentSession session) throws IOException {
         List<ChapterInfo> chapters = new ArrayList<>();
-        PDDocumentOutline outline = document.getDocumentCatalog().getDocumentOutline();
+        PDDocumentOutline outline = session.getOutline();
 
         if (outline == null) {
             log.info("PDF文档没有书签大纲");
@@ -73,13 +90,12 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
         log.info("PDF文档包含书签信息，开始提取章节结构");
 
         // 获取全文用于内容提取
-        PDFTextStripper textStripper = new PDFTextStripper();
-        String fullText = textStripper.getText(document);
+        String fullText = session.getText();
 
         // 遍历顶级书签项
         PDOutlineItem item = outline.getFirstChild();
         while (item != null) {
-            ChapterInfo chapter = extractChapterFromBookmark(item, document, fullText, 1);
+            ChapterInfo chapter = extractChapterFromBookmark(item, fullText, 1);
             if (chapter != null) {
                 chapters.add(chapter);
             }
@@ -92,8 +108,7 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
     /**
      * 从书签项提取章节信息
      */
-    private ChapterInfo extractChapterFromBookmark(PDOutlineItem item, PDDocument document,
-            String fullText, int level) throws IOException {
+    private ChapterInfo extractChapterFromBookmark(PDOutlineItem item, String fullText, int level) {
 
         String title = item.getTitle();
         if (title == null || title.trim().isEmpty()) {
@@ -124,7 +139,7 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
         // 处理子书签
         PDOutlineItem child = item.getFirstChild();
         while (child != null) {
-            ChapterInfo subChapter = extractChapterFromBookmark(child, document, fullText, level + 1);
+            ChapterInfo subChapter = extractChapterFromBookmark(child, fullText, level + 1);
             if (subChapter != null) {
                 chapter.addSubChapter(subChapter);
             }
@@ -215,9 +230,8 @@ public class PdfStructureAnalyzer implements DocumentStructureAnalyzer {
     /**
      * 基于智能文本分析提取章节信息
      */
-    private List<ChapterInfo> extractFromTextAnalysis(PDDocument document) throws IOException {
-        PDFTextStripper textStripper = new PDFTextStripper();
-        String fullText = textStripper.getText(document);
+    private List<ChapterInfo> extractFromTextAnalysis(PdfDocumentSession session) throws IOException {
+        String fullText = session.getText();
 
         // 使用智能文本分析器
         List<ChapterInfo> chapters = textAnalyzer.analyzeTextStructure(fullText);
@@ -2,37 +2,21 @@ package com.yxboot.ai.document.analyzer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 智能文本结构分析器 基于文本统计特征和模式识别进行章节分析
+ * <p>
+ * 标题识别按行单遍扫描：每行只判断一次，依次尝试各条标题规则（{@link HeadingRule}），命中第一条即停止；
+ * 行首字符不可能构成标题的行直接跳过，不做任何正则匹配。
  */
 @Slf4j
 @Component
 public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
 
-    // 可能的标题模式（优先级从高到低）
-    private static final List<TitlePattern> TITLE_PATTERNS = List.of(
-            // 明确的章节标识
-            new TitlePattern(Pattern.compile("^\\s*第[一二三四五六七八九十百千万\\d]+[章节部分]\\s*[：:：]?\\s*(.*)$", Pattern.MULTILINE), 1, 0.95),
-            new TitlePattern(Pattern.compile("^\\s*Chapter\\s+\\d+[\\s\\.:：]?\\s*(.*)$", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE), 1, 0.9),
-
-            // 数字编号
-            new TitlePattern(Pattern.compile("^\\s*(\\d+)[\\s\\.、]\\s*(.+)$", Pattern.MULTILINE), 1, 0.8),
-            new TitlePattern(Pattern.compile("^\\s*(\\d+\\.\\d+)[\\s]\\s*(.+)$", Pattern.MULTILINE), 2, 0.8),
-            new TitlePattern(Pattern.compile("^\\s*(\\d+\\.\\d+\\.\\d+)[\\s]\\s*(.+)$", Pattern.MULTILINE), 3, 0.8),
-
-            // 中文序号
-            new TitlePattern(Pattern.compile("^\\s*[一二三四五六七八九十百千万]+[、\\.]\\s*(.+)$", Pattern.MULTILINE), 1, 0.7),
-
-            // 括号编号
-            new TitlePattern(Pattern.compile("^\\s*[（(]\\s*(\\d+)\\s*[）)]\\s*(.+)$", Pattern.MULTILINE), 1, 0.6),
-
-            // 罗马数字
-            new TitlePattern(Pattern.compile("^\\s*([IVXLCDM]+)[\\s\\.、]\\s*(.+)$", Pattern.MULTILINE), 1, 0.5));
+    // 中文数字
+    private static final String ZH_NUMERALS = "一二三四五六七八九十百千万";
 
     // 标题关键词
     private static final List<String> TITLE_KEYWORDS = List.of(
@@ -63,7 +47,7 @@ public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
 
         log.info("开始分析文本结构，文本长度: {}", text.length());
 
-        // 1. 基于模式匹配查找潜在标题
+        // 1. 逐行识别潜在标题
         List<TitleCandidate> candidates = findTitleCandidates(text);
         log.info("找到 {} 个标题候选项", candidates.size());
 
@@ -79,58 +63,67 @@ public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
     }
 
     /**
-     * 查找标题候选项
+     * 查找标题候选项：逐行扫描，每行最多产生一个候选项
      */
     private List<TitleCandidate> findTitleCandidates(String text) {
         List<TitleCandidate> candidates = new ArrayList<>();
-
-        for (TitlePattern pattern : TITLE_PATTERNS) {
-            Matcher matcher = pattern.pattern.matcher(text);
-            while (matcher.find()) {
-                String fullMatch = matcher.group(0).trim();
-                String title = extractTitle(matcher);
-
-                if (isValidTitle(title)) {
-                    candidates.add(new TitleCandidate(
-                            title,
-                            fullMatch,
-                            matcher.start(),
-                            matcher.end(),
-                            pattern.level,
-                            pattern.confidence));
-                }
+        int length = text.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int newline = text.indexOf('\n', lineStart);
+            int lineEnd = newline < 0 ? length : newline;
+            // 与正则 $ 一致：行尾的 \r 不计入行内容
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            TitleCandidate candidate = classifyLine(text, lineStart, contentEnd);
+            if (candidate != null) {
+                candidates.add(candidate);
             }
+            lineStart = lineEnd + 1;
         }
 
-        // 按位置排序并去重
-        candidates.sort((a, b) -> Integer.compare(a.startPos, b.startPos));
-        return deduplicateCandidates(candidates);
+        return candidates;
     }
 
     /**
-     * 从匹配结果中提取标题
+     * 判断一行是否为标题，按规则优先级依次尝试
      */
-    private String extractTitle(Matcher matcher) {
-        // 尝试从捕获组中获取标题
-        for (int i = matcher.groupCount(); i >= 1; i--) {
-            String group = matcher.group(i);
-            if (group != null && !group.trim().isEmpty() && !group.matches("\\d+|[IVXLCDM]+")) {
-                return group.trim();
-            }
+    private TitleCandidate classifyLine(String text, int lineStart, int lineEnd) {
+        int from = skipWhitespace(text, lineStart, lineEnd);
+        if (from >= lineEnd || !HeadingRule.mayStartHeading(text.charAt(from))) {
+            return null;
         }
 
-        // 如果没有合适的捕获组，返回整个匹配并清理
-        return cleanTitle(matcher.group(0));
+        for (HeadingRule rule : HeadingRule.values()) {
+            int titleStart = rule.match(text, from, lineEnd);
+            if (titleStart < 0) {
+                continue;
+            }
+            String title = text.substring(titleStart, lineEnd).trim();
+            if (isNumberOrRoman(title) || !isValidTitle(title)) {
+                continue;
+            }
+            return new TitleCandidate(title, lineStart, lineEnd, rule.level, rule.confidence);
+        }
+        return null;
     }
 
     /**
-     * 清理标题文本
+     * 标题是否只是编号（纯数字或罗马数字）
      */
-    private String cleanTitle(String title) {
-        return title.replaceAll(
-                "^\\s*(?:第[一二三四五六七八九十百千万\\d]+[章节部分]|\\d+[\\s\\.、]|Chapter\\s+\\d+|[IVXLCDM]+[\\s\\.、]|[一二三四五六七八九十百千万]+[、.]|[（(]\\s*\\d+\\s*[）)])\\s*[：:：]?\\s*",
-                "")
-                .trim();
+    private boolean isNumberOrRoman(String title) {
+        if (title.isEmpty()) {
+            return true;
+        }
+        boolean allDigits = true;
+        boolean allRoman = true;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            allDigits &= isDigit(c);
+            allRoman &= isRoman(c);
+        }
+        return allDigits || allRoman;
     }
 
     /**
@@ -149,7 +142,7 @@ public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
         }
 
         // 不应该是纯数字或纯符号
-        if (title.matches("^[\\d\\s\\p{Punct}]+$")) {
+        if (isDigitsWhitespaceOrPunct(title)) {
             return false;
         }
 
@@ -168,97 +161,89 @@ public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
     }
 
     /**
-     * 去重候选项
+     * 等价于 {@code ^[\d\s\p{Punct}]+$}
      */
-    private List<TitleCandidate> deduplicateCandidates(List<TitleCandidate> candidates) {
-        if (candidates.size() <= 1) {
-            return candidates;
-        }
-
-        List<TitleCandidate> result = new ArrayList<>();
-        TitleCandidate prev = null;
-
-        for (TitleCandidate current : candidates) {
-            if (prev == null || current.startPos >= prev.startPos + prev.fullMatch.length()) {
-                result.add(current);
-                prev = current;
-            } else if (current.patternConfidence > prev.patternConfidence) {
-                // 如果当前候选项置信度更高，替换前一个
-                result.set(result.size() - 1, current);
-                prev = current;
+    private boolean isDigitsWhitespaceOrPunct(String title) {
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            boolean asciiPunct = c >= '!' && c <= '~' && !Character.isLetterOrDigit(c);
+            if (!isDigit(c) && !isWhitespace(c) && !asciiPunct) {
+                return false;
             }
         }
-
-        return result;
+        return true;
     }
 
     /**
-     * 过滤和评分候选项
+     * 过滤和评分候选项（保持文档中的先后顺序，章节内容按相邻标题的位置截取）
      */
     private List<TitleCandidate> filterAndScoreCandidates(List<TitleCandidate> candidates, String text) {
-        String[] lines = text.split("\n");
-
+        List<TitleCandidate> result = new ArrayList<>(candidates.size());
         for (TitleCandidate candidate : candidates) {
             // 计算统计特征分数
-            double statisticalScore = calculateStatisticalScore(candidate, text, lines);
+            double statisticalScore = calculateStatisticalScore(candidate, text);
 
             // 更新总分数
             candidate.totalScore = candidate.patternConfidence * 0.6 + statisticalScore * 0.4;
-        }
 
-        // 过滤低分候选项
-        return candidates.stream()
-                .filter(c -> c.totalScore > 0.3)
-                .sorted((a, b) -> Double.compare(b.totalScore, a.totalScore))
-                .toList();
+            // 过滤低分候选项
+            if (candidate.totalScore > 0.3) {
+                result.add(candidate);
+            }
+        }
+        return result;
     }
 
     /**
      * 计算统计特征分数
      */
-    private double calculateStatisticalScore(TitleCandidate candidate, String text, String[] lines) {
+    private double calculateStatisticalScore(TitleCandidate candidate, String text) {
         double score = 0.0;
 
         // 1. 行长度特征（标题通常比较短）
-        int lineIndex = findLineIndex(candidate.startPos, text, lines);
-        if (lineIndex >= 0 && lineIndex < lines.length) {
-            String line = lines[lineIndex].trim();
-            if (line.length() < 100) { // 标题通常较短
-                score += 0.3;
-            }
-            if (line.length() < 50) {
-                score += 0.2;
-            }
+        int lineLength = trimmedLength(text, candidate.startPos, candidate.endPos);
+        if (lineLength < 100) { // 标题通常较短
+            score += 0.3;
+        }
+        if (lineLength < 50) {
+            score += 0.2;
         }
 
-        // 2. 位置特征（行首的更可能是标题）
-        String beforeText = text.substring(Math.max(0, candidate.startPos - 50), candidate.startPos);
-        if (beforeText.contains("\n\n") || beforeText.trim().isEmpty()) {
+        // 2. 位置特征（前面 50 个字符内有空行或全是空白的，更可能是标题）
+        if (followsBlankLine(text, candidate.startPos)) {
             score += 0.3;
         }
 
         // 3. 后续内容特征
-        String afterText = text.substring(candidate.endPos, Math.min(text.length(), candidate.endPos + 200));
-        if (afterText.startsWith("\n") || afterText.startsWith(" ")) {
+        if (candidate.endPos < text.length()
+                && (text.charAt(candidate.endPos) == '\n' || text.charAt(candidate.endPos) == ' ')) {
             score += 0.2;
         }
 
         return Math.min(1.0, score);
     }
 
-    /**
-     * 查找文本位置对应的行号
-     */
-    private int findLineIndex(int position, String text, String[] lines) {
-        int currentPos = 0;
-        for (int i = 0; i < lines.length; i++) {
-            int lineEnd = currentPos + lines[i].length() + 1; // +1 for \n
-            if (position >= currentPos && position < lineEnd) {
-                return i;
+    private int trimmedLength(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    private boolean followsBlankLine(String text, int position) {
+        int from = Math.max(0, position - 50);
+        boolean blank = true;
+        for (int i = from; i < position; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' && i + 1 < position && text.charAt(i + 1) == '\n') {
+                return true;
             }
-            currentPos = lineEnd;
+            blank &= c <= ' ';
         }
-        return -1;
+        return blank;
     }
 
     /**
@@ -326,36 +311,237 @@ public class TextStructureAnalyzer implements DocumentStructureAnalyzer {
         return result;
     }
 
+    private static int skipWhitespace(String text, int from, int end) {
+        while (from < end && isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipDigits(String text, int from, int end) {
+        while (from < end && isDigit(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * 与正则 {@code \s} 一致
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * 与正则 {@code \d} 一致（仅 ASCII 数字）
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isZhNumeral(char c) {
+        return ZH_NUMERALS.indexOf(c) >= 0;
+    }
+
+    private static boolean isRoman(char c) {
+        return c == 'I' || c == 'V' || c == 'X' || c == 'L' || c == 'C' || c == 'D' || c == 'M';
+    }
+
     /**
-     * 标题模式定义
+     * 标题规则（按优先级从高到低）。
+     * <p>
+     * match 从行内第一个非空白字符开始匹配编号部分，返回标题文本的起始位置，不匹配返回 -1。
+     * 多级数字编号先匹配更具体的 1.2.3 / 1.2，再匹配 1。
      */
-    private static class TitlePattern {
-        final Pattern pattern;
+    private enum HeadingRule {
+
+        // 明确的章节标识：第一章 / 第3节 / 第二部分
+        ZH_CHAPTER(1, 0.95) {
+            @Override
+            int match(String text, int from, int end) {
+                if (text.charAt(from) != '第') {
+                    return -1;
+                }
+                int i = from + 1;
+                while (i < end && (isZhNumeral(text.charAt(i)) || isDigit(text.charAt(i)))) {
+                    i++;
+                }
+                if (i == from + 1 || i >= end || "章节部分".indexOf(text.charAt(i)) < 0) {
+                    return -1;
+                }
+                return skipSeparator(text, i + 1, end);
+            }
+        },
+
+        // Chapter 1 / CHAPTER 12:
+        EN_CHAPTER(1, 0.9) {
+            @Override
+            int match(String text, int from, int end) {
+                if (!text.regionMatches(true, from, "chapter", 0, 7)) {
+                    return -1;
+                }
+                int i = skipWhitespace(text, from + 7, end);
+                int digitsEnd = skipDigits(text, i, end);
+                if (i == from + 7 || digitsEnd == i) {
+                    return -1;
+                }
+                return skipSeparator(text, digitsEnd, end);
+            }
+        },
+
+        // 数字编号：1.2.3 标题
+        NUMBER_LEVEL_3(3, 0.8) {
+            @Override
+            int match(String text, int from, int end) {
+                return matchDottedNumber(text, from, end, 3);
+            }
+        },
+
+        // 数字编号：1.2 标题
+        NUMBER_LEVEL_2(2, 0.8) {
+            @Override
+            int match(String text, int from, int end) {
+                return matchDottedNumber(text, from, end, 2);
+            }
+        },
+
+        // 数字编号：1 标题 / 1. 标题 / 1、标题
+        NUMBER_LEVEL_1(1, 0.8) {
+            @Override
+            int match(String text, int from, int end) {
+                int i = skipDigits(text, from, end);
+                if (i == from || i >= end || !isListSeparator(text.charAt(i))) {
+                    return -1;
+                }
+                return skipWhitespace(text, i + 1, end);
+            }
+        },
+
+        // 中文序号：一、标题
+        ZH_NUMERAL(1, 0.7) {
+            @Override
+            int match(String text, int from, int end) {
+                int i = from;
+                while (i < end && isZhNumeral(text.charAt(i))) {
+                    i++;
+                }
+                if (i == from || i >= end || (text.charAt(i) != '、' && text.charAt(i) != '.')) {
+                    return -1;
+                }
+                return skipWhitespace(text, i + 1, end);
+            }
+        },
+
+        // 括号编号：(1) 标题 / （1）标题
+        PARENTHESIS(1, 0.6) {
+            @Override
+            int match(String text, int from, int end) {
+                char open = text.charAt(from);
+                if (open != '(' && open != '（') {
+                    return -1;
+                }
+                int i = skipWhitespace(text, from + 1, end);
+                int digitsEnd = skipDigits(text, i, end);
+                if (digitsEnd == i) {
+                    return -1;
+                }
+                i = skipWhitespace(text, digitsEnd, end);
+                if (i >= end || (text.charAt(i) != ')' && text.charAt(i) != '）')) {
+                    return -1;
+                }
+                return skipWhitespace(text, i + 1, end);
+            }
+        },
+
+        // 罗马数字：IV. 标题
+        ROMAN(1, 0.5) {
+            @Override
+            int match(String text, int from, int end) {
+                int i = from;
+                while (i < end && isRoman(text.charAt(i))) {
+                    i++;
+                }
+                if (i == from || i >= end || !isListSeparator(text.charAt(i))) {
+                    return -1;
+                }
+                return skipWhitespace(text, i + 1, end);
+            }
+        };
+
         final int level;
         final double confidence;
 
-        TitlePattern(Pattern pattern, int level, double confidence) {
-            this.pattern = pattern;
+        HeadingRule(int level, double confidence) {
             this.level = level;
             this.confidence = confidence;
         }
+
+        abstract int match(String text, int from, int end);
+
+        /**
+         * 行首字符能否构成任一规则的开头，用于快速跳过正文行
+         */
+        static boolean mayStartHeading(char c) {
+            return c == '第' || c == 'C' || c == 'c' || isDigit(c) || isZhNumeral(c) || c == '(' || c == '（'
+                    || isRoman(c);
+        }
+
+        /**
+         * 编号后的分隔：空白 / . / 、
+         */
+        static boolean isListSeparator(char c) {
+            return isWhitespace(c) || c == '.' || c == '、';
+        }
+
+        /**
+         * 跳过编号后的空白与可选的冒号 / 句点
+         */
+        static int skipSeparator(String text, int from, int end) {
+            int i = skipWhitespace(text, from, end);
+            if (i < end && (text.charAt(i) == '：' || text.charAt(i) == ':' || text.charAt(i) == '.')) {
+                i++;
+            }
+            return skipWhitespace(text, i, end);
+        }
+
+        /**
+         * 匹配 parts 段点分数字编号，编号后必须跟空白
+         */
+        static int matchDottedNumber(String text, int from, int end, int parts) {
+            int i = from;
+            for (int part = 0; part < parts; part++) {
+                if (part > 0) {
+                    if (i >= end || text.charAt(i) != '.') {
+                        return -1;
+                    }
+                    i++;
+                }
+                int digitsEnd = skipDigits(text, i, end);
+                if (digitsEnd == i) {
+                    return -1;
+                }
+                i = digitsEnd;
+            }
+            if (i >= end || !isWhitespace(text.charAt(i))) {
+                return -1;
+            }
+            return skipWhitespace(text, i, end);
+        }
     }
 
     /**
-     * 标题候选项
+     * 标题候选项（startPos / endPos 为标题行的起止位置）
      */
     private static class TitleCandidate {
         final String title;
-        final String fullMatch;
         final int startPos;
         final int endPos;
         final int level;
         final double patternConfidence;
         double totalScore;
 
-        TitleCandidate(String title, String fullMatch, int startPos, int endPos, int level, double patternConfidence) {
+        TitleCandidate(String title, int startPos, int endPos, int level, double patternConfidence) {
             this.title = title;
-            this.fullMatch = fullMatch;
             this.startPos = startPos;
             this.endPos = endPos;
             this.level = level;
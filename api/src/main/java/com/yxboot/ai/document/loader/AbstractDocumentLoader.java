@@ -19,13 +19,7 @@ public abstract class AbstractDocumentLoader implements DocumentLoader {
     @Override
     public Document load(File file) {
         try (InputStream inputStream = new FileInputStream(file)) {
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("filename", file.getName());
-            metadata.put("file_path", file.getAbsolutePath());
-            metadata.put("file_size", file.length());
-            metadata.put("file_extension", getFileExtension(file.getName()));
-
-            return loadWithMetadata(inputStream, metadata);
+            return loadWithMetadata(inputStream, createFileMetadata(file));
         } catch (IOException e) {
             throw new RuntimeException("加载文件失败：" + file.getAbsolutePath(), e);
         }
@@ -73,6 +67,21 @@ public abstract class AbstractDocumentLoader implements DocumentLoader {
      */
     protected abstract Document loadWithMetadata(InputStream inputStream, Map<String, Object> metadata);
 
+    /**
+     * 创建文件的基础元数据
+     *
+     * @param file 文件对象
+     * @return 元数据
+     */
+    protected Map<String, Object> createFileMetadata(File file) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("filename", file.getName());
+        metadata.put("file_path", file.getAbsolutePath());
+        metadata.put("file_size", file.length());
+        metadata.put("file_extension", getFileExtension(file.getName()));
+        return metadata;
+    }
+
     /**
      * 获取文件扩展名
      *
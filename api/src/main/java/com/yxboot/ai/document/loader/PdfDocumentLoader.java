@@ -1,11 +1,9 @@
 package com.yxboot.ai.document.loader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.stereotype.Component;
 import com.yxboot.ai.document.Document;
 
@@ -15,21 +13,52 @@ import com.yxboot.ai.document.Document;
 @Component
 public class PdfDocumentLoader extends AbstractDocumentLoader {
 
+    /**
+     * 从文件加载：内存映射读取，不把整个文件读入内存
+     */
     @Override
-    protected Document loadWithMetadata(InputStream inputStream, Map<String, Object> metadata) {
+    public Document load(File file) {
+        try (PdfDocumentSession session = PdfDocumentSession.open(file)) {
+            return load(session, file);
+        } catch (IOException e) {
+            throw new RuntimeException("PDF文档解析失败", e);
+        }
+    }
+
+    /**
+     * 从已打开的解析会话加载。文本缓存在会话中，调用方可在会话关闭前继续用它做结构分析，无需再次解析。
+     *
+     * @param session PDF 解析会话
+     * @param file    会话对应的文件，用于生成元数据
+     * @return 文档对象
+     */
+    public Document load(PdfDocumentSession session, File file) {
+        return load(session, createFileMetadata(file));
+    }
+
+    private Document load(PdfDocumentSession session, Map<String, Object> metadata) {
         try {
-            // 需要先读取为字节数组，PDFBox 3.0.2版本不再直接支持InputStream
-            byte[] pdfBytes = inputStream.readAllBytes();
-            try (PDDocument document = Loader.loadPDF(pdfBytes)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                String text = stripper.getText(document);
+            String text = session.getText();
 
-                // 添加元数据
-                metadata.put("page_count", document.getNumberOfPages());
-                metadata.put("document_type", "pdf");
-                metadata.put("raw_bytes", pdfBytes); // 保存原始字节数据用于结构分析
+            // 添加元数据
+            metadata.put("page_count", session.getPageCount());
+            metadata.put("document_type", "pdf");
 
-                return Document.of(text, metadata);
+            return Document.of(text, metadata);
+        } catch (IOException e) {
+            throw new RuntimeException("PDF文档解析失败", e);
+        }
+    }
+
+    @Override
+    protected Document loadWithMetadata(InputStream inputStream, Map<String, Object> metadata) {
+        try {
+            // 输入流没有文件路径可供重新打开，保留原始字节用于结构分析
+            byte[] pdfBytes = inputStream.readAllBytes();
+            try (PdfDocumentSession session = PdfDocumentSession.open(pdfBytes)) {
+                Document document = load(session, metadata);
+                metadata.put("raw_bytes", pdfBytes);
+                return document;
             }
         } catch (IOException e) {
             throw new RuntimeException("PDF文档解析失败", e);
@@ -0,0 +1,265 @@
+package com.yxboot.ai.document.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.text.PDFTextStripper;
+import com.yxboot.ai.document.PageIndex;
+
+/**
+ * PDF 解析会话：PDF 只加载一次、文本只抽取一次，加载器与结构分析器（书签 / 文本分析）共用同一份解析结果。
+ * <p>
+ * 从文件打开时使用内存映射读取，不再把整个文件读入字节数组。文本按页抽取并记录每页在全文中的起始偏移。
+ * <p>
+ * 指定执行器打开文件时按页区间并行抽取：页码范围切成若干片，每个任务各自内存映射打开一份 PDDocument
+ * （PDFBox 文档对象不是线程安全的），抽取结果按页序拼接，与串行抽取的全文和页偏移完全一致。
+ * 会话不是线程安全的，使用完必须关闭。
+ */
+public class PdfDocumentSession implements Closeable {
+
+    /**
+     * 在文档元数据中传递会话的 key，仅在会话打开期间有效，不会复制到分段元数据
+     */
+    public static final String METADATA_KEY = "pdf_session";
+
+    private final PDDocument document;
+    /** 并行抽取时各任务重新打开的文件，串行抽取时为 null */
+    private final File file;
+    private final Executor executor;
+    private final int maxSlices;
+    private final int minPagesPerSlice;
+    private String text;
+    private int[] pageOffsets;
+
+    private PdfDocumentSession(PDDocument document, File file, Executor executor, int maxSlices,
+            int minPagesPerSlice) {
+        this.document = document;
+        this.file = file;
+        this.executor = executor;
+        this.maxSlices = maxSlices;
+        this.minPagesPerSlice = minPagesPerSlice;
+    }
+
+    /**
+     * 以内存映射方式打开 PDF 文件
+     */
+    public static PdfDocumentSession open(File file) throws IOException {
+        return open(file, null, 1, 0);
+    }
+
+    /**
+     * 以内存映射方式打开 PDF 文件，页数足够多时按页区间并行抽取文本。
+     * <p>
+     * 每个分片都要重新打开文档（解析交叉引用表、页树），分片过小时这部分开销会超过并行收益，
+     * 因此分片数不超过 maxSlices，且每片不少于 minPagesPerSlice 页，不足两片时串行抽取。
+     *
+     * @param file             PDF 文件
+     * @param executor         分片抽取执行器，为 null 时串行抽取
+     * @param maxSlices        最大分片数（一般为执行器线程数）
+     * @param minPagesPerSlice 每个分片的最少页数
+     */
+    public static PdfDocumentSession open(File file, Executor executor, int maxSlices, int minPagesPerSlice)
+            throws IOException {
+        return new PdfDocumentSession(loadMapped(file), file, executor, maxSlices, minPagesPerSlice);
+    }
+
+    /**
+     * 从字节数组打开 PDF（没有文件路径时使用）
+     */
+    public static PdfDocumentSession open(byte[] bytes) throws IOException {
+        return new PdfDocumentSession(Loader.loadPDF(bytes), null, null, 1, 0);
+    }
+
+    public PDDocument getDocument() {
+        return document;
+    }
+
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /**
+     * 书签大纲，没有书签时返回 null
+     */
+    public PDDocumentOutline getOutline() {
+        return document.getDocumentCatalog().getDocumentOutline();
+    }
+
+    /**
+     * 全文（首次调用时按页抽取，之后直接复用）
+     */
+    public String getText() throws IOException {
+        extractTextIfNecessary();
+        return text;
+    }
+
+    /**
+     * 每页在全文中的起始偏移，下标为页码 - 1
+     */
+    public int[] getPageOffsets() throws IOException {
+        extractTextIfNecessary();
+        return pageOffsets;
+    }
+
+    /**
+     * 页边界索引，用于把全文偏移换算为页码
+     */
+    public PageIndex getPageIndex() throws IOException {
+        return new PageIndex(getPageOffsets());
+    }
+
+    /**
+     * 全文偏移所在的页码（从 1 开始）
+     */
+    public int getPageNumber(int offset) throws IOException {
+        return getPageIndex().getPageNumber(offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    private void extractTextIfNecessary() throws IOException {
+        if (text != null) {
+            return;
+        }
+        int pageCount = document.getNumberOfPages();
+        int sliceCount = Math.min(maxSlices, pageCount / Math.max(minPagesPerSlice, 1));
+        if (file != null && executor != null && sliceCount > 1) {
+            extractInParallel(pageCount, (pageCount + sliceCount - 1) / sliceCount);
+            return;
+        }
+        PageText pageText = extractPages(document, 1, pageCount);
+        text = pageText.text;
+        pageOffsets = pageText.offsets;
+    }
+
+    private void extractInParallel(int pageCount, int pagesPerSlice) throws IOException {
+        List<CompletableFuture<PageText>> slices = new ArrayList<>();
+        for (int startPage = 1; startPage <= pageCount; startPage += pagesPerSlice) {
+            int first = startPage;
+            int last = Math.min(startPage + pagesPerSlice - 1, pageCount);
+            slices.add(CompletableFuture.supplyAsync(() -> extractSlice(first, last), executor));
+        }
+
+        List<PageText> results = new ArrayList<>(slices.size());
+        try {
+            for (CompletableFuture<PageText> slice : slices) {
+                results.add(slice.join());
+            }
+        } catch (CompletionException e) {
+            slices.forEach(slice -> slice.cancel(false));
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+
+        int length = 0;
+        for (PageText result : results) {
+            length += result.text.length();
+        }
+        StringBuilder merged = new StringBuilder(length);
+        int[] offsets = new int[pageCount];
+        int page = 0;
+        for (PageText result : results) {
+            int base = merged.length();
+            for (int offset : result.offsets) {
+                offsets[page++] = base + offset;
+            }
+            merged.append(result.text);
+        }
+        text = merged.toString();
+        pageOffsets = offsets;
+    }
+
+    /**
+     * 分片任务：各自打开一份文档，只抽取 [firstPage, lastPage] 页
+     */
+    private PageText extractSlice(int firstPage, int lastPage) {
+        try (PDDocument slice = loadMapped(file)) {
+            return extractPages(slice, firstPage, lastPage);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PageText extractPages(PDDocument document, int firstPage, int lastPage) throws IOException {
+        StringWriter output = new StringWriter();
+        PageOffsetTextStripper stripper = new PageOffsetTextStripper(output, firstPage, lastPage);
+        stripper.writeText(document, output);
+        String text = output.toString();
+        return new PageText(text, stripper.getPageOffsets(text.length()));
+    }
+
+    private static PDDocument loadMapped(File file) throws IOException {
+        return Loader.loadPDF(new RandomAccessReadMemoryMappedFile(file));
+    }
+
+    /**
+     * 一段连续页的文本及每页在该段文本中的起始偏移
+     */
+    private static final class PageText {
+
+        private final String text;
+        private final int[] offsets;
+
+        PageText(String text, int[] offsets) {
+            this.text = text;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * 抽取文本时记录每页的起始偏移。没有内容流的页不会触发 startPage，其偏移取下一页的起始位置。
+     */
+    private static final class PageOffsetTextStripper extends PDFTextStripper {
+
+        private final StringWriter output;
+        private final int firstPage;
+        private final int[] offsets;
+
+        PageOffsetTextStripper(StringWriter output, int firstPage, int lastPage) {
+            this.output = output;
+            this.firstPage = firstPage;
+            this.offsets = new int[Math.max(lastPage - firstPage + 1, 0)];
+            Arrays.fill(offsets, -1);
+            setStartPage(firstPage);
+            setEndPage(lastPage);
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            int index = getCurrentPageNo() - firstPage;
+            if (index >= 0 && index < offsets.length) {
+                offsets[index] = output.getBuffer().length();
+            }
+            super.startPage(page);
+        }
+
+        int[] getPageOffsets(int textLength) {
+            int next = textLength;
+            for (int i = offsets.length - 1; i >= 0; i--) {
+                if (offsets[i] < 0) {
+                    offsets[i] = next;
+                }
+                next = offsets[i];
+            }
+            return offsets;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import com.yxboot.ai.document.Document;
 import com.yxboot.ai.document.DocumentSegment;
@@ -36,27 +37,66 @@ public abstract class AbstractSplitter implements DocumentSplitter {
             return new ArrayList<>();
         }
 
-        List<String> textSegments = splitText(text);
+        List<TextChunk> textSegments = splitChunks(text);
         List<DocumentSegment> documentSegments = new ArrayList<>();
 
         for (int index = 0; index < textSegments.size(); index++) {
-            String textSegment = textSegments.get(index);
-            if (textSegment.trim().isEmpty()) {
+            TextChunk textSegment = textSegments.get(index);
+            if (textSegment.getContent().trim().isEmpty()) {
                 continue;
             }
 
-            DocumentSegment segment = DocumentSegment.builder()
-                    .id(generateSegmentId())
-                    .title(generateSegmentTitle(index))
-                    .content(textSegment)
-                    .build();
-
-            documentSegments.add(segment);
+            documentSegments.add(createSegment(textSegment, index));
         }
 
         return documentSegments;
     }
 
+    /**
+     * 按窗口分割文档：分段按顺序逐批交给 windowConsumer，调用方无需持有完整的分段列表。
+     * 分块经 {@link #forEachChunk(String, Consumer)} 逐个生成，同一时刻只持有一个窗口的分段。
+     * 生成的 ID、标题与元数据与 {@link #split(Document)} 一致。
+     *
+     * @param document       文档对象
+     * @param windowSize     每批分段数量
+     * @param windowConsumer 分段批次消费者
+     * @return 分段总数
+     */
+    public int splitInWindows(Document document, int windowSize, Consumer<List<DocumentSegment>> windowConsumer) {
+        String text = document.getContent();
+        if (text == null || text.trim().isEmpty()) {
+            return 0;
+        }
+
+        int batchSize = Math.max(windowSize, 1);
+        Map<String, Object> metadata = document.getMetadata();
+        List<DocumentSegment> window = new ArrayList<>(Math.min(batchSize, 256));
+        // [0] 分块序号（含空白分块，与 split 的标题编号一致），[1] 分段总数
+        int[] counters = new int[2];
+
+        forEachChunk(text, textSegment -> {
+            int index = counters[0]++;
+            if (textSegment.getContent().trim().isEmpty()) {
+                return;
+            }
+
+            DocumentSegment segment = createSegment(textSegment, index);
+            metadata.forEach(segment.getMetadata()::putIfAbsent);
+            window.add(segment);
+            counters[1]++;
+
+            if (window.size() >= batchSize) {
+                windowConsumer.accept(new ArrayList<>(window));
+                window.clear();
+            }
+        });
+
+        if (!window.isEmpty()) {
+            windowConsumer.accept(window);
+        }
+        return counters[1];
+    }
+
     /**
      * 分割文本内容
      *
@@ -65,6 +105,47 @@ public abstract class AbstractSplitter implements DocumentSplitter {
      */
     protected abstract List<String> splitText(String text);
 
+    /**
+     * 分割文本内容并给出各分块在原文中的位置；默认不跟踪位置，子类可覆盖
+     *
+     * @param text 文本内容
+     * @return 分割后的分块列表
+     */
+    protected List<TextChunk> splitChunks(String text) {
+        List<String> textSegments = splitText(text);
+        List<TextChunk> chunks = new ArrayList<>(textSegments.size());
+        for (String textSegment : textSegments) {
+            chunks.add(TextChunk.withoutPosition(textSegment));
+        }
+        return chunks;
+    }
+
+    /**
+     * 按顺序逐个产出分块，不构建完整的分块列表。默认基于 {@link #splitChunks(String)}，子类可覆盖为边扫描边产出
+     *
+     * @param text   文本内容
+     * @param action 分块消费者
+     */
+    protected void forEachChunk(String text, Consumer<TextChunk> action) {
+        splitChunks(text).forEach(action);
+    }
+
+    /**
+     * 创建分块，位置已知时写入 start_position / end_position 元数据（用于换算页码）
+     */
+    private DocumentSegment createSegment(TextChunk chunk, int index) {
+        DocumentSegment segment = DocumentSegment.builder()
+                .id(generateSegmentId())
+                .title(generateSegmentTitle(index))
+                .content(chunk.getContent())
+                .build();
+        if (chunk.hasPosition()) {
+            segment.addMetadata("start_position", chunk.getStart());
+            segment.addMetadata("end_position", chunk.getEnd());
+        }
+        return segment;
+    }
+
     /**
      * 生成块ID
      *
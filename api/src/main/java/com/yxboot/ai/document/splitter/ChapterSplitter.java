@@ -1,8 +1,11 @@
 package com.yxboot.ai.document.splitter;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.springframework.stereotype.Component;
 import com.yxboot.ai.document.Document;
 import com.yxboot.ai.document.DocumentSegment;
@@ -10,6 +13,7 @@ import com.yxboot.ai.document.analyzer.ChapterInfo;
 import com.yxboot.ai.document.analyzer.PdfStructureAnalyzer;
 import com.yxboot.ai.document.analyzer.TextStructureAnalyzer;
 import com.yxboot.ai.document.analyzer.WordStructureAnalyzer;
+import com.yxboot.ai.document.loader.PdfDocumentSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,6 +25,8 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class ChapterSplitter extends AbstractSplitter {
 
+    private static final Set<String> TRANSIENT_METADATA_KEYS = Set.of("raw_bytes", PdfDocumentSession.METADATA_KEY);
+
     private final PdfStructureAnalyzer pdfAnalyzer;
     private final WordStructureAnalyzer wordAnalyzer;
     private final TextStructureAnalyzer textAnalyzer;
@@ -42,8 +48,22 @@ public class ChapterSplitter extends AbstractSplitter {
 
     @Override
     public List<DocumentSegment> split(Document document) {
+        List<DocumentSegment> segments = new ArrayList<>();
+        splitInWindows(document, Integer.MAX_VALUE, segments::addAll);
+        return segments;
+    }
+
+    /**
+     * 按窗口输出章节分段：章节结构分析需要全文，分析完成后先统计分段总数，再逐章节生成分段，
+     * 每攒够 windowSize 个即交给 windowConsumer，不持有整篇文档的分段列表。
+     * 超长章节的分块数在统计时已算出，生成时再切分一次，以换取不缓存分块。
+     *
+     * @return 分段总数，没有识别出章节时为 0
+     */
+    @Override
+    public int splitInWindows(Document document, int windowSize, Consumer<List<DocumentSegment>> windowConsumer) {
         if (document == null || document.getContent() == null || document.getContent().trim().isEmpty()) {
-            return new ArrayList<>();
+            return 0;
         }
 
         log.info("开始智能章节分割，文档类型: {}", document.getMetadata().get("document_type"));
@@ -62,14 +82,28 @@ public class ChapterSplitter extends AbstractSplitter {
 
         log.info("章节分析完成，发现 {} 个章节", chapters.size());
 
-        // 转换为文档分段
-        List<DocumentSegment> segments = convertToSegments(chapters);
-
-        // 添加文档元数据到每个分段
-        enhanceSegmentsMetadata(segments, document.getMetadata());
+        Map<ChapterInfo, Integer> largeChapterChunks = new IdentityHashMap<>();
+        int total = countSegments(chapters, largeChapterChunks);
+        int batchSize = Math.max(windowSize, 1);
+        Map<String, Object> documentMetadata = document.getMetadata();
+        List<DocumentSegment> window = new ArrayList<>(Math.min(batchSize, Math.max(total, 1)));
+        int[] segmentIndex = new int[1];
+
+        // 转换为文档分段，并添加文档元数据
+        emitSegments(chapters, largeChapterChunks, document.getContent(), segment -> {
+            enhanceSegmentMetadata(segment, segmentIndex[0]++, total, documentMetadata);
+            window.add(segment);
+            if (window.size() >= batchSize) {
+                windowConsumer.accept(new ArrayList<>(window));
+                window.clear();
+            }
+        });
+        if (!window.isEmpty()) {
+            windowConsumer.accept(window);
+        }
 
-        log.info("智能章节分割完成，生成 {} 个分段", segments.size());
-        return segments;
+        log.info("智能章节分割完成，生成 {} 个分段", total);
+        return total;
     }
 
     @Override
@@ -86,6 +120,11 @@ public class ChapterSplitter extends AbstractSplitter {
      */
     private List<ChapterInfo> analyzePdfStructure(Document document) {
         try {
+            // 优先复用加载阶段的解析会话，避免再次解析 PDF
+            Object session = document.getMetadata().get(PdfDocumentSession.METADATA_KEY);
+            if (session instanceof PdfDocumentSession pdfSession) {
+                return pdfAnalyzer.analyzeStructure(pdfSession);
+            }
             // 从元数据获取原始字节数据
             byte[] pdfBytes = (byte[]) document.getMetadata().get("raw_bytes");
             if (pdfBytes != null) {
@@ -127,10 +166,42 @@ public class ChapterSplitter extends AbstractSplitter {
     }
 
     /**
-     * 将章节信息转换为文档分段
+     * 统计章节转换出的分段数，与 {@link #emitSegments} 的遍历规则一致；超长章节的分块数记入 largeChapterChunks
      */
-    private List<DocumentSegment> convertToSegments(List<ChapterInfo> chapters) {
-        List<DocumentSegment> segments = new ArrayList<>();
+    private int countSegments(List<ChapterInfo> chapters, Map<ChapterInfo, Integer> largeChapterChunks) {
+        int count = 0;
+        for (ChapterInfo chapter : chapters) {
+            if (includeSubChapters) {
+                String fullContent = chapter.getFullContent();
+                if (fullContent.length() >= minChapterLength) {
+                    if (fullContent.length() <= maxChapterLength) {
+                        count++;
+                    } else {
+                        int[] chunks = new int[1];
+                        largeChapterSplitter().forEachChunk(fullContent, chunk -> chunks[0]++);
+                        largeChapterChunks.put(chapter, chunks[0]);
+                        count += chunks[0];
+                    }
+                }
+            } else {
+                if (chapter.getContent() != null && chapter.getContent().length() >= minChapterLength) {
+                    count++;
+                }
+                if (chapter.hasSubChapters()) {
+                    count += countSegments(chapter.getSubChapters(), largeChapterChunks);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 将章节信息逐个转换为文档分段
+     *
+     * @return 本级（含递归的子章节）生成的分段数
+     */
+    private int emitSegments(List<ChapterInfo> chapters, Map<ChapterInfo, Integer> largeChapterChunks,
+            String documentText, Consumer<DocumentSegment> segments) {
         int segmentIndex = 0;
 
         for (ChapterInfo chapter : chapters) {
@@ -139,54 +210,52 @@ public class ChapterSplitter extends AbstractSplitter {
                 String fullContent = chapter.getFullContent();
                 if (fullContent.length() >= minChapterLength) {
                     if (fullContent.length() <= maxChapterLength) {
-                        segments.add(createSegment(chapter, fullContent, segmentIndex++));
+                        segments.accept(createSegment(chapter, fullContent, segmentIndex++));
                     } else {
                         // 章节太长，需要进一步分割
-                        List<DocumentSegment> splitSegments = splitLargeChapter(chapter, segmentIndex);
-                        segments.addAll(splitSegments);
-                        segmentIndex += splitSegments.size();
+                        segmentIndex += splitLargeChapter(chapter, fullContent, largeChapterChunks.get(chapter),
+                                documentText, segments);
                     }
                 }
             } else {
                 // 只包含当前级别的内容
                 if (chapter.getContent() != null && chapter.getContent().length() >= minChapterLength) {
-                    segments.add(createSegment(chapter, chapter.getContent(), segmentIndex++));
+                    segments.accept(createSegment(chapter, chapter.getContent(), segmentIndex++));
                 }
 
                 // 递归处理子章节
                 if (chapter.hasSubChapters()) {
-                    List<DocumentSegment> subSegments = convertToSegments(chapter.getSubChapters());
-                    // 更新子分段的索引
-                    for (DocumentSegment subSegment : subSegments) {
-                        subSegment.getMetadata().put("segment_index", segmentIndex++);
-                    }
-                    segments.addAll(subSegments);
+                    segmentIndex += emitSegments(chapter.getSubChapters(), largeChapterChunks, documentText,
+                            segments);
                 }
             }
         }
 
-        return segments;
+        return segmentIndex;
     }
 
     /**
-     * 分割过大的章节
+     * 分割过大的章节，分块逐个交给 segments
+     *
+     * @param totalChunks 统计阶段得到的分块数
+     * @param documentText 文档全文，用于把分块位置换算为原文位置
+     * @return 分块数
      */
-    private List<DocumentSegment> splitLargeChapter(ChapterInfo chapter, int startIndex) {
-        List<DocumentSegment> segments = new ArrayList<>();
-        String content = chapter.getFullContent();
-
+    private int splitLargeChapter(ChapterInfo chapter, String content, int totalChunks, String documentText,
+            Consumer<DocumentSegment> segments) {
         log.debug("章节 '{}' 长度 {} 超过最大限制 {}，进行进一步分割",
                 chapter.getTitle(), content.length(), maxChapterLength);
 
         // 使用字符长度分割器进一步分割
-        CharacterSplitter lengthSplitter = new CharacterSplitter(maxChapterLength, 200);
-        List<String> chunks = lengthSplitter.splitText(content);
+        ContentSpans spans = ContentSpans.of(chapter, documentText);
+        int[] chunkIndex = new int[1];
 
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunkContent = chunks.get(i);
+        largeChapterSplitter().forEachChunk(content, chunk -> {
+            int i = chunkIndex[0]++;
+            String chunkContent = chunk.getContent();
             DocumentSegment segment = DocumentSegment.builder()
                     .id(generateSegmentId())
-                    .title(generateChunkTitle(chapter.getTitle(), i + 1, chunks.size()))
+                    .title(generateChunkTitle(chapter.getTitle(), i + 1, totalChunks))
                     .content(chunkContent)
                     .build();
 
@@ -194,18 +263,25 @@ public class ChapterSplitter extends AbstractSplitter {
             segment.addMetadata("chapter_title", chapter.getTitle());
             segment.addMetadata("chapter_level", chapter.getLevel());
             segment.addMetadata("chunk_index", i + 1);
-            segment.addMetadata("total_chunks", chunks.size());
+            segment.addMetadata("total_chunks", totalChunks);
             segment.addMetadata("splitting_reason", "large_chapter");
             segment.addMetadata("original_chapter_length", content.length());
+            int start = spans.toSourceStart(chunk.getStart());
+            segment.addMetadata("start_position", start);
+            segment.addMetadata("end_position", Math.max(spans.toSourceEnd(chunk.getEnd()), start));
 
             // 复制原章节的元数据
             chapter.getMetadata().forEach(segment::addMetadata);
 
-            segments.add(segment);
-        }
+            segments.accept(segment);
+        });
 
-        log.debug("大章节分割完成，分成 {} 个子分段", segments.size());
-        return segments;
+        log.debug("大章节分割完成，分成 {} 个子分段", chunkIndex[0]);
+        return chunkIndex[0];
+    }
+
+    private CharacterSplitter largeChapterSplitter() {
+        return new CharacterSplitter(maxChapterLength, 200);
     }
 
     /**
@@ -232,7 +308,7 @@ public class ChapterSplitter extends AbstractSplitter {
         segment.addMetadata("chapter_level", chapter.getLevel());
         segment.addMetadata("chapter_index", index);
         segment.addMetadata("start_position", chapter.getStartPosition());
-        segment.addMetadata("end_position", chapter.getEndPosition());
+        segment.addMetadata("end_position", includeSubChapters ? getFullEndPosition(chapter) : chapter.getEndPosition());
         segment.addMetadata("splitting_method", "smart_chapter");
 
         if (chapter.getPageNumber() != null) {
@@ -246,27 +322,132 @@ public class ChapterSplitter extends AbstractSplitter {
     }
 
     /**
-     * 增强分段元数据
+     * 章节（含子章节）在全文中的结束位置
+     */
+    private int getFullEndPosition(ChapterInfo chapter) {
+        int end = chapter.getEndPosition();
+        if (chapter.hasSubChapters()) {
+            for (ChapterInfo subChapter : chapter.getSubChapters()) {
+                end = Math.max(end, getFullEndPosition(subChapter));
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 章节全文（{@link ChapterInfo#getFullContent()}）中各章节正文在原文中的位置。
+     * 全文不含标题，各章节正文之间以 "\n\n" 拼接，分块位置需要按正文区间逐段换算；
+     * 正文在原文中找不到时（如 Word 分析器按段落拼接正文），该区间的位置取所属章节的起始位置。
      */
-    private void enhanceSegmentsMetadata(List<DocumentSegment> segments, Map<String, Object> documentMetadata) {
-        for (int i = 0; i < segments.size(); i++) {
-            DocumentSegment segment = segments.get(i);
+    private static final class ContentSpans {
+
+        private final List<Span> spans = new ArrayList<>();
+
+        static ContentSpans of(ChapterInfo chapter, String documentText) {
+            ContentSpans contentSpans = new ContentSpans();
+            contentSpans.collect(chapter, documentText, 0);
+            return contentSpans;
+        }
+
+        /**
+         * 按 getFullContent 的拼接规则记录各段正文
+         *
+         * @return 该章节全文的长度
+         */
+        private int collect(ChapterInfo chapter, String documentText, int offset) {
+            int length = 0;
+            String content = chapter.getContent();
+            if (content != null && !content.trim().isEmpty()) {
+                int source = locate(documentText, content, chapter.getStartPosition());
+                spans.add(new Span(offset, content.length(), source >= 0 ? source : chapter.getStartPosition(),
+                        source >= 0));
+                length = content.length();
+            }
+            if (chapter.hasSubChapters()) {
+                for (ChapterInfo subChapter : chapter.getSubChapters()) {
+                    // 拼接的每段正文都非空白，子章节全文长度为 0 即 getFullContent 跳过的空白子章节
+                    int subStart = length > 0 ? length + 2 : length;
+                    int subLength = collect(subChapter, documentText, offset + subStart);
+                    if (subLength > 0) {
+                        length = subStart + subLength;
+                    }
+                }
+            }
+            return length;
+        }
 
-            // 添加分段索引信息
-            if (!segment.getMetadata().containsKey("segment_index")) {
-                segment.addMetadata("segment_index", i);
+        private static int locate(String documentText, String content, int chapterStart) {
+            if (documentText == null) {
+                return -1;
             }
-            segment.addMetadata("total_segments", segments.size());
+            int index = documentText.indexOf(content, Math.max(0, Math.min(chapterStart, documentText.length())));
+            // PDF 书签标题定位不准时章节起点可能在正文之后
+            return index >= 0 ? index : documentText.indexOf(content);
+        }
+
+        /**
+         * 全文偏移换算为原文起始位置，落在分隔符上时取下一段正文的起点
+         */
+        int toSourceStart(int offset) {
+            for (Span span : spans) {
+                if (offset < span.offset + span.length) {
+                    return span.located ? span.source + Math.max(offset - span.offset, 0) : span.source;
+                }
+            }
+            return spans.isEmpty() ? 0 : toSourceEnd(Integer.MAX_VALUE);
+        }
 
-            // 复制文档元数据
-            documentMetadata.forEach((key, value) -> {
-                if (!segment.getMetadata().containsKey(key)) {
-                    segment.addMetadata(key, value);
+        /**
+         * 全文偏移（不含）换算为原文结束位置，落在分隔符上时取上一段正文的终点
+         */
+        int toSourceEnd(int offset) {
+            for (int i = spans.size() - 1; i >= 0; i--) {
+                Span span = spans.get(i);
+                if (offset > span.offset) {
+                    return span.located ? span.source + Math.min(offset - span.offset, span.length) : span.source;
                 }
-            });
+            }
+            return spans.isEmpty() ? 0 : spans.get(0).source;
         }
     }
 
+    /**
+     * 一段章节正文：在章节全文中的偏移与长度，及其在原文中的起始位置
+     */
+    private static final class Span {
+        private final int offset;
+        private final int length;
+        private final int source;
+        /** 是否在原文中找到该段正文，否则 source 为所属章节的起始位置 */
+        private final boolean located;
+
+        private Span(int offset, int length, int source, boolean located) {
+            this.offset = offset;
+            this.length = length;
+            this.source = source;
+            this.located = located;
+        }
+    }
+
+    /**
+     * 增强分段元数据
+     */
+    private void enhanceSegmentMetadata(DocumentSegment segment, int index, int total,
+            Map<String, Object> documentMetadata) {
+        // 添加分段索引信息
+        if (!segment.getMetadata().containsKey("segment_index")) {
+            segment.addMetadata("segment_index", index);
+        }
+        segment.addMetadata("total_segments", total);
+
+        // 复制文档元数据（原始字节与解析会话只用于结构分析，不复制到分段）
+        documentMetadata.forEach((key, value) -> {
+            if (!TRANSIENT_METADATA_KEYS.contains(key) && !segment.getMetadata().containsKey(key)) {
+                segment.addMetadata(key, value);
+            }
+        });
+    }
+
     @Override
     protected String generateSegmentTitle(int index) {
         return "智能章节 " + (index + 1);
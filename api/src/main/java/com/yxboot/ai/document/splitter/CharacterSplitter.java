@@ -1,8 +1,9 @@
 package com.yxboot.ai.document.splitter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Component;
 
@@ -12,8 +13,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class CharacterSplitter extends AbstractSplitter {
 
-    private static final Pattern PARAGRAPH_PATTERN = Pattern.compile("\\n\\s*\\n");
-    private static final Pattern SENTENCE_PATTERN = Pattern.compile("(?<=[.!?。！？])(\\s+)");
+    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+    private static final String SENTENCE_SEPARATOR = " ";
+    /** 分隔符常量池，RangeChunk 中的分隔符区间指向这里 */
+    private static final String SEPARATORS = PARAGRAPH_SEPARATOR + SENTENCE_SEPARATOR;
 
     /**
      * 默认块的最大字符数
@@ -52,101 +55,211 @@ public class CharacterSplitter extends AbstractSplitter {
         this.overlapSize = overlapSize;
     }
 
+    /**
+     * 分割文本：先按段落（{@code \n\s*\n}）累积，超长段落再按句子（句末标点后的空白）累积，超长句子按定长切分。
+     * <p>
+     * 只扫描一遍原文，分块在累积过程中以原文区间（start, end）表示，输出时才生成字符串；
+     * 原文中的分隔符恰好是拼接用的 "\n\n" / " " 时，整个分块就是原文的一个连续区间，只需一次 substring。
+     */
     @Override
     protected List<String> splitText(String text) {
-        List<String> chunks = new ArrayList<>();
-        // 首先按段落分割
-        String[] paragraphs = PARAGRAPH_PATTERN.split(text);
+        List<TextChunk> chunks = splitChunks(text);
+        List<String> contents = new ArrayList<>(chunks.size());
+        for (TextChunk chunk : chunks) {
+            contents.add(chunk.getContent());
+        }
+        return contents;
+    }
+
+    /**
+     * 与 {@link #splitText(String)} 相同的分割，同时给出每个分块在原文中的位置
+     */
+    @Override
+    protected List<TextChunk> splitChunks(String text) {
+        List<TextChunk> chunks = new ArrayList<>();
+        forEachChunk(text, chunks::add);
+        return chunks;
+    }
+
+    /**
+     * 边扫描边产出分块：每个分块在累积完成时即交给 chunks，不保留已产出的分块
+     */
+    @Override
+    protected void forEachChunk(String text, Consumer<TextChunk> chunks) {
+        RangeChunk currentChunk = new RangeChunk(text);
+        RangeChunk sentenceChunk = new RangeChunk(text);
+        int[] match = new int[2];
 
-        StringBuilder currentChunk = new StringBuilder();
+        int paragraphStart = 0;
+        int previousParagraphEnd = 0;
+        while (paragraphStart <= text.length()) {
+            boolean hasBreak = findParagraphBreak(text, paragraphStart, match);
+            int paragraphEnd = hasBreak ? match[0] : text.length();
+            int nextParagraphStart = match[1];
+            int paragraphLength = paragraphEnd - paragraphStart;
 
-        for (String paragraph : paragraphs) {
-            // 如果当前段落的长度超过最大块大小，需要进一步分割
-            if (paragraph.length() > maxChunkSize) {
+            // 空段落只可能出现在文本开头（以空行开头），对结果没有影响
+            if (paragraphLength > maxChunkSize) {
                 // 如果当前块不为空，先添加到结果中
-                if (currentChunk.length() > 0) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
+                if (!currentChunk.isEmpty()) {
+                    chunks.accept(currentChunk.toChunk());
+                    currentChunk.clear();
+                }
+                splitParagraph(text, paragraphStart, paragraphEnd, sentenceChunk, match, chunks);
+            } else if (paragraphLength > 0) {
+                // 如果添加当前段落后超过最大块大小，则创建新块
+                if (currentChunk.length() + paragraphLength > maxChunkSize) {
+                    chunks.accept(currentChunk.toChunk());
+                    keepOverlap(currentChunk);
                 }
 
-                // 按句子分割段落
-                String[] sentences = SENTENCE_PATTERN.split(paragraph);
-                StringBuilder sentenceChunk = new StringBuilder();
-
-                for (String sentence : sentences) {
-                    // 如果单个句子的长度超过块大小，直接按块大小切分
-                    if (sentence.length() > maxChunkSize) {
-                        // 处理之前积累的句子
-                        if (sentenceChunk.length() > 0) {
-                            chunks.add(sentenceChunk.toString());
-                            sentenceChunk = new StringBuilder();
-                        }
-
-                        // 直接切分句子（末尾剩余长度 <= overlap 时必须退出，否则 start 不前进导致死循环）
-                        int start = 0;
-                        while (start < sentence.length()) {
-                            int end = Math.min(start + maxChunkSize, sentence.length());
-                            chunks.add(sentence.substring(start, end));
-                            if (end >= sentence.length()) {
-                                break;
-                            }
-                            int nextStart = end - overlapSize;
-                            start = nextStart > start ? nextStart : end;
-                        }
-                    } else {
-                        // 如果添加当前句子后超过最大块大小，则创建新块
-                        if (sentenceChunk.length() + sentence.length() > maxChunkSize) {
-                            chunks.add(sentenceChunk.toString());
-
-                            // 如果设置了重叠，需要将最后部分重叠到新块中
-                            if (overlapSize > 0 && sentenceChunk.length() > overlapSize) {
-                                int overlapStart = sentenceChunk.length() - overlapSize;
-                                sentenceChunk = new StringBuilder(sentenceChunk.substring(overlapStart));
-                            } else {
-                                sentenceChunk = new StringBuilder();
-                            }
-                        }
-
-                        // 添加当前句子到块中
-                        if (sentenceChunk.length() > 0) {
-                            sentenceChunk.append(" ");
-                        }
-                        sentenceChunk.append(sentence);
-                    }
+                // 添加当前段落到块中
+                if (!currentChunk.isEmpty()) {
+                    currentChunk.appendSeparator(PARAGRAPH_SEPARATOR, previousParagraphEnd, paragraphStart);
                 }
+                currentChunk.append(paragraphStart, paragraphEnd);
+            }
 
-                // 处理最后一个句子块
-                if (sentenceChunk.length() > 0) {
-                    chunks.add(sentenceChunk.toString());
+            if (!hasBreak) {
+                break;
+            }
+            previousParagraphEnd = paragraphEnd;
+            paragraphStart = nextParagraphStart;
+        }
+
+        // 处理最后一个块
+        if (!currentChunk.isEmpty()) {
+            chunks.accept(currentChunk.toChunk());
+        }
+    }
+
+    /**
+     * 按句子分割超长段落 [start, end)
+     */
+    private void splitParagraph(String text, int start, int end, RangeChunk sentenceChunk, int[] match,
+            Consumer<TextChunk> chunks) {
+        sentenceChunk.clear();
+        int sentenceStart = start;
+        int previousSentenceEnd = start;
+        while (sentenceStart < end) {
+            boolean hasBreak = findSentenceBreak(text, sentenceStart, end, match);
+            int sentenceEnd = hasBreak ? match[0] : end;
+            int sentenceLength = sentenceEnd - sentenceStart;
+
+            // 如果单个句子的长度超过块大小，直接按块大小切分
+            if (sentenceLength > maxChunkSize) {
+                // 处理之前积累的句子
+                if (!sentenceChunk.isEmpty()) {
+                    chunks.accept(sentenceChunk.toChunk());
+                    sentenceChunk.clear();
                 }
-            } else {
-                // 如果添加当前段落后超过最大块大小，则创建新块
-                if (currentChunk.length() + paragraph.length() > maxChunkSize) {
-                    chunks.add(currentChunk.toString());
-
-                    // 如果设置了重叠，需要将最后部分重叠到新块中
-                    if (overlapSize > 0 && currentChunk.length() > overlapSize) {
-                        int overlapStart = currentChunk.length() - overlapSize;
-                        currentChunk = new StringBuilder(currentChunk.substring(overlapStart));
-                    } else {
-                        currentChunk = new StringBuilder();
+
+                // 直接切分句子（末尾剩余长度 <= overlap 时必须退出，否则 start 不前进导致死循环）
+                int offset = sentenceStart;
+                while (offset < sentenceEnd) {
+                    int chunkEnd = Math.min(offset + maxChunkSize, sentenceEnd);
+                    chunks.accept(new TextChunk(text.substring(offset, chunkEnd), offset, chunkEnd));
+                    if (chunkEnd >= sentenceEnd) {
+                        break;
                     }
+                    int nextOffset = chunkEnd - overlapSize;
+                    offset = nextOffset > offset ? nextOffset : chunkEnd;
+                }
+            } else {
+                // 如果添加当前句子后超过最大块大小，则创建新块
+                if (sentenceChunk.length() + sentenceLength > maxChunkSize) {
+                    chunks.accept(sentenceChunk.toChunk());
+                    keepOverlap(sentenceChunk);
                 }
 
-                // 添加当前段落到块中
-                if (currentChunk.length() > 0) {
-                    currentChunk.append("\n\n");
+                // 添加当前句子到块中
+                if (!sentenceChunk.isEmpty()) {
+                    sentenceChunk.appendSeparator(SENTENCE_SEPARATOR, previousSentenceEnd, sentenceStart);
                 }
-                currentChunk.append(paragraph);
+                sentenceChunk.append(sentenceStart, sentenceEnd);
+            }
+
+            if (!hasBreak) {
+                break;
             }
+            previousSentenceEnd = sentenceEnd;
+            sentenceStart = match[1];
         }
 
-        // 处理最后一个块
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString());
+        // 处理最后一个句子块
+        if (!sentenceChunk.isEmpty()) {
+            chunks.accept(sentenceChunk.toChunk());
+            sentenceChunk.clear();
         }
+    }
 
-        return chunks;
+    /**
+     * 如果设置了重叠，将已输出块的最后部分保留到新块中，否则清空
+     */
+    private void keepOverlap(RangeChunk chunk) {
+        if (overlapSize > 0 && chunk.length() > overlapSize) {
+            chunk.keepLast(overlapSize);
+        } else {
+            chunk.clear();
+        }
+    }
+
+    /**
+     * 查找下一个段落分隔（等价于正则 {@code \n\s*\n} 的贪婪匹配）
+     *
+     * @param match 输出匹配区间 [match[0], match[1])
+     * @return 是否找到
+     */
+    private static boolean findParagraphBreak(String text, int from, int[] match) {
+        int length = text.length();
+        int newline = text.indexOf('\n', from);
+        while (newline >= 0) {
+            int lastNewline = -1;
+            int i = newline + 1;
+            while (i < length && isWhitespace(text.charAt(i))) {
+                if (text.charAt(i) == '\n') {
+                    lastNewline = i;
+                }
+                i++;
+            }
+            if (lastNewline >= 0) {
+                match[0] = newline;
+                match[1] = lastNewline + 1;
+                return true;
+            }
+            newline = i < length ? text.indexOf('\n', i) : -1;
+        }
+        return false;
+    }
+
+    /**
+     * 在段落 [from, end) 内查找下一个句子分隔：句末标点之后的连续空白
+     * （等价于正则 {@code (?<=[.!?。！？])(\s+)}，标点不能越过段落起点）
+     */
+    private static boolean findSentenceBreak(String text, int from, int end, int[] match) {
+        for (int i = from + 1; i < end; i++) {
+            if (isWhitespace(text.charAt(i)) && isSentenceEnd(text.charAt(i - 1))) {
+                int j = i + 1;
+                while (j < end && isWhitespace(text.charAt(j))) {
+                    j++;
+                }
+                match[0] = i;
+                match[1] = j;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与正则 {@code \s} 一致：[ \t\n\x0B\f\r]
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？';
     }
 
     /**
@@ -184,4 +297,149 @@ public class CharacterSplitter extends AbstractSplitter {
         this.overlapSize = overlapSize;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * 以区间列表表示的待输出分块。
+     * <p>
+     * 区间坐标落在「原文 + 分隔符常量」拼成的虚拟字符串上：[0, text.length()) 指向原文，
+     * 之后的坐标指向 {@link #SEPARATORS}。相邻且连续的原文区间自动合并。
+     */
+    private static final class RangeChunk {
+
+        private final String text;
+        private final int textLength;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int head;
+        private int tail;
+        private int length;
+
+        RangeChunk(String text) {
+            this.text = text;
+            this.textLength = text.length();
+        }
+
+        int length() {
+            return length;
+        }
+
+        boolean isEmpty() {
+            return length == 0;
+        }
+
+        void clear() {
+            head = 0;
+            tail = 0;
+            length = 0;
+        }
+
+        void append(int start, int end) {
+            if (start >= end) {
+                return;
+            }
+            // 原文区间与分隔符区间不合并，保证每个区间只落在一个来源上
+            if (tail > head && ends[tail - 1] == start && start != textLength) {
+                ends[tail - 1] = end;
+            } else {
+                ensureCapacity();
+                starts[tail] = start;
+                ends[tail] = end;
+                tail++;
+            }
+            length += end - start;
+        }
+
+        /**
+         * 追加分隔符；原文中的间隔 [gapStart, gapEnd) 与分隔符相同时直接引用原文
+         */
+        void appendSeparator(String separator, int gapStart, int gapEnd) {
+            if (gapEnd - gapStart == separator.length() && text.startsWith(separator, gapStart)) {
+                append(gapStart, gapEnd);
+            } else {
+                int offset = textLength + SEPARATORS.indexOf(separator);
+                append(offset, offset + separator.length());
+            }
+        }
+
+        /**
+         * 只保留末尾 count 个字符
+         */
+        void keepLast(int count) {
+            int drop = length - count;
+            while (drop > 0) {
+                int pieceLength = ends[head] - starts[head];
+                if (pieceLength <= drop) {
+                    drop -= pieceLength;
+                    head++;
+                } else {
+                    starts[head] += drop;
+                    drop = 0;
+                }
+            }
+            length = count;
+        }
+
+        /**
+         * 生成分块，并记录各片段的来源，用于换算原文位置
+         */
+        TextChunk toChunk() {
+            String content = materialize();
+            if (tail - head == 1 && ends[head] <= textLength) {
+                return new TextChunk(content, starts[head], ends[head]);
+            }
+            int count = tail - head;
+            int[] pieceStarts = new int[count];
+            int[] pieceLengths = new int[count];
+            int start = -1;
+            int end = -1;
+            for (int i = 0; i < count; i++) {
+                int pieceStart = starts[head + i];
+                int pieceEnd = ends[head + i];
+                pieceLengths[i] = pieceEnd - pieceStart;
+                if (pieceStart >= textLength) {
+                    pieceStarts[i] = -1;
+                } else {
+                    pieceStarts[i] = pieceStart;
+                    if (start < 0) {
+                        start = pieceStart;
+                    }
+                    end = pieceEnd;
+                }
+            }
+            return new TextChunk(content, start, end, pieceStarts, pieceLengths);
+        }
+
+        String materialize() {
+            if (tail - head == 1 && ends[head] <= textLength) {
+                return text.substring(starts[head], ends[head]);
+            }
+            char[] chars = new char[length];
+            int position = 0;
+            for (int i = head; i < tail; i++) {
+                if (starts[i] >= textLength) {
+                    SEPARATORS.getChars(starts[i] - textLength, ends[i] - textLength, chars, position);
+                } else {
+                    text.getChars(starts[i], ends[i], chars, position);
+                }
+                position += ends[i] - starts[i];
+            }
+            return new String(chars);
+        }
+
+        private void ensureCapacity() {
+            if (tail < starts.length) {
+                return;
+            }
+            if (head > 0) {
+                System.arraycopy(starts, head, starts, 0, tail - head);
+                System.arraycopy(ends, head, ends, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            if (tail == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Component;
 
@@ -13,6 +14,8 @@ import com.yxboot.modules.dataset.enums.SegmentType;
 
 /**
  * 父子分块策略：先切父块，再对每个父块切子块。
+ * <p>
+ * 父块与子块都记录在原文中的位置（start_position / end_position），子块位置由其在父块内的偏移换算得到。
  */
 @Component
 public class ParentChildSplitter implements DocumentSplitter {
@@ -23,18 +26,36 @@ public class ParentChildSplitter implements DocumentSplitter {
 
     public List<DocumentSegment> split(Document document, int parentChunkSize, int childChunkSize,
             int childOverlapSize) {
+        List<DocumentSegment> result = new ArrayList<>();
+        splitInWindows(document, parentChunkSize, childChunkSize, childOverlapSize, Integer.MAX_VALUE, result::addAll);
+        return result;
+    }
+
+    /**
+     * 按窗口输出父子分块。父块与其子块总在同一批次内，且父块排在子块之前，
+     * 便于调用方逐批持久化时解析子块的父块 ID。父块逐个生成，同一时刻只持有一个窗口的分段。
+     *
+     * @param windowSize     每批分段数量（按父块分组累积，达到后即输出）
+     * @param windowConsumer 分段批次消费者
+     * @return 分段总数（父块 + 子块）
+     */
+    public int splitInWindows(Document document, int parentChunkSize, int childChunkSize, int childOverlapSize,
+            int windowSize, Consumer<List<DocumentSegment>> windowConsumer) {
         if (document == null || document.getContent() == null || document.getContent().trim().isEmpty()) {
-            return List.of();
+            return 0;
         }
 
         CharacterSplitter parentSplitter = new CharacterSplitter(parentChunkSize, 0);
         CharacterSplitter childSplitter = new CharacterSplitter(childChunkSize, childOverlapSize);
 
-        List<DocumentSegment> parentChunks = parentSplitter.split(Document.of(document.getContent()));
         Map<String, Object> docMetadata = document.getMetadata();
-        List<DocumentSegment> result = new ArrayList<>();
+        List<DocumentSegment> window = new ArrayList<>();
+        int[] total = new int[1];
 
-        for (DocumentSegment parentChunk : parentChunks) {
+        parentSplitter.forEachChunk(document.getContent(), parentChunk -> {
+            if (parentChunk.getContent().trim().isEmpty()) {
+                return;
+            }
             String parentId = UUID.randomUUID().toString();
             DocumentSegment parent = DocumentSegment.builder()
                     .id(parentId)
@@ -42,24 +63,42 @@ public class ParentChildSplitter implements DocumentSplitter {
                     .content(parentChunk.getContent())
                     .segmentType(SegmentType.PARENT)
                     .build();
+            addPosition(parent, parentChunk.getStart(), parentChunk.getEnd());
             copyMetadata(docMetadata, parent);
-            result.add(parent);
-
-            List<DocumentSegment> children = childSplitter.split(Document.of(parentChunk.getContent()));
-            for (DocumentSegment child : children) {
+            window.add(parent);
+
+            List<TextChunk> children = childSplitter.splitChunks(parentChunk.getContent());
+            int childCount = 0;
+            for (int i = 0; i < children.size(); i++) {
+                TextChunk child = children.get(i);
+                if (child.getContent().trim().isEmpty()) {
+                    continue;
+                }
                 DocumentSegment childSegment = DocumentSegment.builder()
                         .id(UUID.randomUUID().toString())
-                        .title(child.getTitle())
+                        .title(childSplitter.generateSegmentTitle(i))
                         .content(child.getContent())
                         .segmentType(SegmentType.CHILD)
                         .parentId(parentId)
                         .build();
+                addPosition(childSegment, parentChunk.toSourceOffset(child.getStart()),
+                        parentChunk.toSourceOffset(child.getEnd() - 1) + 1);
                 copyMetadata(docMetadata, childSegment);
-                result.add(childSegment);
+                window.add(childSegment);
+                childCount++;
             }
-        }
+            total[0] += childCount + 1;
 
-        return result;
+            if (window.size() >= windowSize) {
+                windowConsumer.accept(new ArrayList<>(window));
+                window.clear();
+            }
+        });
+
+        if (!window.isEmpty()) {
+            windowConsumer.accept(window);
+        }
+        return total[0];
     }
 
     public List<DocumentSegment> splitWithDefaults(Document document) {
@@ -76,6 +115,13 @@ public class ParentChildSplitter implements DocumentSplitter {
         return split(Document.of(text));
     }
 
+    private void addPosition(DocumentSegment segment, int start, int end) {
+        if (start >= 0) {
+            segment.addMetadata("start_position", start);
+            segment.addMetadata("end_position", Math.max(end, start));
+        }
+    }
+
     private void copyMetadata(Map<String, Object> source, DocumentSegment target) {
         if (source == null) {
             return;
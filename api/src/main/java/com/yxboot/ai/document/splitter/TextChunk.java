@@ -0,0 +1,80 @@
+package com.yxboot.ai.document.splitter;
+
+/**
+ * 分割结果中的一个分块及其在被分割文本中的位置 [start, end)。
+ * <p>
+ * 分块可能由若干原文区间与拼接用的分隔符组成（原文中的空白被规范为 "\n\n" / " "），
+ * 此时分块内偏移与原文偏移不是简单平移，需要通过 {@link #toSourceOffset(int)} 换算。
+ * 位置未知（分割器不跟踪位置）时 start、end 均为 -1。
+ */
+final class TextChunk {
+
+    private final String content;
+    private final int start;
+    private final int end;
+    /** 各片段在原文中的起始偏移，分隔符片段为 -1；为 null 表示整个分块是原文的一个连续区间 */
+    private final int[] pieceStarts;
+    private final int[] pieceLengths;
+
+    TextChunk(String content, int start, int end) {
+        this(content, start, end, null, null);
+    }
+
+    TextChunk(String content, int start, int end, int[] pieceStarts, int[] pieceLengths) {
+        this.content = content;
+        this.start = start;
+        this.end = end;
+        this.pieceStarts = pieceStarts;
+        this.pieceLengths = pieceLengths;
+    }
+
+    static TextChunk withoutPosition(String content) {
+        return new TextChunk(content, -1, -1);
+    }
+
+    String getContent() {
+        return content;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    boolean hasPosition() {
+        return start >= 0;
+    }
+
+    /**
+     * 分块内偏移换算为原文偏移。落在分隔符上的偏移取其后第一个原文字符的位置。
+     */
+    int toSourceOffset(int offset) {
+        if (pieceStarts == null) {
+            return Math.min(start + Math.max(offset, 0), end);
+        }
+        int position = 0;
+        for (int i = 0; i < pieceStarts.length; i++) {
+            int length = pieceLengths[i];
+            if (offset < position + length) {
+                if (pieceStarts[i] >= 0) {
+                    return pieceStarts[i] + Math.max(offset - position, 0);
+                }
+                return nextSourceStart(i);
+            }
+            position += length;
+        }
+        return end;
+    }
+
+    private int nextSourceStart(int piece) {
+        for (int i = piece + 1; i < pieceStarts.length; i++) {
+            if (pieceStarts[i] >= 0) {
+                return pieceStarts[i];
+            }
+        }
+        return end;
+    }
+}
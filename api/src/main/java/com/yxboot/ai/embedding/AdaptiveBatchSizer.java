@@ -0,0 +1,60 @@
+package com.yxboot.ai.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 自适应 embedding 批大小（AIMD）：
+ * 批次耗时低于目标值时逐个增大，明显超时后按比例缩小，遇到限流/超时直接减半。
+ * 批大小始终落在 [minBatchSize, maxBatchSize] 区间内，maxBatchSize 为提供商单次请求的上限（embedding.batch-size）。
+ * 初始值取区间中点而不是上限，首批不会直接以最大批次压到刚启动或已接近限流的提供商，耗时达标后再逐步增大到上限。
+ */
+@Slf4j
+public class AdaptiveBatchSizer {
+
+    private final String name;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyMs;
+    private int current;
+
+    public AdaptiveBatchSizer(String name, int minBatchSize, int maxBatchSize, long targetLatencyMs) {
+        this.name = name;
+        this.minBatchSize = Math.max(1, Math.min(minBatchSize, maxBatchSize));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.targetLatencyMs = targetLatencyMs;
+        this.current = Math.max(this.minBatchSize, (this.minBatchSize + this.maxBatchSize) / 2);
+    }
+
+    public synchronized int current() {
+        return current;
+    }
+
+    /**
+     * 批次成功后根据耗时调整
+     *
+     * @param batchSize 本批次大小
+     * @param latencyMs 本批次耗时（毫秒）
+     */
+    public synchronized void onSuccess(int batchSize, long latencyMs) {
+        if (latencyMs > targetLatencyMs * 2) {
+            resize(current - Math.max(1, current / 4));
+        } else if (latencyMs <= targetLatencyMs && batchSize >= current) {
+            resize(current + 1);
+        }
+    }
+
+    /**
+     * 遇到限流（429）或超时
+     */
+    public synchronized void onThrottled() {
+        resize(current / 2);
+    }
+
+    private void resize(int size) {
+        int resized = Math.max(minBatchSize, Math.min(maxBatchSize, size));
+        if (resized != current) {
+            log.debug("调整 embedding 批大小, provider={}, {} -> {}", name, current, resized);
+            current = resized;
+        }
+    }
+}
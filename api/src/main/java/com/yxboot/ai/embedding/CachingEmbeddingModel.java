@@ -0,0 +1,171 @@
+package com.yxboot.ai.embedding;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.util.StringUtils;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 带内容哈希缓存的 EmbeddingModel 装饰器。
+ * <p>
+ * 缓存 key 为（向量模型标识，规范化文本的 SHA-256），相同文本在同一模型下只请求一次提供商，
+ * 重新上传相同文档、重处理文档时大部分向量直接从本地磁盘读取。
+ * 请求显式指定了其他模型时不走缓存。
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final long STATS_LOG_INTERVAL = 1000L;
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCacheStore cacheStore;
+    private final String modelName;
+    private final String namespace;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param delegate 实际的 EmbeddingModel
+     * @param cacheStore 磁盘缓存
+     * @param modelKey 向量模型标识（provider:model）
+     * @param modelName 模型名，用于判断请求是否指定了其他模型
+     * @param dimensions 向量维度，维度不同的向量分开缓存
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCacheStore cacheStore, String modelKey,
+            String modelName, Integer dimensions) {
+        this.delegate = delegate;
+        this.cacheStore = cacheStore;
+        this.modelName = modelName;
+        this.namespace = (modelKey + (dimensions != null ? "@" + dimensions : "")).replaceAll("[^A-Za-z0-9._@-]", "_");
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        if (!isCacheable(request.getOptions())) {
+            return delegate.call(request);
+        }
+
+        List<String> texts = request.getInstructions();
+        float[][] vectors = new float[texts.size()][];
+        String[] hashes = new String[texts.size()];
+        // 未命中文本去重：同一批次中的重复文本只请求一次
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        Map<String, String> missingTexts = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            hashes[i] = hash(texts.get(i));
+            vectors[i] = cacheStore.get(namespace, hashes[i]);
+            if (vectors[i] == null) {
+                missing.computeIfAbsent(hashes[i], key -> new ArrayList<>()).add(i);
+                missingTexts.putIfAbsent(hashes[i], texts.get(i));
+            }
+        }
+
+        int misses = missing.values().stream().mapToInt(List::size).sum();
+        recordStats(texts.size() - misses, misses);
+        if (missing.isEmpty()) {
+            return toResponse(vectors);
+        }
+
+        List<String> hashOrder = new ArrayList<>(missingTexts.keySet());
+        EmbeddingResponse response = delegate.call(
+                new EmbeddingRequest(new ArrayList<>(missingTexts.values()), request.getOptions()));
+        List<Embedding> results = response.getResults();
+        if (results.size() != hashOrder.size()) {
+            throw new IllegalStateException(
+                    "embedding 返回数量与请求不一致, 请求: " + hashOrder.size() + ", 返回: " + results.size());
+        }
+        for (int i = 0; i < results.size(); i++) {
+            String hash = hashOrder.get(i);
+            float[] vector = results.get(i).getOutput();
+            cacheStore.put(namespace, hash, vector);
+            for (Integer position : missing.get(hash)) {
+                vectors[position] = vector;
+            }
+        }
+        return toResponse(vectors);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(getEmbeddingContent(document));
+    }
+
+    @Override
+    public String getEmbeddingContent(Document document) {
+        return delegate.getEmbeddingContent(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /** 被包装的 EmbeddingModel，用于不需要持久化缓存的场景（如查询文本） */
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** 缓存命名空间（模型标识 + 维度） */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /** 磁盘缓存中的向量条数（所有命名空间） */
+    public int getEntryCount() {
+        return cacheStore.size();
+    }
+
+    private boolean isCacheable(EmbeddingOptions options) {
+        return options == null || !StringUtils.hasText(options.getModel()) || options.getModel().equals(modelName);
+    }
+
+    private EmbeddingResponse toResponse(float[][] vectors) {
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    /**
+     * 规范化后计算哈希：Unicode NFC、折叠空白、去除首尾空白
+     */
+    private String hash(String text) {
+        String normalized = text == null ? ""
+                : WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+        return SecureUtil.sha256(normalized);
+    }
+
+    private void recordStats(int hits, int misses) {
+        long before = hitCount.get() + missCount.get();
+        long totalHits = hitCount.addAndGet(hits);
+        long totalMisses = missCount.addAndGet(misses);
+        long total = totalHits + totalMisses;
+        if (total / STATS_LOG_INTERVAL != before / STATS_LOG_INTERVAL) {
+            log.info("embedding 缓存统计, namespace={}, hit={}, miss={}, hitRate={}%, entries={}", namespace,
+                    totalHits, totalMisses, total == 0 ? 0 : totalHits * 100 / total, cacheStore.size());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.yxboot.ai.embedding;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.account.service.TenantQuotaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Embedding 批次调度器：将待向量化的文档切成批次并发写入向量库。
+ * <p>
+ * 并发受两级信号量约束：按租户限制单租户同时在途的批次数（上限取租户套餐配额），按 embedding 提供商限制全局在途批次数，
+ * 避免单个大文档或单个租户占满提供商配额。批大小由 {@link AdaptiveBatchSizer} 按批次耗时动态调整，
+ * 遇到限流或超时时缩小批次并退避重试。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmbeddingBatchScheduler {
+
+    private static final int DEFAULT_BATCH_SIZE = 10;
+    private static final long BASE_BACKOFF_MS = 500L;
+
+    private final AiProperties aiProperties;
+    @Qualifier("embeddingBatchExecutor")
+    private final Executor embeddingBatchExecutor;
+    private final TenantQuotaService tenantQuotaService;
+
+    private final Map<String, Semaphore> providerPermits = new ConcurrentHashMap<>();
+    private final Map<Long, TenantPermit> tenantPermits = new ConcurrentHashMap<>();
+    private final Map<String, AdaptiveBatchSizer> batchSizers = new ConcurrentHashMap<>();
+
+    /**
+     * 分批并发写入
+     *
+     * @param tenantId 租户ID，用于租户级并发限制
+     * @param documents 待写入文档
+     * @param writer 单批次写入逻辑（内部完成 embedding 与向量库写入）
+     * @param listener 进度监听器，可为 null
+     * @return 写入成功的文档数
+     */
+    public int submit(Long tenantId, List<Document> documents, Consumer<List<Document>> writer,
+            EmbeddingProgressListener listener) {
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        AiProperties.EmbeddingConfig cfg = aiProperties.getEmbedding();
+        String providerKey = cfg.toModelKey();
+        AdaptiveBatchSizer sizer = batchSizers.computeIfAbsent(providerKey,
+                key -> new AdaptiveBatchSizer(key, positive(cfg.getMinBatchSize(), 1),
+                        positive(cfg.getBatchSize(), DEFAULT_BATCH_SIZE), positive(cfg.getTargetBatchLatencyMs(), 3000)));
+        Semaphore providerPermit = providerPermits.computeIfAbsent(providerKey,
+                key -> new Semaphore(positive(cfg.getConcurrency(), 1)));
+        Semaphore tenantPermit = tenantPermit(tenantId, cfg);
+
+        BatchProgress progress = new BatchProgress(documents.size(), listener);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+
+        int offset = 0;
+        while (offset < documents.size() && failure.get() == null) {
+            int end = Math.min(offset + sizer.current(), documents.size());
+            List<Document> batch = documents.subList(offset, end);
+            offset = end;
+
+            acquire(tenantPermit);
+            try {
+                acquire(providerPermit);
+            } catch (RuntimeException e) {
+                tenantPermit.release();
+                throw e;
+            }
+            Runnable task = () -> {
+                try {
+                    writeWithRetry(batch, writer, sizer, providerKey);
+                    progress.completed(batch.size());
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    providerPermit.release();
+                    tenantPermit.release();
+                }
+            };
+            inFlight.add(dispatch(task));
+        }
+
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // 失败原因已记录在 failure 中
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return progress.completed;
+    }
+
+    /**
+     * 租户在途批次许可。上限取租户套餐配额，套餐变更导致上限变化时换用新的信号量，旧信号量上的在途批次照常释放。
+     */
+    private Semaphore tenantPermit(Long tenantId, AiProperties.EmbeddingConfig cfg) {
+        int limit = tenantId != null
+                ? positive(tenantQuotaService.getQuota(tenantId).getMaxConcurrentEmbeddings(), 1)
+                : positive(cfg.getTenantConcurrency(), 1);
+        return tenantPermits.compute(tenantId != null ? tenantId : 0L,
+                (key, current) -> current != null && current.limit == limit ? current : new TenantPermit(limit))
+                .semaphore;
+    }
+
+    /**
+     * 将批次交给线程池执行，线程池不可用时在当前线程执行
+     */
+    private CompletableFuture<Void> dispatch(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, embeddingBatchExecutor);
+        } catch (RejectedExecutionException e) {
+            try {
+                task.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+    }
+
+    private void writeWithRetry(List<Document> batch, Consumer<List<Document>> writer, AdaptiveBatchSizer sizer,
+            String providerKey) {
+        int maxRetries = positive(aiProperties.getEmbedding().getMaxRetries(), 0);
+        for (int attempt = 0;; attempt++) {
+            long start = System.currentTimeMillis();
+            try {
+                writer.accept(batch);
+                sizer.onSuccess(batch.size(), System.currentTimeMillis() - start);
+                return;
+            } catch (RuntimeException e) {
+                if (!isThrottled(e) || attempt >= maxRetries) {
+                    throw e;
+                }
+                sizer.onThrottled();
+                long backoff = BASE_BACKOFF_MS << attempt;
+                log.warn("embedding 请求被限流或超时，{}ms 后重试, provider={}, batchSize={}, attempt={}/{}", backoff,
+                        providerKey, batch.size(), attempt + 1, maxRetries);
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 是否为限流（429）或超时类的可重试异常
+     */
+    private boolean isThrottled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientAiException || cause instanceof SocketTimeoutException
+                    || cause instanceof TimeoutException || cause instanceof ResourceAccessException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Too Many Requests")
+                    || message.contains("timed out"))) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待 embedding 并发许可时被中断", e);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("embedding 重试等待被中断", e);
+        }
+    }
+
+    private int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * 单次调用的进度统计，回调串行触发
+     */
+    private static final class TenantPermit {
+        private final int limit;
+        private final Semaphore semaphore;
+
+        TenantPermit(int limit) {
+            this.limit = limit;
+            this.semaphore = new Semaphore(limit);
+        }
+    }
+
+    private static class BatchProgress {
+        private final int total;
+        private final EmbeddingProgressListener listener;
+        private int completed;
+
+        BatchProgress(int total, EmbeddingProgressListener listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        synchronized void completed(int batchSize) {
+            completed += batchSize;
+            if (listener != null) {
+                listener.onBatchCompleted(batchSize, completed, total);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.yxboot.ai.embedding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 本地磁盘 embedding 缓存，按 LRU 淘汰。
+ * <p>
+ * 每个向量存为一个文件：{@code <root>/<namespace>/<hash 前两位>/<hash>.vec}，
+ * 内存中只保存按访问顺序排列的 key 索引；启动时按文件修改时间重建索引，命中时刷新修改时间，
+ * 因此重启后 LRU 顺序仍然有效。读写失败只记录日志并视为未命中，不影响 embedding 主流程。
+ */
+@Slf4j
+public class EmbeddingCacheStore {
+
+    private static final String FILE_SUFFIX = ".vec";
+
+    private final Path root;
+    private final int maxEntries;
+    /** key = namespace/hash，按访问顺序排列 */
+    private final LinkedHashMap<String, Boolean> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    public EmbeddingCacheStore(Path root, int maxEntries) {
+        this.root = root;
+        this.maxEntries = Math.max(1, maxEntries);
+        loadIndex();
+    }
+
+    /**
+     * 读取缓存向量
+     *
+     * @param namespace 命名空间（模型标识）
+     * @param hash 内容哈希
+     * @return 向量，未命中返回 null
+     */
+    public float[] get(String namespace, String hash) {
+        String key = namespace + "/" + hash;
+        synchronized (index) {
+            if (index.get(key) == null) {
+                return null;
+            }
+        }
+        Path file = resolve(namespace, hash);
+        try (InputStream in = Files.newInputStream(file);
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            int length = data.readInt();
+            float[] vector = new float[length];
+            for (int i = 0; i < length; i++) {
+                vector[i] = data.readFloat();
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return vector;
+        } catch (IOException e) {
+            log.warn("读取 embedding 缓存失败, key={}", key, e);
+            synchronized (index) {
+                index.remove(key);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存向量，超出容量时淘汰最久未访问的条目
+     */
+    public void put(String namespace, String hash, float[] vector) {
+        if (vector == null) {
+            return;
+        }
+        String key = namespace + "/" + hash;
+        Path file = resolve(namespace, hash);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), hash, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp);
+                    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+                data.writeInt(vector.length);
+                for (float value : vector) {
+                    data.writeFloat(value);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入 embedding 缓存失败, key={}", key, e);
+            return;
+        }
+
+        // 淘汰的文件在锁外删除，持锁期间不做文件 IO
+        List<String> evicted = new ArrayList<>();
+        synchronized (index) {
+            index.put(key, Boolean.TRUE);
+            Iterator<String> eldest = index.keySet().iterator();
+            while (index.size() > maxEntries && eldest.hasNext()) {
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(this::deleteQuietly);
+    }
+
+    public int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    private Path resolve(String namespace, String hash) {
+        return root.resolve(namespace).resolve(hash.substring(0, 2)).resolve(hash + FILE_SUFFIX);
+    }
+
+    private void deleteQuietly(String key) {
+        int separator = key.indexOf('/');
+        try {
+            Files.deleteIfExists(resolve(key.substring(0, separator), key.substring(separator + 1)));
+        } catch (IOException e) {
+            log.warn("删除 embedding 缓存文件失败, key={}", key, e);
+        }
+    }
+
+    /**
+     * 扫描缓存目录，按修改时间从旧到新重建 LRU 索引
+     */
+    private void loadIndex() {
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            log.warn("创建 embedding 缓存目录失败, root={}", root, e);
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            List<Path> entries = files
+                    .filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .toList();
+            synchronized (index) {
+                for (Path file : entries) {
+                    String fileName = file.getFileName().toString();
+                    String hash = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+                    String namespace = root.relativize(file).getName(0).toString();
+                    index.put(namespace + "/" + hash, Boolean.TRUE);
+                }
+            }
+            log.info("embedding 缓存加载完成, root={}, entries={}", root, entries.size());
+        } catch (IOException e) {
+            log.warn("加载 embedding 缓存索引失败, root={}", root, e);
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
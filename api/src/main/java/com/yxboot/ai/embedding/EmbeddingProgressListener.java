@@ -0,0 +1,18 @@
+package com.yxboot.ai.embedding;
+
+/**
+ * 向量化进度监听器，每个批次写入向量库后回调一次。
+ * 回调由调度器串行触发，实现类无需自行加锁。
+ */
+@FunctionalInterface
+public interface EmbeddingProgressListener {
+
+    /**
+     * 一个批次写入完成
+     *
+     * @param batchSize 本批次分段数量
+     * @param completed 本次调用累计完成的分段数量
+     * @param total 本次调用的分段总数
+     */
+    void onBatchCompleted(int batchSize, int completed, int total);
+}
@@ -0,0 +1,54 @@
+package com.yxboot.ai.embedding;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+import com.yxboot.ai.config.AiProperties;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+
+/**
+ * 查询向量短期缓存，key 为（向量模型标识，查询文本）。
+ * <p>
+ * 一轮对话内多个知识库共用同一个查询向量，用户短时间内重复提问也不再请求 embedding。
+ * 查询文本不写入磁盘缓存，只在内存中按 LRU + TTL 保留。
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private final EmbeddingModel embeddingModel;
+    private final AiProperties aiProperties;
+    private final LRUCache<String, float[]> cache;
+
+    public QueryEmbeddingCache(EmbeddingModel embeddingModel, AiProperties aiProperties) {
+        this.embeddingModel = embeddingModel;
+        this.aiProperties = aiProperties;
+        AiProperties.EmbeddingConfig cfg = aiProperties.getEmbedding();
+        int capacity = cfg.getQueryCacheMaxEntries() != null && cfg.getQueryCacheMaxEntries() > 0
+                ? cfg.getQueryCacheMaxEntries()
+                : 1000;
+        long ttlMs = cfg.getQueryCacheTtlSeconds() != null && cfg.getQueryCacheTtlSeconds() > 0
+                ? cfg.getQueryCacheTtlSeconds() * 1000L
+                : 300_000L;
+        this.cache = CacheUtil.newLRUCache(capacity, ttlMs);
+    }
+
+    /**
+     * 获取查询向量，未命中时请求 embedding 并缓存
+     *
+     * @param query 查询文本
+     * @return 查询向量
+     */
+    public float[] embed(String query) {
+        String key = aiProperties.getEmbeddingModelKey() + "\n" + query;
+        float[] vector = cache.get(key, false);
+        if (vector != null) {
+            return vector;
+        }
+        // 绕过磁盘缓存：查询文本重复率低，不值得持久化
+        EmbeddingModel model = embeddingModel instanceof CachingEmbeddingModel caching ? caching.getDelegate()
+                : embeddingModel;
+        vector = model.embed(query);
+        cache.put(key, vector);
+        return vector;
+    }
+}
@@ -0,0 +1,96 @@
+package com.yxboot.ai.keyword;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 关键词分析器：中日韩文字按二元组（bigram）切分，连续的字母数字作为一个词。
+ * <p>
+ * 字母数字词允许内部包含 {@code - _ . /}，以完整保留 SKU、错误码、版本号等（如 {@code AB-1024}、{@code E_0001}），
+ * 同时额外输出拆分后的各部分，便于只输入其中一段时也能命中。文本先做 NFKC 规范化并转小写，全角字符与半角等价。
+ */
+public final class KeywordAnalyzer {
+
+    private KeywordAnalyzer() {
+    }
+
+    /**
+     * 分词
+     *
+     * @param text 文本
+     * @return 词项列表（可重复，用于统计词频）
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            char c = normalized.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(normalized.charAt(i))) {
+                    i++;
+                }
+                emitCjk(normalized, start, i, terms);
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < length && (isWordChar(normalized.charAt(i))
+                        || isJoiner(normalized.charAt(i)) && i + 1 < length && isWordChar(normalized.charAt(i + 1)))) {
+                    i++;
+                }
+                emitWord(normalized, start, i, terms);
+            } else {
+                i++;
+            }
+        }
+        return terms;
+    }
+
+    private static void emitCjk(String text, int start, int end, List<String> terms) {
+        if (end - start == 1) {
+            terms.add(text.substring(start, end));
+            return;
+        }
+        for (int i = start; i + 1 < end; i++) {
+            terms.add(text.substring(i, i + 2));
+        }
+    }
+
+    private static void emitWord(String text, int start, int end, List<String> terms) {
+        String word = text.substring(start, end);
+        terms.add(word);
+        int partStart = 0;
+        boolean split = false;
+        for (int i = 0; i < word.length(); i++) {
+            if (isJoiner(word.charAt(i))) {
+                if (i > partStart) {
+                    terms.add(word.substring(partStart, i));
+                }
+                partStart = i + 1;
+                split = true;
+            }
+        }
+        if (split && partStart < word.length()) {
+            terms.add(word.substring(partStart));
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 0x80 ? Character.isLetterOrDigit(c) : Character.isLetterOrDigit(c) && !isCjk(c);
+    }
+
+    private static boolean isJoiner(char c) {
+        return c == '-' || c == '_' || c == '.' || c == '/';
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,17 @@
+package com.yxboot.ai.keyword;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 关键词检索命中
+ */
+@Getter
+@AllArgsConstructor
+public class KeywordHit {
+
+    private final Long segmentId;
+    private final Long documentId;
+    /** BM25 得分 */
+    private final double score;
+}
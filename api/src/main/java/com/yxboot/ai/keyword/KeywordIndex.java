@@ -0,0 +1,223 @@
+package com.yxboot.ai.keyword;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个知识库的内存倒排索引，使用 BM25 打分。
+ * <p>
+ * 同时保存正排信息（分段 → 词频），以支持按分段/文档删除和持久化；读写通过读写锁隔离。
+ */
+public class KeywordIndex {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** 词项 → (分段ID → 词频) */
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    /** 分段ID → 正排信息 */
+    private final Map<Long, IndexedSegment> segments = new HashMap<>();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 添加或替换分段
+     */
+    public void add(Long segmentId, Long documentId, String text) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        List<String> terms = KeywordAnalyzer.analyze(text);
+        for (String term : terms) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeInternal(segmentId);
+            index(new IndexedSegment(segmentId, documentId, terms.size(), termFrequencies));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<Long> segmentIds) {
+        lock.writeLock().lock();
+        try {
+            segmentIds.forEach(this::removeInternal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDocument(Long documentId) {
+        lock.writeLock().lock();
+        try {
+            List<Long> segmentIds = segments.values().stream()
+                    .filter(segment -> documentId.equals(segment.documentId))
+                    .map(segment -> segment.segmentId)
+                    .toList();
+            segmentIds.forEach(this::removeInternal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 检索
+     *
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @param documentId 限定文档，为 null 时不限
+     * @return 按得分从高到低排列的命中
+     */
+    public List<KeywordHit> search(String query, int limit, Long documentId) {
+        Set<String> queryTerms = new LinkedHashSet<>(KeywordAnalyzer.analyze(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int segmentCount = segments.size();
+            if (segmentCount == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / segmentCount;
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : queryTerms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (segmentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                    IndexedSegment segment = segments.get(entry.getKey());
+                    if (documentId != null && !documentId.equals(segment.documentId)) {
+                        continue;
+                    }
+                    int tf = entry.getValue();
+                    double norm = K1 * (1 - B + B * segment.length / avgLength);
+                    scores.merge(entry.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+
+            PriorityQueue<KeywordHit> heap = new PriorityQueue<>(limit + 1,
+                    (a, b) -> Double.compare(a.getScore(), b.getScore()));
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                if (heap.size() < limit || entry.getValue() > heap.peek().getScore()) {
+                    heap.offer(new KeywordHit(entry.getKey(), segments.get(entry.getKey()).documentId,
+                            entry.getValue()));
+                    if (heap.size() > limit) {
+                        heap.poll();
+                    }
+                }
+            }
+            List<KeywordHit> hits = new ArrayList<>(heap);
+            hits.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写出索引（只写正排，加载时重建倒排）
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(segments.size());
+            for (IndexedSegment segment : segments.values()) {
+                out.writeLong(segment.segmentId);
+                out.writeLong(segment.documentId != null ? segment.documentId : 0L);
+                out.writeInt(segment.length);
+                out.writeInt(segment.termFrequencies.size());
+                for (Map.Entry<String, Integer> entry : segment.termFrequencies.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static KeywordIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的关键词索引版本: " + version);
+        }
+        KeywordIndex index = new KeywordIndex();
+        int segmentCount = in.readInt();
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentId = in.readLong();
+            long documentId = in.readLong();
+            int length = in.readInt();
+            int termCount = in.readInt();
+            Map<String, Integer> termFrequencies = new HashMap<>(termCount * 2);
+            for (int j = 0; j < termCount; j++) {
+                termFrequencies.put(in.readUTF(), in.readInt());
+            }
+            index.index(new IndexedSegment(segmentId, documentId, length, termFrequencies));
+        }
+        return index;
+    }
+
+    private void index(IndexedSegment segment) {
+        segments.put(segment.segmentId, segment);
+        totalLength += segment.length;
+        for (Map.Entry<String, Integer> entry : segment.termFrequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(segment.segmentId, entry.getValue());
+        }
+    }
+
+    private void removeInternal(Long segmentId) {
+        IndexedSegment segment = segments.remove(segmentId);
+        if (segment == null) {
+            return;
+        }
+        totalLength -= segment.length;
+        for (String term : segment.termFrequencies.keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(segmentId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static class IndexedSegment {
+        private final Long segmentId;
+        private final Long documentId;
+        private final int length;
+        private final Map<String, Integer> termFrequencies;
+
+        IndexedSegment(Long segmentId, Long documentId, int length, Map<String, Integer> termFrequencies) {
+            this.segmentId = segmentId;
+            this.documentId = documentId;
+            this.length = length;
+            this.termFrequencies = termFrequencies;
+        }
+    }
+}
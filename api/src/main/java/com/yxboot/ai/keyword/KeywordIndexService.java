@@ -0,0 +1,332 @@
+package com.yxboot.ai.keyword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
+import com.yxboot.modules.dataset.enums.SegmentType;
+import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
+import com.yxboot.modules.dataset.service.DatasetVersionService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 知识库关键词索引服务：每个知识库一个内存倒排索引，持久化到本地目录（dataset_{id}.idx）。
+ * <p>
+ * 索引随向量同步维护（见 AiVectorStoreService），只收录可检索分段（普通块 + 子块）。
+ * 首次访问时从本地文件加载，文件不存在（历史数据）或文件中的内容版本与数据库不一致则从数据库重建。
+ * 变更后延迟数秒批量落盘，避免入库时每个窗口都重写整个索引文件。
+ * <p>
+ * 多节点部署时其他节点的入库 / 删除只会递增数据库中的知识库内容版本（DatasetVersionService），
+ * 检索时按 keyword-index-refresh-seconds 间隔比对版本，变化后在 keywordIndexRebuildExecutor 中重建，重建期间旧索引继续提供检索。
+ * 本节点的变更在更新索引的同时把索引版本推进到本次递增后的版本，不会触发重建。
+ * 首次加载与重建都不在 Map 的锁内进行，不会阻塞其他知识库的访问。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeywordIndexService {
+
+    private static final String DEFAULT_INDEX_DIR = "./data/keyword-index";
+    private static final long FLUSH_DELAY_SECONDS = 5L;
+    /** 索引文件头，之后为内容版本号与 KeywordIndex 数据；旧格式文件没有文件头，读取时重建 */
+    private static final int FILE_MAGIC = 0x4B494458;
+    private static final long UNKNOWN_VERSION = DatasetVersionService.UNKNOWN_VERSION;
+
+    private final DatasetDocumentSegmentService segmentService;
+    private final DatasetVersionService datasetVersionService;
+    private final AiProperties aiProperties;
+    @Qualifier("keywordIndexRebuildExecutor")
+    private final Executor rebuildExecutor;
+    @Qualifier("taskScheduler")
+    private final TaskScheduler taskScheduler;
+    private final Map<Long, CompletableFuture<IndexHolder>> indexes = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyDatasets = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * 收录分段（父块自动跳过），已存在的分段会被替换
+     *
+     * @param version 本次变更递增后的知识库内容版本（{@link DatasetVersionService#bump}），未知时不同步版本
+     */
+    public void indexSegments(Long datasetId, List<DatasetDocumentSegment> segments, long version) {
+        if (segments == null || segments.isEmpty()) {
+            return;
+        }
+        IndexHolder holder = getHolder(datasetId);
+        for (DatasetDocumentSegment segment : segments) {
+            if (segment.getSegmentType() != null && segment.getSegmentType() == SegmentType.PARENT) {
+                continue;
+            }
+            holder.index.add(segment.getSegmentId(), segment.getDocumentId(), buildIndexText(segment));
+        }
+        holder.advanceVersion(version);
+        markDirty(datasetId);
+    }
+
+    public void removeSegments(Long datasetId, Collection<Long> segmentIds, long version) {
+        if (segmentIds == null || segmentIds.isEmpty()) {
+            return;
+        }
+        IndexHolder holder = getHolder(datasetId);
+        holder.index.remove(segmentIds);
+        holder.advanceVersion(version);
+        markDirty(datasetId);
+    }
+
+    public void removeDocument(Long datasetId, Long documentId, long version) {
+        IndexHolder holder = getHolder(datasetId);
+        holder.index.removeDocument(documentId);
+        holder.advanceVersion(version);
+        markDirty(datasetId);
+    }
+
+    /**
+     * 删除整个知识库的索引
+     */
+    public void deleteIndex(Long datasetId) {
+        indexes.remove(datasetId);
+        dirtyDatasets.remove(datasetId);
+        try {
+            Files.deleteIfExists(resolveIndexFile(datasetId));
+        } catch (IOException e) {
+            log.warn("删除关键词索引文件失败, datasetId={}", datasetId, e);
+        }
+    }
+
+    /**
+     * BM25 关键词检索
+     *
+     * @param datasetId 知识库ID
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @param documentId 限定文档，为 null 时不限
+     * @return 命中列表
+     */
+    public List<KeywordHit> search(Long datasetId, String query, int limit, Long documentId) {
+        IndexHolder holder = getHolder(datasetId);
+        refreshIfStale(datasetId, holder);
+        return holder.index.search(query, limit, documentId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushDirty();
+    }
+
+    /**
+     * 取知识库的索引，不存在时由第一个访问的线程在锁外加载，其他线程等待同一个加载结果
+     */
+    private IndexHolder getHolder(Long datasetId) {
+        CompletableFuture<IndexHolder> future = indexes.get(datasetId);
+        if (future == null) {
+            CompletableFuture<IndexHolder> loading = new CompletableFuture<>();
+            future = indexes.putIfAbsent(datasetId, loading);
+            if (future == null) {
+                try {
+                    loading.complete(loadOrRebuild(datasetId));
+                } catch (RuntimeException e) {
+                    indexes.remove(datasetId, loading);
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+                future = loading;
+            }
+        }
+        return future.join();
+    }
+
+    private IndexHolder loadOrRebuild(Long datasetId) {
+        long currentVersion = currentVersion(datasetId);
+        Path file = resolveIndexFile(datasetId);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file);
+                    DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+                if (data.readInt() != FILE_MAGIC) {
+                    throw new IOException("旧格式的关键词索引文件");
+                }
+                long version = data.readLong();
+                KeywordIndex index = KeywordIndex.readFrom(data);
+                if (currentVersion == UNKNOWN_VERSION || version == currentVersion) {
+                    log.info("加载关键词索引, datasetId={}, segments={}", datasetId, index.size());
+                    return new IndexHolder(index, version);
+                }
+                log.info("关键词索引已过期，从数据库重建, datasetId={}, 文件版本={}, 当前版本={}", datasetId, version,
+                        currentVersion);
+            } catch (IOException e) {
+                log.warn("读取关键词索引失败，从数据库重建, datasetId={}", datasetId, e);
+            }
+        }
+        IndexHolder holder = rebuild(datasetId);
+        markDirty(datasetId);
+        return holder;
+    }
+
+    /**
+     * 从数据库重建索引。版本号在读取分段之前取得，重建期间发生的变更会让版本号再次变化，下次检查时重建
+     */
+    private IndexHolder rebuild(Long datasetId) {
+        long version = currentVersion(datasetId);
+        KeywordIndex index = new KeywordIndex();
+        for (DatasetDocumentSegment segment : segmentService.listSearchableSegmentsByDatasetId(datasetId)) {
+            index.add(segment.getSegmentId(), segment.getDocumentId(), buildIndexText(segment));
+        }
+        log.info("从数据库重建关键词索引, datasetId={}, segments={}, version={}", datasetId, index.size(), version);
+        return new IndexHolder(index, version);
+    }
+
+    /**
+     * 按间隔比对内容版本，其他节点修改了知识库时在后台重建；重建完成前继续使用当前索引
+     */
+    private void refreshIfStale(Long datasetId, IndexHolder holder) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(aiProperties.getRetriever().getKeywordIndexRefreshSeconds());
+        long now = System.nanoTime();
+        if (intervalNanos <= 0 || now - holder.checkedAt < intervalNanos) {
+            return;
+        }
+        holder.checkedAt = now;
+        long version = currentVersion(datasetId);
+        if (version == UNKNOWN_VERSION || version == holder.version || !holder.rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    IndexHolder rebuilt = rebuild(datasetId);
+                    // 重建期间索引被删除或已被替换时放弃本次结果
+                    CompletableFuture<IndexHolder> replaced = indexes.computeIfPresent(datasetId,
+                            (id, current) -> current.getNow(null) == holder ? CompletableFuture.completedFuture(rebuilt)
+                                    : current);
+                    if (replaced != null && replaced.getNow(null) == rebuilt) {
+                        markDirty(datasetId);
+                    }
+                } catch (Exception e) {
+                    log.warn("后台重建关键词索引失败, datasetId={}", datasetId, e);
+                } finally {
+                    holder.rebuilding.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            holder.rebuilding.set(false);
+        }
+    }
+
+    private long currentVersion(Long datasetId) {
+        try {
+            Long version = datasetVersionService.getVersions(List.of(datasetId)).get(datasetId);
+            return version != null ? version : UNKNOWN_VERSION;
+        } catch (Exception e) {
+            log.warn("读取知识库内容版本失败, datasetId={}", datasetId, e);
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    private String buildIndexText(DatasetDocumentSegment segment) {
+        return StringUtils.hasText(segment.getTitle()) ? segment.getTitle() + "\n" + segment.getContent()
+                : segment.getContent();
+    }
+
+    private void markDirty(Long datasetId) {
+        dirtyDatasets.add(datasetId);
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                taskScheduler.schedule(() -> {
+                    flushScheduled.set(false);
+                    flushDirty();
+                }, Instant.now().plusSeconds(FLUSH_DELAY_SECONDS));
+            } catch (RuntimeException e) {
+                flushScheduled.set(false);
+                log.warn("调度关键词索引落盘失败", e);
+            }
+        }
+    }
+
+    private void flushDirty() {
+        for (Long datasetId : Set.copyOf(dirtyDatasets)) {
+            dirtyDatasets.remove(datasetId);
+            CompletableFuture<IndexHolder> future = indexes.get(datasetId);
+            if (future == null) {
+                continue;
+            }
+            IndexHolder holder = future.getNow(null);
+            if (holder != null) {
+                write(datasetId, holder);
+            } else if (!future.isDone()) {
+                // 仍在加载，留待下次落盘
+                markDirty(datasetId);
+            }
+        }
+    }
+
+    private void write(Long datasetId, IndexHolder holder) {
+        Path file = resolveIndexFile(datasetId);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp);
+                    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+                data.writeInt(FILE_MAGIC);
+                data.writeLong(holder.version);
+                holder.index.writeTo(data);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirtyDatasets.add(datasetId);
+            log.warn("写入关键词索引失败, datasetId={}", datasetId, e);
+        }
+    }
+
+    private Path resolveIndexFile(Long datasetId) {
+        String dir = aiProperties.getRetriever().getKeywordIndexDir();
+        return Path.of(StringUtils.hasText(dir) ? dir : DEFAULT_INDEX_DIR).resolve("dataset_" + datasetId + ".idx");
+    }
+
+    /**
+     * 内存索引及其对应的知识库内容版本
+     */
+    private static final class IndexHolder {
+        private final KeywordIndex index;
+        private volatile long version;
+        private final AtomicBoolean rebuilding = new AtomicBoolean();
+        private volatile long checkedAt = System.nanoTime();
+
+        private IndexHolder(KeywordIndex index, long version) {
+            this.index = index;
+            this.version = version;
+        }
+
+        /**
+         * 本节点的变更已应用到索引：版本号恰好是当前版本的下一个时同步，
+         * 中间夹有其他节点的变更（或版本未知）时保持不变，由刷新检查重建
+         */
+        private synchronized void advanceVersion(long bumped) {
+            if (bumped != UNKNOWN_VERSION && version != UNKNOWN_VERSION && bumped == version + 1) {
+                version = bumped;
+            }
+        }
+    }
+}
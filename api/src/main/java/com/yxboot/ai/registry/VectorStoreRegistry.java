@@ -1,10 +1,12 @@
 package com.yxboot.ai.registry;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.qdrant.QdrantVectorStore;
 import org.springframework.stereotype.Component;
+import com.yxboot.ai.config.AiProperties;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.grpc.Collections.Distance;
 import io.qdrant.client.grpc.Collections.VectorParams;
@@ -13,15 +15,28 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 按知识库集合（tenant_{tid}_dataset_{did}）缓存 Spring AI {@link VectorStore} 实例。
+ * <p>
+ * 集合是否存在的结果同样缓存在本地：本实例创建/删除集合时同步更新，其余情况按 TTL 重新向 Qdrant 确认，
+ * 因此同一知识库的重复检索不再发起存在性检查。不存在的结果只缓存较短时间，以便及时发现其他节点新建的集合。
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class VectorStoreRegistry {
 
+    private static final long DEFAULT_COLLECTION_CACHE_TTL_MS = 300_000L;
+    private static final long MAX_ABSENT_CACHE_TTL_MS = 10_000L;
+
     private final QdrantClient qdrantClient;
     private final EmbeddingModel embeddingModel;
+    private final AiProperties aiProperties;
     private final ConcurrentHashMap<String, VectorStore> storeCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CollectionState> collectionStates = new ConcurrentHashMap<>();
+    /**
+     * 按集合名加锁创建集合：同一集合只由一个线程创建，不同知识库的首次入库互不等待。
+     * 持锁等待 Qdrant gRPC，使用 ReentrantLock，虚拟线程等待时不占用载体线程；锁数量与集合数相同，不做清理
+     */
+    private final ConcurrentHashMap<String, ReentrantLock> createLocks = new ConcurrentHashMap<>();
 
     public VectorStore getOrCreate(Long datasetId, Long tenantId) {
         ensureCollectionExists(datasetId, tenantId);
@@ -34,13 +49,21 @@ public class VectorStoreRegistry {
     }
 
     public void evict(Long datasetId, Long tenantId) {
-        storeCache.remove(buildCollectionName(datasetId, tenantId));
+        String name = buildCollectionName(datasetId, tenantId);
+        storeCache.remove(name);
+        collectionStates.remove(name);
     }
 
     public boolean collectionExists(Long datasetId, Long tenantId) {
+        String name = buildCollectionName(datasetId, tenantId);
+        CollectionState state = collectionStates.get(name);
+        if (state != null && state.isFresh(resolveTtlMs())) {
+            return state.exists;
+        }
         try {
-            String name = buildCollectionName(datasetId, tenantId);
-            return qdrantClient.collectionExistsAsync(name).get();
+            boolean exists = qdrantClient.collectionExistsAsync(name).get();
+            collectionStates.put(name, new CollectionState(exists));
+            return exists;
         } catch (Exception e) {
             log.error("检查 Qdrant 集合失败, datasetId={}, tenantId={}", datasetId, tenantId, e);
             return false;
@@ -52,34 +75,57 @@ public class VectorStoreRegistry {
             return;
         }
         String collectionName = buildCollectionName(datasetId, tenantId);
+        ReentrantLock createLock = createLocks.computeIfAbsent(collectionName, key -> new ReentrantLock());
+        createLock.lock();
         try {
-            VectorParams vectorParams = VectorParams.newBuilder()
-                    .setDistance(Distance.Cosine)
-                    .setSize(embeddingModel.dimensions())
-                    .build();
-            qdrantClient.createCollectionAsync(collectionName, vectorParams).get();
-            log.info("创建 Qdrant 集合成功, collection={}", collectionName);
-        } catch (Exception e) {
-            log.error("创建 Qdrant 集合失败, collection={}", collectionName, e);
-            throw new IllegalStateException("创建向量集合失败: " + collectionName, e);
+            // 并发入库时只由一个线程创建集合
+            CollectionState state = collectionStates.get(collectionName);
+            if (state != null && state.exists) {
+                return;
+            }
+            try {
+                if (qdrantClient.collectionExistsAsync(collectionName).get()) {
+                    collectionStates.put(collectionName, new CollectionState(true));
+                    return;
+                }
+                VectorParams vectorParams = VectorParams.newBuilder()
+                        .setDistance(Distance.Cosine)
+                        .setSize(embeddingModel.dimensions())
+                        .build();
+                qdrantClient.createCollectionAsync(collectionName, vectorParams).get();
+                collectionStates.put(collectionName, new CollectionState(true));
+                log.info("创建 Qdrant 集合成功, collection={}", collectionName);
+            } catch (Exception e) {
+                collectionStates.remove(collectionName);
+                log.error("创建 Qdrant 集合失败, collection={}", collectionName, e);
+                throw new IllegalStateException("创建向量集合失败: " + collectionName, e);
+            }
+        } finally {
+            createLock.unlock();
         }
     }
 
     public boolean deleteCollection(Long datasetId, Long tenantId) {
+        String name = buildCollectionName(datasetId, tenantId);
         try {
-            String name = buildCollectionName(datasetId, tenantId);
-            if (!qdrantClient.collectionExistsAsync(name).get()) {
-                return true;
+            if (qdrantClient.collectionExistsAsync(name).get()) {
+                qdrantClient.deleteCollectionAsync(name).get();
             }
-            qdrantClient.deleteCollectionAsync(name).get();
             storeCache.remove(name);
+            collectionStates.put(name, new CollectionState(false));
             return true;
         } catch (Exception e) {
+            collectionStates.remove(name);
             log.error("删除 Qdrant 集合失败, datasetId={}, tenantId={}", datasetId, tenantId, e);
             return false;
         }
     }
 
+    private long resolveTtlMs() {
+        Integer ttlSeconds = aiProperties.getRetriever().getCollectionCacheTtlSeconds();
+        return ttlSeconds != null && ttlSeconds >= 0 ? ttlSeconds * 1000L : DEFAULT_COLLECTION_CACHE_TTL_MS;
+    }
+
     private VectorStore createVectorStore(String collectionName) {
         QdrantVectorStore vectorStore = QdrantVectorStore.builder(qdrantClient, embeddingModel)
                 .collectionName(collectionName)
@@ -92,4 +138,21 @@ public class VectorStoreRegistry {
         }
         return vectorStore;
     }
+
+    /**
+     * 集合存在性缓存条目
+     */
+    private static class CollectionState {
+        private final boolean exists;
+        private final long checkedAt = System.currentTimeMillis();
+
+        CollectionState(boolean exists) {
+            this.exists = exists;
+        }
+
+        boolean isFresh(long ttlMs) {
+            long effectiveTtl = exists ? ttlMs : Math.min(ttlMs, MAX_ABSENT_CACHE_TTL_MS);
+            return System.currentTimeMillis() - checkedAt < effectiveTtl;
+        }
+    }
 }
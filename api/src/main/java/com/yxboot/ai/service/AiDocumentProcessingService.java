@@ -1,15 +1,23 @@
 package com.yxboot.ai.service;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
+import com.yxboot.ai.config.AiProperties;
 import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.PageIndex;
 import com.yxboot.ai.document.loader.PdfDocumentLoader;
+import com.yxboot.ai.document.loader.PdfDocumentSession;
 import com.yxboot.ai.document.splitter.ChapterSplitter;
 import com.yxboot.ai.document.splitter.CharacterSplitter;
 import com.yxboot.ai.document.splitter.ParentChildSplitter;
@@ -19,16 +27,24 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 文档加载与分段服务。PDF 使用 PDFBox 专用加载器，其他格式使用 Tika。
+ * <p>
+ * PDF 加载时保留页边界索引，各分段方式切分后按分段在全文中的位置写入起止页码（start_page / end_page）。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AiDocumentProcessingService {
 
+    /** 合并全文时原始文档之间的分隔符，分段位置按此换算 */
+    private static final String DOCUMENT_SEPARATOR = "\n\n";
+
     private final ChapterSplitter chapterSplitter;
     private final CharacterSplitter characterSplitter;
     private final ParentChildSplitter parentChildSplitter;
     private final PdfDocumentLoader pdfDocumentLoader;
+    private final AiProperties aiProperties;
+    @Qualifier("pdfExtractionExecutor")
+    private final Executor pdfExtractionExecutor;
 
     public List<DocumentSegment> loadAndSplitDocument(File file, SplitMode splitMode, Integer maxSegmentLength,
             Integer overlapLength) {
@@ -37,46 +53,140 @@ public class AiDocumentProcessingService {
 
     public List<DocumentSegment> loadAndSplitDocument(File file, SplitMode splitMode, Integer maxSegmentLength,
             Integer overlapLength, Integer parentChunkSize) {
-        List<Document> rawDocs = loadRawDocuments(file);
-        if (rawDocs.isEmpty()) {
-            return List.of();
-        }
+        List<DocumentSegment> segments = new ArrayList<>();
+        loadAndSplitDocument(file, splitMode, maxSegmentLength, overlapLength, parentChunkSize, Integer.MAX_VALUE,
+                segments::addAll);
+        return segments;
+    }
+
+    /**
+     * 加载并按窗口分段：分段逐批交给 windowConsumer，便于调用方边切分边持久化/向量化，
+     * 避免整篇文档的全部分段同时驻留内存。
+     *
+     * @param windowSize     每批分段数量
+     * @param windowConsumer 分段批次消费者（在当前线程中同步调用）
+     * @return 分段总数
+     */
+    public int loadAndSplitDocument(File file, SplitMode splitMode, Integer maxSegmentLength, Integer overlapLength,
+            Integer parentChunkSize, int windowSize, Consumer<List<DocumentSegment>> windowConsumer) {
         int maxLen = maxSegmentLength != null && maxSegmentLength > 0 ? maxSegmentLength : 500;
         int overlap = overlapLength != null && overlapLength >= 0 ? overlapLength : 100;
         int parentLen = parentChunkSize != null && parentChunkSize > 0 ? parentChunkSize : 1200;
+        int window = Math.max(windowSize, 1);
         SplitMode mode = splitMode != null ? splitMode : SplitMode.CHARACTER_SPLITTER;
 
-        return switch (mode) {
-            case CHARACTER_SPLITTER -> splitByCharacter(rawDocs, maxLen, overlap);
-            case CHAPTER_SPLITTER -> splitByChapter(rawDocs, maxLen, overlap);
-            case PARENT_CHILD_SPLITTER -> splitByParentChild(rawDocs, parentLen, maxLen, overlap);
-        };
+        if (mode == SplitMode.CHAPTER_SPLITTER) {
+            // 章节结构分析需要全文，分析完成后逐章节生成分段并按窗口输出
+            return isPdfFile(file.getName()) ? splitPdfByChapter(file, maxLen, overlap, window, windowConsumer)
+                    : splitByChapter(loadRawDocuments(file), maxLen, overlap, window, windowConsumer);
+        }
+
+        List<Document> rawDocs = loadRawDocuments(file);
+        if (rawDocs.isEmpty()) {
+            return 0;
+        }
+        return splitRawDocuments(rawDocs, mode, parentLen, maxLen, overlap, window, windowConsumer);
     }
 
-    private List<DocumentSegment> splitByParentChild(List<Document> rawDocs, int parentLen, int childLen, int overlap) {
-        String merged = rawDocs.stream().map(Document::getText).collect(Collectors.joining("\n\n"));
-        com.yxboot.ai.document.Document legacyDoc = com.yxboot.ai.document.Document.of(merged);
-        return parentChildSplitter.split(legacyDoc, parentLen, childLen, overlap);
+    /**
+     * 逐个原始文档按字符长度 / 父子分块切分并按窗口输出，不把各文档文本合并为一个全文字符串。
+     * <p>
+     * 分段位置（start_position / end_position）加上文档在全文（各文档以空行相连）中的偏移，与合并后切分时一致；
+     * 带页边界索引的文档（PDF）先按文档内位置标注页码，再换算位置
+     */
+    private int splitRawDocuments(List<Document> rawDocs, SplitMode mode, int parentLen, int maxLen, int overlap,
+            int window, Consumer<List<DocumentSegment>> windowConsumer) {
+        int total = 0;
+        int offset = 0;
+        for (Document raw : rawDocs) {
+            String text = raw.getText();
+            if (text != null && !text.isEmpty()) {
+                com.yxboot.ai.document.Document legacyDoc = com.yxboot.ai.document.Document.of(text);
+                Consumer<List<DocumentSegment>> consumer = positioned(raw, offset, windowConsumer);
+                total += mode == SplitMode.PARENT_CHILD_SPLITTER
+                        ? parentChildSplitter.splitInWindows(legacyDoc, parentLen, maxLen, overlap, window, consumer)
+                        : new CharacterSplitter(maxLen, overlap).splitInWindows(legacyDoc, window, consumer);
+                offset += text.length();
+            }
+            offset += DOCUMENT_SEPARATOR.length();
+        }
+        return total;
+    }
+
+    /**
+     * 按原始文档的页边界索引标注页码，并把分段位置换算为全文位置
+     */
+    private Consumer<List<DocumentSegment>> positioned(Document raw, int offset,
+            Consumer<List<DocumentSegment>> windowConsumer) {
+        PageIndex pageIndex = raw.getMetadata().get(PageIndex.METADATA_KEY) instanceof PageIndex index ? index : null;
+        if (pageIndex == null && offset == 0) {
+            return windowConsumer;
+        }
+        return segments -> {
+            if (pageIndex != null) {
+                pageIndex.annotate(segments);
+            }
+            if (offset > 0) {
+                for (DocumentSegment segment : segments) {
+                    shiftPosition(segment, "start_position", offset);
+                    shiftPosition(segment, "end_position", offset);
+                }
+            }
+            windowConsumer.accept(segments);
+        };
     }
 
-    private List<DocumentSegment> splitByCharacter(List<Document> rawDocs, int maxLen, int overlap) {
-        String merged = rawDocs.stream().map(Document::getText).collect(Collectors.joining("\n\n"));
-        com.yxboot.ai.document.Document legacyDoc = com.yxboot.ai.document.Document.of(merged);
-        CharacterSplitter splitter = new CharacterSplitter(maxLen, overlap);
-        return splitter.split(legacyDoc);
+    private static void shiftPosition(DocumentSegment segment, String key, int offset) {
+        if (segment.getMetadata().get(key) instanceof Number position) {
+            segment.addMetadata(key, position.intValue() + offset);
+        }
     }
 
-    private List<DocumentSegment> splitByChapter(List<Document> rawDocs, int maxLen, int overlap) {
-        List<DocumentSegment> all = new ArrayList<>();
+    /**
+     * 逐个原始文档按章节分段并按窗口输出；所有文档都没有识别出章节时按字符长度分段
+     */
+    private int splitByChapter(List<Document> rawDocs, int maxLen, int overlap, int window,
+            Consumer<List<DocumentSegment>> windowConsumer) {
+        int total = 0;
         for (Document raw : rawDocs) {
             com.yxboot.ai.document.Document legacyDoc = com.yxboot.ai.document.Document.of(raw.getText(), raw.getMetadata());
-            List<DocumentSegment> segments = chapterSplitter.split(legacyDoc);
-            all.addAll(segments);
+            total += chapterSplitter.splitInWindows(legacyDoc, window, windowConsumer);
+        }
+        if (total == 0 && !rawDocs.isEmpty()) {
+            return splitRawDocuments(rawDocs, SplitMode.CHARACTER_SPLITTER, 0, maxLen, overlap, window,
+                    windowConsumer);
         }
-        if (all.isEmpty() && !rawDocs.isEmpty()) {
-            return splitByCharacter(rawDocs, maxLen, overlap);
+        return total;
+    }
+
+    /**
+     * PDF 章节分段：加载与结构分析（书签 / 文本分析）共用一个解析会话，PDF 只解析、抽取文本一次。
+     * 分段按窗口标注页码后输出，会话（内存映射）在全部窗口输出后关闭
+     */
+    private int splitPdfByChapter(File file, int maxLen, int overlap, int window,
+            Consumer<List<DocumentSegment>> windowConsumer) {
+        log.info("使用 PDFBox 加载 PDF 文档: {}", file.getAbsolutePath());
+        try (PdfDocumentSession session = openPdfSession(file)) {
+            com.yxboot.ai.document.Document pdfDoc = pdfDocumentLoader.load(session, file);
+            String content = pdfDoc.getContent();
+            if (content == null || content.isBlank()) {
+                return 0;
+            }
+            pdfDoc.addMetadata(PdfDocumentSession.METADATA_KEY, session);
+            PageIndex pageIndex = session.getPageIndex();
+            Consumer<List<DocumentSegment>> consumer = segments -> {
+                pageIndex.annotate(segments);
+                windowConsumer.accept(segments);
+            };
+            int total = chapterSplitter.splitInWindows(pdfDoc, window, consumer);
+            if (total == 0) {
+                total = new CharacterSplitter(maxLen, overlap).splitInWindows(
+                        com.yxboot.ai.document.Document.of(content), window, consumer);
+            }
+            return total;
+        } catch (IOException e) {
+            throw new RuntimeException("PDF文档解析失败", e);
         }
-        return all;
     }
 
     public List<DocumentSegment> loadAndSplitDocument(File file, SplitMode splitMode) {
@@ -89,16 +199,37 @@ public class AiDocumentProcessingService {
     private List<Document> loadRawDocuments(File file) {
         if (isPdfFile(file.getName())) {
             log.info("使用 PDFBox 加载 PDF 文档: {}", file.getAbsolutePath());
-            com.yxboot.ai.document.Document legacyDoc = pdfDocumentLoader.load(file);
+            com.yxboot.ai.document.Document legacyDoc;
+            PageIndex pageIndex;
+            try (PdfDocumentSession session = openPdfSession(file)) {
+                legacyDoc = pdfDocumentLoader.load(session, file);
+                pageIndex = session.getPageIndex();
+            } catch (IOException e) {
+                throw new RuntimeException("PDF文档解析失败", e);
+            }
             String content = legacyDoc.getContent();
             if (content == null || content.isBlank()) {
                 return List.of();
             }
-            return List.of(new Document(content, legacyDoc.getMetadata()));
+            Map<String, Object> metadata = new HashMap<>(legacyDoc.getMetadata());
+            metadata.put(PageIndex.METADATA_KEY, pageIndex);
+            return List.of(new Document(content, metadata));
         }
         return new TikaDocumentReader(new FileSystemResource(file)).get();
     }
 
+    /**
+     * 打开 PDF 解析会话，按配置决定是否按页区间并行抽取文本
+     */
+    private PdfDocumentSession openPdfSession(File file) throws IOException {
+        AiProperties.DocumentConfig config = aiProperties.getDocument();
+        if (!Boolean.TRUE.equals(config.getPdfParallelExtraction())) {
+            return PdfDocumentSession.open(file);
+        }
+        int minPages = config.getPdfMinPagesPerSlice() != null ? config.getPdfMinPagesPerSlice() : 50;
+        return PdfDocumentSession.open(file, pdfExtractionExecutor, config.resolvePdfExtractionThreads(), minPages);
+    }
+
     private static boolean isPdfFile(String filename) {
         return filename != null && filename.toLowerCase().endsWith(".pdf");
     }
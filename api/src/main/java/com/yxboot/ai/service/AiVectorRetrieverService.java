@@ -9,6 +9,9 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.embedding.QueryEmbeddingCache;
+import com.yxboot.ai.keyword.KeywordHit;
+import com.yxboot.ai.keyword.KeywordIndexService;
 import com.yxboot.ai.vector.AiQueryResult;
 import com.yxboot.modules.dataset.entity.Dataset;
 import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
@@ -30,6 +33,8 @@ public class AiVectorRetrieverService {
     private final DatasetService datasetService;
     private final DatasetDocumentSegmentService segmentService;
     private final AiProperties aiProperties;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final KeywordIndexService keywordIndexService;
 
     public List<AiQueryResult> retrieve(Long datasetId, String query) {
         AiProperties.RetrieverConfig retriever = aiProperties.getRetriever();
@@ -42,6 +47,22 @@ public class AiVectorRetrieverService {
 
     public List<AiQueryResult> retrieve(Long datasetId, String query, int limit, float minScore,
             Map<String, Object> filter) {
+        return retrieve(datasetId, query, null, limit, minScore, filter);
+    }
+
+    /**
+     * 检索知识库
+     *
+     * @param datasetId 知识库ID
+     * @param query 查询文本
+     * @param queryVector 预先计算的查询向量，为 null 时通过查询向量缓存计算
+     * @param limit 返回数量
+     * @param minScore 最低相似度
+     * @param filter 元数据过滤条件
+     * @return 检索结果（子块已扩展为父块）
+     */
+    public List<AiQueryResult> retrieve(Long datasetId, String query, float[] queryVector, int limit, float minScore,
+            Map<String, Object> filter) {
         Dataset dataset = datasetService.getById(datasetId);
         if (dataset == null) {
             throw new IllegalArgumentException("知识库不存在, datasetId: " + datasetId);
@@ -51,11 +72,31 @@ public class AiVectorRetrieverService {
             return List.of();
         }
         datasetService.ensureEmbeddingModelCompatible(dataset);
+        float[] vector = queryVector != null ? queryVector : queryEmbeddingCache.embed(query);
         List<AiQueryResult> childResults = vectorStoreService.similaritySearch(
-                datasetId, dataset.getTenantId(), query, limit, minScore, filter);
+                datasetId, dataset.getTenantId(), vector, limit, minScore, filter);
+        if (aiProperties.getRetriever().isHybridEnabled()) {
+            childResults = fuseWithKeywordResults(dataset, query, vector, childResults, limit, minScore, filter);
+        }
         return expandToParentSegments(childResults);
     }
 
+    /**
+     * 计算查询向量。结果写入查询向量缓存，同一问题随后在各知识库中检索时不再请求提供商；
+     * 计算失败时返回 null，由各知识库检索自行重试。
+     *
+     * @param query 查询文本
+     * @return 查询向量
+     */
+    public float[] embedQuery(String query) {
+        try {
+            return queryEmbeddingCache.embed(query);
+        } catch (Exception e) {
+            log.warn("计算查询向量失败，将由各知识库检索分别计算", e);
+            return null;
+        }
+    }
+
     public List<AiQueryResult> retrieveInDocument(Long datasetId, Long documentId, String query, int limit,
             float minScore) {
         Map<String, Object> filter = new HashMap<>();
@@ -77,6 +118,141 @@ public class AiVectorRetrieverService {
         return results;
     }
 
+    /**
+     * 向量结果与关键词（BM25）结果按 RRF 融合：score = Σ 1/(k + rank)。
+     * 融合分按两路均排第一时的最大值归一化到 [0, 1]，以便与其他知识库的结果比较。
+     * 仅由关键词命中的分段同样要求向量相似度不低于 minScore，否则与问题语义无关的高频词命中会绕过阈值。
+     */
+    private List<AiQueryResult> fuseWithKeywordResults(Dataset dataset, String query, float[] queryVector,
+            List<AiQueryResult> vectorResults, int limit, float minScore, Map<String, Object> filter) {
+        Long datasetId = dataset.getDatasetId();
+        Long documentId = null;
+        if (filter != null && !filter.isEmpty()) {
+            // 关键词索引只支持按文档过滤，其他过滤条件仅走向量检索
+            if (filter.size() > 1 || !filter.containsKey("document_id")) {
+                return vectorResults;
+            }
+            documentId = toLong(filter.get("document_id"));
+        }
+
+        List<KeywordHit> keywordHits;
+        try {
+            keywordHits = keywordIndexService.search(datasetId, query, limit, documentId);
+        } catch (Exception e) {
+            log.warn("关键词检索失败，仅使用向量结果, datasetId={}", datasetId, e);
+            return vectorResults;
+        }
+        if (keywordHits.isEmpty()) {
+            return vectorResults;
+        }
+
+        int k = aiProperties.getRetriever().getRrfK() > 0 ? aiProperties.getRetriever().getRrfK() : 60;
+        Map<String, AiQueryResult> candidates = new LinkedHashMap<>();
+        Map<String, Double> fusedScores = new HashMap<>();
+        for (int i = 0; i < vectorResults.size(); i++) {
+            AiQueryResult result = vectorResults.get(i);
+            Long segmentId = extractSegmentId(result);
+            String key = segmentId != null ? String.valueOf(segmentId) : result.getId();
+            candidates.putIfAbsent(key, result);
+            fusedScores.merge(key, 1.0 / (k + i + 1), Double::sum);
+        }
+
+        List<Long> missingSegmentIds = keywordHits.stream()
+                .map(KeywordHit::getSegmentId)
+                .filter(id -> !candidates.containsKey(String.valueOf(id)))
+                .collect(Collectors.toList());
+        Map<Long, DatasetDocumentSegment> keywordSegments = missingSegmentIds.isEmpty() ? Map.of()
+                : segmentService.listByIds(missingSegmentIds).stream()
+                        .collect(Collectors.toMap(DatasetDocumentSegment::getSegmentId, s -> s));
+        if (minScore > 0 && !keywordSegments.isEmpty()) {
+            keywordSegments = filterByMinScore(dataset, queryVector, keywordSegments, minScore);
+        }
+        for (int i = 0; i < keywordHits.size(); i++) {
+            String key = String.valueOf(keywordHits.get(i).getSegmentId());
+            if (!candidates.containsKey(key)) {
+                DatasetDocumentSegment segment = keywordSegments.get(keywordHits.get(i).getSegmentId());
+                if (segment == null) {
+                    continue;
+                }
+                candidates.put(key, toKeywordResult(segment));
+            }
+            fusedScores.merge(key, 1.0 / (k + i + 1), Double::sum);
+        }
+
+        double maxScore = 2.0 / (k + 1);
+        return candidates.entrySet().stream()
+                .sorted((a, b) -> Double.compare(fusedScores.get(b.getKey()), fusedScores.get(a.getKey())))
+                .limit(limit)
+                .map(entry -> {
+                    AiQueryResult result = entry.getValue();
+                    return AiQueryResult.builder()
+                            .id(result.getId())
+                            .text(result.getText())
+                            .score((float) (fusedScores.get(entry.getKey()) / maxScore))
+                            .metadata(result.getMetadata())
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按向量相似度过滤仅由关键词命中的分段；评分失败时丢弃这些分段，只保留向量结果
+     */
+    private Map<Long, DatasetDocumentSegment> filterByMinScore(Dataset dataset, float[] queryVector,
+            Map<Long, DatasetDocumentSegment> segments, float minScore) {
+        List<String> vectorIds = segments.values().stream()
+                .map(DatasetDocumentSegment::getVectorId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Map<String, Float> scores;
+        try {
+            scores = vectorIds.isEmpty() ? Map.of()
+                    : vectorStoreService.scorePoints(dataset.getDatasetId(), dataset.getTenantId(), queryVector,
+                            vectorIds, minScore);
+        } catch (Exception e) {
+            log.warn("关键词命中分段的向量评分失败，忽略关键词结果, datasetId={}", dataset.getDatasetId(), e);
+            return Map.of();
+        }
+        Map<Long, DatasetDocumentSegment> passed = new HashMap<>();
+        segments.forEach((segmentId, segment) -> {
+            if (segment.getVectorId() != null && scores.containsKey(segment.getVectorId())) {
+                passed.put(segmentId, segment);
+            }
+        });
+        return passed;
+    }
+
+    /**
+     * 仅由关键词检索命中的分段，元数据与向量库 payload 保持一致
+     */
+    private AiQueryResult toKeywordResult(DatasetDocumentSegment segment) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("document_id", segment.getDocumentId());
+        metadata.put("dataset_id", segment.getDatasetId());
+        metadata.put("tenant_id", segment.getTenantId());
+        metadata.put("title", segment.getTitle());
+        metadata.put("segment_id", segment.getSegmentId());
+        return AiQueryResult.builder()
+                .id(segment.getVectorId() != null ? segment.getVectorId() : String.valueOf(segment.getSegmentId()))
+                .text(segment.getContent())
+                .metadata(metadata)
+                .build();
+    }
+
+    private Long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String str && !str.isBlank()) {
+            try {
+                return Long.parseLong(str);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     /**
      * 子块命中后扩展为父块内容，同一父块去重并保留最高相似度。
      */
@@ -164,17 +340,6 @@ public class AiVectorRetrieverService {
         if (result.getMetadata() == null) {
             return null;
         }
-        Object segmentId = result.getMetadata().get("segment_id");
-        if (segmentId instanceof Number number) {
-            return number.longValue();
-        }
-        if (segmentId instanceof String str && !str.isBlank()) {
-            try {
-                return Long.parseLong(str);
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
-        }
-        return null;
+        return toLong(result.getMetadata().get("segment_id"));
     }
 }
@@ -1,33 +1,66 @@
 package com.yxboot.ai.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import org.springframework.ai.document.ContentFormatter;
+import org.springframework.ai.document.DefaultContentFormatter;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.stereotype.Service;
-import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.embedding.EmbeddingBatchScheduler;
+import com.yxboot.ai.embedding.EmbeddingProgressListener;
+import com.yxboot.ai.keyword.KeywordIndexService;
 import com.yxboot.ai.registry.VectorStoreRegistry;
 import com.yxboot.ai.vector.AiQueryResult;
 import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
+import com.yxboot.modules.dataset.service.DatasetVersionService;
+import io.qdrant.client.ConditionFactory;
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.WithPayloadSelectorFactory;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import io.qdrant.client.grpc.Points.PointId;
+import io.qdrant.client.grpc.Points.ScoredPoint;
+import io.qdrant.client.grpc.Points.SearchPoints;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 知识库向量存储服务（基于 Spring AI VectorStore）。
+ * 分段的关键词索引与向量同步增删，保证混合检索两路数据一致。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AiVectorStoreService {
 
-    private static final int DEFAULT_EMBEDDING_BATCH_SIZE = 10;
+    /**
+     * embedding 文本只保留标题等与内容相关的元数据，排除各类 ID 与页码：
+     * 相同内容在不同文档/分段中得到相同的 embedding 输入，才能命中 embedding 缓存。
+     * 修改 embedding 输入格式后历史向量需要重新向量化，见 doc/sql/migration_28_reembed_segment_format.sql
+     */
+    private static final ContentFormatter EMBED_CONTENT_FORMATTER = DefaultContentFormatter.builder()
+            .withExcludedEmbedMetadataKeys("document_id", "dataset_id", "tenant_id", "segment_id", "start_page",
+                    "end_page")
+            .build();
+
+    /** Spring AI QdrantVectorStore 存放正文的 payload 字段 */
+    private static final String CONTENT_PAYLOAD_KEY = "doc_content";
 
     private final VectorStoreRegistry vectorStoreRegistry;
-    private final AiProperties aiProperties;
+    private final QdrantClient qdrantClient;
+    private final KeywordIndexService keywordIndexService;
+    private final EmbeddingBatchScheduler embeddingBatchScheduler;
+    private final DatasetVersionService datasetVersionService;
 
     public String getCollectionName(Long datasetId, Long tenantId) {
         return vectorStoreRegistry.buildCollectionName(datasetId, tenantId);
@@ -38,6 +71,7 @@ public class AiVectorStoreService {
     }
 
     public boolean deleteCollection(Long datasetId, Long tenantId) {
+        keywordIndexService.deleteIndex(datasetId);
         return vectorStoreRegistry.deleteCollection(datasetId, tenantId);
     }
 
@@ -57,7 +91,106 @@ public class AiVectorStoreService {
         return documents.stream().map(this::toQueryResult).toList();
     }
 
+    /**
+     * 使用预先计算的查询向量检索，直接构建 Qdrant 检索请求，不再由 VectorStore 重新计算 embedding
+     *
+     * @param datasetId 知识库ID
+     * @param tenantId 租户ID
+     * @param queryVector 查询向量
+     * @param limit 返回数量
+     * @param minScore 最低相似度
+     * @param filter 元数据过滤条件
+     * @return 检索结果
+     */
+    public List<AiQueryResult> similaritySearch(Long datasetId, Long tenantId, float[] queryVector, int limit,
+            float minScore, Map<String, Object> filter) {
+        List<Float> vector = new ArrayList<>(queryVector.length);
+        for (float value : queryVector) {
+            vector.add(value);
+        }
+        SearchPoints request = SearchPoints.newBuilder()
+                .setCollectionName(vectorStoreRegistry.buildCollectionName(datasetId, tenantId))
+                .addAllVector(vector)
+                .setLimit(limit)
+                .setScoreThreshold(minScore)
+                .setFilter(buildQdrantFilter(datasetId, filter))
+                .setWithPayload(WithPayloadSelectorFactory.enable(true))
+                .build();
+        try {
+            List<ScoredPoint> points = qdrantClient.searchAsync(request).get();
+            return points.stream().map(this::fromScoredPoint).toList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("向量检索被中断, datasetId: " + datasetId, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("向量检索失败, datasetId: " + datasetId, e.getCause());
+        }
+    }
+
+    /**
+     * 计算指定向量与查询向量的相似度，只返回不低于 minScore 的向量（混合检索中用于过滤仅由关键词命中的分段）
+     *
+     * @param datasetId 知识库ID
+     * @param tenantId 租户ID
+     * @param queryVector 查询向量
+     * @param vectorIds 向量ID（分段 UUID）
+     * @param minScore 最低相似度
+     * @return 向量ID -> 相似度
+     */
+    public Map<String, Float> scorePoints(Long datasetId, Long tenantId, float[] queryVector,
+            Collection<String> vectorIds, float minScore) {
+        List<PointId> pointIds = new ArrayList<>(vectorIds.size());
+        for (String vectorId : vectorIds) {
+            try {
+                pointIds.add(PointIdFactory.id(UUID.fromString(vectorId)));
+            } catch (IllegalArgumentException e) {
+                log.debug("跳过非 UUID 的向量ID: {}", vectorId);
+            }
+        }
+        if (pointIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Float> vector = new ArrayList<>(queryVector.length);
+        for (float value : queryVector) {
+            vector.add(value);
+        }
+        SearchPoints request = SearchPoints.newBuilder()
+                .setCollectionName(vectorStoreRegistry.buildCollectionName(datasetId, tenantId))
+                .addAllVector(vector)
+                .setLimit(pointIds.size())
+                .setScoreThreshold(minScore)
+                .setFilter(Points.Filter.newBuilder()
+                        .addMust(ConditionFactory.hasId(pointIds))
+                        .build())
+                .build();
+        try {
+            Map<String, Float> scores = new HashMap<>();
+            for (ScoredPoint point : qdrantClient.searchAsync(request).get()) {
+                scores.put(point.getId().getUuid(), point.getScore());
+            }
+            return scores;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("向量评分被中断, datasetId: " + datasetId, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("向量评分失败, datasetId: " + datasetId, e.getCause());
+        }
+    }
+
     public int batchCreateSegmentVectors(List<DatasetDocumentSegment> segments, Long datasetId) {
+        return batchCreateSegmentVectors(segments, datasetId, null);
+    }
+
+    /**
+     * 批量向量化并写入向量库，批次由 {@link EmbeddingBatchScheduler} 并发调度
+     *
+     * @param segments 分段列表
+     * @param datasetId 知识库ID
+     * @param listener 批次进度监听器，可为 null
+     * @return 写入成功的分段数
+     */
+    public int batchCreateSegmentVectors(List<DatasetDocumentSegment> segments, Long datasetId,
+            EmbeddingProgressListener listener) {
         if (segments == null || segments.isEmpty()) {
             return 0;
         }
@@ -71,26 +204,25 @@ public class AiVectorStoreService {
         if (documents.isEmpty()) {
             return 0;
         }
-        int batchSize = resolveEmbeddingBatchSize();
-        int total = 0;
-        for (int i = 0; i < documents.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, documents.size());
-            List<Document> batch = documents.subList(i, end);
-            vectorStore.add(batch);
-            total += batch.size();
-            log.info("向量化批次完成, datasetId={}, tenantId={}, progress={}/{}", datasetId, tenantId, total,
-                    documents.size());
-        }
+        int total = embeddingBatchScheduler.submit(tenantId, documents, vectorStore::add,
+                (batchSize, completed, count) -> {
+                    log.debug("向量化批次完成, datasetId={}, tenantId={}, progress={}/{}", datasetId, tenantId,
+                            completed, count);
+                    if (listener != null) {
+                        listener.onBatchCompleted(batchSize, completed, count);
+                    }
+                });
         log.info("批量向量化完成, datasetId={}, tenantId={}, count={}", datasetId, tenantId, total);
-        return total;
-    }
-
-    private int resolveEmbeddingBatchSize() {
-        Integer configured = aiProperties.getEmbedding().getBatchSize();
-        if (configured == null || configured <= 0) {
-            return DEFAULT_EMBEDDING_BATCH_SIZE;
+        long version = total > 0 ? datasetVersionService.bump(datasetId) : DatasetVersionService.UNKNOWN_VERSION;
+        try {
+            keywordIndexService.indexSegments(datasetId, segments.stream()
+                    .filter(s -> s.getContent() != null && !s.getContent().isBlank())
+                    .filter(s -> s.getVectorId() != null && !s.getVectorId().isBlank())
+                    .toList(), version);
+        } catch (Exception e) {
+            log.warn("更新关键词索引失败, datasetId={}", datasetId, e);
         }
-        return configured;
+        return total;
     }
 
     public boolean createSegmentVector(DatasetDocumentSegment segment) {
@@ -108,6 +240,8 @@ public class AiVectorStoreService {
             if (segment.getVectorId() != null) {
                 vectorStore.delete(List.of(segment.getVectorId()));
             }
+            long version = datasetVersionService.bump(segment.getDatasetId());
+            keywordIndexService.removeSegments(segment.getDatasetId(), List.of(segment.getSegmentId()), version);
             return true;
         } catch (Exception e) {
             log.error("删除分段向量失败, segmentId={}", segment.getSegmentId(), e);
@@ -130,6 +264,9 @@ public class AiVectorStoreService {
                 return 0;
             }
             vectorStore.delete(ids);
+            long version = datasetVersionService.bump(datasetId);
+            keywordIndexService.removeSegments(datasetId,
+                    segments.stream().map(DatasetDocumentSegment::getSegmentId).toList(), version);
             return ids.size();
         } catch (Exception e) {
             log.error("批量删除分段向量失败, datasetId={}", datasetId, e);
@@ -138,20 +275,34 @@ public class AiVectorStoreService {
     }
 
     public int deleteDocumentVectors(Long documentId, Long datasetId, Long tenantId) {
-        return deleteVectorsByFilter(datasetId, tenantId, Map.of("document_id", documentId));
+        long version = deleteByFilter(datasetId, tenantId, Map.of("document_id", documentId));
+        try {
+            keywordIndexService.removeDocument(datasetId, documentId, version);
+        } catch (Exception e) {
+            log.warn("删除文档关键词索引失败, documentId={}", documentId, e);
+        }
+        return 0;
     }
 
     public int deleteVectorsByFilter(Long datasetId, Long tenantId, Map<String, Object> filter) {
+        deleteByFilter(datasetId, tenantId, filter);
+        return 0;
+    }
+
+    /**
+     * 按条件删除向量并递增知识库内容版本，返回递增后的版本号（未删除或失败时为未知版本）
+     */
+    private long deleteByFilter(Long datasetId, Long tenantId, Map<String, Object> filter) {
         try {
             if (!vectorStoreRegistry.collectionExists(datasetId, tenantId)) {
-                return 0;
+                return DatasetVersionService.UNKNOWN_VERSION;
             }
             VectorStore vectorStore = vectorStoreRegistry.getOrCreate(datasetId, tenantId);
             vectorStore.delete(buildFilter(datasetId, filter));
-            return 0;
+            return datasetVersionService.bump(datasetId);
         } catch (Exception e) {
             log.error("按条件删除向量失败, datasetId={}, tenantId={}", datasetId, tenantId, e);
-            return 0;
+            return DatasetVersionService.UNKNOWN_VERSION;
         }
     }
 
@@ -162,8 +313,14 @@ public class AiVectorStoreService {
         metadata.put("tenant_id", segment.getTenantId());
         metadata.put("title", segment.getTitle());
         metadata.put("segment_id", segment.getSegmentId());
+        if (segment.getStartPage() != null) {
+            metadata.put("start_page", segment.getStartPage());
+            metadata.put("end_page", segment.getEndPage());
+        }
         String id = segment.getVectorId() != null ? segment.getVectorId() : String.valueOf(segment.getSegmentId());
-        return new Document(id, segment.getContent(), metadata);
+        Document document = new Document(id, segment.getContent(), metadata);
+        document.setContentFormatter(EMBED_CONTENT_FORMATTER);
+        return document;
     }
 
     private AiQueryResult toQueryResult(Document doc) {
@@ -180,6 +337,60 @@ public class AiVectorStoreService {
                 .build();
     }
 
+    /**
+     * Qdrant 检索结果转换，payload 结构与 Spring AI QdrantVectorStore 写入时一致（正文存于 doc_content）
+     */
+    private AiQueryResult fromScoredPoint(ScoredPoint point) {
+        Map<String, Object> metadata = new HashMap<>();
+        point.getPayloadMap().forEach((key, value) -> metadata.put(key, toJavaValue(value)));
+        Object content = metadata.remove(CONTENT_PAYLOAD_KEY);
+        metadata.put("distance", 1f - point.getScore());
+        String id = point.getId().hasUuid() ? point.getId().getUuid() : String.valueOf(point.getId().getNum());
+        return AiQueryResult.builder()
+                .id(id)
+                .text(content != null ? content.toString() : null)
+                .score(point.getScore())
+                .metadata(metadata)
+                .build();
+    }
+
+    private Object toJavaValue(JsonWithInt.Value value) {
+        return switch (value.getKindCase()) {
+            case STRING_VALUE -> value.getStringValue();
+            case INTEGER_VALUE -> value.getIntegerValue();
+            case DOUBLE_VALUE -> value.getDoubleValue();
+            case BOOL_VALUE -> value.getBoolValue();
+            case LIST_VALUE -> value.getListValue().getValuesList().stream().map(this::toJavaValue).toList();
+            case STRUCT_VALUE -> {
+                Map<String, Object> struct = new HashMap<>();
+                value.getStructValue().getFieldsMap().forEach((k, v) -> struct.put(k, toJavaValue(v)));
+                yield struct;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * 与 {@link #buildFilter} 等价的 Qdrant 原生过滤条件（值统一转为字符串匹配）
+     */
+    private Points.Filter buildQdrantFilter(Long datasetId, Map<String, Object> filter) {
+        Points.Filter.Builder builder = Points.Filter.newBuilder()
+                .addMust(ConditionFactory.matchKeyword("dataset_id", String.valueOf(datasetId)));
+        if (filter != null) {
+            for (Map.Entry<String, Object> entry : filter.entrySet()) {
+                if ("dataset_id".equals(entry.getKey()) || entry.getValue() == null) {
+                    continue;
+                }
+                if (entry.getValue() instanceof Boolean bool) {
+                    builder.addMust(ConditionFactory.match(entry.getKey(), bool));
+                } else {
+                    builder.addMust(ConditionFactory.matchKeyword(entry.getKey(), entry.getValue().toString()));
+                }
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * 使用 FilterExpressionBuilder 构建过滤条件。
      * Snowflake ID 在 Qdrant payload 中以字符串存储，过滤值需转为字符串才能命中。
@@ -1,7 +1,14 @@
 package com.yxboot.ai.service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import com.yxboot.ai.config.AiProperties;
@@ -15,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 构建知识库 RAG 模式下的系统提示词与用户消息。
+ * 多知识库检索并发执行，查询向量只计算一次供各知识库复用；单个知识库超时、失败或检索线程池已满时跳过该知识库，不阻塞对话。
  */
 @Slf4j
 @Service
@@ -23,11 +31,20 @@ public class RagChatPromptService {
 
     private final AiVectorRetrieverService vectorRetrieverService;
     private final AiProperties aiProperties;
+    @Qualifier("ragRetrievalExecutor")
+    private final Executor ragRetrievalExecutor;
 
     public boolean hasActiveDatasets(AppConfig appConfig) {
         return !parseActiveDatasetIds(appConfig).isEmpty();
     }
 
+    /**
+     * 应用绑定且启用的知识库
+     */
+    public List<Long> getActiveDatasetIds(AppConfig appConfig) {
+        return parseActiveDatasetIds(appConfig);
+    }
+
     public RagPromptResult build(String userQuestion, AppConfig appConfig) {
         List<Long> activeDatasetIds = parseActiveDatasetIds(appConfig);
 
@@ -108,18 +125,93 @@ public class RagChatPromptService {
         int totalLimit = ragConfig.getLimit() > 0 ? ragConfig.getLimit() : aiProperties.getRetriever().getDefaultLimit();
         float minScore = ragConfig.getMinScore() >= 0 ? ragConfig.getMinScore() : aiProperties.getRetriever().getDefaultMinScore();
 
-        return datasetIds.stream()
-                .flatMap(datasetId -> {
-                    try {
-                        return vectorRetrieverService.retrieve(datasetId, query, perDatasetLimit, minScore).stream();
-                    } catch (Exception e) {
-                        log.error("从知识库 {} 检索失败", datasetId, e);
-                        return List.<AiQueryResult>of().stream();
-                    }
-                })
-                .sorted((a, b) -> Float.compare(b.getScore(), a.getScore()))
-                .limit(totalLimit)
+        if (!ragConfig.isParallelRetrieval() || datasetIds.size() <= 1) {
+            List<List<AiQueryResult>> results = datasetIds.stream()
+                    .map(datasetId -> retrieveSafely(datasetId, query, null, perDatasetLimit, minScore))
+                    .collect(Collectors.toList());
+            return mergeTopK(results, totalLimit);
+        }
+
+        // 先计算一次查询向量，各知识库检索复用，避免每个知识库各自请求 embedding（计算失败时为 null，由各知识库分别计算）
+        float[] queryVector = vectorRetrieverService.embedQuery(query);
+
+        long timeoutMs = ragConfig.getRetrievalTimeoutMs() > 0 ? ragConfig.getRetrievalTimeoutMs() : 3000L;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<CompletableFuture<List<AiQueryResult>>> futures = datasetIds.stream()
+                .map(datasetId -> submitRetrieval(datasetId, query, queryVector, perDatasetLimit, minScore, deadline)
+                        .completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                        .exceptionally(e -> {
+                            log.error("从知识库 {} 检索失败", datasetId, e);
+                            return List.of();
+                        }))
                 .collect(Collectors.toList());
+
+        List<List<AiQueryResult>> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            List<AiQueryResult> datasetResults = futures.get(i).join();
+            if (datasetResults == null) {
+                log.warn("知识库 {} 检索超时（{}ms），已跳过", datasetIds.get(i), timeoutMs);
+                continue;
+            }
+            results.add(datasetResults);
+        }
+        return mergeTopK(results, totalLimit);
+    }
+
+    /**
+     * 提交单个知识库的检索任务。线程池已满时不在对话线程中检索，直接跳过该知识库；
+     * 排队到超时之后才开始执行的任务不再检索（结果已被丢弃）
+     */
+    private CompletableFuture<List<AiQueryResult>> submitRetrieval(Long datasetId, String query, float[] queryVector,
+            int limit, float minScore, long deadline) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                if (System.nanoTime() - deadline >= 0) {
+                    return List.of();
+                }
+                return retrieveSafely(datasetId, query, queryVector, limit, minScore);
+            }, ragRetrievalExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("知识库检索线程池已满，跳过知识库 {}", datasetId);
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    private List<AiQueryResult> retrieveSafely(Long datasetId, String query, float[] queryVector, int limit,
+            float minScore) {
+        try {
+            return vectorRetrieverService.retrieve(datasetId, query, queryVector, limit, minScore, null);
+        } catch (Exception e) {
+            log.error("从知识库 {} 检索失败", datasetId, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * 使用容量为 limit 的最小堆合并各知识库结果，按相似度从高到低返回；limit 不大于 0 时返回空列表
+     */
+    private List<AiQueryResult> mergeTopK(List<List<AiQueryResult>> results, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        PriorityQueue<AiQueryResult> heap = new PriorityQueue<>(limit + 1,
+                (a, b) -> Float.compare(a.getScore(), b.getScore()));
+        for (List<AiQueryResult> datasetResults : results) {
+            if (datasetResults == null) {
+                continue;
+            }
+            for (AiQueryResult result : datasetResults) {
+                if (heap.size() < limit) {
+                    heap.offer(result);
+                } else if (result.getScore() > heap.peek().getScore()) {
+                    heap.poll();
+                    heap.offer(result);
+                }
+            }
+        }
+        List<AiQueryResult> merged = new ArrayList<>(heap);
+        merged.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        return merged;
     }
 
     private String buildSystemPrompt(AppConfig appConfig, AiProperties.RagConfig ragConfig) {
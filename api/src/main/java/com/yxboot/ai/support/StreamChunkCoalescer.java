@@ -0,0 +1,299 @@
+package com.yxboot.ai.support;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.springframework.scheduling.TaskScheduler;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 流式输出合并器：把模型逐 token 输出的文本片段合并后再写出，减少 SSE 的序列化与 flush 次数。
+ * <p>
+ * 缓冲区从第一个片段开始计时，累计超过 maxDelayMs 毫秒或 maxBytes 字节（UTF-8）时整体写出一次；
+ * 模型停顿时由定时器在时间窗口到期后写出，不会让已生成的文本滞留。片段按原样拼接，不做裁剪，
+ * 仅含换行 / 空白的片段同样保留（Markdown 块级语法依赖行首换行符）。
+ * <p>
+ * 线程安全：锁只保护缓冲区，写出在锁外进行。待写出的文本按顺序排队，同一时刻只有一个线程写出，顺序不变。
+ * 定时器（多个流共用）只把缓冲标记为到期，实际写出交给该流的 flushExecutor，慢连接不会拖住其他流的定时写出；
+ * flushExecutor 拒绝时保留到期标记，由下一个片段或 {@link #close()} 写出。
+ */
+@Slf4j
+public final class StreamChunkCoalescer {
+
+    /**
+     * 合并后文本的写出目标
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+        void write(String text) throws IOException;
+    }
+
+    private final ChunkSink sink;
+    private final long maxDelayNanos;
+    private final int maxBytes;
+    private final TaskScheduler timer;
+    private final Executor flushExecutor;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writerIdle = lock.newCondition();
+    private final StringBuilder buffer = new StringBuilder();
+    /** 已从缓冲区取出、等待写出的文本 */
+    private final ArrayDeque<String> outbox = new ArrayDeque<>();
+    private int bufferedBytes;
+    private long firstBufferedAt;
+    private ScheduledFuture<?> pendingFlush;
+    /** 时间窗口已到期，等待写出 */
+    private boolean due;
+    /** 是否有线程正在写出 outbox */
+    private boolean writing;
+    private boolean closed;
+
+    /**
+     * @param sink 写出目标
+     * @param maxDelayMs 片段最长缓冲时间（毫秒），0 为不合并，每个片段立即写出
+     * @param maxBytes 缓冲字节数达到该值时立即写出
+     * @param timer 空闲写出定时器，为空时只在追加片段时检查时间窗口
+     * @param flushExecutor 执行到期写出的线程池，为空时在定时器线程中写出
+     */
+    public StreamChunkCoalescer(ChunkSink sink, long maxDelayMs, int maxBytes, TaskScheduler timer,
+            Executor flushExecutor) {
+        this(sink, maxDelayMs, maxBytes, timer, flushExecutor, System::nanoTime);
+    }
+
+    /**
+     * @param clock 纳秒时钟，基准测试中用于模拟 token 到达间隔
+     */
+    public StreamChunkCoalescer(ChunkSink sink, long maxDelayMs, int maxBytes, TaskScheduler timer,
+            Executor flushExecutor, LongSupplier clock) {
+        this.sink = sink;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMs, 0));
+        this.maxBytes = Math.max(maxBytes, 1);
+        this.timer = timer;
+        this.flushExecutor = flushExecutor != null ? flushExecutor : Runnable::run;
+        this.clock = clock;
+    }
+
+    /**
+     * 追加一个片段，空片段忽略；达到时间窗口或字节上限时写出
+     */
+    public void append(String chunk) throws IOException {
+        boolean write;
+        lock.lock();
+        try {
+            if (closed || chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            boolean first = buffer.length() == 0;
+            buffer.append(chunk);
+            bufferedBytes += utf8Length(chunk);
+            long now = clock.getAsLong();
+            if (maxDelayNanos == 0 || bufferedBytes >= maxBytes || due
+                    || (!first && now - firstBufferedAt >= maxDelayNanos)) {
+                write = takeBuffer();
+            } else {
+                if (first) {
+                    firstBufferedAt = now;
+                    scheduleFlush();
+                }
+                write = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (write) {
+            writeOutbox();
+        }
+    }
+
+    /**
+     * 写出剩余文本并停止合并，之后追加的片段被忽略。等待其他线程正在进行的写出结束后返回
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            moveBufferToOutbox();
+            while (writing) {
+                writerIdle.awaitUninterruptibly();
+            }
+            if (outbox.isEmpty()) {
+                return;
+            }
+            writing = true;
+        } finally {
+            lock.unlock();
+        }
+        writeOutbox();
+    }
+
+    /**
+     * 丢弃缓冲的文本并停止合并（连接已断开或出错时）
+     */
+    public void discard() {
+        lock.lock();
+        try {
+            cancelPendingFlush();
+            buffer.setLength(0);
+            bufferedBytes = 0;
+            outbox.clear();
+            due = false;
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (timer == null) {
+            return;
+        }
+        try {
+            pendingFlush = timer.schedule(this::markDue, Instant.now().plus(Duration.ofNanos(maxDelayNanos)));
+        } catch (RuntimeException e) {
+            // 定时器已关闭（应用停止中），退化为追加时检查时间窗口
+            pendingFlush = null;
+        }
+    }
+
+    /**
+     * 定时器回调：只标记到期，写出交给 flushExecutor
+     */
+    private void markDue() {
+        lock.lock();
+        try {
+            pendingFlush = null;
+            if (closed || buffer.length() == 0) {
+                return;
+            }
+            due = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flushExecutor.execute(this::flushIfDue);
+        } catch (RejectedExecutionException e) {
+            log.debug("到期写出任务被拒绝，等待下一个片段时写出");
+        }
+    }
+
+    private void flushIfDue() {
+        boolean write;
+        lock.lock();
+        try {
+            write = !closed && due && takeBuffer();
+        } finally {
+            lock.unlock();
+        }
+        if (!write) {
+            return;
+        }
+        try {
+            writeOutbox();
+        } catch (IOException e) {
+            log.debug("定时写出流式片段失败，连接可能已断开: {}", e.getMessage());
+            discard();
+        }
+    }
+
+    /**
+     * 把缓冲区移入待写出队列，并在没有其他线程写出时由当前线程负责写出（调用方持有锁）
+     *
+     * @return 当前线程是否需要调用 {@link #writeOutbox()}
+     */
+    private boolean takeBuffer() {
+        moveBufferToOutbox();
+        if (writing || outbox.isEmpty()) {
+            return false;
+        }
+        writing = true;
+        return true;
+    }
+
+    private void moveBufferToOutbox() {
+        cancelPendingFlush();
+        due = false;
+        if (buffer.length() == 0) {
+            return;
+        }
+        outbox.addLast(buffer.toString());
+        buffer.setLength(0);
+        bufferedBytes = 0;
+    }
+
+    /**
+     * 在锁外按顺序写出待写出队列，直到队列为空
+     */
+    private void writeOutbox() throws IOException {
+        boolean done = false;
+        try {
+            while (true) {
+                String text;
+                lock.lock();
+                try {
+                    text = outbox.pollFirst();
+                    if (text == null) {
+                        done = true;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                sink.write(text);
+            }
+        } finally {
+            lock.lock();
+            try {
+                if (!done) {
+                    // 写出失败：丢弃剩余文本
+                    outbox.clear();
+                }
+                writing = false;
+                writerIdle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // 代理对共 4 字节；代理对被拆在两个片段中时高位计 4 字节，低位计 0
+                bytes += 4;
+                if (i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                }
+            } else if (Character.isLowSurrogate(c)) {
+                continue;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -10,6 +10,7 @@ public enum ResultCode {
     UNAUTHORIZED(401, "暂未登录或token已经过期"),
     FORBIDDEN(403, "没有相关权限"),
     NOT_FOUND(404, "资源未找到"),
+    TOO_MANY_REQUESTS(429, "请求过多，请稍后重试"),
     INTERNAL_SERVER_ERROR(500, "服务内部错误");
 
     private Integer code;
@@ -0,0 +1,21 @@
+package com.yxboot.common.exception;
+
+import com.yxboot.common.api.ResultCode;
+
+/**
+ * 并发或频率超限异常，响应 HTTP 429
+ */
+public class TooManyRequestsException extends ApiException {
+
+    /** 建议客户端重试的间隔（秒） */
+    private final int retryAfterSeconds;
+
+    public TooManyRequestsException(String message, int retryAfterSeconds) {
+        super(ResultCode.TOO_MANY_REQUESTS, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
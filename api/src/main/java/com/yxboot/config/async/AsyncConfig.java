@@ -5,43 +5,67 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
 
+import com.yxboot.ai.config.AiProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * 异步配置类
  * 配置支持安全上下文传播的异步执行器
+ * <p>
+ * 阻塞型执行器（等待 embedding HTTP、Qdrant gRPC、JDBC）支持虚拟线程模式（yxboot.ai.executor.mode=virtual）：
+ * 每个任务一个虚拟线程，同时运行的任务数由并发上限（信号量）约束，上限与平台线程模式下的线程数一致；
+ * 平台线程池使用 AbortPolicy 的执行器在达到上限时同样拒绝任务，其余执行器由提交线程等待许可。
+ * CPU 密集的 PDF 抽取始终使用平台线程池。
+ * <p>
+ * 项目按 JDK 17 编译，默认镜像（eclipse-temurin 17）也运行在 JDK 17 上，此时 virtual 模式不生效，启动时告警并回退为平台线程池；
+ * 只有在 JDK 21+ 上运行时才会启用虚拟线程。持锁期间做阻塞 IO 的位置（向量集合创建、消息写回）使用 ReentrantLock，
+ * 避免虚拟线程在 synchronized 中阻塞时占住载体线程。
  * 
  * @author Boya
  */
+@Slf4j
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
+    /** 虚拟线程所需的最低 JDK 版本 */
+    private static final int VIRTUAL_THREADS_MIN_JDK = 21;
+
     /**
-     * 配置自定义异步执行器，支持Spring Security上下文传播
+     * 文档入库任务工作线程池，支持Spring Security上下文传播
+     * 任务由 DatasetIngestJobScheduler 从任务队列表领取后提交，领取数量不超过线程数，因此不排队；
+     * 不使用 CallerRunsPolicy，入库永远不会在提交线程（调度线程 / 请求线程）中执行
      * 
      * @return DelegatingSecurityContextAsyncTaskExecutor
      */
     @Bean("documentTaskExecutor")
-    public Executor documentTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        // 核心线程数 - 可用处理器数量
-        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
-        // 最大线程数 - 可同时执行的任务数
-        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors() * 2);
-        // 队列容量 - 任务等待队列大小
-        executor.setQueueCapacity(50);
+    public Executor documentTaskExecutor(AiProperties aiProperties) {
+        int poolSize = aiProperties.getDocument().resolveJobWorkerThreads();
+        if (useVirtualThreads(aiProperties)) {
+            return boundedVirtualExecutor("document-task-", poolSize, true);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        // 线程数 - 本节点同时处理的文档数
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        // 队列容量 - 排队由任务队列表承担，线程池不再缓存任务
+        executor.setQueueCapacity(0);
         // 线程保持活跃时间 - 线程空闲时间
         executor.setKeepAliveSeconds(100);
         // 线程名称前缀
         executor.setThreadNamePrefix("document-task-");
-        // 拒绝策略 - 当线程池达到最大线程数时，新任务的处理策略
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 拒绝策略 - 由调度器把任务放回队列
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         // 等待任务完成 - 在关闭线程池时，等待所有任务完成
         executor.setWaitForTasksToCompleteOnShutdown(true);
-        // 等待终止时间 - 在关闭线程池时，等待任务完成的时间
+        // 等待终止时间 - 未完成的任务租约过期后重新排队，从检查点继续
         executor.setAwaitTerminationSeconds(60);
         // 初始化线程池
         executor.initialize();
@@ -49,4 +73,262 @@ public class AsyncConfig {
         // 包装为支持安全上下文传播的执行器
         return new DelegatingSecurityContextAsyncTaskExecutor(executor);
     }
-}
\ No newline at end of file
+
+    /**
+     * 文档入库流水线的向量化阶段执行器
+     * 与 documentTaskExecutor 分开，避免切分线程与向量化线程互相占用导致流水线阻塞
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("documentEmbeddingExecutor")
+    public Executor documentEmbeddingExecutor(AiProperties aiProperties) {
+        // 每个处理中的文档占用一个向量化线程，与 documentTaskExecutor 的线程数保持一致
+        int poolSize = aiProperties.getDocument().resolveJobWorkerThreads();
+        if (useVirtualThreads(aiProperties)) {
+            return boundedVirtualExecutor("document-embedding-", poolSize, true);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        // 不排队：向量化阶段必须与切分阶段同时运行，否则切分线程会因队列满而一直等待
+        executor.setQueueCapacity(0);
+        executor.setKeepAliveSeconds(100);
+        executor.setThreadNamePrefix("document-embedding-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * embedding 批次执行器
+     * 并发上限由 EmbeddingBatchScheduler 的提供商/租户信号量控制，此处只需提供足够线程
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("embeddingBatchExecutor")
+    public Executor embeddingBatchExecutor(AiProperties aiProperties) {
+        Integer concurrency = aiProperties.getEmbedding().getConcurrency();
+        int poolSize = concurrency != null && concurrency > 0 ? concurrency : 1;
+        if (useVirtualThreads(aiProperties)) {
+            return boundedVirtualExecutor("embedding-batch-", poolSize, false);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        // 许可释放与线程归还之间存在短暂间隙，保留少量队列避免误拒
+        executor.setQueueCapacity(poolSize);
+        executor.setKeepAliveSeconds(100);
+        executor.setThreadNamePrefix("embedding-batch-");
+        // 兜底：线程池满时由提交线程执行
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * RAG 多知识库并发检索执行器
+     * 检索任务为 IO 密集（embedding + Qdrant），线程数可高于 CPU 核数。
+     * 线程池满时拒绝任务，由 RagChatPromptService 跳过该知识库，对话线程不会被检索拖住超过检索超时
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("ragRetrievalExecutor")
+    public Executor ragRetrievalExecutor(AiProperties aiProperties) {
+        if (useVirtualThreads(aiProperties)) {
+            return boundedVirtualExecutor("rag-retrieval-", positive(aiProperties.getExecutor().getRetrievalConcurrency(),
+                    Runtime.getRuntime().availableProcessors() * 4), true);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors() * 4);
+        executor.setQueueCapacity(200);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("rag-retrieval-");
+        // 拒绝策略 - 线程池满时拒绝，不在对话线程中执行无超时的检索
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * PDF 分片文本抽取执行器
+     * 抽取为 CPU 密集，线程数默认等于核数；多个文档同时抽取时分片排队，队列满时由文档处理线程自行抽取
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("pdfExtractionExecutor")
+    public Executor pdfExtractionExecutor(AiProperties aiProperties) {
+        int poolSize = aiProperties.getDocument().resolvePdfExtractionThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize * 4);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("pdf-extraction-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * 流式对话编排执行器（建会话、写消息、检索、组装提示词后订阅模型流）
+     * 编排过程阻塞在数据库与检索调用上，不能放在公共 ForkJoinPool 中执行
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("chatTaskExecutor")
+    public Executor chatTaskExecutor(AiProperties aiProperties) {
+        int concurrency = positive(aiProperties.getExecutor().getChatConcurrency(),
+                Runtime.getRuntime().availableProcessors() * 8);
+        if (useVirtualThreads(aiProperties)) {
+            return boundedVirtualExecutor("chat-task-", concurrency, true);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.min(Runtime.getRuntime().availableProcessors() * 2, concurrency));
+        executor.setMaxPoolSize(concurrency);
+        // 不排队：核心线程占满后直接扩容到上限，上限之外拒绝，避免对话请求在队列中无限等待
+        executor.setQueueCapacity(0);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("chat-task-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * 会话摘要执行器（调用模型压缩较早的对话，不在请求线程中执行）
+     * 摘要可以延后到下一轮再提交，队列满时拒绝而不是由提交线程执行
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("conversationSummaryExecutor")
+    public Executor conversationSummaryExecutor(AiProperties aiProperties) {
+        int poolSize = positive(aiProperties.getChatHistory().getSummaryConcurrency(), 1);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize * 100);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("conversation-summary-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * 流式对话 SSE 写出执行器（见 ChatStreamBuffer）
+     * 每个连接同时最多一个写出任务，队列上限即最多等待写出的连接数；队列满时拒绝，由 ChatStreamBuffer 关闭该连接，
+     * 客户端按 Last-Event-ID 重连，不会因慢连接堆积无限增长的任务
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("chatStreamWriterExecutor")
+    public Executor chatStreamWriterExecutor(AiProperties aiProperties) {
+        AiProperties.ChatStreamConfig cfg = aiProperties.getChatStream();
+        int poolSize = positive(cfg.getWriterThreads(), 1);
+        int queueCapacity = positive(cfg.getWriterQueueCapacity(), poolSize);
+        if (useVirtualThreads(aiProperties)) {
+            // 虚拟线程下阻塞写出不占平台线程，同时写出的连接数上限与平台线程模式下线程数 + 队列容量一致
+            return boundedVirtualExecutor("chat-stream-writer-", poolSize + queueCapacity, true);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("chat-stream-writer-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * 关键词索引后台重建执行器（其他节点修改知识库后按数据库重建，见 KeywordIndexService）
+     * 单线程依次重建，避免多个知识库同时全量读取分段；每个知识库同时最多排队一次重建，队列满时拒绝，下次检索再触发
+     *
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    @Bean("keywordIndexRebuildExecutor")
+    public Executor keywordIndexRebuildExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(100);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("keyword-index-rebuild-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * 共用定时任务调度器
+     * 定时任务在调度线程中只做短时工作（标记到期、移除过期缓冲、合并写回消息），长时间运行的工作提交到对应执行器；
+     * 取消的定时任务立即从队列移除，流式合并每个时间窗口都会取消一次未到期的定时写出
+     *
+     * @return ThreadPoolTaskScheduler
+     */
+    @Bean("taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(AiProperties aiProperties) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(positive(aiProperties.getExecutor().getSchedulerThreads(), 1));
+        scheduler.setThreadNamePrefix("task-scheduler-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+
+    /**
+     * 是否使用虚拟线程：配置为 virtual 且运行在 JDK 21+ 上，低版本 JDK（包括默认的 JDK 17 镜像）回退为平台线程池
+     */
+    private boolean useVirtualThreads(AiProperties aiProperties) {
+        if (!aiProperties.getExecutor().isVirtualThreads()) {
+            return false;
+        }
+        if (Runtime.version().feature() < VIRTUAL_THREADS_MIN_JDK) {
+            log.warn("当前 JDK {} 不支持虚拟线程（需 JDK {}+），executor.mode=virtual 不生效，执行器回退为平台线程池",
+                    Runtime.version().feature(), VIRTUAL_THREADS_MIN_JDK);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 有界虚拟线程执行器：每个任务一个虚拟线程，同时运行的任务数不超过 concurrencyLimit
+     *
+     * @param threadNamePrefix 线程名称前缀
+     * @param concurrencyLimit 并发上限
+     * @param rejectWhenFull 达到上限时拒绝任务（TaskRejectedException），否则提交线程阻塞等待
+     * @return DelegatingSecurityContextAsyncTaskExecutor
+     */
+    private Executor boundedVirtualExecutor(String threadNamePrefix, int concurrencyLimit, boolean rejectWhenFull) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        executor.setRejectTasksWhenLimitReached(rejectWhenFull);
+
+        return new DelegatingSecurityContextAsyncTaskExecutor(executor);
+    }
+
+    private int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+}
@@ -1,6 +1,9 @@
 package com.yxboot.config.web;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
@@ -12,6 +15,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import com.yxboot.common.api.Result;
 import com.yxboot.common.api.ResultCode;
+import com.yxboot.common.exception.TooManyRequestsException;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,6 +52,17 @@ public class GlobalExceptionHandler {
         return Result.error(ResultCode.FORBIDDEN, "无权限访问此资源");
     }
 
+    /**
+     * 流式接口在建立 SSE 之前拒绝时，请求头 Accept 可能只有 text/event-stream，显式指定 JSON，避免内容协商失败变成 500
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Result<?>> handleTooManyRequestsException(TooManyRequestsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Result.error(ResultCode.TOO_MANY_REQUESTS, ex.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Result<?> handleException(Exception ex) {
@@ -0,0 +1,77 @@
+package com.yxboot.modules.account.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.account.entity.Tenant;
+import com.yxboot.modules.account.enums.TenantPlan;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 租户配额服务：按租户套餐（{@link TenantPlan}）解析入库调度权重、入库与对话并发上限。
+ * <p>
+ * 入库调度、embedding 批次调度与对话准入频繁查询配额，租户套餐在内存中缓存 plan-cache-ttl-seconds 秒。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TenantQuotaService {
+
+    private final TenantService tenantService;
+    private final AiProperties aiProperties;
+
+    private final Map<Long, CachedPlan> planCache = new ConcurrentHashMap<>();
+
+    /**
+     * 租户的配额，租户不存在或没有套餐时按免费版
+     */
+    public AiProperties.TenantQuota getQuota(Long tenantId) {
+        return aiProperties.getTenantQuota().resolve(getPlan(tenantId));
+    }
+
+    /**
+     * 租户套餐（带缓存），租户ID为空或租户不存在时返回 null
+     */
+    public TenantPlan getPlan(Long tenantId) {
+        if (tenantId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedPlan cached = planCache.get(tenantId);
+        if (cached != null && cached.expireAt > now) {
+            return cached.plan;
+        }
+
+        TenantPlan plan = null;
+        try {
+            Tenant tenant = tenantService.getById(tenantId);
+            plan = tenant != null ? tenant.getPlan() : null;
+        } catch (Exception e) {
+            log.warn("查询租户套餐失败, tenantId: {}", tenantId, e);
+            if (cached != null) {
+                return cached.plan;
+            }
+        }
+        Integer ttl = aiProperties.getTenantQuota().getPlanCacheTtlSeconds();
+        planCache.put(tenantId, new CachedPlan(plan, now + (ttl != null ? ttl : 0) * 1000L));
+        return plan;
+    }
+
+    private static final class CachedPlan {
+
+        private final TenantPlan plan;
+        private final long expireAt;
+
+        CachedPlan(TenantPlan plan, long expireAt) {
+            this.plan = plan;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.yxboot.modules.ai.controller;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.yxboot.ai.config.AiProperties;
 import com.yxboot.ai.rag.RagPromptResult;
 import com.yxboot.ai.service.RagChatPromptService;
 import com.yxboot.common.api.Result;
@@ -16,7 +23,9 @@ import com.yxboot.modules.ai.dto.ChatRequestDTO;
 import com.yxboot.modules.ai.dto.ChatResponseDTO;
 import com.yxboot.modules.ai.entity.Message;
 import com.yxboot.modules.ai.enums.MessageStatus;
+import com.yxboot.modules.ai.service.ChatAdmissionService;
 import com.yxboot.modules.ai.service.ChatService;
+import com.yxboot.modules.ai.service.ConversationHistoryService;
 import com.yxboot.modules.ai.service.ConversationService;
 import com.yxboot.modules.ai.service.MessageService;
 import com.yxboot.modules.app.entity.AppConfig;
@@ -25,6 +34,8 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * 模型调用控制器
@@ -41,17 +52,51 @@ public class ChatController {
     private final ChatService aiService;
     private final ConversationService conversationService;
     private final MessageService messageService;
+    private final ConversationHistoryService conversationHistoryService;
     private final AppConfigService appConfigService;
     private final RagChatPromptService ragChatPromptService;
+    private final ChatAdmissionService chatAdmissionService;
+    private final AiProperties aiProperties;
 
     @PostMapping(value = "/chat", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @Operation(summary = "聊天模型调用", description = "调用大模型进行聊天，默认使用流式响应")
     public SseEmitter chatCompletion(@AuthenticationPrincipal SecurityUser securityUser, @RequestBody ChatRequestDTO request) {
-        SseEmitter emitter = new SseEmitter(300000L);
-        aiService.streamChat(securityUser.getUserId(), request, emitter);
+        // 准入失败直接返回 429，不建立 SSE 连接
+        ChatAdmissionService.Permit permit = chatAdmissionService.admit(resolveTenantId(request.getAppId()));
+        SseEmitter emitter = new SseEmitter(aiProperties.getChatAdmission().getStreamTimeoutMs());
+        // 生成在客户端断开后继续进行（可断线重连），许可在生成结束时释放，而不是连接结束时
+        aiService.streamChat(securityUser.getUserId(), request, emitter, permit::release);
         return emitter;
     }
 
+    @GetMapping(value = "/chat/messages/{messageId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "流式输出断线重连", description = "按 Last-Event-ID（请求头或 lastEventId 参数）补发错过的片段，再继续接收实时输出；"
+            + "缓冲已过期时推送 expired 事件，客户端应改为读取消息")
+    public SseEmitter resumeChat(@AuthenticationPrincipal SecurityUser securityUser, @PathVariable Long messageId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        long lastEventId = parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+        SseEmitter emitter = new SseEmitter(aiProperties.getChatAdmission().getStreamTimeoutMs());
+        aiService.resumeStreamChat(securityUser.getUserId(), messageId, lastEventId, emitter);
+        return emitter;
+    }
+
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "响应式流式聊天", description = "返回 Flux<ServerSentEvent>，事件与 /chat 相同，等待模型输出期间不占用线程")
+    public Flux<ServerSentEvent<Object>> chatStream(@AuthenticationPrincipal SecurityUser securityUser,
+            @RequestBody ChatRequestDTO request) {
+        Long userId = securityUser.getUserId();
+        // 查询租户与准入排队都可能阻塞，订阅时在 boundedElastic 上执行，不占用请求线程；
+        // 准入或编排线程池拒绝（429）发生在第一个事件之前，由全局异常处理返回 429。
+        // 许可随流结束（完成、出错、客户端断开）释放
+        return Flux.using(() -> chatAdmissionService.admit(resolveTenantId(request.getAppId())),
+                permit -> aiService.reactiveStreamChat(userId, request),
+                ChatAdmissionService.Permit::release)
+                .subscribeOn(Schedulers.boundedElastic())
+                // Spring MVC 对流式返回值不设超时，与 SSE 接口一样按 stream-timeout-ms 结束连接
+                .take(Duration.ofMillis(aiProperties.getChatAdmission().getStreamTimeoutMs()));
+    }
+
     @PostMapping("/chat/sync")
     @Operation(summary = "非流式聊天模型调用", description = "调用大模型进行聊天，使用同步响应方式")
     public Result<ChatResponseDTO> chatCompletionSync(@AuthenticationPrincipal SecurityUser securityUser, @RequestBody ChatRequestDTO request)
@@ -61,13 +106,24 @@ public class ChatController {
         request.setStream(false);
 
         AppConfig appConfig = appConfigService.getByAppId(request.getAppId());
+        ChatAdmissionService.Permit permit = chatAdmissionService.admit(appConfig != null ? appConfig.getTenantId() : null);
+        try {
+            return syncChat(userId, request, appConfig);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private Result<ChatResponseDTO> syncChat(Long userId, ChatRequestDTO request, AppConfig appConfig) throws Exception {
         RagPromptResult ragPrompt = ragChatPromptService.build(request.getPrompt(), appConfig);
 
         Long conversationId = handleConversation(userId, request);
+        request.setConversationId(conversationId);
         Message message = messageService.createMessage(userId, request.getAppId(), conversationId, request.getPrompt());
 
         if (ragPrompt.getDirectResponse() != null) {
             messageService.updateMessageAnswer(message.getMessageId(), ragPrompt.getDirectResponse(), MessageStatus.COMPLETED);
+            conversationHistoryService.recordTurn(message, ragPrompt.getDirectResponse());
             ChatResponseDTO response = ChatResponseDTO.builder()
                     .content(ragPrompt.getDirectResponse())
                     .conversationId(conversationId)
@@ -82,12 +138,29 @@ public class ChatController {
         ChatResponseDTO response = aiService.chatCompletion(request);
 
         messageService.updateMessageAnswer(message.getMessageId(), response.getContent(), MessageStatus.COMPLETED);
+        conversationHistoryService.recordTurn(message, response.getContent());
 
         response.setConversationId(conversationId);
         response.setMessageId(message.getMessageId());
         return Result.success("请求成功。", response);
     }
 
+    private long parseEventId(String eventId) {
+        if (eventId == null || eventId.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Math.max(Long.parseLong(eventId.trim()), 0L);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private Long resolveTenantId(Long appId) {
+        AppConfig appConfig = appConfigService.getByAppId(appId);
+        return appConfig != null ? appConfig.getTenantId() : null;
+    }
+
     private void applyRagPrompt(ChatRequestDTO request, RagPromptResult ragPrompt) {
         request.setPrompt(ragPrompt.getUserPrompt());
         request.setSystemPrompt(ragPrompt.getSystemPrompt());
@@ -96,12 +169,13 @@ public class ChatController {
     private Long handleConversation(Long userId, ChatRequestDTO request) {
         if (request.getConversationId() != null) {
             Long conversationId = request.getConversationId();
-            var conversation = conversationService.getById(conversationId);
+            // 只沿用调用方自己的会话，否则新建会话，避免把他人的历史与摘要带入提示词
+            var conversation = conversationService.getOwnedConversation(conversationId, userId, request.getAppId());
             if (conversation != null) {
-                conversation.setUpdateTime(LocalDateTime.now());
-                conversationService.updateById(conversation);
+                conversationService.touch(conversationId);
                 return conversationId;
             }
+            log.warn("会话不存在或不属于当前用户，新建会话, userId: {}, conversationId: {}", userId, conversationId);
         }
 
         String title = request.getPrompt();
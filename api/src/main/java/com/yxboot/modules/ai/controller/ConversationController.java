@@ -15,6 +15,7 @@ import com.yxboot.common.api.Result;
 import com.yxboot.common.api.ResultCode;
 import com.yxboot.modules.ai.dto.ConversationDTO;
 import com.yxboot.modules.ai.entity.Conversation;
+import com.yxboot.modules.ai.service.ConversationHistoryService;
 import com.yxboot.modules.ai.service.ConversationService;
 import com.yxboot.modules.ai.service.MessageService;
 
@@ -37,6 +38,7 @@ public class ConversationController {
 
     private final ConversationService conversationService;
     private final MessageService messageService;
+    private final ConversationHistoryService conversationHistoryService;
 
     @GetMapping
     @Operation(summary = "获取会话列表", description = "获取用户的会话列表")
@@ -107,6 +109,7 @@ public class ConversationController {
 
         // 先删除会话下的所有消息
         messageService.deleteConversationMessages(conversationId);
+        conversationHistoryService.evict(conversationId);
 
         // 删除会话
         boolean removed = conversationService.removeById(conversationId);
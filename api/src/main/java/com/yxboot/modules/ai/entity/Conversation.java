@@ -34,6 +34,12 @@ public class Conversation {
     @Schema(description = "会话标题")
     private String title;
 
+    @Schema(description = "较早对话的滚动摘要")
+    private String summary;
+
+    @Schema(description = "摘要覆盖到的最后一条消息的创建时间")
+    private LocalDateTime summaryUntil;
+
     @Schema(description = "创建时间")
     private LocalDateTime createTime;
 
@@ -46,4 +46,7 @@ public class Message {
 
     @Schema(description = "创建时间")
     private LocalDateTime createTime;
+
+    @Schema(description = "最后写入回答的时间")
+    private LocalDateTime updateTime;
 }
@@ -1,5 +1,10 @@
 package com.yxboot.modules.ai.mapper;
 
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
 import com.mybatisflex.core.BaseMapper;
 import com.yxboot.modules.ai.entity.Message;
 
@@ -8,4 +13,39 @@ import com.yxboot.modules.ai.entity.Message;
  */
 public interface MessageMapper extends BaseMapper<Message> {
 
+    /**
+     * 批量写入回答与状态：多条消息合并为一条 UPDATE ... CASE 语句
+     */
+    @Update("""
+            <script>
+            UPDATE message
+            SET answer = CASE message_id
+                <foreach collection="messages" item="m">WHEN #{m.messageId} THEN #{m.answer} </foreach>
+                END,
+                status = CASE message_id
+                <foreach collection="messages" item="m">WHEN #{m.messageId} THEN #{m.status.value} </foreach>
+                END,
+                update_time = NOW()
+            WHERE message_id IN
+            <foreach collection="messages" item="m" open="(" separator="," close=")">#{m.messageId}</foreach>
+            </script>
+            """)
+    int updateAnswers(@Param("messages") List<Message> messages);
+
+    /**
+     * 批量写入生成中的部分回答，只更新状态仍为 status 的消息，不会覆盖已写入的最终回答；
+     * 同时刷新 update_time，作为生成仍在进行的心跳
+     */
+    @Update("""
+            <script>
+            UPDATE message
+            SET answer = CASE message_id
+                <foreach collection="messages" item="m">WHEN #{m.messageId} THEN #{m.answer} </foreach>
+                END,
+                update_time = NOW()
+            WHERE status = #{status} AND message_id IN
+            <foreach collection="messages" item="m" open="(" separator="," close=")">#{m.messageId}</foreach>
+            </script>
+            """)
+    int updatePartialAnswers(@Param("messages") List<Message> messages, @Param("status") String status);
 }
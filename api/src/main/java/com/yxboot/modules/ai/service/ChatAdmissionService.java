@@ -0,0 +1,168 @@
+package com.yxboot.modules.ai.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Service;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.common.exception.TooManyRequestsException;
+import com.yxboot.modules.account.service.TenantQuotaService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 对话准入控制：限制单节点与单租户同时进行的对话生成数。
+ * <p>
+ * 许可在建立 SSE 前获取、在生成结束（完成 / 出错 / 超时）时释放，覆盖整个生成过程而不只是编排线程占用的时间；
+ * 客户端断开后生成仍会继续（可断线重连），因此不随连接结束释放，断开重连不会绕过并发上限。
+ * 并发已满时在 queue-timeout-ms 内排队等待，超时或排队人数超过 max-queued 时立即拒绝（HTTP 429），
+ * 不再为注定等不到资源的请求建立长连接。租户上限取套餐配额 max-concurrent-chats，无租户的应用只受节点上限约束。
+ * <p>
+ * 排队在请求线程（Servlet 线程）上阻塞进行：租户与节点两级共用同一个截止时间，单次 admit 最多阻塞 queue-timeout-ms，
+ * 且不超过 {@link #MAX_QUEUE_TIMEOUT_MS}；同时阻塞的请求线程不超过 max-queued，其余请求立即拒绝，
+ * 因此准入排队最多占用 max-queued 个 Servlet 线程，应明显小于 server.tomcat.threads.max。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatAdmissionService {
+
+    /** 排队等待时间上限（毫秒），配置更大的 queue-timeout-ms 时按此值截断，避免长时间占用 Servlet 线程 */
+    static final long MAX_QUEUE_TIMEOUT_MS = 10_000L;
+
+    private final AiProperties aiProperties;
+    private final TenantQuotaService tenantQuotaService;
+
+    private final AtomicReference<LimitedPermit> nodePermit = new AtomicReference<>();
+    private final Map<Long, LimitedPermit> tenantPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * 申请一次对话生成的许可。并发已满时在调用线程上阻塞排队，最多 min(queue-timeout-ms, {@link #MAX_QUEUE_TIMEOUT_MS})
+     *
+     * @param tenantId 应用所属租户，可为空
+     * @return 许可，生成结束后必须调用 {@link Permit#release()}
+     * @throws TooManyRequestsException 节点或租户并发已满且排队超时
+     */
+    public Permit admit(Long tenantId) {
+        AiProperties.ChatAdmissionConfig cfg = aiProperties.getChatAdmission();
+        long queueTimeoutMs = Math.min(Math.max(orZero(cfg.getQueueTimeoutMs()), 0), MAX_QUEUE_TIMEOUT_MS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+
+        Semaphore tenant = tenantId != null ? tenantPermit(tenantId) : null;
+        if (tenant != null && !acquire(tenant, deadline, cfg)) {
+            log.warn("租户对话并发已满，拒绝请求, tenantId: {}", tenantId);
+            throw new TooManyRequestsException("当前租户同时进行的对话过多，请稍后重试", retryAfter(cfg));
+        }
+
+        Semaphore node = nodePermit(cfg);
+        if (!acquire(node, deadline, cfg)) {
+            if (tenant != null) {
+                tenant.release();
+            }
+            log.warn("节点对话并发已满，拒绝请求, tenantId: {}, queued: {}", tenantId, queued.get());
+            throw new TooManyRequestsException("当前对话请求过多，请稍后重试", retryAfter(cfg));
+        }
+        return new Permit(node, tenant);
+    }
+
+    /**
+     * 先尝试直接获取，失败时在截止时间前排队等待；排队人数已满时不等待
+     */
+    private boolean acquire(Semaphore semaphore, long deadline, AiProperties.ChatAdmissionConfig cfg) {
+        if (semaphore.tryAcquire()) {
+            return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        if (queued.incrementAndGet() > positive(cfg.getMaxQueued(), 1)) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return semaphore.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * 节点许可。排队等待按先来先得（公平信号量）。
+     */
+    private Semaphore nodePermit(AiProperties.ChatAdmissionConfig cfg) {
+        int limit = positive(cfg.getMaxConcurrentStreams(), 1);
+        return nodePermit.updateAndGet(
+                current -> current != null && current.limit == limit ? current : new LimitedPermit(limit))
+                .semaphore;
+    }
+
+    /**
+     * 租户许可。上限取租户套餐配额，套餐变更导致上限变化时换用新的信号量，旧信号量上的生成照常释放。
+     */
+    private Semaphore tenantPermit(Long tenantId) {
+        int limit = positive(tenantQuotaService.getQuota(tenantId).getMaxConcurrentChats(), 1);
+        return tenantPermits.compute(tenantId,
+                (key, current) -> current != null && current.limit == limit ? current : new LimitedPermit(limit))
+                .semaphore;
+    }
+
+    private int retryAfter(AiProperties.ChatAdmissionConfig cfg) {
+        return positive(cfg.getRetryAfterSeconds(), 1);
+    }
+
+    private int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    private long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * 一次对话生成占用的节点与租户许可，重复释放无副作用
+     */
+    public static final class Permit {
+        private final Semaphore node;
+        private final Semaphore tenant;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Semaphore node, Semaphore tenant) {
+            this.node = node;
+            this.tenant = tenant;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            node.release();
+            if (tenant != null) {
+                tenant.release();
+            }
+        }
+    }
+
+    private static final class LimitedPermit {
+        private final int limit;
+        private final Semaphore semaphore;
+
+        LimitedPermit(int limit) {
+            this.limit = limit;
+            this.semaphore = new Semaphore(limit, true);
+        }
+    }
+}
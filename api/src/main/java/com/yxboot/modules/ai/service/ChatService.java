@@ -1,16 +1,24 @@
 package com.yxboot.modules.ai.service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.reactivestreams.Subscription;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.zhipuai.ZhiPuAiChatOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -18,6 +26,8 @@ import com.yxboot.ai.config.AiProperties;
 import com.yxboot.ai.rag.RagPromptResult;
 import com.yxboot.ai.service.RagChatPromptService;
 import com.yxboot.ai.support.SpringAiMessageConverter;
+import com.yxboot.ai.support.StreamChunkCoalescer;
+import com.yxboot.common.exception.TooManyRequestsException;
 import com.yxboot.modules.ai.dto.ChatRequestDTO;
 import com.yxboot.modules.ai.dto.ChatResponseDTO;
 import com.yxboot.modules.ai.entity.Conversation;
@@ -28,7 +38,12 @@ import com.yxboot.modules.app.entity.AppConfig;
 import com.yxboot.modules.app.service.AppConfigService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * 模型调用服务（基于 Spring AI ChatModel）
@@ -39,11 +54,21 @@ import reactor.core.publisher.Flux;
 public class ChatService {
 
     private final MessageService messageService;
+    private final MessageJournal messageJournal;
+    private final ChatStreamRegistry chatStreamRegistry;
+    private final ConversationHistoryService conversationHistoryService;
+    private final SemanticAnswerCache semanticAnswerCache;
     private final ConversationService conversationService;
     private final AppConfigService appConfigService;
     private final RagChatPromptService ragChatPromptService;
     private final ChatModel chatModel;
     private final AiProperties aiProperties;
+    @Qualifier("chatTaskExecutor")
+    private final Executor chatTaskExecutor;
+
+    /** 模型停顿时按时间窗口把已合并的片段标记为到期，写出在 chatTaskExecutor 中进行 */
+    @Qualifier("taskScheduler")
+    private final TaskScheduler taskScheduler;
 
     public ChatResponseDTO chatCompletion(ChatRequestDTO request) throws IOException {
         AiProperties.ChatConfig chatConfig = aiProperties.getChat();
@@ -60,48 +85,297 @@ public class ChatService {
 
     /**
      * 异步编排流式聊天：先建立 SSE 连接，再按阶段推送 status 并流式输出。
+     * 生成阶段的片段带序号写入 {@link ChatStreamBuffer}，断线后可通过 {@link #resumeStreamChat} 补发并继续接收。
+     * 编排在 chatTaskExecutor 中执行（平台线程池或有界虚拟线程，见 AsyncConfig）。
+     * 必须在控制器返回 emitter 之前调用：线程池已满时抛出 {@link TooManyRequestsException}，由全局异常处理返回 429，
+     * 不会先建立 SSE 连接再以错误结束。
+     *
+     * @param onFinish 生成结束时回调（只调用一次）：未进入生成阶段时在编排结束时调用，否则在输出缓冲结束时调用，
+     *                 客户端断开不会提前触发；请求被拒绝时在抛出异常前调用
+     * @throws TooManyRequestsException chatTaskExecutor 已满
+     */
+    public void streamChat(Long userId, ChatRequestDTO request, SseEmitter emitter, Runnable onFinish) {
+        try {
+            CompletableFuture.runAsync(() -> orchestrateStreamChat(userId, request, emitter, onFinish),
+                    chatTaskExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("对话编排并发已满，拒绝请求, userId: {}, appId: {}", userId, request.getAppId());
+            onFinish.run();
+            throw new TooManyRequestsException("当前对话请求过多，请稍后重试", retryAfterSeconds());
+        }
+    }
+
+    private int retryAfterSeconds() {
+        Integer retryAfter = aiProperties.getChatAdmission().getRetryAfterSeconds();
+        return retryAfter != null && retryAfter > 0 ? retryAfter : 1;
+    }
+
+    /**
+     * 断线重连：补发 lastEventId 之后的片段并继续接收实时输出。
+     * 缓冲不存在（生成已结束超过保留时间、不在本节点或不属于该用户）或所需片段已被丢弃时，
+     * 推送 expired 事件后关闭，客户端应改为从消息接口读取回答。
+     */
+    public void resumeStreamChat(Long userId, Long messageId, long lastEventId, SseEmitter emitter) {
+        ChatStreamBuffer buffer = chatStreamRegistry.get(messageId, userId);
+        if (buffer != null && buffer.attach(emitter, lastEventId)) {
+            return;
+        }
+        log.info("流式输出缓冲不可用, messageId: {}, lastEventId: {}", messageId, lastEventId);
+        try {
+            emitter.send(SseEmitter.event().name("expired").data(Map.of("messageId", messageId)));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void orchestrateStreamChat(Long userId, ChatRequestDTO request, SseEmitter emitter, Runnable onFinish) {
+        boolean generating = false;
+        try {
+            sendStatus(emitter, ChatStreamPhase.UNDERSTANDING);
+
+            boolean standalone = isStandaloneQuestion(request);
+            Long conversationId = resolveConversation(userId, request);
+            request.setConversationId(conversationId);
+
+            Message message = messageService.createMessage(userId, request.getAppId(), conversationId, request.getPrompt());
+
+            sendMetadata(emitter, conversationId, message.getMessageId());
+
+            AppConfig appConfig = appConfigService.getByAppId(request.getAppId());
+            String cachedAnswer = standalone
+                    ? semanticAnswerCache.lookup(message.getMessageId(), appConfig, request.getPrompt())
+                    : null;
+            if (cachedAnswer != null) {
+                streamDirectResponse(emitter, message, cachedAnswer);
+                return;
+            }
+            if (ragChatPromptService.hasActiveDatasets(appConfig)) {
+                sendStatus(emitter, ChatStreamPhase.RETRIEVING);
+            }
+
+            RagPromptResult ragPrompt = ragChatPromptService.build(request.getPrompt(), appConfig);
+            skipAnswerCacheIfUngrounded(message.getMessageId(), ragPrompt);
+
+            if (ragPrompt.getDirectResponse() != null) {
+                streamDirectResponse(emitter, message, ragPrompt.getDirectResponse());
+                return;
+            }
+
+            applyRagPrompt(request, ragPrompt);
+            sendStatus(emitter, ChatStreamPhase.GENERATING);
+            ChatStreamBuffer buffer = chatStreamRegistry.open(message.getMessageId(), userId, onFinish);
+            generating = true;
+            buffer.attach(emitter, 0L);
+            streamingChatCompletion(request, buffer, message);
+        } catch (Exception e) {
+            log.error("流式聊天编排异常", e);
+            emitter.completeWithError(e);
+        } finally {
+            if (!generating) {
+                onFinish.run();
+            }
+        }
+    }
+
+    /**
+     * 响应式流式聊天：编排、检索、消息持久化与生成组合为一条 Flux，事件与 {@link #streamChat} 相同。
+     * <p>
+     * 等待模型输出期间不占用线程，事件按客户端写出进度逐个请求；会话 / 消息创建与知识库检索是阻塞调用，
+     * 在 chatTaskExecutor 上执行，回答经 {@link MessageJournal} 异步写回。客户端断开时取消模型调用，
+     * 已生成的部分回答以失败状态保存；断开或出错发生在检索、组装提示词阶段时同样把消息标记为失败，不会停留在处理中。
+     * <p>
+     * 会话 / 消息创建在返回 Flux 之前就提交到 chatTaskExecutor：线程池已满时直接抛出 {@link TooManyRequestsException}，
+     * 由全局异常处理返回 429，而不是在已响应 200 并推送 understanding 之后以错误结束。
+     *
+     * @throws TooManyRequestsException chatTaskExecutor 已满
      */
-    public void streamChat(Long userId, ChatRequestDTO request, SseEmitter emitter) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                sendStatus(emitter, ChatStreamPhase.UNDERSTANDING);
+    public Flux<ServerSentEvent<Object>> reactiveStreamChat(Long userId, ChatRequestDTO request) {
+        Scheduler blocking = Schedulers.fromExecutor(chatTaskExecutor);
+        CompletableFuture<StreamContext> started;
+        try {
+            started = CompletableFuture.supplyAsync(() -> startStream(userId, request), chatTaskExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("对话编排并发已满，拒绝请求, userId: {}, appId: {}", userId, request.getAppId());
+            throw new TooManyRequestsException("当前对话请求过多，请稍后重试", retryAfterSeconds());
+        }
+        return Flux.concat(
+                Mono.just(statusEvent(ChatStreamPhase.UNDERSTANDING)),
+                Mono.fromFuture(started, true)
+                        .flatMapMany(context -> Flux.concat(
+                                Mono.just(metadataEvent(context.conversationId, context.message.getMessageId())),
+                                context.retrieving ? Mono.just(statusEvent(ChatStreamPhase.RETRIEVING))
+                                        : Mono.<ServerSentEvent<Object>>empty(),
+                                Mono.fromCallable(() -> context.cachedAnswer != null
+                                        ? RagPromptResult.builder().directResponse(context.cachedAnswer).build()
+                                        : ragChatPromptService.build(request.getPrompt(), context.appConfig))
+                                        .subscribeOn(blocking)
+                                        .flatMapMany(ragPrompt -> respond(request, context, ragPrompt, blocking)))))
+                .doOnError(error -> {
+                    log.error("流式处理发生错误", error);
+                    // 消息创建之前出错时没有需要更新的消息
+                    started.thenAccept(context -> messageJournal.complete(context.message.getMessageId(),
+                            "处理失败: " + error.getMessage(), MessageStatus.FAILED));
+                })
+                .doOnCancel(() -> {
+                    // 客户端断开：可能发生在检索或组装提示词期间，消息创建完成后保存已生成的部分回答
+                    log.info("客户端已断开，停止生成, userId: {}, appId: {}", userId, request.getAppId());
+                    started.thenAccept(context -> messageJournal.complete(context.message.getMessageId(),
+                            context.answer.toString(), MessageStatus.FAILED));
+                });
+    }
+
+    private StreamContext startStream(Long userId, ChatRequestDTO request) {
+        boolean standalone = isStandaloneQuestion(request);
+        Long conversationId = resolveConversation(userId, request);
+        request.setConversationId(conversationId);
+        Message message = messageService.createMessage(userId, request.getAppId(), conversationId, request.getPrompt());
+        AppConfig appConfig = appConfigService.getByAppId(request.getAppId());
+        String cachedAnswer = standalone
+                ? semanticAnswerCache.lookup(message.getMessageId(), appConfig, request.getPrompt())
+                : null;
+        return new StreamContext(conversationId, message, appConfig, cachedAnswer,
+                cachedAnswer == null && ragChatPromptService.hasActiveDatasets(appConfig));
+    }
 
-                Long conversationId = resolveConversation(userId, request);
-                request.setConversationId(conversationId);
+    private Flux<ServerSentEvent<Object>> respond(ChatRequestDTO request, StreamContext context,
+            RagPromptResult ragPrompt, Scheduler blocking) {
+        Message message = context.message;
+        Long messageId = message.getMessageId();
+        skipAnswerCacheIfUngrounded(messageId, ragPrompt);
+        if (ragPrompt.getDirectResponse() != null) {
+            String content = ragPrompt.getDirectResponse();
+            completeAnswer(message, content);
+            return Flux.just(chunkEvent(content), endEvent());
+        }
 
-                Message message = messageService.createMessage(userId, request.getAppId(), conversationId, request.getPrompt());
+        applyRagPrompt(request, ragPrompt);
+        StringBuilder answer = context.answer;
+        MessageJournal.Checkpointer checkpointer = messageJournal.checkpointer(messageId);
+        // 组装提示词会读取会话历史（JDBC），在 blocking 上执行；订阅可能发生在写出 SSE 的请求线程上
+        // 保留仅含换行/空白的 chunk，Markdown 块级语法依赖行首换行符
+        Flux<String> chunks = Mono.fromCallable(() -> buildPrompt(request))
+                .subscribeOn(blocking)
+                .flatMapMany(prompt -> chatModel.stream(prompt))
+                .map(this::extractContent)
+                .filter(chunk -> !chunk.isEmpty())
+                .doOnNext(chunk -> {
+                    answer.append(chunk);
+                    checkpointer.onChunk(answer);
+                });
 
-                sendMetadata(emitter, conversationId, message.getMessageId());
+        return Flux.concat(
+                Mono.just(statusEvent(ChatStreamPhase.GENERATING)),
+                coalesce(chunks).map(this::chunkEvent),
+                Mono.fromRunnable(() -> completeAnswer(message, answer.toString()))
+                        .then(Mono.just(endEvent())));
+    }
 
-                AppConfig appConfig = appConfigService.getByAppId(request.getAppId());
-                if (ragChatPromptService.hasActiveDatasets(appConfig)) {
-                    sendStatus(emitter, ChatStreamPhase.RETRIEVING);
+    /**
+     * 按 chat-stream 配置合并片段，语义与 SSE 接口一致（见 {@link StreamChunkCoalescer}）
+     * <p>
+     * 上游按下游需求逐个请求片段：下游没有需求时暂停读取模型输出，由模型连接承担背压。
+     * 合并器的定时写出不受需求控制，上游暂停时最多积压一次写出，create 的缓冲因此有界。
+     */
+    private Flux<String> coalesce(Flux<String> chunks) {
+        AiProperties.ChatStreamConfig cfg = aiProperties.getChatStream();
+        if (!Boolean.TRUE.equals(cfg.getCoalesceEnabled())) {
+            return chunks;
+        }
+        long maxDelayMs = cfg.getCoalesceMaxDelayMs() != null ? cfg.getCoalesceMaxDelayMs() : 0L;
+        int maxBytes = cfg.getCoalesceMaxBytes() != null ? cfg.getCoalesceMaxBytes() : 1;
+        return Flux.create(sink -> {
+            StreamChunkCoalescer coalescer = new StreamChunkCoalescer(sink::next, maxDelayMs, maxBytes,
+                    taskScheduler, chatTaskExecutor);
+            AtomicBoolean awaiting = new AtomicBoolean();
+            BaseSubscriber<String> upstream = new BaseSubscriber<>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                    // 需求由 sink.onRequest 驱动
                 }
 
-                RagPromptResult ragPrompt = ragChatPromptService.build(request.getPrompt(), appConfig);
+                @Override
+                protected void hookOnNext(String chunk) {
+                    awaiting.set(false);
+                    try {
+                        coalescer.append(chunk);
+                    } catch (IOException e) {
+                        cancel();
+                        sink.error(e);
+                        return;
+                    }
+                    pull(sink, this, awaiting);
+                }
 
-                if (ragPrompt.getDirectResponse() != null) {
-                    streamDirectResponse(emitter, message.getMessageId(), ragPrompt.getDirectResponse());
-                    return;
+                @Override
+                protected void hookOnError(Throwable error) {
+                    coalescer.discard();
+                    sink.error(error);
                 }
 
-                applyRagPrompt(request, ragPrompt);
-                sendStatus(emitter, ChatStreamPhase.GENERATING);
-                streamingChatCompletion(request, emitter, message.getMessageId());
-            } catch (Exception e) {
-                log.error("流式聊天编排异常", e);
-                emitter.completeWithError(e);
-            }
-        });
+                @Override
+                protected void hookOnComplete() {
+                    try {
+                        coalescer.close();
+                        sink.complete();
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                }
+            };
+            chunks.subscribe(upstream);
+            sink.onRequest(n -> pull(sink, upstream, awaiting));
+            sink.onDispose(() -> {
+                upstream.dispose();
+                coalescer.discard();
+            });
+        }, FluxSink.OverflowStrategy.BUFFER);
     }
 
-    public void streamingChatCompletion(ChatRequestDTO request, SseEmitter emitter, Long messageId)
-            throws IOException {
+    /**
+     * 下游仍有需求且没有未完成的上游请求时向上游请求一个片段
+     */
+    private static void pull(FluxSink<String> sink, BaseSubscriber<String> upstream, AtomicBoolean awaiting) {
+        if (sink.requestedFromDownstream() > 0 && awaiting.compareAndSet(false, true)) {
+            upstream.request(1);
+        }
+    }
+
+    private ServerSentEvent<Object> statusEvent(ChatStreamPhase phase) {
+        return ServerSentEvent.builder().event("status").data(Map.of("phase", phase.getValue())).build();
+    }
+
+    private ServerSentEvent<Object> metadataEvent(Long conversationId, Long messageId) {
+        return ServerSentEvent.builder().event("metadata")
+                .data(Map.of("conversationId", conversationId, "messageId", messageId)).build();
+    }
+
+    private ServerSentEvent<Object> chunkEvent(String chunk) {
+        return ServerSentEvent.builder().data(Map.of("chunk", chunk)).build();
+    }
+
+    private ServerSentEvent<Object> endEvent() {
+        return ServerSentEvent.builder().event("end").data("").build();
+    }
+
+    /**
+     * 流式生成，片段写入输出缓冲（带序号，可断线重连），与连接是否断开无关。
+     * 生成时长以 stream-timeout-ms 为上限，超时按失败结束，保证输出缓冲（及其持有的准入许可）一定会结束
+     */
+    public void streamingChatCompletion(ChatRequestDTO request, ChatStreamBuffer buffer, Message message) {
+        Long messageId = message != null ? message.getMessageId() : null;
         try {
             Prompt prompt = buildPrompt(request);
             StringBuilder fullResponseBuilder = new StringBuilder();
+            MessageJournal.Checkpointer checkpointer = messageId != null ? messageJournal.checkpointer(messageId) : null;
+
+            StreamChunkCoalescer coalescer = newCoalescer(buffer);
 
+            Long streamTimeoutMs = aiProperties.getChatAdmission().getStreamTimeoutMs();
             Flux<ChatResponse> responseStream = chatModel.stream(prompt);
+            if (streamTimeoutMs != null && streamTimeoutMs > 0) {
+                responseStream = responseStream.timeout(Duration.ofMillis(streamTimeoutMs));
+            }
 
             responseStream
                     .doOnNext(response -> {
@@ -110,7 +384,14 @@ public class ChatService {
                             fullResponseBuilder.append(chunk);
                             // 保留仅含换行/空白的 chunk，Markdown 块级语法依赖行首换行符
                             if (chunk != null && !chunk.isEmpty()) {
-                                emitter.send(SseEmitter.event().data(Map.of("chunk", chunk)));
+                                if (checkpointer != null) {
+                                    checkpointer.onChunk(fullResponseBuilder);
+                                }
+                                if (coalescer != null) {
+                                    coalescer.append(chunk);
+                                } else {
+                                    buffer.publish(chunk);
+                                }
                             }
                         } catch (IOException e) {
                             log.error("发送流式数据异常", e);
@@ -118,28 +399,29 @@ public class ChatService {
                     })
                     .doOnComplete(() -> {
                         try {
-                            if (messageId != null) {
-                                messageService.updateMessageAnswer(
-                                        messageId,
-                                        fullResponseBuilder.toString(),
-                                        MessageStatus.COMPLETED);
+                            if (message != null) {
+                                completeAnswer(message, fullResponseBuilder.toString());
+                            }
+                            if (coalescer != null) {
+                                coalescer.close();
                             }
-                            emitter.send(SseEmitter.event().name("end").data(""));
-                            emitter.complete();
                         } catch (Exception e) {
                             log.error("关闭SSE发射器或更新消息状态异常", e);
+                        } finally {
+                            buffer.complete();
                         }
                     })
                     .doOnError(error -> {
                         try {
+                            if (coalescer != null) {
+                                coalescer.discard();
+                            }
                             if (messageId != null) {
-                                messageService.updateMessageAnswer(
-                                        messageId,
-                                        "处理失败: " + error.getMessage(),
+                                messageJournal.complete(messageId, "处理失败: " + error.getMessage(),
                                         MessageStatus.FAILED);
                             }
                             log.error("流式处理发生错误", error);
-                            emitter.completeWithError(error);
+                            buffer.fail(error);
                         } catch (Exception e) {
                             log.error("关闭SSE发射器异常", e);
                         }
@@ -148,22 +430,63 @@ public class ChatService {
         } catch (Exception e) {
             log.error("流式聊天请求处理异常", e);
             if (messageId != null) {
-                messageService.updateMessageAnswer(
-                        messageId,
-                        "处理失败: " + e.getMessage(),
-                        MessageStatus.FAILED);
+                messageJournal.complete(messageId, "处理失败: " + e.getMessage(), MessageStatus.FAILED);
             }
-            emitter.completeWithError(e);
+            buffer.fail(e);
         }
     }
 
-    private void streamDirectResponse(SseEmitter emitter, Long messageId, String content) throws IOException {
-        messageService.updateMessageAnswer(messageId, content, MessageStatus.COMPLETED);
-        emitter.send(SseEmitter.event().data(Map.of("chunk", content)));
+    /**
+     * 未开启合并时返回 null，逐片段推送
+     */
+    private StreamChunkCoalescer newCoalescer(ChatStreamBuffer buffer) {
+        AiProperties.ChatStreamConfig cfg = aiProperties.getChatStream();
+        if (!Boolean.TRUE.equals(cfg.getCoalesceEnabled())) {
+            return null;
+        }
+        long maxDelayMs = cfg.getCoalesceMaxDelayMs() != null ? cfg.getCoalesceMaxDelayMs() : 0L;
+        int maxBytes = cfg.getCoalesceMaxBytes() != null ? cfg.getCoalesceMaxBytes() : 1;
+        return new StreamChunkCoalescer(buffer::publish, maxDelayMs, maxBytes, taskScheduler,
+                chatTaskExecutor);
+    }
+
+    private void sendChunk(SseEmitter emitter, String chunk) throws IOException {
+        emitter.send(SseEmitter.event().data(Map.of("chunk", chunk)));
+    }
+
+    private void streamDirectResponse(SseEmitter emitter, Message message, String content) throws IOException {
+        completeAnswer(message, content);
+        sendChunk(emitter, content);
         emitter.send(SseEmitter.event().name("end").data(""));
         emitter.complete();
     }
 
+    /**
+     * 登记最终回答，追加到会话的历史窗口，并写入语义回答缓存（查找未命中时）
+     */
+    private void completeAnswer(Message message, String answer) {
+        messageJournal.complete(message.getMessageId(), answer, MessageStatus.COMPLETED);
+        conversationHistoryService.recordTurn(message, answer);
+        semanticAnswerCache.complete(message.getMessageId(), answer);
+    }
+
+    /**
+     * 新会话且未携带历史的问题才使用语义回答缓存，追问的含义依赖上文
+     */
+    private boolean isStandaloneQuestion(ChatRequestDTO request) {
+        return request.getConversationId() == null
+                && (request.getMessages() == null || request.getMessages().isEmpty());
+    }
+
+    /**
+     * 固定回复与未检索到参考内容时生成的回答不写入语义回答缓存
+     */
+    private void skipAnswerCacheIfUngrounded(Long messageId, RagPromptResult ragPrompt) {
+        if (ragPrompt.getDirectResponse() != null || (ragPrompt.isRagMode() && !ragPrompt.isHasRetrievedContext())) {
+            semanticAnswerCache.discard(messageId);
+        }
+    }
+
     private void sendStatus(SseEmitter emitter, ChatStreamPhase phase) throws IOException {
         emitter.send(SseEmitter.event().name("status").data(Map.of("phase", phase.getValue())));
     }
@@ -182,12 +505,13 @@ public class ChatService {
     private Long resolveConversation(Long userId, ChatRequestDTO request) {
         if (request.getConversationId() != null) {
             Long conversationId = request.getConversationId();
-            Conversation conversation = conversationService.getById(conversationId);
+            // 只沿用调用方自己的会话，否则新建会话，避免把他人的历史与摘要带入提示词
+            Conversation conversation = conversationService.getOwnedConversation(conversationId, userId, request.getAppId());
             if (conversation != null) {
-                conversation.setUpdateTime(LocalDateTime.now());
-                conversationService.updateById(conversation);
+                conversationService.touch(conversationId);
                 return conversationId;
             }
+            log.warn("会话不存在或不属于当前用户，新建会话, userId: {}, conversationId: {}", userId, conversationId);
         }
 
         String title = request.getPrompt();
@@ -201,11 +525,19 @@ public class ChatService {
 
     private Prompt buildPrompt(ChatRequestDTO request) {
         List<org.springframework.ai.chat.messages.Message> messages = new ArrayList<>();
-        if (request.getMessages() != null && !request.getMessages().isEmpty()) {
-            messages.addAll(SpringAiMessageConverter.toSpringAiMessages(request.getMessages()));
+        ConversationHistoryService.AssembledHistory history = conversationHistoryService.assemble(
+                request.getConversationId(), request.getMessages(), request.getSystemPrompt(), request.getPrompt());
+        if (!history.getMessages().isEmpty()) {
+            messages.addAll(SpringAiMessageConverter.toSpringAiMessages(history.getMessages()));
+        }
+        String systemPrompt = request.getSystemPrompt();
+        if (history.getSummary() != null) {
+            // 较早对话的摘要并入系统提示词，部分模型只接受开头的一条系统消息
+            systemPrompt = (StringUtils.hasText(systemPrompt) ? systemPrompt + "\n\n" : "")
+                    + "以下是本次会话较早内容的摘要：\n" + history.getSummary();
         }
-        if (StringUtils.hasText(request.getSystemPrompt())) {
-            messages.add(0, new org.springframework.ai.chat.messages.SystemMessage(request.getSystemPrompt()));
+        if (StringUtils.hasText(systemPrompt)) {
+            messages.add(0, new org.springframework.ai.chat.messages.SystemMessage(systemPrompt));
         }
         messages.add(new UserMessage(request.getPrompt()));
 
@@ -247,4 +579,27 @@ public class ChatService {
                 .totalTokens(totalTokens)
                 .build();
     }
+
+    /**
+     * 响应式聊天在检索前准备好的会话、消息与应用配置
+     */
+    private static final class StreamContext {
+        private final Long conversationId;
+        private final Message message;
+        private final AppConfig appConfig;
+        /** 语义回答缓存命中时的回答，命中后跳过检索与生成 */
+        private final String cachedAnswer;
+        private final boolean retrieving;
+        /** 已生成的回答，客户端断开时保存已生成的部分 */
+        private final StringBuilder answer = new StringBuilder();
+
+        StreamContext(Long conversationId, Message message, AppConfig appConfig, String cachedAnswer,
+                boolean retrieving) {
+            this.conversationId = conversationId;
+            this.message = message;
+            this.appConfig = appConfig;
+            this.cachedAnswer = cachedAnswer;
+            this.retrieving = retrieving;
+        }
+    }
 }
@@ -0,0 +1,270 @@
+package com.yxboot.modules.ai.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单条消息的流式输出缓冲：按序号保留最近 capacity 个片段，并把新片段推送给所有连接。
+ * <p>
+ * 片段事件的 id 为从 1 开始的序号。客户端断线后以 Last-Event-ID 重新连接，补发序号更大的片段后继续接收实时输出；
+ * 生成不依赖连接，断线期间照常进行。连接写出失败时直接移除，不影响生成与其他连接。
+ * <p>
+ * 写出不在生成线程中进行：{@link #publish} 只在锁内追加片段，各连接按自己的进度在 writer 线程中写出（每个连接同时最多一个写出任务），
+ * 写出时不持有锁，慢连接不会拖住生成与其他连接。连接落后到所需片段已被丢弃时关闭该连接，客户端按 Last-Event-ID 重连。
+ */
+@Slf4j
+public final class ChatStreamBuffer {
+
+    private final Long messageId;
+    private final Long userId;
+    private final int capacity;
+    private final Executor writer;
+    private final Consumer<ChatStreamBuffer> onTerminate;
+
+    private final ArrayDeque<String> chunks;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    /** 最后一个片段的序号 */
+    private long lastSeq;
+    private boolean finished;
+    private Throwable failure;
+
+    ChatStreamBuffer(Long messageId, Long userId, int capacity, Executor writer,
+            Consumer<ChatStreamBuffer> onTerminate) {
+        this.messageId = messageId;
+        this.userId = userId;
+        this.capacity = Math.max(capacity, 1);
+        this.writer = writer;
+        this.onTerminate = onTerminate;
+        this.chunks = new ArrayDeque<>(Math.min(this.capacity, 256));
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * 追加一个片段并通知所有连接写出，不等待写出完成
+     */
+    public void publish(String chunk) {
+        List<Subscriber> ready;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            if (chunks.size() == capacity) {
+                chunks.pollFirst();
+            }
+            chunks.addLast(chunk);
+            lastSeq++;
+            ready = claimIdleSubscribers();
+        }
+        ready.forEach(this::scheduleDrain);
+    }
+
+    /**
+     * 连接到缓冲：补发序号大于 lastEventId 的片段，生成未结束时继续接收实时输出，已结束时发送结束事件
+     *
+     * @param lastEventId 客户端收到的最后一个片段序号，新连接为 0
+     * @return 需要补发的片段已被丢弃时返回 false，连接不做任何处理
+     */
+    public boolean attach(SseEmitter emitter, long lastEventId) {
+        Subscriber subscriber;
+        synchronized (this) {
+            if (lastEventId + 1 < firstSeq()) {
+                return false;
+            }
+            subscriber = new Subscriber(emitter, Math.min(Math.max(lastEventId, 0L), lastSeq) + 1);
+            subscriber.draining = true;
+            subscribers.add(subscriber);
+        }
+        scheduleDrain(subscriber);
+        return true;
+    }
+
+    /**
+     * 生成完成：各连接写完剩余片段后发送结束事件并关闭
+     */
+    public void complete() {
+        finish(null);
+    }
+
+    /**
+     * 生成失败：各连接写完剩余片段后以错误关闭
+     */
+    public void fail(Throwable error) {
+        finish(error);
+    }
+
+    private void finish(Throwable error) {
+        List<Subscriber> ready;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            failure = error;
+            ready = claimIdleSubscribers();
+        }
+        ready.forEach(this::scheduleDrain);
+        onTerminate.accept(this);
+    }
+
+    /**
+     * 标记空闲连接开始写出，正在写出的连接会在本轮结束前读到新片段（调用方持有锁）
+     */
+    private List<Subscriber> claimIdleSubscribers() {
+        List<Subscriber> ready = new ArrayList<>();
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.draining) {
+                subscriber.draining = true;
+                ready.add(subscriber);
+            }
+        }
+        return ready;
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        try {
+            writer.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            log.warn("流式输出写出线程已满，关闭连接, messageId: {}", messageId);
+            remove(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    /**
+     * 写出该连接落后的片段，直到追上最新片段；生成已结束时发送结束事件并移除连接
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            List<String> pending;
+            long fromSeq;
+            boolean terminal;
+            synchronized (this) {
+                if (subscriber.nextSeq < firstSeq()) {
+                    subscribers.remove(subscriber);
+                    pending = null;
+                    fromSeq = subscriber.nextSeq;
+                    terminal = true;
+                } else {
+                    fromSeq = subscriber.nextSeq;
+                    pending = pendingChunks(fromSeq);
+                    terminal = pending.isEmpty() && finished;
+                    if (pending.isEmpty() && !finished) {
+                        subscriber.draining = false;
+                        return;
+                    }
+                    if (terminal) {
+                        subscribers.remove(subscriber);
+                    }
+                }
+            }
+
+            if (pending == null) {
+                // 连接太慢，所需片段已被丢弃：关闭连接，客户端重连时会收到 expired
+                log.info("连接落后于输出缓冲，关闭连接, messageId: {}, nextSeq: {}", messageId, fromSeq);
+                subscriber.emitter.complete();
+                return;
+            }
+            if (terminal) {
+                terminate(subscriber.emitter);
+                return;
+            }
+            long seq = fromSeq;
+            for (String chunk : pending) {
+                if (!send(subscriber.emitter, chunkEvent(seq++, chunk))) {
+                    remove(subscriber);
+                    return;
+                }
+            }
+            subscriber.nextSeq = seq;
+        }
+    }
+
+    /**
+     * 序号不小于 fromSeq 的片段（调用方持有锁）
+     */
+    private List<String> pendingChunks(long fromSeq) {
+        if (fromSeq > lastSeq) {
+            return List.of();
+        }
+        List<String> pending = new ArrayList<>((int) (lastSeq - fromSeq + 1));
+        Iterator<String> it = chunks.iterator();
+        for (long seq = firstSeq(); it.hasNext(); seq++) {
+            String chunk = it.next();
+            if (seq >= fromSeq) {
+                pending.add(chunk);
+            }
+        }
+        return pending;
+    }
+
+    private long firstSeq() {
+        return lastSeq - chunks.size() + 1;
+    }
+
+    private synchronized void remove(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private void terminate(SseEmitter emitter) {
+        Throwable error;
+        synchronized (this) {
+            error = failure;
+        }
+        if (error != null) {
+            emitter.completeWithError(error);
+            return;
+        }
+        if (send(emitter, SseEmitter.event().name("end").data(""))) {
+            emitter.complete();
+        }
+    }
+
+    private boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 连接已断开或已关闭，等待客户端重连
+            log.debug("推送流式片段失败, messageId: {}, {}", messageId, e.getMessage());
+            return false;
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder chunkEvent(long seq, String chunk) {
+        return SseEmitter.event().id(String.valueOf(seq)).data(Map.of("chunk", chunk));
+    }
+
+    /**
+     * 一个连接及其写出进度
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        /** 下一个要写出的片段序号（只在持有该连接写出权的线程中修改） */
+        private volatile long nextSeq;
+        /** 是否已有写出任务（持有缓冲锁时读写） */
+        private boolean draining;
+
+        Subscriber(SseEmitter emitter, long nextSeq) {
+            this.emitter = emitter;
+            this.nextSeq = nextSeq;
+        }
+    }
+}
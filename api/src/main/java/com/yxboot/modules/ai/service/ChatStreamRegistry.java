@@ -0,0 +1,93 @@
+package com.yxboot.modules.ai.service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.yxboot.ai.config.AiProperties;
+
+/**
+ * 进行中的流式输出登记表（单节点内存），用于断线重连。
+ * <p>
+ * 生成结束后缓冲再保留 replay-retention-seconds 秒；生成一直未结束的缓冲在连接超时后同样移除，避免泄漏。
+ * 缓冲只存在于执行生成的节点，多节点部署时重连请求需路由到同一节点（按 messageId 会话保持），
+ * 找不到缓冲时客户端应从消息接口读取已保存的回答。
+ * <p>
+ * 各连接的 SSE 写出在 chatStreamWriterExecutor 中进行（见 {@link ChatStreamBuffer}），生成线程只追加片段；
+ * 写出队列有上限，队列满时关闭新到的连接。
+ *
+ * @author Boya
+ */
+@Service
+public class ChatStreamRegistry {
+
+    private final AiProperties aiProperties;
+
+    private final Map<Long, ChatStreamBuffer> streams = new ConcurrentHashMap<>();
+    private final Executor writerExecutor;
+    private final TaskScheduler taskScheduler;
+
+    public ChatStreamRegistry(AiProperties aiProperties,
+            @Qualifier("chatStreamWriterExecutor") Executor writerExecutor,
+            @Qualifier("taskScheduler") TaskScheduler taskScheduler) {
+        this.aiProperties = aiProperties;
+        this.writerExecutor = writerExecutor;
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * 为消息创建输出缓冲
+     *
+     * @param onFinish 生成结束（完成或失败）时回调，用于释放对话准入许可；与连接是否断开无关
+     */
+    public ChatStreamBuffer open(Long messageId, Long userId, Runnable onFinish) {
+        AiProperties.ChatStreamConfig cfg = aiProperties.getChatStream();
+        int capacity = cfg.getReplayBufferSize() != null ? cfg.getReplayBufferSize() : 1;
+        ChatStreamBuffer buffer = new ChatStreamBuffer(messageId, userId, capacity, writerExecutor, finished -> {
+            try {
+                onFinish.run();
+            } finally {
+                scheduleRemoval(finished, retentionSeconds());
+            }
+        });
+        streams.put(messageId, buffer);
+
+        Long streamTimeoutMs = aiProperties.getChatAdmission().getStreamTimeoutMs();
+        long maxLifetime = TimeUnit.MILLISECONDS.toSeconds(streamTimeoutMs != null ? streamTimeoutMs : 0L)
+                + retentionSeconds();
+        scheduleRemoval(buffer, maxLifetime);
+        return buffer;
+    }
+
+    /**
+     * 用户的消息输出缓冲，不存在、已过期或不属于该用户时返回 null
+     */
+    public ChatStreamBuffer get(Long messageId, Long userId) {
+        ChatStreamBuffer buffer = streams.get(messageId);
+        if (buffer == null || userId == null || !userId.equals(buffer.getUserId())) {
+            return null;
+        }
+        return buffer;
+    }
+
+    private void scheduleRemoval(ChatStreamBuffer buffer, long delaySeconds) {
+        try {
+            taskScheduler.schedule(() -> streams.remove(buffer.getMessageId(), buffer),
+                    Instant.now().plusSeconds(delaySeconds));
+        } catch (RejectedExecutionException e) {
+            streams.remove(buffer.getMessageId(), buffer);
+        }
+    }
+
+    private long retentionSeconds() {
+        Integer seconds = aiProperties.getChatStream().getReplayRetentionSeconds();
+        return seconds != null && seconds > 0 ? seconds : 0L;
+    }
+}
@@ -0,0 +1,404 @@
+package com.yxboot.modules.ai.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.ai.dto.ChatMessageDTO;
+import com.yxboot.modules.ai.entity.Conversation;
+import com.yxboot.modules.ai.entity.Message;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务端历史对话组装
+ * <p>
+ * 按 conversationId 读取最近 max-turns 轮已完成的问答，用本地分词器估算 token，
+ * 在 context-token-budget 内从最新的一轮向前保留（系统提示词含检索内容与本轮问题优先），放不下的最早几轮被丢弃。
+ * 每个会话的最近窗口缓存在内存中，本轮完成后直接追加，下一轮无需重新读取整段历史；
+ * 缓存过期或被淘汰后从数据库重新读取（只取摘要之后的最近 max-turns 条）。
+ * <p>
+ * 未摘要的历史超过 summary-trigger-tokens 或超过 max-turns 轮时，在 conversationSummaryExecutor 中把最近 summary-keep-turns 轮之前的问答
+ * 并入会话摘要，之后的提示词使用摘要 + 最近几轮。摘要只在本轮完成后或窗口加载后提交，组装提示词时不等待摘要，不影响首字延迟。
+ * 开启摘要时窗口最多暂存 2 × max-turns 轮，超出 max-turns 的较早轮次只供摘要使用、不带入提示词，
+ * 并入摘要后才移出窗口，避免还没摘要就被挤出窗口而永远不会进入摘要。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationHistoryService {
+
+    private static final String ROLE_USER = "user";
+    private static final String ROLE_ASSISTANT = "assistant";
+
+    private final MessageService messageService;
+    private final ConversationService conversationService;
+    private final ConversationSummarizer conversationSummarizer;
+    private final AiProperties aiProperties;
+    @Qualifier("conversationSummaryExecutor")
+    private final Executor conversationSummaryExecutor;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    /** 按访问顺序排列，超出上限时淘汰最久未使用的会话 */
+    private final Map<Long, HistoryWindow> windows = new LinkedHashMap<>(16, 0.75f, true);
+    /** 正在生成摘要的会话，同一会话同时只有一个摘要任务 */
+    private final Set<Long> summarizing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 组装本轮的历史：客户端携带 messages 时沿用客户端的历史，否则按会话读取服务端的摘要与最近几轮；
+     * 两者都按 token 预算从最早的消息开始裁剪
+     *
+     * @param systemPrompt 系统提示词（含检索内容）
+     * @param userPrompt   本轮发送给模型的问题
+     */
+    public AssembledHistory assemble(Long conversationId, List<ChatMessageDTO> clientMessages,
+            String systemPrompt, String userPrompt) {
+        AiProperties.ChatHistoryConfig cfg = aiProperties.getChatHistory();
+        boolean hasClientMessages = clientMessages != null && !clientMessages.isEmpty();
+        if (!Boolean.TRUE.equals(cfg.getEnabled())) {
+            return new AssembledHistory(null, hasClientMessages ? clientMessages : Collections.emptyList());
+        }
+
+        int budget = cfg.getContextTokenBudget() != null ? cfg.getContextTokenBudget() : 0;
+        int remaining = budget - estimate(systemPrompt) - estimate(userPrompt);
+        if (hasClientMessages) {
+            return new AssembledHistory(null, trimClientMessages(clientMessages, remaining));
+        }
+        if (conversationId == null || maxTurns() == 0) {
+            return new AssembledHistory(null, Collections.emptyList());
+        }
+
+        WindowState state = window(conversationId).state();
+        String summary = null;
+        if (state.summary != null && state.summaryTokens <= remaining) {
+            summary = state.summary;
+            remaining -= state.summaryTokens;
+        }
+
+        List<ChatMessageDTO> history = new ArrayList<>();
+        int kept = 0;
+        // 窗口中等待摘要的较早轮次不带入提示词
+        int first = Math.max(state.turns.size() - maxTurns(), 0);
+        // 从最新的一轮向前保留，问答成对丢弃
+        for (int i = state.turns.size() - 1; i >= first; i--) {
+            Turn turn = state.turns.get(i);
+            if (turn.tokens > remaining) {
+                break;
+            }
+            remaining -= turn.tokens;
+            history.add(0, message(ROLE_ASSISTANT, turn.answer));
+            history.add(0, message(ROLE_USER, turn.question));
+            kept++;
+        }
+        if (kept < state.turns.size() - first) {
+            log.debug("历史对话超出 token 预算, conversationId: {}, 保留 {}/{} 轮", conversationId, kept,
+                    state.turns.size() - first);
+        }
+        return new AssembledHistory(summary, history);
+    }
+
+    /**
+     * 本轮已完成：追加到已缓存的会话窗口，历史过长时提交后台摘要。未缓存时不处理，下一轮从数据库读取
+     *
+     * @param message 本轮消息（question 为用户原始问题，不含检索内容）
+     */
+    public void recordTurn(Message message, String answer) {
+        Long conversationId = message.getConversationId();
+        if (conversationId == null || !Boolean.TRUE.equals(aiProperties.getChatHistory().getEnabled())) {
+            return;
+        }
+        HistoryWindow window = cachedWindow(conversationId);
+        if (window != null) {
+            window.add(newTurn(message.getMessageId(), message.getQuestion(), answer, message.getCreateTime()),
+                    windowCapacity());
+            maybeSummarize(conversationId, window);
+        }
+    }
+
+    /**
+     * 会话消息被删除时移除缓存的窗口
+     */
+    public void evict(Long conversationId) {
+        synchronized (windows) {
+            windows.remove(conversationId);
+        }
+    }
+
+    private HistoryWindow cachedWindow(Long conversationId) {
+        synchronized (windows) {
+            return windows.get(conversationId);
+        }
+    }
+
+    private HistoryWindow window(Long conversationId) {
+        long now = System.nanoTime();
+        synchronized (windows) {
+            HistoryWindow cached = windows.get(conversationId);
+            if (cached != null && !cached.isExpired(now, ttlNanos())) {
+                return cached;
+            }
+        }
+
+        // 读库不持有锁，同一会话并发加载时以后放入的为准
+        int capacity = windowCapacity();
+        HistoryWindow loaded = new HistoryWindow(now);
+        Conversation conversation = conversationService.getById(conversationId);
+        LocalDateTime summaryUntil = null;
+        if (conversation != null && StringUtils.hasText(conversation.getSummary())) {
+            summaryUntil = conversation.getSummaryUntil();
+            loaded.applySummary(conversation.getSummary(), estimate(conversation.getSummary()), summaryUntil,
+                    Collections.emptySet());
+        }
+        for (Message message : messageService.listRecentCompletedMessages(conversationId, summaryUntil, capacity)) {
+            loaded.add(newTurn(message.getMessageId(), message.getQuestion(), message.getAnswer(),
+                    message.getCreateTime()), capacity);
+        }
+        synchronized (windows) {
+            windows.put(conversationId, loaded);
+            Integer maxConversations = aiProperties.getChatHistory().getCacheMaxConversations();
+            Iterator<Long> eldest = windows.keySet().iterator();
+            while (windows.size() > Math.max(maxConversations != null ? maxConversations : 0, 1)) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        maybeSummarize(conversationId, loaded);
+        return loaded;
+    }
+
+    /**
+     * 未摘要的历史超过 token 阈值或超过 max-turns 轮时提交后台摘要；摘要执行器已满时跳过，下一轮再提交
+     */
+    private void maybeSummarize(Long conversationId, HistoryWindow window) {
+        AiProperties.ChatHistoryConfig cfg = aiProperties.getChatHistory();
+        if (!Boolean.TRUE.equals(cfg.getSummaryEnabled())) {
+            return;
+        }
+        int keepTurns = cfg.getSummaryKeepTurns() != null ? Math.max(cfg.getSummaryKeepTurns(), 0) : 0;
+        int triggerTokens = cfg.getSummaryTriggerTokens() != null ? cfg.getSummaryTriggerTokens() : Integer.MAX_VALUE;
+        WindowState state = window.state();
+        if (state.turns.size() <= keepTurns
+                || (state.turns.size() <= maxTurns() && state.turnTokens() <= triggerTokens)) {
+            return;
+        }
+        List<Turn> older = state.turns.subList(0, state.turns.size() - keepTurns);
+        if (older.get(older.size() - 1).createTime == null || !summarizing.add(conversationId)) {
+            return;
+        }
+        try {
+            conversationSummaryExecutor.execute(() -> {
+                try {
+                    summarize(conversationId, state.summary, older);
+                } finally {
+                    summarizing.remove(conversationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(conversationId);
+            log.debug("摘要执行器已满，跳过本次摘要, conversationId: {}", conversationId);
+        }
+    }
+
+    private void summarize(Long conversationId, String previousSummary, List<Turn> older) {
+        List<ChatMessageDTO> messages = new ArrayList<>(older.size() * 2);
+        Set<Long> summarizedIds = new HashSet<>();
+        for (Turn turn : older) {
+            messages.add(message(ROLE_USER, turn.question));
+            messages.add(message(ROLE_ASSISTANT, turn.answer));
+            summarizedIds.add(turn.messageId);
+        }
+        LocalDateTime summaryUntil = older.get(older.size() - 1).createTime;
+        try {
+            String summary = conversationSummarizer.summarize(previousSummary, messages);
+            if (!StringUtils.hasText(summary)) {
+                return;
+            }
+            conversationService.updateSummary(conversationId, summary, summaryUntil);
+            HistoryWindow window = cachedWindow(conversationId);
+            if (window != null) {
+                window.applySummary(summary, estimate(summary), summaryUntil, summarizedIds);
+            }
+            log.info("会话摘要已更新, conversationId: {}, 并入 {} 轮", conversationId, older.size());
+        } catch (Exception e) {
+            log.warn("生成会话摘要失败, conversationId: {}", conversationId, e);
+        }
+    }
+
+    private List<ChatMessageDTO> trimClientMessages(List<ChatMessageDTO> messages, int remaining) {
+        int from = messages.size();
+        while (from > 0) {
+            int tokens = estimate(messages.get(from - 1).getContent());
+            if (tokens > remaining) {
+                break;
+            }
+            remaining -= tokens;
+            from--;
+        }
+        if (from > 0) {
+            log.debug("客户端历史超出 token 预算，丢弃最早的 {} 条消息", from);
+        }
+        return messages.subList(from, messages.size());
+    }
+
+    private Turn newTurn(Long messageId, String question, String answer, LocalDateTime createTime) {
+        String q = question != null ? question : "";
+        String a = answer != null ? answer : "";
+        return new Turn(messageId, q, a, createTime, estimate(q) + estimate(a));
+    }
+
+    private static ChatMessageDTO message(String role, String content) {
+        ChatMessageDTO message = new ChatMessageDTO();
+        message.setRole(role);
+        message.setContent(content);
+        return message;
+    }
+
+    private int estimate(String text) {
+        return StringUtils.hasLength(text) ? tokenCountEstimator.estimate(text) : 0;
+    }
+
+    private int maxTurns() {
+        Integer maxTurns = aiProperties.getChatHistory().getMaxTurns();
+        return maxTurns != null ? Math.max(maxTurns, 0) : 0;
+    }
+
+    /**
+     * 窗口最多暂存的轮数：开启摘要时额外暂存 max-turns 轮等待并入摘要
+     */
+    private int windowCapacity() {
+        int maxTurns = maxTurns();
+        return Boolean.TRUE.equals(aiProperties.getChatHistory().getSummaryEnabled()) ? maxTurns * 2 : maxTurns;
+    }
+
+    private long ttlNanos() {
+        Integer seconds = aiProperties.getChatHistory().getCacheTtlSeconds();
+        return TimeUnit.SECONDS.toNanos(seconds != null ? Math.max(seconds, 0) : 0);
+    }
+
+    /**
+     * 组装结果：会话摘要（没有或超出预算时为 null）与按时间正序的历史消息
+     */
+    public static final class AssembledHistory {
+        private final String summary;
+        private final List<ChatMessageDTO> messages;
+
+        AssembledHistory(String summary, List<ChatMessageDTO> messages) {
+            this.summary = summary;
+            this.messages = messages;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public List<ChatMessageDTO> getMessages() {
+            return messages;
+        }
+    }
+
+    /**
+     * 单个会话的摘要，以及摘要之后尚未并入摘要的最近几轮问答（按时间正序）
+     */
+    private static final class HistoryWindow {
+        private final long loadedAt;
+        private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+        private String summary;
+        private int summaryTokens;
+        private LocalDateTime summaryUntil;
+
+        HistoryWindow(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - loadedAt >= ttlNanos;
+        }
+
+        /**
+         * 追加一轮，超出 capacity 时丢弃最早的轮次（摘要长期失败时的上限）
+         */
+        synchronized void add(Turn turn, int capacity) {
+            turns.removeIf(existing -> existing.messageId != null && existing.messageId.equals(turn.messageId));
+            turns.addLast(turn);
+            while (turns.size() > capacity) {
+                turns.pollFirst();
+            }
+        }
+
+        /**
+         * 换上新的摘要并移除已并入摘要的轮次，摘要期间新完成的轮次保留
+         */
+        synchronized void applySummary(String summary, int summaryTokens, LocalDateTime summaryUntil,
+                Set<Long> summarizedIds) {
+            if (this.summaryUntil != null && summaryUntil != null && summaryUntil.isBefore(this.summaryUntil)) {
+                return;
+            }
+            this.summary = summary;
+            this.summaryTokens = summaryTokens;
+            this.summaryUntil = summaryUntil;
+            turns.removeIf(turn -> summarizedIds.contains(turn.messageId));
+        }
+
+        synchronized WindowState state() {
+            return new WindowState(summary, summaryTokens, new ArrayList<>(turns));
+        }
+    }
+
+    private static final class WindowState {
+        private final String summary;
+        private final int summaryTokens;
+        private final List<Turn> turns;
+
+        WindowState(String summary, int summaryTokens, List<Turn> turns) {
+            this.summary = summary;
+            this.summaryTokens = summaryTokens;
+            this.turns = turns;
+        }
+
+        int turnTokens() {
+            int total = 0;
+            for (Turn turn : turns) {
+                total += turn.tokens;
+            }
+            return total;
+        }
+    }
+
+    private static final class Turn {
+        private final Long messageId;
+        private final String question;
+        private final String answer;
+        private final LocalDateTime createTime;
+        /** 问答合计 token 数，只在加入窗口时估算一次 */
+        private final int tokens;
+
+        Turn(Long messageId, String question, String answer, LocalDateTime createTime, int tokens) {
+            this.messageId = messageId;
+            this.question = question;
+            this.answer = answer;
+            this.createTime = createTime;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.yxboot.modules.ai.service;
 
+import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -48,11 +50,43 @@ public class ConversationService extends ServiceImpl<ConversationMapper, Convers
     }
 
     public boolean updateConversationTitle(Long conversationId, String title) {
-        Conversation conversation = getById(conversationId);
-        if (conversation == null) {
-            return false;
+        // 只更新标题列，避免把读取时的摘要写回、覆盖后台刚生成的摘要
+        Conversation update = new Conversation();
+        update.setConversationId(conversationId);
+        update.setTitle(title);
+        return updateById(update);
+    }
+
+    /**
+     * 读取属于该用户和应用的会话，会话不存在或不属于调用方时返回 null
+     */
+    public Conversation getOwnedConversation(Long conversationId, Long userId, Long appId) {
+        Conversation conversation = conversationId != null ? getById(conversationId) : null;
+        if (conversation == null || !Objects.equals(conversation.getUserId(), userId)
+                || !Objects.equals(conversation.getAppId(), appId)) {
+            return null;
         }
-        conversation.setTitle(title);
-        return updateById(conversation);
+        return conversation;
+    }
+
+    /**
+     * 刷新会话的最近活跃时间，只更新 update_time 一列
+     */
+    public boolean touch(Long conversationId) {
+        Conversation update = new Conversation();
+        update.setConversationId(conversationId);
+        update.setUpdateTime(LocalDateTime.now());
+        return updateById(update);
+    }
+
+    /**
+     * 只更新摘要两列，不先读后写
+     */
+    public boolean updateSummary(Long conversationId, String summary, LocalDateTime summaryUntil) {
+        Conversation update = new Conversation();
+        update.setConversationId(conversationId);
+        update.setSummary(summary);
+        update.setSummaryUntil(summaryUntil);
+        return updateById(update);
     }
 }
@@ -0,0 +1,67 @@
+package com.yxboot.modules.ai.service;
+
+import java.util.List;
+
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.zhipuai.ZhiPuAiChatOptions;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.ai.dto.ChatMessageDTO;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 会话摘要生成：把已有摘要与较早的几轮对话合并为新的摘要
+ *
+ * @author Boya
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationSummarizer {
+
+    private static final String INSTRUCTION = "你是对话摘要助手。请把已有摘要和新增的对话合并为一段简洁的摘要，"
+            + "保留用户的身份与背景信息、提出的问题和诉求、已经给出的结论与操作步骤、仍未解决的问题，"
+            + "省略寒暄与重复内容，不要编造对话中没有的信息。直接输出摘要正文。";
+
+    private final ChatModel chatModel;
+    private final AiProperties aiProperties;
+
+    /**
+     * 生成新的摘要（同步调用模型，只在后台线程中使用）
+     *
+     * @param previousSummary 已有摘要，没有时为 null
+     * @param messages        需要并入摘要的对话，按时间正序
+     */
+    public String summarize(String previousSummary, List<ChatMessageDTO> messages) {
+        StringBuilder content = new StringBuilder();
+        if (StringUtils.hasText(previousSummary)) {
+            content.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        content.append("新增对话：\n");
+        for (ChatMessageDTO message : messages) {
+            content.append("assistant".equals(message.getRole()) ? "助手：" : "用户：")
+                    .append(message.getContent())
+                    .append('\n');
+        }
+
+        AiProperties.ChatConfig chatConfig = aiProperties.getChat();
+        ZhiPuAiChatOptions options = ZhiPuAiChatOptions.builder()
+                .model(chatConfig.getModel())
+                .temperature(0.3)
+                .maxTokens(aiProperties.getChatHistory().getSummaryMaxTokens())
+                .build();
+        ChatResponse response = chatModel.call(new Prompt(
+                List.of(new SystemMessage(INSTRUCTION), new UserMessage(content.toString())), options));
+
+        String summary = response != null && response.getResult() != null && response.getResult().getOutput() != null
+                ? response.getResult().getOutput().getText()
+                : null;
+        return summary != null ? summary.trim() : null;
+    }
+}
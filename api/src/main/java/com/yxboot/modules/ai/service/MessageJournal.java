@@ -0,0 +1,240 @@
+package com.yxboot.modules.ai.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.ai.entity.Message;
+import com.yxboot.modules.ai.enums.MessageStatus;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 消息回答写回日志（write-behind）
+ * <p>
+ * 流式生成过程中按片段数 / 时间间隔保存部分回答，生成结束时登记最终回答与状态，
+ * 均先记入内存，由共用定时任务调度器每 journal-flush-interval-ms 毫秒合并写出：同一消息只保留最新内容，
+ * 多条消息合并为一条多行 UPDATE，只更新回答与状态列，不先读后写。
+ * 节点中途宕机时最多丢失最近一个保存间隔的内容。写回同时刷新消息的 update_time，
+ * 节点启动时只把超过 interrupted-after-seconds 未写入的处理中消息标记为失败，其他节点进行中的生成不受影响。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageJournal {
+
+    private final MessageService messageService;
+    private final AiProperties aiProperties;
+    @Qualifier("taskScheduler")
+    private final TaskScheduler taskScheduler;
+
+    private final Map<Long, PendingAnswer> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /** 串行化写出；写出期间阻塞在 JDBC 上，使用 ReentrantLock 而不是 synchronized，虚拟线程等待时不占用载体线程 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /** 应用停止中，之后登记的回答直接在当前线程写出 */
+    private volatile boolean stopped;
+
+    /**
+     * 为一次流式生成创建部分回答保存器
+     */
+    public Checkpointer checkpointer(Long messageId) {
+        AiProperties.ChatStreamConfig cfg = aiProperties.getChatStream();
+        int everyChunks = cfg.getCheckpointChunks() != null ? cfg.getCheckpointChunks() : 0;
+        long intervalMs = cfg.getCheckpointIntervalMs() != null ? cfg.getCheckpointIntervalMs() : 0L;
+        return new Checkpointer(messageId, everyChunks, intervalMs);
+    }
+
+    /**
+     * 登记生成中的部分回答，消息已登记最终回答时忽略
+     */
+    public void checkpoint(Long messageId, String partialAnswer) {
+        enqueue(messageId, new PendingAnswer(partialAnswer, null));
+    }
+
+    /**
+     * 登记最终回答与状态
+     */
+    public void complete(Long messageId, String answer, MessageStatus status) {
+        enqueue(messageId, new PendingAnswer(answer, status));
+    }
+
+    /**
+     * 写出所有待写回答，写入失败的留待下次重试
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<Message> finals = new ArrayList<>();
+            List<Message> partials = new ArrayList<>();
+            for (Long messageId : pending.keySet()) {
+                PendingAnswer answer = pending.remove(messageId);
+                if (answer == null) {
+                    continue;
+                }
+                Message message = new Message();
+                message.setMessageId(messageId);
+                message.setAnswer(answer.answer);
+                message.setStatus(answer.status);
+                (answer.isFinal() ? finals : partials).add(message);
+            }
+            write(finals, true);
+            write(partials, false);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 启动时处理中断的生成（进程退出前未写出最终状态、且长时间没有写入的消息）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedMessages() {
+        Integer seconds = aiProperties.getChatStream().getInterruptedAfterSeconds();
+        if (seconds == null || seconds <= 0) {
+            return;
+        }
+        taskScheduler.schedule(() -> {
+            try {
+                int count = messageService.failInterruptedMessages(LocalDateTime.now().minusSeconds(seconds));
+                if (count > 0) {
+                    log.info("已将中断的生成标记为失败, count: {}", count);
+                }
+            } catch (Exception e) {
+                log.warn("处理中断的生成失败", e);
+            }
+        }, Instant.now());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        flush();
+    }
+
+    private void enqueue(Long messageId, PendingAnswer answer) {
+        if (messageId == null) {
+            return;
+        }
+        pending.merge(messageId, answer, (current, next) -> current.isFinal() && !next.isFinal() ? current : next);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (stopped) {
+            flushScheduled.set(false);
+            flush();
+            return;
+        }
+        Long interval = aiProperties.getChatStream().getJournalFlushIntervalMs();
+        try {
+            taskScheduler.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, Instant.now().plusMillis(interval != null ? interval : 0L));
+        } catch (RejectedExecutionException e) {
+            // 应用停止中，直接在当前线程写出
+            flushScheduled.set(false);
+            flush();
+        }
+    }
+
+    private void write(List<Message> messages, boolean finals) {
+        Integer configured = aiProperties.getChatStream().getJournalBatchSize();
+        int batchSize = configured != null && configured > 0 ? configured : 1;
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<Message> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            try {
+                if (finals) {
+                    messageService.updateAnswers(batch);
+                } else {
+                    messageService.updatePartialAnswers(batch);
+                }
+            } catch (Exception e) {
+                log.warn("写回消息回答失败，稍后重试, count: {}", batch.size(), e);
+                for (Message message : batch) {
+                    // 写入失败期间登记的新内容优先，部分回答不覆盖最终回答
+                    pending.merge(message.getMessageId(), new PendingAnswer(message.getAnswer(), message.getStatus()),
+                            (current, failed) -> !current.isFinal() && failed.isFinal() ? failed : current);
+                }
+                if (!stopped) {
+                    scheduleFlush();
+                }
+            }
+        }
+    }
+
+    private static final class PendingAnswer {
+        private final String answer;
+        /** 最终状态，部分回答为 null */
+        private final MessageStatus status;
+
+        PendingAnswer(String answer, MessageStatus status) {
+            this.answer = answer;
+            this.status = status;
+        }
+
+        boolean isFinal() {
+            return status != null;
+        }
+    }
+
+    /**
+     * 单次流式生成的部分回答保存器：每 checkpoint-chunks 个片段或距上次保存超过 checkpoint-interval-ms 时登记一次。
+     * 只在该次生成的回调线程中使用，不是线程安全的。
+     */
+    public final class Checkpointer {
+        private final Long messageId;
+        private final int everyChunks;
+        private final long intervalNanos;
+        private int chunks;
+        private long lastCheckpointAt = System.nanoTime();
+
+        Checkpointer(Long messageId, int everyChunks, long intervalMs) {
+            this.messageId = messageId;
+            this.everyChunks = everyChunks;
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMs, 0));
+        }
+
+        /**
+         * 收到一个片段
+         *
+         * @param answerSoFar 截至当前的完整回答
+         */
+        public void onChunk(CharSequence answerSoFar) {
+            chunks++;
+            long now = System.nanoTime();
+            boolean byChunks = everyChunks > 0 && chunks >= everyChunks;
+            boolean byTime = intervalNanos > 0 && now - lastCheckpointAt >= intervalNanos;
+            if (byChunks || byTime) {
+                chunks = 0;
+                lastCheckpointAt = now;
+                checkpoint(messageId, answerSoFar.toString());
+            }
+        }
+    }
+}
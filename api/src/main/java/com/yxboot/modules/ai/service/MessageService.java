@@ -1,5 +1,8 @@
 package com.yxboot.modules.ai.service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -36,14 +39,50 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         return message;
     }
 
+    /**
+     * 只更新回答与状态两列，不先读后写
+     */
     public boolean updateMessageAnswer(Long messageId, String answer, MessageStatus status) {
-        Message message = getById(messageId);
-        if (message == null) {
-            return false;
+        Message update = new Message();
+        update.setMessageId(messageId);
+        update.setAnswer(answer);
+        update.setStatus(status);
+        update.setUpdateTime(LocalDateTime.now());
+        return updateById(update);
+    }
+
+    /**
+     * 批量写入回答与状态（一条多行 UPDATE）
+     */
+    public int updateAnswers(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return 0;
         }
-        message.setAnswer(answer);
-        message.setStatus(status);
-        return updateById(message);
+        return getMapper().updateAnswers(messages);
+    }
+
+    /**
+     * 批量写入生成中的部分回答，已结束的消息不受影响
+     */
+    public int updatePartialAnswers(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        return getMapper().updatePartialAnswers(messages, MessageStatus.PENDING.getValue());
+    }
+
+    /**
+     * 将最后写入时间早于 updatedBefore 且仍在处理中的消息标记为失败，保留已保存的部分回答
+     */
+    public int failInterruptedMessages(LocalDateTime updatedBefore) {
+        Message update = new Message();
+        update.setStatus(MessageStatus.FAILED);
+        update.setUpdateTime(LocalDateTime.now());
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(MESSAGE.STATUS.eq(MessageStatus.PENDING.getValue()));
+        wrapper.and(MESSAGE.UPDATE_TIME.lt(updatedBefore));
+        return getMapper().updateByQuery(update, wrapper);
     }
 
     public List<MessageDTO> getConversationMessages(Long conversationId) {
@@ -56,6 +95,24 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 会话中创建时间晚于 createdAfter（为 null 时不限）的最近 limit 条已完成消息，按创建时间正序
+     */
+    public List<Message> listRecentCompletedMessages(Long conversationId, LocalDateTime createdAfter, int limit) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.select(MESSAGE.MESSAGE_ID, MESSAGE.QUESTION, MESSAGE.ANSWER, MESSAGE.CREATE_TIME);
+        wrapper.where(MESSAGE.CONVERSATION_ID.eq(conversationId));
+        wrapper.and(MESSAGE.STATUS.eq(MessageStatus.COMPLETED.getValue()));
+        if (createdAfter != null) {
+            wrapper.and(MESSAGE.CREATE_TIME.gt(createdAfter));
+        }
+        wrapper.orderBy(MESSAGE.CREATE_TIME, false);
+        wrapper.limit(limit);
+        List<Message> messages = new ArrayList<>(list(wrapper));
+        Collections.reverse(messages);
+        return messages;
+    }
+
     public boolean deleteConversationMessages(Long conversationId) {
         QueryWrapper wrapper = QueryWrapper.create();
         wrapper.where(MESSAGE.CONVERSATION_ID.eq(conversationId));
@@ -0,0 +1,231 @@
+package com.yxboot.modules.ai.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.embedding.QueryEmbeddingCache;
+import com.yxboot.ai.service.RagChatPromptService;
+import com.yxboot.modules.app.entity.AppConfig;
+import com.yxboot.modules.dataset.service.DatasetVersionService;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 语义回答缓存（按应用启用，见 yxboot.ai.answer-cache）
+ * <p>
+ * 以问题向量的余弦相似度查找同一应用中已回答过的相似问题，命中时直接返回缓存的回答，跳过检索与生成。
+ * 每条回答记录生成时的版本指纹（向量模型、应用配置更新时间、绑定知识库的内容版本），
+ * 知识库分段写入或删除、应用更换知识库或修改配置后指纹变化，旧回答不再命中并在下次查找时清除。
+ * 问题向量与检索共用 {@link QueryEmbeddingCache}，未命中时不会多请求一次 embedding。
+ * 缓存只在本节点内存中，各节点分别积累。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+public class SemanticAnswerCache {
+
+    /** 等待生成完成的登记数上限 */
+    private static final int MAX_PENDING = 10_000;
+
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final RagChatPromptService ragChatPromptService;
+    private final DatasetVersionService datasetVersionService;
+    private final AiProperties aiProperties;
+
+    private final Map<Long, AppAnswers> apps = new ConcurrentHashMap<>();
+    /** 未命中的问题按 messageId 登记，生成完成后写入缓存；生成失败或中断的登记随超时淘汰 */
+    private final LRUCache<Long, PendingAnswer> pending;
+
+    public SemanticAnswerCache(QueryEmbeddingCache queryEmbeddingCache, RagChatPromptService ragChatPromptService,
+            DatasetVersionService datasetVersionService, AiProperties aiProperties) {
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.ragChatPromptService = ragChatPromptService;
+        this.datasetVersionService = datasetVersionService;
+        this.aiProperties = aiProperties;
+        Long streamTimeoutMs = aiProperties.getChatAdmission().getStreamTimeoutMs();
+        this.pending = CacheUtil.newLRUCache(MAX_PENDING,
+                streamTimeoutMs != null && streamTimeoutMs > 0 ? streamTimeoutMs : 300_000L);
+    }
+
+    /**
+     * 查找相似问题的回答。未命中时登记本条消息，生成完成后由 {@link #complete} 写入缓存
+     *
+     * @return 缓存的回答，应用未启用缓存或未命中时返回 null
+     */
+    public String lookup(Long messageId, AppConfig appConfig, String question) {
+        if (!isEnabled(appConfig) || messageId == null || !StringUtils.hasText(question)) {
+            return null;
+        }
+        AiProperties.AnswerCacheConfig cfg = aiProperties.getAnswerCache();
+        try {
+            String fingerprint = fingerprint(appConfig);
+            float[] vector = queryEmbeddingCache.embed(question);
+            double threshold = cfg.getSimilarityThreshold() != null ? cfg.getSimilarityThreshold() : 1.0;
+            AppAnswers answers = apps.computeIfAbsent(appConfig.getAppId(), id -> new AppAnswers());
+            CachedAnswer hit = answers.find(fingerprint, vector, threshold, System.nanoTime(), ttlNanos());
+            if (hit != null) {
+                log.info("语义回答缓存命中, appId: {}, messageId: {}", appConfig.getAppId(), messageId);
+                return hit.answer;
+            }
+            pending.put(messageId, new PendingAnswer(appConfig.getAppId(), fingerprint, vector));
+        } catch (Exception e) {
+            log.warn("查询语义回答缓存失败，按未命中处理, appId: {}", appConfig.getAppId(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 生成完成，把回答写入缓存（只处理 {@link #lookup} 未命中时登记的消息）
+     */
+    public void complete(Long messageId, String answer) {
+        if (messageId == null) {
+            return;
+        }
+        PendingAnswer entry = pending.get(messageId, false);
+        if (entry == null) {
+            return;
+        }
+        pending.remove(messageId);
+        if (!StringUtils.hasText(answer)) {
+            return;
+        }
+        Integer maxEntries = aiProperties.getAnswerCache().getMaxEntriesPerApp();
+        apps.computeIfAbsent(entry.appId, id -> new AppAnswers())
+                .add(new CachedAnswer(entry.fingerprint, entry.vector, answer, System.nanoTime()),
+                        maxEntries != null ? Math.max(maxEntries, 1) : 1);
+    }
+
+    /**
+     * 本条回答不写入缓存（固定回复、未检索到参考内容时的回答等）
+     */
+    public void discard(Long messageId) {
+        if (messageId != null) {
+            pending.remove(messageId);
+        }
+    }
+
+    private boolean isEnabled(AppConfig appConfig) {
+        AiProperties.AnswerCacheConfig cfg = aiProperties.getAnswerCache();
+        return Boolean.TRUE.equals(cfg.getEnabled()) && appConfig != null && appConfig.getAppId() != null
+                && cfg.getAppIds() != null && cfg.getAppIds().contains(appConfig.getAppId());
+    }
+
+    /**
+     * 版本指纹：向量模型、应用配置更新时间与各绑定知识库的内容版本，任一变化时旧回答失效
+     */
+    private String fingerprint(AppConfig appConfig) {
+        List<Long> datasetIds = new ArrayList<>(ragChatPromptService.getActiveDatasetIds(appConfig));
+        datasetIds.sort(null);
+        Map<Long, Long> versions = datasetVersionService.getVersions(datasetIds);
+        StringBuilder sb = new StringBuilder(aiProperties.getEmbeddingModelKey())
+                .append('|').append(appConfig.getUpdateTime());
+        for (Long datasetId : datasetIds) {
+            sb.append('|').append(datasetId).append(':').append(versions.getOrDefault(datasetId, -1L));
+        }
+        return sb.toString();
+    }
+
+    private long ttlNanos() {
+        Integer seconds = aiProperties.getAnswerCache().getTtlSeconds();
+        return TimeUnit.SECONDS.toNanos(seconds != null ? Math.max(seconds, 0) : 0);
+    }
+
+    private static double norm(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * 单个应用的缓存回答，按写入顺序排列
+     */
+    private static final class AppAnswers {
+        private final ArrayDeque<CachedAnswer> answers = new ArrayDeque<>();
+
+        /**
+         * 相似度最高且不低于阈值的回答；顺带清除指纹已变化或已过期的回答
+         */
+        synchronized CachedAnswer find(String fingerprint, float[] vector, double threshold, long now, long ttlNanos) {
+            double queryNorm = norm(vector);
+            CachedAnswer best = null;
+            double bestScore = threshold;
+            Iterator<CachedAnswer> it = answers.iterator();
+            while (it.hasNext()) {
+                CachedAnswer cached = it.next();
+                if (!cached.fingerprint.equals(fingerprint) || now - cached.createdAt >= ttlNanos) {
+                    it.remove();
+                    continue;
+                }
+                double score = cached.similarity(vector, queryNorm);
+                if (score >= bestScore) {
+                    best = cached;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        synchronized void add(CachedAnswer answer, int maxEntries) {
+            answers.addLast(answer);
+            while (answers.size() > maxEntries) {
+                answers.pollFirst();
+            }
+        }
+    }
+
+    private static final class CachedAnswer {
+        private final String fingerprint;
+        private final float[] vector;
+        private final double vectorNorm;
+        private final String answer;
+        private final long createdAt;
+
+        CachedAnswer(String fingerprint, float[] vector, String answer, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.vector = vector;
+            this.vectorNorm = norm(vector);
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * 余弦相似度，维度不同（更换了向量模型）时为 0
+         */
+        double similarity(float[] query, double queryNorm) {
+            if (query.length != vector.length || queryNorm == 0 || vectorNorm == 0) {
+                return 0;
+            }
+            double dot = 0;
+            for (int i = 0; i < query.length; i++) {
+                dot += query[i] * vector[i];
+            }
+            return dot / (queryNorm * vectorNorm);
+        }
+    }
+
+    private static final class PendingAnswer {
+        private final Long appId;
+        private final String fingerprint;
+        private final float[] vector;
+
+        PendingAnswer(Long appId, String fingerprint, float[] vector) {
+            this.appId = appId;
+            this.fingerprint = fingerprint;
+            this.vector = vector;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.yxboot.modules.dataset.application;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.splitter.SplitMode;
+import com.yxboot.ai.embedding.EmbeddingProgressListener;
+import com.yxboot.ai.service.AiDocumentProcessingService;
+import com.yxboot.ai.service.AiVectorStoreService;
+import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
+import com.yxboot.modules.dataset.enums.SegmentType;
+import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
+import com.yxboot.modules.dataset.service.DatasetDocumentService;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 文档入库流水线：加载 → 切分 → 持久化 → 向量化 → 写入向量库。
+ * <p>
+ * 分段按窗口流转：切分线程每产出一个窗口即落库，并放入有界队列交给向量化线程；
+ * 队列满时切分线程阻塞等待（背压），因此内存中只保留少量窗口，峰值与文档大小无关，
+ * 且向量化无需等待切分全部完成即可开始。
+ * <p>
+ * 向量化进度按批次回写到文档的 vectorized_num 字段（按时间间隔节流），供前端展示处理百分比。
+ * <p>
+ * 断点续传：每个窗口落库后推进持久化检查点（persisted_position），窗口向量化完成后推进向量化检查点
+ * （vectorized_position）。切分结果是确定的，重新执行时照常切分，但已落库的窗口不再写库、
+ * 已写入向量库的窗口不再向量化，只从最后完成的窗口继续。检查点之后残留的分段（写库后、推进检查点前中断）
+ * 在开始时删除。全部窗口落库后标记切分完成（split_completed），之后重新处理（如 embedding 输入格式变更）
+ * 走 {@link #reembed}，只按窗口读取已有分段重新向量化，不再切分源文件。
+ * <p>
+ * 租约：由入库任务调度器执行时，每个窗口写库、向量化前检查任务租约（{@link IngestLease}），
+ * 租约丢失时抛出 {@link IngestLease.LostException} 中止，不再截断或写入分段。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatasetDocumentIngestionPipeline {
+
+    private static final int DEFAULT_WINDOW_SIZE = 200;
+    private static final int DEFAULT_QUEUE_CAPACITY = 2;
+    /** 进度回写最小间隔（毫秒） */
+    private static final long PROGRESS_REPORT_INTERVAL_MS = 1000L;
+
+    /** 队列结束标记（按引用比较） */
+    private static final VectorWindow END_OF_STREAM = new VectorWindow(List.of(), 0);
+
+    private final AiDocumentProcessingService documentProcessingService;
+    private final DatasetDocumentSegmentService segmentService;
+    private final DatasetDocumentService datasetDocumentService;
+    private final AiVectorStoreService vectorStoreService;
+    private final AiProperties aiProperties;
+    @Qualifier("documentEmbeddingExecutor")
+    private final Executor documentEmbeddingExecutor;
+
+    /**
+     * 执行入库流水线
+     *
+     * @param file 本地文件
+     * @param document 文档（包含分段配置）
+     * @param splitMode 分段方式
+     * @param lease 入库任务租约，不经任务队列调用时传 {@link IngestLease#NONE}
+     * @return 入库结果
+     */
+    public IngestionResult ingest(File file, DatasetDocument document, SplitMode splitMode, IngestLease lease) {
+        int windowSize = resolveWindowSize();
+        BlockingQueue<VectorWindow> queue = new ArrayBlockingQueue<>(resolveQueueCapacity());
+        IngestionResult result = new IngestionResult();
+        lease.ensureHeld();
+        restoreCheckpoint(document, result);
+
+        CompletableFuture<Void> embeddingStage = startEmbeddingStage(queue, document, result, lease);
+        try {
+            documentProcessingService.loadAndSplitDocument(file, splitMode, document.getMaxSegmentLength(),
+                    document.getOverlapLength(), document.getParentChunkSize(), windowSize,
+                    window -> persistWindow(window, document, result, queue, embeddingStage, lease));
+            if (result.persistedPosition > 0) {
+                datasetDocumentService.markSplitCompleted(document.getDocumentId());
+            }
+            handOver(queue, END_OF_STREAM, embeddingStage);
+            if (embeddingStage != null) {
+                embeddingStage.join();
+            }
+        } catch (RuntimeException e) {
+            if (embeddingStage != null) {
+                queue.clear();
+                queue.offer(END_OF_STREAM);
+            }
+            throw unwrap(e);
+        }
+
+        log.info("文档入库流水线完成, documentId: {}, 分段数量: {}, 向量化: {}/{}", document.getDocumentId(),
+                result.getSavedCount(), result.getVectorizedCount(), result.getSearchableCount());
+        return result;
+    }
+
+    /**
+     * 重新向量化切分已完成的文档：按 position 窗口读取数据库中的现有分段，重新计算向量并按向量 ID 覆盖写入。
+     * 不加载源文件、不切分、不删除分段，分段 ID 与手工编辑后的内容保持不变；从向量化检查点继续
+     *
+     * @param document 文档（persisted_position 为已有分段的 position 上界）
+     * @param lease 入库任务租约
+     * @return 入库结果
+     */
+    public IngestionResult reembed(DatasetDocument document, IngestLease lease) {
+        int windowSize = resolveWindowSize();
+        IngestionResult result = new IngestionResult();
+        lease.ensureHeld();
+        int persisted = document.getPersistedPosition() != null ? document.getPersistedPosition() : 0;
+        int vectorized = document.getVectorizedPosition() != null ? document.getVectorizedPosition() : 0;
+        result.persistedPosition = persisted;
+        result.vectorizedPosition = Math.min(vectorized, persisted);
+        log.info("重新向量化文档现有分段, documentId: {}, 已持久化: {}, 已向量化: {}", document.getDocumentId(),
+                persisted, result.vectorizedPosition);
+
+        EmbeddingProgressListener listener = progressListener(document, result);
+        for (int start = 0; start < persisted; start += windowSize) {
+            lease.ensureHeld();
+            int end = Math.min(start + windowSize, persisted);
+            List<DatasetDocumentSegment> saved = segmentService.listSegmentsByPositionRange(document.getDocumentId(),
+                    start, end);
+            List<DatasetDocumentSegment> vectorizable = searchableSegments(saved);
+            result.savedCount += saved.size();
+            result.searchableCount += vectorizable.size();
+            if (end <= result.vectorizedPosition) {
+                result.vectorizedCount += vectorizable.size();
+                continue;
+            }
+            if (!vectorizable.isEmpty()) {
+                vectorize(new VectorWindow(vectorizable, end), document, result, listener, lease);
+            }
+        }
+        result.position = persisted;
+
+        log.info("文档重新向量化完成, documentId: {}, 分段数量: {}, 向量化: {}/{}", document.getDocumentId(),
+                result.getSavedCount(), result.getVectorizedCount(), result.getSearchableCount());
+        return result;
+    }
+
+    /**
+     * 读取检查点，删除检查点之后残留的分段。没有检查点时从头开始
+     */
+    private void restoreCheckpoint(DatasetDocument document, IngestionResult result) {
+        int persisted = document.getPersistedPosition() != null ? document.getPersistedPosition() : 0;
+        int vectorized = document.getVectorizedPosition() != null ? document.getVectorizedPosition() : 0;
+        result.persistedPosition = persisted;
+        result.vectorizedPosition = Math.min(vectorized, persisted);
+        if (persisted == 0) {
+            datasetDocumentService.updateDocumentProgress(document.getDocumentId(), 0, 0);
+        } else {
+            log.info("从检查点恢复文档入库, documentId: {}, 已持久化: {}, 已向量化: {}", document.getDocumentId(),
+                    persisted, result.vectorizedPosition);
+        }
+        truncateSegments(document, persisted);
+    }
+
+    /**
+     * 删除 position 不小于 fromPosition 的分段及其向量
+     */
+    private void truncateSegments(DatasetDocument document, int fromPosition) {
+        List<DatasetDocumentSegment> stale = segmentService.listSegmentsByPositionRange(document.getDocumentId(),
+                fromPosition, Integer.MAX_VALUE);
+        if (stale.isEmpty()) {
+            return;
+        }
+        vectorStoreService.batchDeleteSegmentVectors(stale, document.getDatasetId());
+        segmentService.deleteSegmentsFromPosition(document.getDocumentId(), fromPosition);
+        log.info("删除检查点之后的残留分段, documentId: {}, fromPosition: {}, count: {}", document.getDocumentId(),
+                fromPosition, stale.size());
+    }
+
+    /**
+     * 持久化一个窗口，并把需要向量化的分段交给向量化阶段
+     */
+    private void persistWindow(List<DocumentSegment> window, DatasetDocument document, IngestionResult result,
+            BlockingQueue<VectorWindow> queue, CompletableFuture<Void> embeddingStage, IngestLease lease) {
+        lease.ensureHeld();
+        int start = result.position;
+        int end = start + window.size();
+        result.position = end;
+
+        if (start < result.persistedPosition && end > result.persistedPosition) {
+            // 窗口大小配置变化导致窗口跨越检查点：回退到窗口起点重新落库
+            truncateSegments(document, start);
+            result.persistedPosition = start;
+            result.vectorizedPosition = Math.min(result.vectorizedPosition, start);
+            datasetDocumentService.resetCheckpoint(document.getDocumentId(), start, result.vectorizedPosition);
+        }
+
+        List<DatasetDocumentSegment> saved;
+        if (end <= result.persistedPosition) {
+            if (end <= result.vectorizedPosition) {
+                // 已完成的窗口：只补齐统计
+                skipCompletedWindow(window, result);
+                return;
+            }
+            // 已落库但未写入向量库的窗口：从数据库读取，跳过写库
+            saved = segmentService.listSegmentsByPositionRange(document.getDocumentId(), start, end);
+        } else {
+            saved = segmentService.batchCreateSegments(document, window, start);
+            result.persistedPosition = end;
+            datasetDocumentService.updatePersistedCheckpoint(document.getDocumentId(), end);
+        }
+        result.savedCount += saved.size();
+
+        List<DatasetDocumentSegment> vectorizable = searchableSegments(saved);
+        result.searchableCount += vectorizable.size();
+        if (vectorizable.isEmpty()) {
+            return;
+        }
+
+        VectorWindow vectorWindow = new VectorWindow(vectorizable, end);
+        if (embeddingStage == null) {
+            // 向量化线程不可用时退化为同步处理
+            vectorize(vectorWindow, document, result, progressListener(document, result), lease);
+            return;
+        }
+        handOver(queue, vectorWindow, embeddingStage);
+    }
+
+    /**
+     * 过滤出需要向量化的分段（跳过父块）
+     */
+    private List<DatasetDocumentSegment> searchableSegments(List<DatasetDocumentSegment> saved) {
+        List<DatasetDocumentSegment> vectorizable = new ArrayList<>(saved.size());
+        for (DatasetDocumentSegment segment : saved) {
+            Integer segmentType = segment.getSegmentType();
+            if (segmentType == null || segmentType != SegmentType.PARENT) {
+                vectorizable.add(segment);
+            }
+        }
+        return vectorizable;
+    }
+
+    private void skipCompletedWindow(List<DocumentSegment> window, IngestionResult result) {
+        int searchable = 0;
+        for (DocumentSegment segment : window) {
+            if (segment.getContent() == null || segment.getContent().trim().isEmpty()) {
+                continue;
+            }
+            result.savedCount++;
+            if (segment.getSegmentType() != SegmentType.PARENT) {
+                searchable++;
+            }
+        }
+        result.searchableCount += searchable;
+        result.vectorizedCount += searchable;
+    }
+
+    /**
+     * 向量化一个窗口。窗口全部成功且之前的窗口也都成功时推进向量化检查点，
+     * 部分失败后检查点停止推进，恢复时从失败的窗口重新向量化（按向量 ID 覆盖写入，重复写入无副作用）
+     */
+    private void vectorize(VectorWindow window, DatasetDocument document, IngestionResult result,
+            EmbeddingProgressListener listener, IngestLease lease) {
+        lease.ensureHeld();
+        int vectorized = vectorStoreService.batchCreateSegmentVectors(window.segments, document.getDatasetId(),
+                listener);
+        result.vectorizedCount += vectorized;
+        if (vectorized < window.segments.size()) {
+            result.vectorCheckpointStalled = true;
+        }
+        if (!result.vectorCheckpointStalled && window.endPosition > result.vectorizedPosition) {
+            result.vectorizedPosition = window.endPosition;
+            try {
+                datasetDocumentService.updateVectorizedCheckpoint(document.getDocumentId(), window.endPosition);
+            } catch (Exception e) {
+                log.warn("回写向量化检查点失败, documentId: {}", document.getDocumentId(), e);
+            }
+        }
+    }
+
+    /**
+     * 启动向量化阶段，线程池已满时返回 null，由切分线程同步向量化
+     */
+    private CompletableFuture<Void> startEmbeddingStage(BlockingQueue<VectorWindow> queue,
+            DatasetDocument document, IngestionResult result, IngestLease lease) {
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    EmbeddingProgressListener listener = progressListener(document, result);
+                    VectorWindow window;
+                    while ((window = queue.take()) != END_OF_STREAM) {
+                        vectorize(window, document, result, listener, lease);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("向量化阶段被中断, documentId: " + document.getDocumentId(), e);
+                }
+            }, documentEmbeddingExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("向量化线程池已满，退化为同步向量化, documentId: {}", document.getDocumentId());
+            return null;
+        }
+    }
+
+    /**
+     * 将窗口放入队列；队列已满时阻塞等待，期间若向量化阶段已失败则立即终止切分
+     */
+    private void handOver(BlockingQueue<VectorWindow> queue, VectorWindow batch,
+            CompletableFuture<Void> embeddingStage) {
+        if (embeddingStage == null) {
+            return;
+        }
+        try {
+            while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+                if (embeddingStage.isDone()) {
+                    embeddingStage.join();
+                    throw new IllegalStateException("向量化阶段已提前结束");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("入库流水线被中断", e);
+        }
+    }
+
+    /**
+     * 批次进度监听：按间隔节流回写文档进度，回写失败不影响入库
+     */
+    private EmbeddingProgressListener progressListener(DatasetDocument document, IngestionResult result) {
+        return (batchSize, completed, total) -> {
+            long now = System.currentTimeMillis();
+            if (now - result.lastReportTime < PROGRESS_REPORT_INTERVAL_MS) {
+                return;
+            }
+            result.lastReportTime = now;
+            int vectorized = result.vectorizedCount + completed;
+            try {
+                datasetDocumentService.updateDocumentProgress(document.getDocumentId(), result.searchableCount,
+                        vectorized);
+            } catch (Exception e) {
+                log.warn("回写文档入库进度失败, documentId: {}", document.getDocumentId(), e);
+            }
+            log.info("文档向量化进度, documentId: {}, {}/{}", document.getDocumentId(), vectorized,
+                    result.searchableCount);
+        };
+    }
+
+    private RuntimeException unwrap(RuntimeException e) {
+        if (e instanceof CompletionException && e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return e;
+    }
+
+    private int resolveWindowSize() {
+        Integer configured = aiProperties.getDocument().getPipelineWindowSize();
+        return configured != null && configured > 0 ? configured : DEFAULT_WINDOW_SIZE;
+    }
+
+    private int resolveQueueCapacity() {
+        Integer configured = aiProperties.getDocument().getPipelineQueueCapacity();
+        return configured != null && configured > 0 ? configured : DEFAULT_QUEUE_CAPACITY;
+    }
+
+    /**
+     * 交给向量化阶段的窗口：可检索分段 + 窗口结束 position（用于推进向量化检查点）
+     */
+    private static final class VectorWindow {
+
+        private final List<DatasetDocumentSegment> segments;
+        private final int endPosition;
+
+        VectorWindow(List<DatasetDocumentSegment> segments, int endPosition) {
+            this.segments = segments;
+            this.endPosition = endPosition;
+        }
+    }
+
+    /**
+     * 入库结果统计
+     */
+    public static class IngestionResult {
+        /** 下一个窗口的起始 position（仅切分线程读写） */
+        private int position;
+        /** 持久化检查点（仅切分线程读写） */
+        private int persistedPosition;
+        /** 向量化检查点（向量化线程推进；切分线程只在启动向量化前及截断时读写） */
+        private volatile int vectorizedPosition;
+        /** 有窗口向量化不完整后不再推进向量化检查点 */
+        private volatile boolean vectorCheckpointStalled;
+        /** 已保存分段数（含父块） */
+        @Getter
+        private int savedCount;
+        /** 可检索分段数（普通块 + 子块，即需要向量化的分段） */
+        @Getter
+        private volatile int searchableCount;
+        /** 已向量化分段数（向量化线程写入，join 后读取） */
+        @Getter
+        private volatile int vectorizedCount;
+        /** 上次回写进度的时间（仅在串行的进度回调中读写） */
+        private volatile long lastReportTime;
+    }
+}
@@ -5,22 +5,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import com.yxboot.ai.document.DocumentSegment;
 import com.yxboot.ai.document.splitter.SplitMode;
-import com.yxboot.ai.service.AiDocumentProcessingService;
-import com.yxboot.ai.service.AiVectorStoreService;
 import com.yxboot.modules.dataset.entity.DatasetDocument;
-import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
 import com.yxboot.modules.dataset.enums.DocumentStatus;
 import com.yxboot.modules.dataset.enums.SegmentMethod;
-import com.yxboot.modules.dataset.enums.SegmentType;
-import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
 import com.yxboot.modules.dataset.service.DatasetDocumentService;
 import com.yxboot.modules.dataset.service.DatasetService;
 import com.yxboot.modules.system.entity.SysFile;
@@ -30,7 +20,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * 文档处理应用服务 负责文档异步处理的业务流程编排
+ * 文档处理应用服务 负责文档处理的业务流程编排（由入库任务调度器在工作线程中调用）
  * 
  * @author Boya
  */
@@ -40,105 +30,113 @@ import lombok.extern.slf4j.Slf4j;
 public class DatasetDocumentProcessingApplicationService {
 
     private final DatasetDocumentService datasetDocumentService;
-    private final DatasetDocumentSegmentService segmentService;
     private final SysFileService sysFileService;
-    private final AiDocumentProcessingService documentProcessingService;
-    private final AiVectorStoreService vectorStoreService;
     private final DatasetService datasetService;
+    private final DatasetDocumentIngestionPipeline ingestionPipeline;
 
     /**
-     * 异步处理文档 协调文档解析、分段创建、向量化等完整流程
+     * 处理文档 协调文档解析、分段创建、向量化等完整流程
+     * 在 DatasetIngestJobScheduler 的工作线程中同步执行，不要在请求线程中调用
      *
      * @param documentId 文档ID
-     * @param userId 用户ID（为避免SecurityContext在异步线程中丢失，显式传递）
-     * @return CompletableFuture<Boolean> 处理结果
+     * @param userId 用户ID（工作线程中没有请求的SecurityContext，显式传递）
+     * @param lease 入库任务租约，丢失时抛出 {@link IngestLease.LostException}，不修改文档状态
+     * @return 处理结果
      */
-    @Async("documentTaskExecutor")
-    public CompletableFuture<Boolean> processDocumentAsync(Long documentId, Long userId) {
-        log.info("开始异步处理文档, documentId: {}, userId: {}", documentId, userId);
+    public boolean processDocument(Long documentId, Long userId, IngestLease lease) {
+        log.info("开始处理文档, documentId: {}, userId: {}", documentId, userId);
 
         try {
             // 1. 更新文档状态为处理中
             boolean updated = datasetDocumentService.updateDocumentStatus(documentId, DocumentStatus.PROCESSING);
             if (!updated) {
                 log.error("更新文档状态失败, documentId: {}", documentId);
-                return CompletableFuture.completedFuture(false);
+                return false;
             }
 
             // 2. 获取并验证文档信息
             DatasetDocument document = datasetDocumentService.getById(documentId);
             if (document == null) {
                 log.error("文档不存在, documentId: {}", documentId);
-                return CompletableFuture.completedFuture(false);
+                return false;
             }
 
-            // 3. 获取并验证文件信息
+            // 3. 切分已完成的文档（如 embedding 输入格式变更后重新处理）只重新向量化已有分段，不需要源文件
+            if (Boolean.TRUE.equals(document.getSplitCompleted()) && document.getPersistedPosition() != null
+                    && document.getPersistedPosition() > 0) {
+                return completeDocument(document, ingestionPipeline.reembed(document, lease), lease);
+            }
+
+            // 4. 获取并验证文件信息
             SysFile sysFile = sysFileService.getById(document.getFileId());
             if (sysFile == null) {
                 log.error("文件不存在, fileId: {}", document.getFileId());
                 updateDocumentStatusToFailed(documentId);
-                return CompletableFuture.completedFuture(false);
-            }
-
-            // 4. 处理文档（解析和分段）
-            List<DocumentSegment> segments = processDocumentFile(sysFile, document);
-            if (segments == null || segments.isEmpty()) {
-                log.error("文档处理失败, documentId: {}", documentId);
-                updateDocumentStatusToFailed(documentId);
-                return CompletableFuture.completedFuture(false);
+                return false;
             }
 
-            // 5. 保存文档分段
-            log.info("保存文档分段, documentId: {}, 分段数量: {}", documentId, segments.size());
-            List<DatasetDocumentSegment> savedSegments = segmentService.batchCreateSegments(document, segments);
+            // 5. 流水线处理：切分、保存分段、向量化按窗口流转（跳过父块）
+            DatasetDocumentIngestionPipeline.IngestionResult result = processDocumentFile(sysFile, document, lease);
+            return completeDocument(document, result, lease);
 
-            // 6. 更新文档的分段数（仅统计可检索分段：普通块 + 子块）
-            long searchableCount = savedSegments.stream()
-                    .filter(s -> s.getSegmentType() == null
-                            || s.getSegmentType() == SegmentType.NORMAL
-                            || s.getSegmentType() == SegmentType.CHILD)
-                    .count();
-            document.setSegmentNum((int) searchableCount);
-            datasetDocumentService.updateById(document);
-
-            // 7. 向量化处理（跳过父块）
-            List<DatasetDocumentSegment> vectorizableSegments = savedSegments.stream()
-                    .filter(s -> s.getSegmentType() == null || s.getSegmentType() != SegmentType.PARENT)
-                    .collect(Collectors.toList());
-            log.info("开始向量化处理, documentId: {}, 分段数量: {}", documentId, vectorizableSegments.size());
-            int vectorizedCount = vectorStoreService.batchCreateSegmentVectors(
-                    vectorizableSegments, document.getDatasetId());
-
-            if (vectorizedCount != vectorizableSegments.size()) {
-                log.warn("向量化部分失败, documentId: {}, 成功: {}, 总数: {}", documentId, vectorizedCount,
-                        vectorizableSegments.size());
-            }
+        } catch (IngestLease.LostException e) {
+            log.warn("入库任务租约丢失，中止处理, documentId: {}, {}", documentId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("文档处理失败, documentId: {}", documentId, e);
+            updateDocumentStatusToFailed(documentId);
+            return false;
+        }
+    }
 
-            if (vectorizedCount > 0) {
-                datasetService.recordEmbeddingModel(document.getDatasetId());
-            }
+    /**
+     * 根据入库结果回写文档进度与状态
+     *
+     * @param document 文档对象
+     * @param result 入库结果
+     * @param lease 入库任务租约
+     * @return 处理结果
+     */
+    private boolean completeDocument(DatasetDocument document, DatasetDocumentIngestionPipeline.IngestionResult result,
+            IngestLease lease) {
+        Long documentId = document.getDocumentId();
+        // 租约已丢失时文档由新的持有节点负责，不再回写进度与状态
+        lease.ensureHeld();
+        if (result == null || result.getSavedCount() == 0) {
+            log.error("文档处理失败, documentId: {}", documentId);
+            updateDocumentStatusToFailed(documentId);
+            return false;
+        }
 
-            // 9. 更新文档状态为已完成
-            datasetDocumentService.updateDocumentStatus(documentId, DocumentStatus.COMPLETED);
-            log.info("文档处理完成, documentId: {}, 分段数量: {}", documentId, savedSegments.size());
+        // 更新文档的分段数（仅统计可检索分段：普通块 + 子块）与最终向量化进度
+        datasetDocumentService.updateDocumentProgress(documentId, result.getSearchableCount(),
+                result.getVectorizedCount());
 
-            return CompletableFuture.completedFuture(true);
+        if (result.getVectorizedCount() != result.getSearchableCount()) {
+            log.warn("向量化部分失败, documentId: {}, 成功: {}, 总数: {}", documentId, result.getVectorizedCount(),
+                    result.getSearchableCount());
+        }
 
-        } catch (Exception e) {
-            log.error("文档处理失败, documentId: {}", documentId, e);
-            updateDocumentStatusToFailed(documentId);
-            return CompletableFuture.completedFuture(false);
+        if (result.getVectorizedCount() > 0) {
+            datasetService.recordEmbeddingModel(document.getDatasetId());
         }
+
+        // 更新文档状态为已完成
+        datasetDocumentService.updateDocumentStatus(documentId, DocumentStatus.COMPLETED);
+        log.info("文档处理完成, documentId: {}, 分段数量: {}", documentId, result.getSavedCount());
+        return true;
     }
 
     /**
-     * 处理文档文件（解析和分段）
+     * 处理文档文件（解析、分段、持久化与向量化）
      * 
      * @param sysFile 系统文件信息
      * @param document 文档对象
-     * @return 分段列表
+     * @param lease 入库任务租约
+     * @return 入库结果
      */
-    private List<DocumentSegment> processDocumentFile(SysFile sysFile, DatasetDocument document) {
+    private DatasetDocumentIngestionPipeline.IngestionResult processDocumentFile(SysFile sysFile,
+            DatasetDocument document, IngestLease lease) {
         String filePath = sysFile.getPath();
         String fileUrl = sysFile.getUrl();
 
@@ -148,7 +146,7 @@ public class DatasetDocumentProcessingApplicationService {
         }
 
         File file = null;
-        List<DocumentSegment> segments = null;
+        DatasetDocumentIngestionPipeline.IngestionResult result = null;
 
         // 尝试从本地路径加载
         if (StringUtils.hasText(filePath)) {
@@ -156,29 +154,31 @@ public class DatasetDocumentProcessingApplicationService {
             file = path.toFile();
             if (file.exists()) {
                 log.info("从本地路径加载文档: {}", filePath);
-                segments = loadAndSplitDocument(file, document);
+                result = ingestDocument(file, document, lease);
             } else {
                 log.warn("本地文件不存在, path: {}, 尝试从URL加载", filePath);
             }
         }
 
-        // 如果本地文件不存在或未成功处理，尝试从URL加载
-        if ((segments == null || segments.isEmpty()) && StringUtils.hasText(fileUrl)) {
+        // 如果本地文件不存在或未产生任何分段，尝试从URL加载
+        if ((result == null || result.getSavedCount() == 0) && StringUtils.hasText(fileUrl)) {
             log.info("从URL加载文档: {}", fileUrl);
             file = downloadFromUrl(fileUrl, sysFile.getFileName());
             if (file != null) {
-                segments = loadAndSplitDocument(file, document);
-
-                // 处理完成后删除临时文件
                 try {
-                    Files.deleteIfExists(file.toPath());
-                } catch (IOException e) {
-                    log.warn("删除临时文件失败: {}", file.getAbsolutePath(), e);
+                    result = ingestDocument(file, document, lease);
+                } finally {
+                    // 处理完成后删除临时文件
+                    try {
+                        Files.deleteIfExists(file.toPath());
+                    } catch (IOException e) {
+                        log.warn("删除临时文件失败: {}", file.getAbsolutePath(), e);
+                    }
                 }
             }
         }
 
-        return segments;
+        return result;
     }
 
     /**
@@ -195,38 +195,27 @@ public class DatasetDocumentProcessingApplicationService {
     }
 
     /**
-     * 加载并分割文档
+     * 通过入库流水线加载、分割并向量化文档
      * 
      * @param file 文件对象
      * @param document 文档对象（包含分段配置信息）
-     * @return 分段列表
+     * @param lease 入库任务租约
+     * @return 入库结果
      */
-    private List<DocumentSegment> loadAndSplitDocument(File file, DatasetDocument document) {
+    private DatasetDocumentIngestionPipeline.IngestionResult ingestDocument(File file, DatasetDocument document,
+            IngestLease lease) {
         if (file == null || !file.exists()) {
             log.error("文件不存在或为空: {}", file != null ? file.getAbsolutePath() : "null");
             return null;
         }
 
-        try {
-            SplitMode splitMode = convertSegmentMethodToSplitMode(document.getSegmentMethod());
-            Integer maxSegmentLength = document.getMaxSegmentLength();
-            Integer overlapLength = document.getOverlapLength();
-            Integer parentChunkSize = document.getParentChunkSize();
-
-            log.info(
-                    "开始处理文档, filePath: {}, splitMode: {}, maxSegmentLength: {}, overlapLength: {}, parentChunkSize: {}",
-                    file.getAbsolutePath(), splitMode, maxSegmentLength, overlapLength, parentChunkSize);
-
-            List<DocumentSegment> segments = documentProcessingService.loadAndSplitDocument(
-                    file, splitMode, maxSegmentLength, overlapLength, parentChunkSize);
+        SplitMode splitMode = convertSegmentMethodToSplitMode(document.getSegmentMethod());
+        log.info(
+                "开始处理文档, filePath: {}, splitMode: {}, maxSegmentLength: {}, overlapLength: {}, parentChunkSize: {}",
+                file.getAbsolutePath(), splitMode, document.getMaxSegmentLength(), document.getOverlapLength(),
+                document.getParentChunkSize());
 
-            log.info("文档处理完成, filePath: {}, 分段数量: {}", file.getAbsolutePath(), segments != null ? segments.size() : 0);
-
-            return segments;
-        } catch (Exception e) {
-            log.error("文档处理失败, filePath: {}", file.getAbsolutePath(), e);
-            return null;
-        }
+        return ingestionPipeline.ingest(file, document, splitMode, lease);
     }
 
     /**
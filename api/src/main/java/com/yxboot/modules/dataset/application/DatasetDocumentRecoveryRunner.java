@@ -0,0 +1,67 @@
+package com.yxboot.modules.dataset.application;
+
+import java.util.List;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetIngestJob;
+import com.yxboot.modules.dataset.enums.DocumentStatus;
+import com.yxboot.modules.dataset.service.DatasetDocumentService;
+import com.yxboot.modules.dataset.service.DatasetIngestJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 启动时为缺少入库任务的文档补建任务。
+ * <p>
+ * 入库任务持久化在 dataset_ingest_job 表中，节点宕机时执行中的任务由租约过期回收继续，无需在此处理。
+ * 这里只处理处于待处理 / 处理中、却没有排队中 / 执行中任务的文档（任务队列上线前的历史数据，或写入任务前进程退出），
+ * 以低优先级补建任务；入库流水线根据文档上的检查点从最后完成的窗口继续，不会重复写库和向量化。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatasetDocumentRecoveryRunner {
+
+    private final DatasetDocumentService datasetDocumentService;
+    private final DatasetIngestJobService ingestJobService;
+    private final DatasetIngestJobScheduler ingestJobScheduler;
+    private final AiProperties aiProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedDocuments() {
+        if (!Boolean.TRUE.equals(aiProperties.getDocument().getRecoverOnStartup())) {
+            return;
+        }
+
+        List<DatasetDocument> documents;
+        try {
+            documents = datasetDocumentService.listDocumentsByStatus(DocumentStatus.PENDING,
+                    DocumentStatus.PROCESSING);
+        } catch (Exception e) {
+            log.error("查询待恢复文档失败", e);
+            return;
+        }
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        int recovered = 0;
+        for (DatasetDocument document : documents) {
+            if (ingestJobService.getActiveJob(document.getDocumentId()) != null) {
+                continue;
+            }
+            log.info("补建文档入库任务, documentId: {}, status: {}, 已持久化: {}, 已向量化: {}", document.getDocumentId(),
+                    document.getStatus(), document.getPersistedPosition(), document.getVectorizedPosition());
+            ingestJobScheduler.submit(document, document.getCreatorId(), DatasetIngestJob.PRIORITY_LOW);
+            recovered++;
+        }
+        if (recovered > 0) {
+            log.info("已为 {} 个被中断的文档补建入库任务", recovered);
+        }
+    }
+}
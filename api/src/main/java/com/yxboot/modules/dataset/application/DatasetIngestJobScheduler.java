@@ -0,0 +1,399 @@
+package com.yxboot.modules.dataset.application;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.account.service.TenantQuotaService;
+import com.yxboot.modules.dataset.dto.IngestTenantQueueDTO;
+import com.yxboot.modules.dataset.dto.IngestTenantStatsDTO;
+import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetIngestJob;
+import com.yxboot.modules.dataset.enums.DocumentStatus;
+import com.yxboot.modules.dataset.enums.IngestJobStatus;
+import com.yxboot.modules.dataset.service.DatasetDocumentService;
+import com.yxboot.modules.dataset.service.DatasetIngestJobService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 文档入库任务调度器：从 dataset_ingest_job 表领取任务交给 documentTaskExecutor 执行。
+ * <p>
+ * 上传接口只写入排队任务并唤醒调度，入库不会在请求线程中执行。周期任务运行在共用的 taskScheduler 上，负责：
+ * <ul>
+ * <li>轮询领取（同一时刻只有一个线程领取，领取期间的唤醒在本轮结束后再领取一次）：只在有空闲工作线程时领取，先按优先级、同优先级按租户套餐权重加权轮转（见 {@link IngestTenantSelector}），
+ * 执行中文档数已达套餐上限的租户本轮跳过</li>
+ * <li>回收：租约过期的任务（节点宕机）重新排队，领取次数用尽时标记任务与文档失败</li>
+ * </ul>
+ * 心跳是单独的周期任务，定期续期本节点执行中任务的租约，不排在领取之后；续期失败的任务标记租约丢失
+ * （见 {@link IngestLease}），流水线在下一个窗口前中止，不与重新领取该任务的节点同时写入同一文档。
+ * 工作线程数与 documentTaskExecutor 线程数一致，领取数量不会超过线程数，执行器无需排队。
+ * 各租户的队列深度、执行中任务数与排队等待时间见 {@link #getTenantStats(Long)}。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatasetIngestJobScheduler {
+
+    /** 执行器拒绝时任务重新排队的延迟（秒） */
+    private static final int RELEASE_DELAY_SECONDS = 5;
+
+    private final DatasetIngestJobService jobService;
+    private final DatasetDocumentService datasetDocumentService;
+    private final DatasetDocumentProcessingApplicationService processingApplicationService;
+    private final AiProperties aiProperties;
+    private final TenantQuotaService tenantQuotaService;
+    @Qualifier("documentTaskExecutor")
+    private final Executor documentTaskExecutor;
+    @Qualifier("taskScheduler")
+    private final TaskScheduler taskScheduler;
+
+    private final String workerId = buildWorkerId();
+    private final Map<Long, IngestLease> runningJobs = new ConcurrentHashMap<>();
+    private final IngestTenantSelector tenantSelector = new IngestTenantSelector();
+    /** 本节点领取任务的排队等待统计，key 为租户ID（无租户为 0） */
+    private final Map<Long, WaitStats> waitStats = new ConcurrentHashMap<>();
+    /** 串行化领取，共用调度器有多个线程，轮询与唤醒可能同时触发 */
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    /** 有待执行的领取请求 */
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+    private final List<ScheduledFuture<?>> periodicTasks = new CopyOnWriteArrayList<>();
+    private volatile boolean started;
+
+    /**
+     * 提交文档入库：写入排队任务并立即触发一次调度
+     *
+     * @param document 文档
+     * @param userId 提交用户ID（工作线程中没有请求的安全上下文，显式传递）
+     * @param priority 优先级，见 {@link DatasetIngestJob#PRIORITY_NORMAL}
+     * @return 排队任务
+     */
+    public DatasetIngestJob submit(DatasetDocument document, Long userId, int priority) {
+        DatasetIngestJob job = jobService.enqueue(document, userId, priority,
+                aiProperties.getDocument().getJobMaxAttempts());
+        wakeUp();
+        return job;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        AiProperties.DocumentConfig cfg = aiProperties.getDocument();
+        started = true;
+        Duration heartbeat = Duration.ofSeconds(cfg.getJobHeartbeatSeconds());
+        periodicTasks.add(taskScheduler.scheduleWithFixedDelay(this::dispatchSerially,
+                Duration.ofMillis(cfg.getJobPollIntervalMs())));
+        periodicTasks.add(taskScheduler.scheduleWithFixedDelay(() -> runSafely("心跳", this::heartbeat),
+                Instant.now().plus(heartbeat), heartbeat));
+        periodicTasks.add(taskScheduler.scheduleWithFixedDelay(() -> runSafely("回收", this::reclaimExpiredJobs),
+                Instant.now().plus(heartbeat), heartbeat));
+        log.info("文档入库任务调度已启动, workerId: {}, 工作线程: {}", workerId, cfg.resolveJobWorkerThreads());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        started = false;
+        // 执行中的任务由 documentTaskExecutor 关闭时等待完成；来不及完成的任务租约过期后由其他节点或重启后继续
+        periodicTasks.forEach(task -> task.cancel(false));
+        periodicTasks.clear();
+    }
+
+    /**
+     * 触发一次调度，不必等下一个轮询周期
+     */
+    public void wakeUp() {
+        if (!started) {
+            return;
+        }
+        try {
+            taskScheduler.schedule(this::dispatchSerially, Instant.now());
+        } catch (RejectedExecutionException e) {
+            log.debug("调度器已关闭，忽略唤醒");
+        }
+    }
+
+    /**
+     * 各租户的入库队列统计：队列深度与执行中任务数取自任务表（集群内），排队等待统计为本节点数据
+     *
+     * @param tenantId 只查询该租户，为 null 时返回所有有排队 / 执行中任务或本节点领取过任务的租户
+     */
+    public List<IngestTenantStatsDTO> getTenantStats(Long tenantId) {
+        Map<Long, IngestTenantStatsDTO> stats = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (IngestTenantQueueDTO queue : jobService.listQueuedTenants()) {
+            IngestTenantStatsDTO item = stats.computeIfAbsent(tenantKey(queue.getTenantId()),
+                    key -> newStats(queue.getTenantId()));
+            item.setQueuedCount(queue.getQueuedCount());
+            if (queue.getOldestCreateTime() != null) {
+                item.setOldestWaitSeconds(Duration.between(queue.getOldestCreateTime(), now).getSeconds());
+            }
+        }
+        for (IngestTenantQueueDTO running : jobService.listRunningTenants()) {
+            stats.computeIfAbsent(tenantKey(running.getTenantId()), key -> newStats(running.getTenantId()))
+                    .setRunningCount(running.getRunningCount());
+        }
+        for (Long key : waitStats.keySet()) {
+            stats.computeIfAbsent(key, k -> newStats(k == 0L ? null : k));
+        }
+
+        List<IngestTenantStatsDTO> result = new ArrayList<>();
+        for (Map.Entry<Long, IngestTenantStatsDTO> entry : stats.entrySet()) {
+            if (tenantId != null && !tenantId.equals(entry.getKey())) {
+                continue;
+            }
+            IngestTenantStatsDTO item = entry.getValue();
+            AiProperties.TenantQuota quota = tenantQuotaService.getQuota(item.getTenantId());
+            item.setPlan(tenantQuotaService.getPlan(item.getTenantId()));
+            item.setWeight(quota.getWeight());
+            item.setMaxConcurrentDocuments(quota.getMaxConcurrentDocuments());
+            item.setMaxConcurrentEmbeddings(quota.getMaxConcurrentEmbeddings());
+            WaitStats wait = waitStats.get(entry.getKey());
+            if (wait != null) {
+                wait.fill(item);
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 领取任务，同一时刻只有一个线程领取；正在领取时只登记请求，由持有锁的线程在本轮结束后再领取一次
+     */
+    private void dispatchSerially() {
+        dispatchRequested.set(true);
+        while (dispatchRequested.get() && dispatchLock.tryLock()) {
+            try {
+                dispatchRequested.set(false);
+                runSafely("领取", this::dispatch);
+            } finally {
+                dispatchLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 按空闲工作线程数领取任务
+     */
+    private void dispatch() {
+        int free = aiProperties.getDocument().resolveJobWorkerThreads() - runningJobs.size();
+        // 领取冲突（被其他节点抢先）时重试，次数有限，剩余的留给下一轮
+        int attempts = free * 2;
+        while (free > 0 && attempts-- > 0 && started) {
+            IngestTenantQueueDTO tenant = tenantSelector.select(listEligibleTenants());
+            if (tenant == null) {
+                return;
+            }
+            DatasetIngestJob job = jobService.getNextQueuedJob(tenant.getTenantId());
+            int leaseSeconds = aiProperties.getDocument().getJobLeaseSeconds();
+            long claimStart = System.nanoTime();
+            if (job == null || !jobService.tryClaim(job, workerId, leaseSeconds)) {
+                continue;
+            }
+            tenantSelector.markServed(tenant.getTenantId(), weightOf(tenant.getTenantId()));
+            recordWait(job);
+            if (execute(job, IngestLease.claimed(job.getJobId(), claimStart, leaseSeconds))) {
+                free--;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 有可领取任务、且执行中文档数未达套餐上限的租户
+     */
+    private List<IngestTenantQueueDTO> listEligibleTenants() {
+        List<IngestTenantQueueDTO> queued = jobService.listQueuedTenants();
+        if (queued.isEmpty()) {
+            return queued;
+        }
+        Map<Long, Long> runningCounts = new HashMap<>();
+        for (IngestTenantQueueDTO running : jobService.listRunningTenants()) {
+            runningCounts.put(running.getTenantId(), running.getRunningCount());
+        }
+        List<IngestTenantQueueDTO> eligible = new ArrayList<>(queued.size());
+        for (IngestTenantQueueDTO tenant : queued) {
+            Integer limit = tenantQuotaService.getQuota(tenant.getTenantId()).getMaxConcurrentDocuments();
+            long running = runningCounts.getOrDefault(tenant.getTenantId(), 0L);
+            if (limit == null || limit <= 0 || running < limit) {
+                eligible.add(tenant);
+            }
+        }
+        return eligible;
+    }
+
+    private int weightOf(Long tenantId) {
+        Integer weight = tenantQuotaService.getQuota(tenantId).getWeight();
+        return weight != null ? weight : 1;
+    }
+
+    private void recordWait(DatasetIngestJob job) {
+        if (job.getCreateTime() == null) {
+            return;
+        }
+        long waitMs = Math.max(Duration.between(job.getCreateTime(), LocalDateTime.now()).toMillis(), 0L);
+        waitStats.computeIfAbsent(tenantKey(job.getTenantId()), key -> new WaitStats()).record(waitMs);
+        log.debug("领取入库任务, jobId: {}, tenantId: {}, 排队等待: {}ms", job.getJobId(), job.getTenantId(), waitMs);
+    }
+
+    private static Long tenantKey(Long tenantId) {
+        return tenantId != null ? tenantId : 0L;
+    }
+
+    private static IngestTenantStatsDTO newStats(Long tenantId) {
+        IngestTenantStatsDTO stats = new IngestTenantStatsDTO();
+        stats.setTenantId(tenantId);
+        stats.setQueuedCount(0L);
+        stats.setRunningCount(0L);
+        stats.setDispatchedCount(0L);
+        return stats;
+    }
+
+    private boolean execute(DatasetIngestJob job, IngestLease lease) {
+        runningJobs.put(job.getJobId(), lease);
+        try {
+            documentTaskExecutor.execute(() -> runJob(job, lease));
+            return true;
+        } catch (RejectedExecutionException e) {
+            runningJobs.remove(job.getJobId());
+            jobService.release(job, workerId, RELEASE_DELAY_SECONDS);
+            log.warn("工作线程已满，任务重新排队, jobId: {}, documentId: {}", job.getJobId(), job.getDocumentId());
+            return false;
+        }
+    }
+
+    private void runJob(DatasetIngestJob job, IngestLease lease) {
+        log.info("开始执行入库任务, jobId: {}, documentId: {}, tenantId: {}, 第 {} 次领取", job.getJobId(),
+                job.getDocumentId(), job.getTenantId(), job.getAttempts());
+        try {
+            boolean success = processingApplicationService.processDocument(job.getDocumentId(), job.getUserId(),
+                    lease);
+            jobService.finish(job.getJobId(), workerId, success ? IngestJobStatus.SUCCEEDED : IngestJobStatus.FAILED,
+                    success ? null : "文档处理失败");
+        } catch (IngestLease.LostException e) {
+            // 任务已被回收（或将被回收）重新排队，由新的持有节点从检查点继续，本节点不再修改任务状态
+            log.warn("入库任务租约丢失，已中止执行, jobId: {}, documentId: {}", job.getJobId(), job.getDocumentId());
+        } catch (Exception e) {
+            log.error("入库任务执行异常, jobId: {}, documentId: {}", job.getJobId(), job.getDocumentId(), e);
+            jobService.finish(job.getJobId(), workerId, IngestJobStatus.FAILED, e.getMessage());
+        } finally {
+            runningJobs.remove(job.getJobId());
+            wakeUp();
+        }
+    }
+
+    /**
+     * 续期执行中任务的租约；续期失败的任务说明已被回收，标记租约丢失让流水线中止
+     */
+    private void heartbeat() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        int leaseSeconds = aiProperties.getDocument().getJobLeaseSeconds();
+        long renewStart = System.nanoTime();
+        Set<Long> jobIds = new HashSet<>(runningJobs.keySet());
+        int renewed = jobService.renewLeases(workerId, jobIds, leaseSeconds);
+        Set<Long> held = renewed == jobIds.size() ? jobIds : jobService.listLeasedJobIds(workerId, jobIds);
+        for (Long jobId : jobIds) {
+            IngestLease lease = runningJobs.get(jobId);
+            if (lease == null) {
+                // 续期期间已执行结束
+                continue;
+            }
+            if (held.contains(jobId)) {
+                lease.renewed(renewStart, leaseSeconds);
+            } else {
+                lease.markLost();
+                log.warn("入库任务租约续期失败（已过期被回收），中止执行, jobId: {}", jobId);
+            }
+        }
+    }
+
+    private void reclaimExpiredJobs() {
+        for (DatasetIngestJob job : jobService.listExpiredJobs()) {
+            if (runningJobs.containsKey(job.getJobId())) {
+                // 本节点仍在执行（心跳延迟），交给下一次心跳续期
+                continue;
+            }
+            boolean exhausted = job.getAttempts() != null && job.getMaxAttempts() != null
+                    && job.getAttempts() >= job.getMaxAttempts();
+            if (!jobService.reclaimExpired(job, exhausted)) {
+                continue;
+            }
+            if (exhausted) {
+                log.error("入库任务领取次数已用尽, 标记失败, jobId: {}, documentId: {}", job.getJobId(),
+                        job.getDocumentId());
+                datasetDocumentService.updateDocumentStatus(job.getDocumentId(), DocumentStatus.FAILED);
+            } else {
+                log.warn("入库任务租约过期, 重新排队, jobId: {}, documentId: {}, 原节点: {}", job.getJobId(),
+                        job.getDocumentId(), job.getLeaseOwner());
+            }
+        }
+    }
+
+    private void runSafely(String action, Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            // 吞掉异常，避免周期任务被取消
+            log.error("入库任务{}失败", action, e);
+        }
+    }
+
+    private static String buildWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        return host + ":" + pid + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 排队等待统计（本节点）
+     */
+    private static final class WaitStats {
+
+        private long count;
+        private long totalWaitMs;
+        private long maxWaitMs;
+
+        synchronized void record(long waitMs) {
+            count++;
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+
+        synchronized void fill(IngestTenantStatsDTO stats) {
+            stats.setDispatchedCount(count);
+            stats.setAvgWaitMs(count > 0 ? totalWaitMs / count : 0L);
+            stats.setMaxWaitMs(maxWaitMs);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.yxboot.modules.dataset.application;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入库任务租约在本节点的视图
+ * <p>
+ * 心跳续期成功时推进本地到期时间，续期失败（任务已被回收）时标记丢失。入库流水线在处理每个窗口前调用
+ * {@link #ensureHeld()}：租约丢失或本地到期时间已过（心跳迟迟未成功，任务可能已被其他节点重新领取）即中止，
+ * 避免两个节点同时截断、写入同一文档的分段与向量。
+ *
+ * @author Boya
+ */
+public final class IngestLease {
+
+    /** 不受租约约束，用于不经任务队列的直接调用 */
+    public static final IngestLease NONE = new IngestLease(null, -1);
+
+    private final Long jobId;
+    private volatile long expiresAtNanos;
+    private volatile boolean lost;
+
+    private IngestLease(Long jobId, long expiresAtNanos) {
+        this.jobId = jobId;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * 刚领取的租约
+     *
+     * @param claimedAtNanos 发起领取前的 {@link System#nanoTime()}，本地到期时间从这里算起，比数据库中的到期时间略早
+     */
+    public static IngestLease claimed(Long jobId, long claimedAtNanos, int leaseSeconds) {
+        return new IngestLease(jobId, claimedAtNanos + TimeUnit.SECONDS.toNanos(leaseSeconds));
+    }
+
+    /**
+     * 续期成功
+     *
+     * @param renewedAtNanos 发起续期前的 {@link System#nanoTime()}
+     */
+    public void renewed(long renewedAtNanos, int leaseSeconds) {
+        expiresAtNanos = renewedAtNanos + TimeUnit.SECONDS.toNanos(leaseSeconds);
+    }
+
+    /**
+     * 续期失败：租约已被回收，任务可能已在其他节点重新执行
+     */
+    public void markLost() {
+        lost = true;
+    }
+
+    public boolean isHeld() {
+        if (this == NONE) {
+            return true;
+        }
+        return !lost && System.nanoTime() - expiresAtNanos < 0;
+    }
+
+    /**
+     * 租约不再由本节点持有时抛出 {@link LostException}
+     */
+    public void ensureHeld() {
+        if (!isHeld()) {
+            throw new LostException(jobId, lost);
+        }
+    }
+
+    /**
+     * 租约丢失，入库中止；任务由持有新租约的节点继续，本节点不再修改任务与文档状态
+     */
+    public static final class LostException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        LostException(Long jobId, boolean revoked) {
+            super((revoked ? "入库任务租约已被回收" : "入库任务租约已到期且未能续期") + ", jobId: " + jobId);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yxboot.modules.dataset.application;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.yxboot.modules.dataset.dto.IngestTenantQueueDTO;
+
+/**
+ * 入库任务的租户选择：先按优先级，同一优先级内按租户权重加权轮转。
+ * <p>
+ * 加权轮转采用虚拟时间（start-time fair queueing）：每个租户有一个虚拟时间，选择虚拟时间最小的租户，
+ * 被调度一次后其虚拟时间前进 1 / 权重，权重为 2 的租户被调度的次数是权重为 1 的租户的两倍。
+ * 租户重新出现排队任务时，虚拟时间从当前系统虚拟时间起算，空闲期间不会积攒额度，
+ * 单个租户一次上传大量文档也只能按权重比例占用工作线程。
+ * <p>
+ * 只在调度线程中使用，不是线程安全的。
+ */
+final class IngestTenantSelector {
+
+    /** 虚拟时间单位，权重 w 的租户每次调度前进 SCALE / w */
+    private static final long SCALE = 1_000_000L;
+
+    private final Map<Long, Long> virtualTimes = new HashMap<>();
+    /** 最近一次被调度租户的起始虚拟时间 */
+    private long systemTime;
+
+    /**
+     * 从有排队任务的租户中选出下一个，列表为空时返回 null
+     */
+    IngestTenantQueueDTO select(List<IngestTenantQueueDTO> tenants) {
+        IngestTenantQueueDTO selected = null;
+        for (IngestTenantQueueDTO tenant : tenants) {
+            if (selected == null || compare(tenant, selected) < 0) {
+                selected = tenant;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 记录一次调度
+     *
+     * @param tenantId 租户ID
+     * @param weight 租户权重（套餐配额），小于 1 时按 1
+     */
+    void markServed(Long tenantId, int weight) {
+        long start = startTime(tenantId);
+        systemTime = start;
+        virtualTimes.put(tenantId, start + SCALE / Math.max(weight, 1));
+    }
+
+    private int compare(IngestTenantQueueDTO a, IngestTenantQueueDTO b) {
+        int priority = Integer.compare(priorityOf(b), priorityOf(a));
+        if (priority != 0) {
+            return priority;
+        }
+        return Long.compare(startTime(a.getTenantId()), startTime(b.getTenantId()));
+    }
+
+    private long startTime(Long tenantId) {
+        return Math.max(virtualTimes.getOrDefault(tenantId, systemTime), systemTime);
+    }
+
+    private static int priorityOf(IngestTenantQueueDTO tenant) {
+        return tenant.getPriority() != null ? tenant.getPriority() : 0;
+    }
+}
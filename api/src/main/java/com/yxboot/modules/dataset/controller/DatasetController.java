@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.yxboot.common.api.Result;
 import com.yxboot.common.api.ResultCode;
 import com.yxboot.modules.dataset.dto.DatasetDTO;
+import com.yxboot.modules.dataset.dto.EmbeddingCacheStatsDTO;
 import com.yxboot.modules.dataset.entity.Dataset;
 import com.yxboot.modules.dataset.enums.DatasetStatus;
 import com.yxboot.modules.dataset.service.DatasetService;
@@ -47,6 +48,12 @@ public class DatasetController {
         return Result.success("查询成功", datasets);
     }
 
+    @GetMapping("/embedding-cache-stats")
+    @Operation(summary = "获取 embedding 缓存统计", description = "查询本节点 embedding 缓存的命中 / 未命中次数与缓存条数")
+    public Result<EmbeddingCacheStatsDTO> getEmbeddingCacheStats() {
+        return Result.success("查询成功", datasetService.getEmbeddingCacheStats());
+    }
+
     @GetMapping("/{datasetId}")
     @Operation(summary = "获取知识库详情", description = "根据知识库ID获取知识库详情")
     public Result<DatasetDTO> getDatasetById(@PathVariable Long datasetId) {
@@ -17,9 +17,11 @@ import com.yxboot.common.api.ResultCode;
 import com.yxboot.common.exception.ApiException;
 import com.yxboot.config.security.SecurityUser;
 import com.yxboot.modules.dataset.application.DatasetDocumentApplicationService;
-import com.yxboot.modules.dataset.application.DatasetDocumentProcessingApplicationService;
+import com.yxboot.modules.dataset.application.DatasetIngestJobScheduler;
 import com.yxboot.modules.dataset.dto.DatasetDocumentDTO;
+import com.yxboot.modules.dataset.dto.IngestTenantStatsDTO;
 import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetIngestJob;
 import com.yxboot.modules.dataset.enums.DocumentStatus;
 import com.yxboot.modules.dataset.enums.SegmentMethod;
 import com.yxboot.modules.system.entity.SysFile;
@@ -42,7 +44,7 @@ import lombok.RequiredArgsConstructor;
 public class DatasetDocumentController {
 
     private final DatasetDocumentApplicationService datasetDocumentApplicationService;
-    private final DatasetDocumentProcessingApplicationService datasetDocumentProcessingApplicationService;
+    private final DatasetIngestJobScheduler datasetIngestJobScheduler;
     private final SysFileService sysFileService;
 
     @GetMapping
@@ -70,6 +72,13 @@ public class DatasetDocumentController {
         return Result.success("查询成功", documents);
     }
 
+    @GetMapping("/ingest-stats")
+    @Operation(summary = "获取入库队列统计", description = "按租户查询入库队列深度、执行中文档数与排队等待时间")
+    public Result<List<IngestTenantStatsDTO>> getIngestStats(
+            @Parameter(description = "租户ID，为空时返回所有租户") @RequestParam(required = false) Long tenantId) {
+        return Result.success("查询成功", datasetIngestJobScheduler.getTenantStats(tenantId));
+    }
+
     @GetMapping("/{documentId}")
     @Operation(summary = "获取文档详情", description = "根据文档ID获取文档详情")
     public Result<DatasetDocument> getDocumentById(@PathVariable Long documentId) {
@@ -104,9 +113,8 @@ public class DatasetDocumentController {
                     documentRequest.getOverlapLength(),
                     documentRequest.getParentChunkSize());
 
-            // 触发异步文档处理，传递用户ID
-            datasetDocumentProcessingApplicationService.processDocumentAsync(document.getDocumentId(),
-                    securityUser.getUserId());
+            // 写入入库任务队列，由后台工作线程处理，传递用户ID
+            datasetIngestJobScheduler.submit(document, securityUser.getUserId(), DatasetIngestJob.PRIORITY_NORMAL);
 
             return Result.success("文档创建成功，正在后台处理", document);
         } catch (ApiException e) {
@@ -56,6 +56,9 @@ public class DatasetDocumentDTO {
     @Schema(description = "文档分段数")
     private Integer segmentNum;
 
+    @Schema(description = "已向量化分段数")
+    private Integer vectorizedNum;
+
     @Schema(description = "子块数量")
     private Long totalChildSegments;
 
@@ -82,4 +85,15 @@ public class DatasetDocumentDTO {
 
     @Schema(description = "更新时间")
     private LocalDateTime updateTime;
+
+    @Schema(description = "向量化进度（百分比，0-100）")
+    public Integer getProgress() {
+        if (status == DocumentStatus.COMPLETED) {
+            return 100;
+        }
+        if (segmentNum == null || segmentNum <= 0 || vectorizedNum == null) {
+            return 0;
+        }
+        return Math.min(100, vectorizedNum * 100 / segmentNum);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.yxboot.modules.dataset.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * embedding 缓存统计
+ *
+ * @author Boya
+ */
+@Data
+@Schema(description = "embedding 缓存统计")
+public class EmbeddingCacheStatsDTO {
+
+    @Schema(description = "是否启用 embedding 缓存")
+    private Boolean enabled;
+
+    @Schema(description = "缓存命名空间（向量模型标识 + 维度）")
+    private String namespace;
+
+    @Schema(description = "本节点启动以来的命中次数")
+    private Long hitCount;
+
+    @Schema(description = "本节点启动以来的未命中次数")
+    private Long missCount;
+
+    @Schema(description = "命中率（百分比）")
+    private Long hitRate;
+
+    @Schema(description = "磁盘缓存中的向量条数")
+    private Integer entries;
+}
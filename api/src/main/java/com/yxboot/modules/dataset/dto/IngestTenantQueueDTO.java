@@ -0,0 +1,31 @@
+package com.yxboot.modules.dataset.dto;
+
+import java.time.LocalDateTime;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 单个租户的入库排队概况（按租户分组统计可领取的排队任务 / 执行中任务）
+ *
+ * @author Boya
+ */
+@Data
+@Schema(description = "租户入库排队概况")
+public class IngestTenantQueueDTO {
+
+    @Schema(description = "租户ID")
+    private Long tenantId;
+
+    @Schema(description = "排队任务中的最高优先级")
+    private Integer priority;
+
+    @Schema(description = "可领取的排队任务数")
+    private Long queuedCount;
+
+    @Schema(description = "执行中的任务数")
+    private Long runningCount;
+
+    @Schema(description = "最早排队任务的创建时间")
+    private LocalDateTime oldestCreateTime;
+}
@@ -0,0 +1,49 @@
+package com.yxboot.modules.dataset.dto;
+
+import com.yxboot.modules.account.enums.TenantPlan;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 租户入库队列统计
+ *
+ * @author Boya
+ */
+@Data
+@Schema(description = "租户入库队列统计")
+public class IngestTenantStatsDTO {
+
+    @Schema(description = "租户ID")
+    private Long tenantId;
+
+    @Schema(description = "租户套餐")
+    private TenantPlan plan;
+
+    @Schema(description = "调度权重")
+    private Integer weight;
+
+    @Schema(description = "同时处理的文档数上限")
+    private Integer maxConcurrentDocuments;
+
+    @Schema(description = "同时在途的 embedding 批次上限")
+    private Integer maxConcurrentEmbeddings;
+
+    @Schema(description = "队列深度：可领取的排队任务数")
+    private Long queuedCount;
+
+    @Schema(description = "执行中的任务数（集群内）")
+    private Long runningCount;
+
+    @Schema(description = "最早排队任务已等待的秒数")
+    private Long oldestWaitSeconds;
+
+    @Schema(description = "本节点启动以来领取的任务数")
+    private Long dispatchedCount;
+
+    @Schema(description = "本节点领取任务的平均排队等待（毫秒）")
+    private Long avgWaitMs;
+
+    @Schema(description = "本节点领取任务的最长排队等待（毫秒）")
+    private Long maxWaitMs;
+}
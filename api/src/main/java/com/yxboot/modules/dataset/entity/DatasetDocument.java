@@ -60,6 +60,18 @@ public class DatasetDocument {
     @Schema(description = "文档分段数")
     private Integer segmentNum;
 
+    @Schema(description = "已向量化分段数")
+    private Integer vectorizedNum;
+
+    @Schema(description = "检查点：position 小于该值的分段已持久化")
+    private Integer persistedPosition;
+
+    @Schema(description = "检查点：position 小于该值的可检索分段已写入向量库")
+    private Integer vectorizedPosition;
+
+    @Schema(description = "切分已完成：重新处理时只重新向量化已有分段，不再切分源文件")
+    private Boolean splitCompleted;
+
     @Schema(description = "状态")
     private DocumentStatus status;
 
@@ -55,6 +55,12 @@ public class DatasetDocumentSegment {
     @Schema(description = "内容长度")
     private Integer contentLength;
 
+    @Schema(description = "起始页码（仅 PDF）")
+    private Integer startPage;
+
+    @Schema(description = "结束页码（仅 PDF）")
+    private Integer endPage;
+
     @Schema(description = "创建者ID")
     private Long creatorId;
 
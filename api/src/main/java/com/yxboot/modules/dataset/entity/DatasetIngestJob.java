@@ -0,0 +1,78 @@
+package com.yxboot.modules.dataset.entity;
+
+import java.time.LocalDateTime;
+
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import com.mybatisflex.core.keygen.KeyGenerators;
+import com.yxboot.config.mybatisflex.MyFlexListener;
+import com.yxboot.modules.dataset.enums.IngestJobStatus;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 文档入库任务实体类
+ *
+ * @author Boya
+ */
+@Data
+@Table(value = "dataset_ingest_job", onInsert = MyFlexListener.class, onUpdate = MyFlexListener.class)
+@Schema(description = "文档入库任务")
+public class DatasetIngestJob {
+
+    /** 普通优先级：用户上传 */
+    public static final int PRIORITY_NORMAL = 0;
+    /** 低优先级：启动恢复等后台补建的任务 */
+    public static final int PRIORITY_LOW = -10;
+
+    @Id(keyType = KeyType.Generator, value = KeyGenerators.snowFlakeId)
+    @Schema(description = "任务ID")
+    private Long jobId;
+
+    @Schema(description = "所属租户ID")
+    private Long tenantId;
+
+    @Schema(description = "知识库ID")
+    private Long datasetId;
+
+    @Schema(description = "文档ID")
+    private Long documentId;
+
+    @Schema(description = "提交用户ID")
+    private Long userId;
+
+    @Schema(description = "优先级，越大越先执行")
+    private Integer priority;
+
+    @Schema(description = "状态")
+    private IngestJobStatus status;
+
+    @Schema(description = "已领取次数")
+    private Integer attempts;
+
+    @Schema(description = "最大领取次数")
+    private Integer maxAttempts;
+
+    @Schema(description = "持有租约的工作节点")
+    private String leaseOwner;
+
+    @Schema(description = "租约到期时间")
+    private LocalDateTime leaseUntil;
+
+    @Schema(description = "最近心跳时间")
+    private LocalDateTime heartbeatTime;
+
+    @Schema(description = "最早可领取时间")
+    private LocalDateTime availableTime;
+
+    @Schema(description = "最近一次失败原因")
+    private String lastError;
+
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,33 @@
+package com.yxboot.modules.dataset.enums;
+
+import com.mybatisflex.annotation.EnumValue;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import lombok.Getter;
+
+/**
+ * 文档入库任务状态枚举
+ *
+ * @author Boya
+ */
+@Getter
+public enum IngestJobStatus {
+    QUEUED("queued", "排队中"),
+    RUNNING("running", "执行中"),
+    SUCCEEDED("succeeded", "成功"),
+    FAILED("failed", "失败");
+
+    @EnumValue
+    private final String value;
+    private final String desc;
+
+    IngestJobStatus(String value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return this.value;
+    }
+}
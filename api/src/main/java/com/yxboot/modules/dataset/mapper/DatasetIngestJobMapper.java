@@ -0,0 +1,11 @@
+package com.yxboot.modules.dataset.mapper;
+
+import com.mybatisflex.core.BaseMapper;
+import com.yxboot.modules.dataset.entity.DatasetIngestJob;
+
+/**
+ * 文档入库任务表 Mapper 接口
+ */
+public interface DatasetIngestJobMapper extends BaseMapper<DatasetIngestJob> {
+
+}
@@ -1,5 +1,13 @@
 package com.yxboot.modules.dataset.mapper;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
 import com.mybatisflex.core.BaseMapper;
 import com.yxboot.modules.dataset.entity.Dataset;
 
@@ -8,4 +16,30 @@ import com.yxboot.modules.dataset.entity.Dataset;
  */
 public interface DatasetMapper extends BaseMapper<Dataset> {
 
+    /**
+     * 内容版本号加一（原子自增，不先读后写）
+     * <p>
+     * content_version 不映射到实体，避免读出整行再 updateById 时覆盖并发的自增
+     */
+    @Update("UPDATE dataset SET content_version = content_version + 1 WHERE dataset_id = #{datasetId}")
+    int incrementContentVersion(@Param("datasetId") Long datasetId);
+
+    /**
+     * 版本号仍为 expected 时加一，返回受影响行数；用于取得本次递增后的确切版本号
+     */
+    @Update("UPDATE dataset SET content_version = #{expected} + 1 WHERE dataset_id = #{datasetId} AND content_version = #{expected}")
+    int compareAndIncrementContentVersion(@Param("datasetId") Long datasetId, @Param("expected") long expected);
+
+    /**
+     * 查询知识库的内容版本号，每行包含 datasetId、contentVersion
+     */
+    @Select("""
+            <script>
+            SELECT dataset_id AS datasetId, content_version AS contentVersion
+            FROM dataset
+            WHERE dataset_id IN
+            <foreach collection="datasetIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    List<Map<String, Object>> selectContentVersions(@Param("datasetIds") Collection<Long> datasetIds);
 }
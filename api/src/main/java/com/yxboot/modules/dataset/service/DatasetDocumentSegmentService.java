@@ -37,6 +37,16 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
 
     @Transactional(rollbackFor = Exception.class)
     public List<DatasetDocumentSegment> batchCreateSegments(DatasetDocument document, List<DocumentSegment> segments) {
+        return batchCreateSegments(document, segments, 0);
+    }
+
+    /**
+     * 批量保存一批分段，position 从 startPosition 开始编号。
+     * 流水线按窗口写入时使用；父子分块的父块须与其子块处于同一批次。
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<DatasetDocumentSegment> batchCreateSegments(DatasetDocument document, List<DocumentSegment> segments,
+            int startPosition) {
         if (segments == null || segments.isEmpty()) {
             return new ArrayList<>();
         }
@@ -44,7 +54,7 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
         boolean hasParentChild = segments.stream()
                 .anyMatch(s -> s.getSegmentType() == SegmentType.PARENT || s.getSegmentType() == SegmentType.CHILD);
         if (hasParentChild) {
-            return batchCreateParentChildSegments(document, segments);
+            return batchCreateParentChildSegments(document, segments, startPosition);
         }
 
         Long tenantId = document.getTenantId();
@@ -58,7 +68,8 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
                 continue;
             }
 
-            DatasetDocumentSegment segment = buildSegmentEntity(document, ds, i, SegmentType.NORMAL, null);
+            DatasetDocumentSegment segment =
+                    buildSegmentEntity(document, ds, startPosition + i, SegmentType.NORMAL, null);
             segmentList.add(segment);
         }
 
@@ -69,6 +80,12 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
     @Transactional(rollbackFor = Exception.class)
     public List<DatasetDocumentSegment> batchCreateParentChildSegments(DatasetDocument document,
             List<DocumentSegment> segments) {
+        return batchCreateParentChildSegments(document, segments, 0);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public List<DatasetDocumentSegment> batchCreateParentChildSegments(DatasetDocument document,
+            List<DocumentSegment> segments, int startPosition) {
         if (segments == null || segments.isEmpty()) {
             return new ArrayList<>();
         }
@@ -85,7 +102,7 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
 
         Map<String, Long> parentUuidToSegmentId = new HashMap<>();
         List<DatasetDocumentSegment> allSaved = new ArrayList<>();
-        int position = 0;
+        int position = startPosition;
 
         List<DatasetDocumentSegment> parentEntities = new ArrayList<>();
         for (DocumentSegment ds : parents) {
@@ -149,9 +166,16 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
         segment.setTitle(ds.getTitle());
         segment.setContent(content);
         segment.setContentLength(content.length());
+        segment.setStartPage(getIntMetadata(ds, "start_page"));
+        segment.setEndPage(getIntMetadata(ds, "end_page"));
         return segment;
     }
 
+    private Integer getIntMetadata(DocumentSegment ds, String key) {
+        return ds.getMetadata() != null && ds.getMetadata().get(key) instanceof Number number ? number.intValue()
+                : null;
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public boolean batchUpdateVectorIds(List<DatasetDocumentSegment> segments) {
         if (segments == null || segments.isEmpty()) {
@@ -227,6 +251,16 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
         return listAs(wrapper, DatasetDocumentSegmentDTO.class);
     }
 
+    /**
+     * 查询知识库下所有可检索分段（普通块 + 子块），用于重建关键词索引
+     */
+    public List<DatasetDocumentSegment> listSearchableSegmentsByDatasetId(Long datasetId) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.DATASET_ID.eq(datasetId));
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.SEGMENT_TYPE.in(SegmentType.NORMAL, SegmentType.CHILD));
+        return list(wrapper);
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public boolean updateSegmentContent(Long segmentId, String content, String title) {
         DatasetDocumentSegment segment = getById(segmentId);
@@ -286,6 +320,31 @@ public class DatasetDocumentSegmentService extends ServiceImpl<DatasetDocumentSe
         return true;
     }
 
+    /**
+     * 查询文档中 position 位于 [fromPosition, toPosition) 的分段，按 position 排序（断点续传时读取已落库窗口）
+     */
+    public List<DatasetDocumentSegment> listSegmentsByPositionRange(Long documentId, int fromPosition,
+            int toPosition) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.DOCUMENT_ID.eq(documentId));
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.POSITION.ge(fromPosition));
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.POSITION.lt(toPosition));
+        wrapper.orderBy(DATASET_DOCUMENT_SEGMENT.POSITION, true);
+        return list(wrapper);
+    }
+
+    /**
+     * 删除文档中 position 不小于 fromPosition 的分段
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean deleteSegmentsFromPosition(Long documentId, int fromPosition) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.DOCUMENT_ID.eq(documentId));
+        wrapper.where(DATASET_DOCUMENT_SEGMENT.POSITION.ge(fromPosition));
+        remove(wrapper);
+        return true;
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteSegmentsByDocumentId(Long documentId) {
         QueryWrapper wrapper = QueryWrapper.create();
@@ -1,5 +1,6 @@
 package com.yxboot.modules.dataset.service;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.stereotype.Service;
@@ -59,6 +60,9 @@ public class DatasetDocumentService extends ServiceImpl<DatasetDocumentMapper, D
         document.setOverlapLength(overlapLength);
         document.setParentChunkSize(parentChunkSize != null ? parentChunkSize : 1200);
         document.setSegmentNum(0);
+        document.setPersistedPosition(0);
+        document.setVectorizedPosition(0);
+        document.setSplitCompleted(false);
         document.setStatus(DocumentStatus.PENDING);
 
         save(document);
@@ -107,6 +111,73 @@ public class DatasetDocumentService extends ServiceImpl<DatasetDocumentMapper, D
         return updateById(document);
     }
 
+    /**
+     * 更新入库进度，只写进度字段，不覆盖状态等其他字段
+     *
+     * @param documentId 文档ID
+     * @param segmentNum 当前可检索分段数
+     * @param vectorizedNum 已向量化分段数
+     * @return 是否更新成功
+     */
+    public boolean updateDocumentProgress(Long documentId, Integer segmentNum, Integer vectorizedNum) {
+        DatasetDocument document = new DatasetDocument();
+        document.setDocumentId(documentId);
+        document.setSegmentNum(segmentNum);
+        document.setVectorizedNum(vectorizedNum);
+        return updateById(document);
+    }
+
+    /**
+     * 更新持久化检查点：position 小于 persistedPosition 的分段均已落库
+     */
+    public boolean updatePersistedCheckpoint(Long documentId, int persistedPosition) {
+        DatasetDocument document = new DatasetDocument();
+        document.setDocumentId(documentId);
+        document.setPersistedPosition(persistedPosition);
+        return updateById(document);
+    }
+
+    /**
+     * 更新向量化检查点：position 小于 vectorizedPosition 的可检索分段均已写入向量库
+     */
+    public boolean updateVectorizedCheckpoint(Long documentId, int vectorizedPosition) {
+        DatasetDocument document = new DatasetDocument();
+        document.setDocumentId(documentId);
+        document.setVectorizedPosition(vectorizedPosition);
+        return updateById(document);
+    }
+
+    /**
+     * 同时回退两个检查点（截断已落库分段后调用）
+     */
+    public boolean resetCheckpoint(Long documentId, int persistedPosition, int vectorizedPosition) {
+        DatasetDocument document = new DatasetDocument();
+        document.setDocumentId(documentId);
+        document.setPersistedPosition(persistedPosition);
+        document.setVectorizedPosition(vectorizedPosition);
+        return updateById(document);
+    }
+
+    /**
+     * 标记切分已完成：分段全部落库后调用，之后重新处理该文档只重新向量化已有分段
+     */
+    public boolean markSplitCompleted(Long documentId) {
+        DatasetDocument document = new DatasetDocument();
+        document.setDocumentId(documentId);
+        document.setSplitCompleted(true);
+        return updateById(document);
+    }
+
+    /**
+     * 查询指定状态的文档，用于启动时恢复被中断的入库任务
+     */
+    public List<DatasetDocument> listDocumentsByStatus(DocumentStatus... statuses) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_DOCUMENT.STATUS.in(Arrays.stream(statuses).map(DocumentStatus::getValue).toList()));
+        wrapper.orderBy(DATASET_DOCUMENT.CREATE_TIME, true);
+        return list(wrapper);
+    }
+
     public boolean deleteDocument(Long documentId) {
         DatasetDocument document = getById(documentId);
         if (document == null) {
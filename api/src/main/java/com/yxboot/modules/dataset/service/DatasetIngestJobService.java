@@ -0,0 +1,273 @@
+package com.yxboot.modules.dataset.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import com.mybatisflex.core.query.QueryWrapper;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.yxboot.modules.dataset.dto.IngestTenantQueueDTO;
+import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetIngestJob;
+import com.yxboot.modules.dataset.enums.IngestJobStatus;
+import com.yxboot.modules.dataset.mapper.DatasetIngestJobMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import static com.mybatisflex.core.query.QueryMethods.count;
+import static com.mybatisflex.core.query.QueryMethods.max;
+import static com.mybatisflex.core.query.QueryMethods.min;
+import static com.yxboot.modules.dataset.entity.table.DatasetIngestJobTableDef.DATASET_INGEST_JOB;
+
+/**
+ * 文档入库任务队列服务
+ * <p>
+ * 任务以数据库表为队列：领取时按 "状态 + 领取次数" 条件更新（乐观锁），多个节点并发领取同一任务只有一个成功；
+ * 执行中由心跳续期租约，节点宕机后租约过期，任务重新排队由其他节点（或重启后的本节点）继续，
+ * 文档入库检查点保证重新执行时从最后完成的窗口继续。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatasetIngestJobService extends ServiceImpl<DatasetIngestJobMapper, DatasetIngestJob> {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * 为文档创建排队任务；文档已有排队中 / 执行中的任务时直接返回该任务。
+     * 同一文档同时只能有一个活动任务，由唯一索引 uk_active_document 保证（见 migration_27），
+     * 并发提交时插入失败的一方返回已有任务。
+     */
+    public DatasetIngestJob enqueue(DatasetDocument document, Long userId, int priority, int maxAttempts) {
+        DatasetIngestJob active = getActiveJob(document.getDocumentId());
+        if (active != null) {
+            log.info("文档已有入库任务, documentId: {}, jobId: {}, status: {}", document.getDocumentId(),
+                    active.getJobId(), active.getStatus());
+            return active;
+        }
+
+        DatasetIngestJob job = new DatasetIngestJob();
+        job.setTenantId(document.getTenantId());
+        job.setDatasetId(document.getDatasetId());
+        job.setDocumentId(document.getDocumentId());
+        job.setUserId(userId);
+        job.setPriority(priority);
+        job.setStatus(IngestJobStatus.QUEUED);
+        job.setAttempts(0);
+        job.setMaxAttempts(maxAttempts);
+        job.setAvailableTime(LocalDateTime.now());
+        try {
+            save(job);
+        } catch (DuplicateKeyException e) {
+            DatasetIngestJob existing = getActiveJob(document.getDocumentId());
+            if (existing == null) {
+                // 并发的任务在查询前已结束，交给调用方重试
+                throw e;
+            }
+            log.info("文档已被并发提交入库, documentId: {}, jobId: {}", document.getDocumentId(), existing.getJobId());
+            return existing;
+        }
+        log.info("文档入库任务已排队, documentId: {}, jobId: {}, priority: {}", document.getDocumentId(), job.getJobId(),
+                priority);
+        return job;
+    }
+
+    /**
+     * 文档排队中 / 执行中的任务，没有时返回 null
+     */
+    public DatasetIngestJob getActiveJob(Long documentId) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.DOCUMENT_ID.eq(documentId));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.in(IngestJobStatus.QUEUED.getValue(),
+                IngestJobStatus.RUNNING.getValue()));
+        return list(wrapper.limit(1)).stream().findFirst().orElse(null);
+    }
+
+    /**
+     * 按租户统计当前可领取的排队任务（最高优先级、数量、最早创建时间）
+     */
+    public List<IngestTenantQueueDTO> listQueuedTenants() {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.select(DATASET_INGEST_JOB.TENANT_ID, max(DATASET_INGEST_JOB.PRIORITY).as("priority"),
+                count().as("queuedCount"), min(DATASET_INGEST_JOB.CREATE_TIME).as("oldestCreateTime"));
+        wrapper.from(DATASET_INGEST_JOB);
+        wrapper.where(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.QUEUED.getValue()));
+        wrapper.and(DATASET_INGEST_JOB.AVAILABLE_TIME.le(LocalDateTime.now()));
+        wrapper.groupBy(DATASET_INGEST_JOB.TENANT_ID);
+        return listAs(wrapper, IngestTenantQueueDTO.class);
+    }
+
+    /**
+     * 按租户统计执行中的任务数（集群内），用于租户并发文档数限制
+     */
+    public List<IngestTenantQueueDTO> listRunningTenants() {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.select(DATASET_INGEST_JOB.TENANT_ID, count().as("runningCount"));
+        wrapper.from(DATASET_INGEST_JOB);
+        wrapper.where(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        wrapper.groupBy(DATASET_INGEST_JOB.TENANT_ID);
+        return listAs(wrapper, IngestTenantQueueDTO.class);
+    }
+
+    /**
+     * 租户下一个待领取的任务：优先级高的先执行，同优先级先进先出
+     */
+    public DatasetIngestJob getNextQueuedJob(Long tenantId) {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.QUEUED.getValue()));
+        wrapper.and(tenantId != null ? DATASET_INGEST_JOB.TENANT_ID.eq(tenantId)
+                : DATASET_INGEST_JOB.TENANT_ID.isNull());
+        wrapper.and(DATASET_INGEST_JOB.AVAILABLE_TIME.le(LocalDateTime.now()));
+        wrapper.orderBy(DATASET_INGEST_JOB.PRIORITY, false);
+        wrapper.orderBy(DATASET_INGEST_JOB.CREATE_TIME, true);
+        return list(wrapper.limit(1)).stream().findFirst().orElse(null);
+    }
+
+    /**
+     * 领取任务并获得租约。以领取前读到的领取次数为条件更新，被其他节点抢先领取时返回 false。
+     */
+    public boolean tryClaim(DatasetIngestJob job, String workerId, int leaseSeconds) {
+        LocalDateTime now = LocalDateTime.now();
+        int attempts = job.getAttempts() != null ? job.getAttempts() : 0;
+
+        DatasetIngestJob update = new DatasetIngestJob();
+        update.setStatus(IngestJobStatus.RUNNING);
+        update.setAttempts(attempts + 1);
+        update.setLeaseOwner(workerId);
+        update.setLeaseUntil(now.plusSeconds(leaseSeconds));
+        update.setHeartbeatTime(now);
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.eq(job.getJobId()));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.QUEUED.getValue()));
+        wrapper.and(DATASET_INGEST_JOB.ATTEMPTS.eq(attempts));
+        if (getMapper().updateByQuery(update, wrapper) == 0) {
+            return false;
+        }
+        job.setStatus(IngestJobStatus.RUNNING);
+        job.setAttempts(attempts + 1);
+        job.setLeaseOwner(workerId);
+        job.setLeaseUntil(update.getLeaseUntil());
+        return true;
+    }
+
+    /**
+     * 心跳：续期本节点持有的租约
+     *
+     * @return 续期成功的任务数，小于 jobIds 数量说明有租约已过期被回收
+     */
+    public int renewLeases(String workerId, Collection<Long> jobIds, int leaseSeconds) {
+        if (jobIds == null || jobIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        DatasetIngestJob update = new DatasetIngestJob();
+        update.setLeaseUntil(now.plusSeconds(leaseSeconds));
+        update.setHeartbeatTime(now);
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.in(jobIds));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_OWNER.eq(workerId));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        return getMapper().updateByQuery(update, wrapper);
+    }
+
+    /**
+     * jobIds 中租约仍由本节点持有的任务
+     */
+    public Set<Long> listLeasedJobIds(String workerId, Collection<Long> jobIds) {
+        if (jobIds == null || jobIds.isEmpty()) {
+            return Set.of();
+        }
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.select(DATASET_INGEST_JOB.JOB_ID);
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.in(jobIds));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_OWNER.eq(workerId));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        Set<Long> held = new HashSet<>();
+        for (DatasetIngestJob job : list(wrapper)) {
+            held.add(job.getJobId());
+        }
+        return held;
+    }
+
+    /**
+     * 结束任务（仅当租约仍由本节点持有）
+     */
+    public boolean finish(Long jobId, String workerId, IngestJobStatus status, String error) {
+        DatasetIngestJob update = new DatasetIngestJob();
+        update.setStatus(status);
+        update.setLastError(truncateError(error));
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.eq(jobId));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_OWNER.eq(workerId));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        return getMapper().updateByQuery(update, wrapper) > 0;
+    }
+
+    /**
+     * 放弃刚领取的任务（本节点无法执行时），延迟 delaySeconds 后可再次领取，不计入领取次数
+     */
+    public boolean release(DatasetIngestJob job, String workerId, int delaySeconds) {
+        DatasetIngestJob update = new DatasetIngestJob();
+        update.setStatus(IngestJobStatus.QUEUED);
+        update.setAttempts(Math.max(job.getAttempts() - 1, 0));
+        update.setAvailableTime(LocalDateTime.now().plusSeconds(delaySeconds));
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.eq(job.getJobId()));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_OWNER.eq(workerId));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        return getMapper().updateByQuery(update, wrapper) > 0;
+    }
+
+    /**
+     * 租约已过期的执行中任务（持有节点宕机或失联）
+     */
+    public List<DatasetIngestJob> listExpiredJobs() {
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_UNTIL.lt(LocalDateTime.now()));
+        return list(wrapper);
+    }
+
+    /**
+     * 回收过期租约：重新排队，或在领取次数用尽时标记失败。
+     * 以读到的租约到期时间为条件，避免与持有节点的心跳续期互相覆盖。
+     *
+     * @return 是否回收成功
+     */
+    public boolean reclaimExpired(DatasetIngestJob job, boolean exhausted) {
+        DatasetIngestJob update = new DatasetIngestJob();
+        if (exhausted) {
+            update.setStatus(IngestJobStatus.FAILED);
+            update.setLastError("租约多次过期，领取次数已用尽");
+        } else {
+            update.setStatus(IngestJobStatus.QUEUED);
+            update.setAvailableTime(LocalDateTime.now());
+            update.setLastError("租约过期，节点 " + job.getLeaseOwner() + " 未完成任务");
+        }
+
+        QueryWrapper wrapper = QueryWrapper.create();
+        wrapper.where(DATASET_INGEST_JOB.JOB_ID.eq(job.getJobId()));
+        wrapper.and(DATASET_INGEST_JOB.STATUS.eq(IngestJobStatus.RUNNING.getValue()));
+        wrapper.and(DATASET_INGEST_JOB.LEASE_UNTIL.eq(job.getLeaseUntil()));
+        return getMapper().updateByQuery(update, wrapper) > 0;
+    }
+
+    private String truncateError(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.springframework.stereotype.Service;
+import com.yxboot.ai.embedding.QueryEmbeddingCache;
 import com.yxboot.ai.service.AiVectorStoreService;
 import com.yxboot.ai.vector.AiQueryResult;
 import com.yxboot.modules.dataset.entity.Dataset;
@@ -22,6 +23,7 @@ public class DatasetSearchService {
 
     private final AiVectorStoreService vectorStoreService;
     private final DatasetService datasetService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
 
     public List<AiQueryResult> searchInDataset(Long datasetId, String query, int limit, float minScore) {
         return searchInDataset(datasetId, query, limit, minScore, null);
@@ -43,7 +45,7 @@ public class DatasetSearchService {
             datasetService.ensureEmbeddingModelCompatible(dataset);
 
             List<AiQueryResult> results = vectorStoreService.similaritySearch(
-                    datasetId, dataset.getTenantId(), query, limit, minScore, filter);
+                    datasetId, dataset.getTenantId(), queryEmbeddingCache.embed(query), limit, minScore, filter);
 
             log.info("知识库搜索完成, datasetId: {}, query: {}, 结果数量: {}", datasetId, query, results.size());
             return results;
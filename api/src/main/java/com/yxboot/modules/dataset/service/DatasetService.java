@@ -2,6 +2,7 @@ package com.yxboot.modules.dataset.service;
 
 import java.util.List;
 
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -10,8 +11,10 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.embedding.CachingEmbeddingModel;
 import com.yxboot.ai.service.AiVectorStoreService;
 import com.yxboot.modules.dataset.dto.DatasetDTO;
+import com.yxboot.modules.dataset.dto.EmbeddingCacheStatsDTO;
 import com.yxboot.modules.dataset.entity.Dataset;
 import com.yxboot.modules.dataset.enums.DatasetStatus;
 import com.yxboot.modules.dataset.mapper.DatasetMapper;
@@ -32,6 +35,7 @@ public class DatasetService extends ServiceImpl<DatasetMapper, Dataset> {
 
     private final AiVectorStoreService vectorStoreService;
     private final AiProperties aiProperties;
+    private final EmbeddingModel embeddingModel;
 
     public String getCurrentEmbeddingModelKey() {
         return aiProperties.getEmbeddingModelKey();
@@ -67,6 +71,26 @@ public class DatasetService extends ServiceImpl<DatasetMapper, Dataset> {
         }
     }
 
+    /**
+     * 本节点 embedding 缓存的命中统计
+     */
+    public EmbeddingCacheStatsDTO getEmbeddingCacheStats() {
+        EmbeddingCacheStatsDTO stats = new EmbeddingCacheStatsDTO();
+        if (!(embeddingModel instanceof CachingEmbeddingModel cachingModel)) {
+            stats.setEnabled(false);
+            return stats;
+        }
+        long hits = cachingModel.getHitCount();
+        long misses = cachingModel.getMissCount();
+        stats.setEnabled(true);
+        stats.setNamespace(cachingModel.getNamespace());
+        stats.setHitCount(hits);
+        stats.setMissCount(misses);
+        stats.setHitRate(hits + misses == 0 ? 0L : hits * 100 / (hits + misses));
+        stats.setEntries(cachingModel.getEntryCount());
+        return stats;
+    }
+
     public void recordEmbeddingModel(Long datasetId) {
         Dataset dataset = getById(datasetId);
         if (dataset == null) {
@@ -0,0 +1,78 @@
+package com.yxboot.modules.dataset.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.yxboot.modules.dataset.mapper.DatasetMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 知识库内容版本：分段向量写入或删除后递增，供按知识库内容缓存的数据（如语义回答缓存）判断是否失效。
+ * 版本号保存在数据库中，多节点共享。
+ *
+ * @author Boya
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatasetVersionService {
+
+    /** 版本号未知（递增失败或并发冲突过多） */
+    public static final long UNKNOWN_VERSION = -1L;
+    private static final int MAX_BUMP_ATTEMPTS = 5;
+
+    private final DatasetMapper datasetMapper;
+
+    /**
+     * 知识库内容已变化，递增版本号。失败只记录日志，不影响入库与删除
+     * <p>
+     * 先读后按原值条件自增，得到的就是本次递增后的版本号，本节点的内存数据（如关键词索引）可据此同步版本，
+     * 而不会把其他节点并发的变更也当作已知；冲突过多时退化为直接自增并返回 {@link #UNKNOWN_VERSION}
+     *
+     * @return 递增后的版本号，未知时返回 {@link #UNKNOWN_VERSION}
+     */
+    public long bump(Long datasetId) {
+        if (datasetId == null) {
+            return UNKNOWN_VERSION;
+        }
+        try {
+            for (int i = 0; i < MAX_BUMP_ATTEMPTS; i++) {
+                Long current = getVersions(List.of(datasetId)).get(datasetId);
+                if (current == null) {
+                    return UNKNOWN_VERSION;
+                }
+                if (datasetMapper.compareAndIncrementContentVersion(datasetId, current) == 1) {
+                    return current + 1;
+                }
+            }
+            datasetMapper.incrementContentVersion(datasetId);
+        } catch (Exception e) {
+            log.warn("更新知识库内容版本失败, datasetId: {}", datasetId, e);
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    /**
+     * 知识库当前的内容版本号，不存在的知识库不在结果中
+     */
+    public Map<Long, Long> getVersions(Collection<Long> datasetIds) {
+        Map<Long, Long> versions = new HashMap<>();
+        if (datasetIds == null || datasetIds.isEmpty()) {
+            return versions;
+        }
+        for (Map<String, Object> row : datasetMapper.selectContentVersions(datasetIds)) {
+            Object datasetId = row.get("datasetId");
+            Object version = row.get("contentVersion");
+            if (datasetId instanceof Number id) {
+                versions.put(id.longValue(), version instanceof Number v ? v.longValue() : 0L);
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,78 @@
+package com.yxboot.ai.document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PageIndexTest {
+
+    @Test
+    void getPageNumber_shouldMapOffsetsToPages() {
+        PageIndex index = new PageIndex(new int[] {0, 100, 250});
+
+        assertEquals(1, index.getPageNumber(0));
+        assertEquals(1, index.getPageNumber(99));
+        assertEquals(2, index.getPageNumber(100));
+        assertEquals(2, index.getPageNumber(249));
+        assertEquals(3, index.getPageNumber(250));
+        assertEquals(3, index.getPageNumber(10_000));
+    }
+
+    @Test
+    void getPageNumber_blankPagesShareOffsetWithNextPage() {
+        // 第 2、3 页为空白页，起始偏移与第 4 页相同
+        PageIndex index = new PageIndex(new int[] {0, 100, 100, 100, 180});
+
+        assertEquals(1, index.getPageNumber(99));
+        assertEquals(4, index.getPageNumber(100));
+        assertEquals(4, index.getPageNumber(179));
+        assertEquals(5, index.getPageNumber(180));
+    }
+
+    @Test
+    void getPageNumber_withoutPages_returnsFirstPage() {
+        PageIndex index = new PageIndex(new int[0]);
+
+        assertEquals(0, index.getPageCount());
+        assertEquals(1, index.getPageNumber(42));
+    }
+
+    @Test
+    void annotate_shouldUseExclusiveEndPosition() {
+        PageIndex index = new PageIndex(new int[] {0, 100, 200});
+        DocumentSegment endsAtPageBoundary = segment(50, 100);
+        DocumentSegment crossesPages = segment(90, 201);
+        DocumentSegment empty = segment(150, 150);
+
+        index.annotate(List.of(endsAtPageBoundary, crossesPages, empty));
+
+        // 结束位置不含，恰好止于第 2 页起点的分段只在第 1 页
+        assertEquals(1, endsAtPageBoundary.getMetadata().get("start_page"));
+        assertEquals(1, endsAtPageBoundary.getMetadata().get("end_page"));
+        assertEquals(1, crossesPages.getMetadata().get("start_page"));
+        assertEquals(3, crossesPages.getMetadata().get("end_page"));
+        assertEquals(2, empty.getMetadata().get("start_page"));
+        assertEquals(2, empty.getMetadata().get("end_page"));
+    }
+
+    @Test
+    void annotate_shouldSkipSegmentsWithoutPosition() {
+        PageIndex index = new PageIndex(new int[] {0, 100});
+        DocumentSegment segment = DocumentSegment.builder().content("无位置").build();
+
+        index.annotate(List.of(segment));
+
+        assertFalse(segment.getMetadata().containsKey("start_page"));
+        assertFalse(segment.getMetadata().containsKey("end_page"));
+    }
+
+    private static DocumentSegment segment(int start, int end) {
+        DocumentSegment segment = DocumentSegment.builder().content("内容").build();
+        segment.addMetadata("start_position", start);
+        segment.addMetadata("end_position", end);
+        return segment;
+    }
+}
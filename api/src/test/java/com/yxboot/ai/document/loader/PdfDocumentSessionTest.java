@@ -0,0 +1,116 @@
+package com.yxboot.ai.document.loader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.PageIndex;
+
+class PdfDocumentSessionTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getPageIndex_shouldMapTextOffsetsToPagesIncludingBlankPages() throws IOException {
+        // 第 2 页为空白页
+        byte[] pdf = createPdf("Page one alpha", null, "Page three gamma");
+
+        try (PdfDocumentSession session = PdfDocumentSession.open(pdf)) {
+            String text = session.getText();
+            int[] offsets = session.getPageOffsets();
+            int alpha = text.indexOf("alpha");
+            int gamma = text.indexOf("gamma");
+
+            assertEquals(3, offsets.length);
+            assertEquals(offsets[2], offsets[1]);
+            assertEquals(1, session.getPageNumber(alpha));
+            assertEquals(3, session.getPageNumber(gamma));
+            assertEquals(3, session.getPageNumber(offsets[1]));
+        }
+    }
+
+    @Test
+    void annotate_segmentsShouldGetPagesFromSessionIndex() throws IOException {
+        byte[] pdf = createPdf("Page one alpha", "Page two beta", "Page three gamma");
+
+        try (PdfDocumentSession session = PdfDocumentSession.open(pdf)) {
+            String text = session.getText();
+            PageIndex pageIndex = session.getPageIndex();
+            DocumentSegment firstPage = segment(text.indexOf("alpha"), text.indexOf("alpha") + 5);
+            DocumentSegment acrossPages = segment(text.indexOf("beta"), text.indexOf("gamma") + 5);
+
+            pageIndex.annotate(List.of(firstPage, acrossPages));
+
+            assertEquals(1, firstPage.getMetadata().get("start_page"));
+            assertEquals(1, firstPage.getMetadata().get("end_page"));
+            assertEquals(2, acrossPages.getMetadata().get("start_page"));
+            assertEquals(3, acrossPages.getMetadata().get("end_page"));
+        }
+    }
+
+    @Test
+    void parallelExtraction_shouldMatchSerialTextAndOffsets() throws IOException {
+        byte[] pdf = createPdf("Page one", null, "Page three", "Page four", "Page five", "Page six");
+        File file = Files.write(tempDir.resolve("doc.pdf"), pdf).toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try (PdfDocumentSession serial = PdfDocumentSession.open(file);
+                PdfDocumentSession parallel = PdfDocumentSession.open(file, executor, 3, 2)) {
+            assertEquals(serial.getText(), parallel.getText());
+            assertArrayEquals(serial.getPageOffsets(), parallel.getPageOffsets());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 每个参数一页，null 为空白页（没有内容流）
+     */
+    private static byte[] createPdf(String... pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (String pageText : pages) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (pageText == null) {
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText(pageText);
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static DocumentSegment segment(int start, int end) {
+        DocumentSegment segment = DocumentSegment.builder().content("内容").build();
+        segment.addMetadata("start_position", start);
+        segment.addMetadata("end_position", end);
+        return segment;
+    }
+}
@@ -0,0 +1,55 @@
+package com.yxboot.ai.document.splitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.yxboot.ai.document.Document;
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.analyzer.PdfStructureAnalyzer;
+import com.yxboot.ai.document.analyzer.TextStructureAnalyzer;
+import com.yxboot.ai.document.analyzer.WordStructureAnalyzer;
+
+class ChapterSplitterTest {
+
+    private final TextStructureAnalyzer textAnalyzer = new TextStructureAnalyzer();
+    private final ChapterSplitter splitter = new ChapterSplitter(new PdfStructureAnalyzer(textAnalyzer),
+            new WordStructureAnalyzer(textAnalyzer), textAnalyzer)
+            .setMinChapterLength(10)
+            .setMaxChapterLength(600);
+
+    @Test
+    void split_largeChapterPositionsShouldPointAtChunkTextInDocument() {
+        // 第一章的全文由正文与子章节 1.1 的正文以 "\n\n" 拼接而成，不含标题
+        String text = "第一章 总则\n\n" + sentences("甲", 100) + "\n\n"
+                + "1.1 范围说明\n\n" + sentences("乙", 100) + "\n\n"
+                + "第二章 附则\n\n" + sentences("丙", 100);
+
+        List<DocumentSegment> segments = splitter.split(Document.of(text));
+
+        List<DocumentSegment> chunks = segments.stream()
+                .filter(segment -> "large_chapter".equals(segment.getMetadata().get("splitting_reason")))
+                .toList();
+        assertTrue(chunks.size() > 2);
+        for (DocumentSegment chunk : chunks) {
+            int start = (Integer) chunk.getMetadata().get("start_position");
+            int end = (Integer) chunk.getMetadata().get("end_position");
+            String content = chunk.getContent();
+            assertTrue(start <= end);
+            // 分块首尾的文字与原文对应位置一致（标题与 "\n\n" 拼接不会造成偏移）
+            assertEquals(content.substring(0, 8), text.substring(start, start + 8));
+            assertEquals(content.substring(content.length() - 8), text.substring(end - 8, end));
+        }
+    }
+
+    private static String sentences(String prefix, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(prefix).append(String.format("第%03d句内容。", i));
+        }
+        return sb.toString();
+    }
+}
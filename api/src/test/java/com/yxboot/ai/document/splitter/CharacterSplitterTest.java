@@ -3,6 +3,7 @@ package com.yxboot.ai.document.splitter;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -36,4 +37,60 @@ class CharacterSplitterTest {
 
         assertEquals(4, segments.size());
     }
+
+    @Test
+    void splitText_nonCanonicalSeparators_shouldJoinWithCanonicalSeparatorsAndOverlap() {
+        CharacterSplitter splitter = new CharacterSplitter(14, 4);
+        List<String> chunks = splitter.splitText("第一段内容。\r\n\r\n第二段内容。\n\n第三段。");
+
+        assertEquals(List.of("第一段内容。\r\n\n第二段内容。", "段内容。\n\n第三段。"), chunks);
+    }
+
+    @Test
+    void splitText_longParagraph_shouldSplitBySentenceWithOverlap() {
+        CharacterSplitter splitter = new CharacterSplitter(30, 6);
+        List<String> chunks = splitter
+                .splitText("First sentence here.  Second one follows!\tThird sentence is longer?  End.");
+
+        assertEquals(List.of("First sentence here.", " here. Second one follows!",
+                "llows! Third sentence is longer?", "onger? End."), chunks);
+    }
+
+    @Test
+    void split_shouldRecordSourcePositionsOfChunks() {
+        CharacterSplitter splitter = new CharacterSplitter(14, 4);
+        List<DocumentSegment> segments = splitter.split(Document.of("第一段内容。\r\n\r\n第二段内容。\n\n第三段。"));
+
+        assertEquals(2, segments.size());
+        assertEquals(0, segments.get(0).getMetadata().get("start_position"));
+        assertEquals(16, segments.get(0).getMetadata().get("end_position"));
+        // 重叠部分从第二段的「段内容。」开始
+        assertEquals(12, segments.get(1).getMetadata().get("start_position"));
+        assertEquals(22, segments.get(1).getMetadata().get("end_position"));
+    }
+
+    @Test
+    void splitInWindows_shouldEmitSameChunksAsSplitInBoundedWindows() {
+        CharacterSplitter splitter = new CharacterSplitter(30, 6);
+        String text = "First sentence here.  Second one follows!\tThird sentence is longer?  End.\n\n"
+                + "x".repeat(200) + "\n\n最后一段。";
+        List<DocumentSegment> expected = splitter.split(Document.of(text));
+
+        List<List<DocumentSegment>> windows = new ArrayList<>();
+        int total = splitter.splitInWindows(Document.of(text), 3, windows::add);
+
+        assertEquals(expected.size(), total);
+        List<DocumentSegment> actual = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            assertTrue(windows.get(i).size() == 3 || i == windows.size() - 1);
+            actual.addAll(windows.get(i));
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getContent(), actual.get(i).getContent());
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getMetadata().get("start_position"),
+                    actual.get(i).getMetadata().get("start_position"));
+        }
+    }
 }
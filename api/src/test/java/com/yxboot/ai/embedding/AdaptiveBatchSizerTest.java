@@ -0,0 +1,45 @@
+package com.yxboot.ai.embedding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 自适应 embedding 批大小测试类
+ */
+class AdaptiveBatchSizerTest {
+
+    @Test
+    void testStartsBelowMaxAndGrowsWhileUnderTarget() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 1, 10, 1000);
+        assertEquals(5, sizer.current());
+
+        for (int i = 0; i < 20; i++) {
+            sizer.onSuccess(sizer.current(), 200);
+        }
+
+        assertEquals(10, sizer.current());
+    }
+
+    @Test
+    void testShrinksOnSlowBatchesAndThrottling() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 2, 10, 1000);
+        assertEquals(6, sizer.current());
+
+        sizer.onSuccess(6, 2500);
+        assertEquals(5, sizer.current());
+        sizer.onThrottled();
+        assertEquals(2, sizer.current());
+        sizer.onThrottled();
+        assertEquals(2, sizer.current());
+    }
+
+    @Test
+    void testPartialBatchDoesNotGrow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer("test", 1, 10, 1000);
+
+        // 文档末尾不足一批时耗时再低也不代表能承受更大的批次
+        sizer.onSuccess(2, 100);
+
+        assertEquals(5, sizer.current());
+    }
+}
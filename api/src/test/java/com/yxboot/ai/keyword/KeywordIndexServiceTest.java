@@ -0,0 +1,167 @@
+package com.yxboot.ai.keyword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
+import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
+import com.yxboot.modules.dataset.service.DatasetVersionService;
+
+class KeywordIndexServiceTest {
+
+    private static final Long DATASET_ID = 1L;
+
+    @TempDir
+    Path indexDir;
+
+    private final DatasetDocumentSegmentService segmentService = mock(DatasetDocumentSegmentService.class);
+    private final DatasetVersionService datasetVersionService = mock(DatasetVersionService.class);
+    private final AtomicLong contentVersion = new AtomicLong(1);
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private AiProperties aiProperties;
+    private KeywordIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        aiProperties = new AiProperties();
+        aiProperties.getRetriever().setKeywordIndexDir(indexDir.toString());
+        when(datasetVersionService.getVersions(any()))
+                .thenAnswer(invocation -> Map.of(DATASET_ID, contentVersion.get()));
+        service = newService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        rebuildExecutor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    @Test
+    void search_versionChangedOnOtherNode_shouldRebuildInBackground() throws InterruptedException {
+        aiProperties.getRetriever().setKeywordIndexRefreshSeconds(1);
+        when(segmentService.listSearchableSegmentsByDatasetId(DATASET_ID))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024")))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024"), segment(2L, "型号 AB-2048 的保修期")));
+        assertTrue(service.search(DATASET_ID, "2048", 5, null).isEmpty());
+
+        // 其他节点写入了新分段，只递增了数据库中的内容版本
+        contentVersion.incrementAndGet();
+        Thread.sleep(1100);
+        service.search(DATASET_ID, "2048", 5, null);
+
+        List<KeywordHit> hits = List.of();
+        for (int i = 0; i < 50 && hits.isEmpty(); i++) {
+            Thread.sleep(20);
+            hits = service.search(DATASET_ID, "2048", 5, null);
+        }
+        assertEquals(1, hits.size());
+        assertEquals(2L, hits.get(0).getSegmentId());
+    }
+
+    @Test
+    void search_afterLocalIngest_shouldNotRebuild() throws Exception {
+        aiProperties.getRetriever().setKeywordIndexRefreshSeconds(1);
+        when(segmentService.listSearchableSegmentsByDatasetId(DATASET_ID))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024")));
+        service.search(DATASET_ID, "E_1024", 5, null);
+
+        // 本节点入库：先递增数据库版本，再带着递增后的版本更新索引
+        service.indexSegments(DATASET_ID, List.of(segment(2L, "型号 AB-2048 的保修期")),
+                contentVersion.incrementAndGet());
+        service.removeSegments(DATASET_ID, List.of(1L), contentVersion.incrementAndGet());
+        Thread.sleep(1100);
+        service.search(DATASET_ID, "2048", 5, null);
+        Thread.sleep(200);
+
+        verify(segmentService, times(1)).listSearchableSegmentsByDatasetId(DATASET_ID);
+        assertEquals(2L, service.search(DATASET_ID, "2048", 5, null).get(0).getSegmentId());
+        assertTrue(service.search(DATASET_ID, "E_1024", 5, null).isEmpty());
+
+        // 落盘的版本与数据库一致，重启后直接加载文件
+        service.shutdown();
+        service = newService();
+        service.search(DATASET_ID, "2048", 5, null);
+        verify(segmentService, times(1)).listSearchableSegmentsByDatasetId(DATASET_ID);
+    }
+
+    @Test
+    void indexSegments_withConcurrentChangeOnOtherNode_shouldStillRebuild() throws Exception {
+        aiProperties.getRetriever().setKeywordIndexRefreshSeconds(1);
+        when(segmentService.listSearchableSegmentsByDatasetId(DATASET_ID))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024")))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024"), segment(2L, "型号 AB-2048 的保修期"),
+                        segment(3L, "其他节点写入的 C_4096")));
+        service.search(DATASET_ID, "E_1024", 5, null);
+
+        // 其他节点先递增了版本，本节点的变更不能把这次变更一并当作已知
+        contentVersion.incrementAndGet();
+        service.indexSegments(DATASET_ID, List.of(segment(2L, "型号 AB-2048 的保修期")),
+                contentVersion.incrementAndGet());
+        Thread.sleep(1100);
+        service.search(DATASET_ID, "4096", 5, null);
+
+        List<KeywordHit> hits = List.of();
+        for (int i = 0; i < 50 && hits.isEmpty(); i++) {
+            Thread.sleep(20);
+            hits = service.search(DATASET_ID, "4096", 5, null);
+        }
+        assertEquals(3L, hits.get(0).getSegmentId());
+    }
+
+    @Test
+    void search_fileWithOutdatedVersion_shouldRebuildFromDatabase() {
+        when(segmentService.listSearchableSegmentsByDatasetId(DATASET_ID))
+                .thenReturn(List.of(segment(1L, "设备报错 E_1024")))
+                .thenReturn(List.of(segment(2L, "型号 AB-2048 的保修期")));
+        service.search(DATASET_ID, "E_1024", 5, null);
+        service.shutdown();
+
+        // 同版本重启直接加载文件
+        service = newService();
+        assertEquals(1L, service.search(DATASET_ID, "E_1024", 5, null).get(0).getSegmentId());
+        verify(segmentService, times(1)).listSearchableSegmentsByDatasetId(DATASET_ID);
+        service.shutdown();
+
+        // 停机期间版本变化，文件作废
+        contentVersion.incrementAndGet();
+        service = newService();
+        assertEquals(2L, service.search(DATASET_ID, "2048", 5, null).get(0).getSegmentId());
+        assertTrue(service.search(DATASET_ID, "E_1024", 5, null).isEmpty());
+    }
+
+    private KeywordIndexService newService() {
+        return new KeywordIndexService(segmentService, datasetVersionService, aiProperties, rebuildExecutor,
+                new ConcurrentTaskScheduler(timer));
+    }
+
+    private static DatasetDocumentSegment segment(Long segmentId, String content) {
+        DatasetDocumentSegment segment = new DatasetDocumentSegment();
+        segment.setSegmentId(segmentId);
+        segment.setDocumentId(10L);
+        segment.setDatasetId(DATASET_ID);
+        segment.setContent(content);
+        return segment;
+    }
+}
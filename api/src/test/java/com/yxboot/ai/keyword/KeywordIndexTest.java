@@ -0,0 +1,49 @@
+package com.yxboot.ai.keyword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class KeywordIndexTest {
+
+    @Test
+    void search_exactCodeAndCjkTerm_shouldRankMatchingSegmentFirst() {
+        KeywordIndex index = new KeywordIndex();
+        index.add(1L, 10L, "设备报错 E_1024 时请检查电源模块");
+        index.add(2L, 10L, "云行知识库支持多租户隔离");
+        index.add(3L, 11L, "型号 AB-2048 的保修期为两年");
+
+        List<KeywordHit> codeHits = index.search("E_1024", 3, null);
+        assertEquals(1L, codeHits.get(0).getSegmentId());
+
+        List<KeywordHit> partHits = index.search("2048", 3, null);
+        assertEquals(3L, partHits.get(0).getSegmentId());
+
+        List<KeywordHit> cjkHits = index.search("多租户", 3, null);
+        assertEquals(2L, cjkHits.get(0).getSegmentId());
+    }
+
+    @Test
+    void removeDocument_andRoundTrip_shouldKeepRemainingSegments() throws Exception {
+        KeywordIndex index = new KeywordIndex();
+        index.add(1L, 10L, "保修期为两年");
+        index.add(2L, 11L, "保修期为三年");
+        index.removeDocument(10L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        KeywordIndex loaded = KeywordIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        List<KeywordHit> hits = loaded.search("保修期", 5, null);
+        assertEquals(1, hits.size());
+        assertEquals(2L, hits.get(0).getSegmentId());
+        assertTrue(loaded.search("保修期", 5, 10L).isEmpty());
+    }
+}
@@ -1,12 +1,18 @@
 package com.yxboot.ai.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyFloat;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,7 +37,7 @@ class RagChatPromptServiceTest {
     @BeforeEach
     void setUp() {
         aiProperties = new AiProperties();
-        ragChatPromptService = new RagChatPromptService(vectorRetrieverService, aiProperties);
+        ragChatPromptService = new RagChatPromptService(vectorRetrieverService, aiProperties, Runnable::run);
     }
 
     @Test
@@ -50,7 +56,7 @@ class RagChatPromptServiceTest {
     @Test
     void build_strictModeWithoutResults_returnsDirectResponse() {
         AppConfig appConfig = appConfigWithDataset(1L);
-        when(vectorRetrieverService.retrieve(anyLong(), anyString(), anyInt(), anyFloat()))
+        when(vectorRetrieverService.retrieve(anyLong(), anyString(), any(), anyInt(), anyFloat(), any()))
                 .thenReturn(List.of());
 
         var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
@@ -63,7 +69,7 @@ class RagChatPromptServiceTest {
     @Test
     void build_strictModeWithResults_buildsGroundedPrompt() {
         AppConfig appConfig = appConfigWithDataset(1L);
-        when(vectorRetrieverService.retrieve(anyLong(), anyString(), anyInt(), anyFloat()))
+        when(vectorRetrieverService.retrieve(anyLong(), anyString(), any(), anyInt(), anyFloat(), any()))
                 .thenReturn(List.of(AiQueryResult.builder().text("云行 AI 是企业知识库平台").score(0.92f).build()));
 
         var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
@@ -82,7 +88,7 @@ class RagChatPromptServiceTest {
     void build_nonStrictModeWithoutResults_keepsOriginalPrompt() {
         aiProperties.getRag().setStrictMode(false);
         AppConfig appConfig = appConfigWithDataset(1L);
-        when(vectorRetrieverService.retrieve(anyLong(), anyString(), anyInt(), anyFloat()))
+        when(vectorRetrieverService.retrieve(anyLong(), anyString(), any(), anyInt(), anyFloat(), any()))
                 .thenReturn(List.of());
 
         var result = ragChatPromptService.build("随便聊聊", appConfig);
@@ -91,6 +97,69 @@ class RagChatPromptServiceTest {
         assertThat(result.getUserPrompt()).isEqualTo("随便聊聊");
     }
 
+    @Test
+    void build_multipleDatasets_skipsFailedDatasetAndMergesByScore() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDatasets("[{\"datasetId\":1,\"isActive\":true},{\"datasetId\":2,\"isActive\":true},"
+                + "{\"datasetId\":3,\"isActive\":true}]");
+        when(vectorRetrieverService.retrieve(eq(1L), anyString(), any(), anyInt(), anyFloat(), any()))
+                .thenReturn(List.of(AiQueryResult.builder().text("低分内容").score(0.6f).build()));
+        when(vectorRetrieverService.retrieve(eq(2L), anyString(), any(), anyInt(), anyFloat(), any()))
+                .thenThrow(new IllegalStateException("Qdrant 不可用"));
+        when(vectorRetrieverService.retrieve(eq(3L), anyString(), any(), anyInt(), anyFloat(), any()))
+                .thenReturn(List.of(AiQueryResult.builder().text("高分内容").score(0.9f).build()));
+
+        var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
+
+        assertThat(result.isHasRetrievedContext()).isTrue();
+        assertThat(result.getUserPrompt()).contains("[1] 高分内容").contains("[2] 低分内容");
+    }
+
+    @Test
+    void build_multipleDatasets_zeroLimitReturnsNoContext() {
+        aiProperties.getRag().setLimit(0);
+        aiProperties.getRetriever().setDefaultLimit(0);
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDatasets("[{\"datasetId\":1,\"isActive\":true},{\"datasetId\":2,\"isActive\":true}]");
+        when(vectorRetrieverService.retrieve(anyLong(), anyString(), any(), anyInt(), anyFloat(), any()))
+                .thenReturn(List.of(AiQueryResult.builder().text("内容").score(0.9f).build()));
+
+        var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
+
+        assertThat(result.isHasRetrievedContext()).isFalse();
+        assertThat(result.getDirectResponse()).contains("未找到");
+    }
+
+    @Test
+    void build_multipleDatasets_reusesQueryVector() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDatasets("[{\"datasetId\":1,\"isActive\":true},{\"datasetId\":2,\"isActive\":true}]");
+        float[] queryVector = {0.1f, 0.2f};
+        when(vectorRetrieverService.embedQuery("云行 AI 是什么？")).thenReturn(queryVector);
+        when(vectorRetrieverService.retrieve(anyLong(), anyString(), same(queryVector), anyInt(), anyFloat(), any()))
+                .thenReturn(List.of(AiQueryResult.builder().text("内容").score(0.9f).build()));
+
+        var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
+
+        assertThat(result.isHasRetrievedContext()).isTrue();
+        verify(vectorRetrieverService).retrieve(eq(1L), anyString(), same(queryVector), anyInt(), anyFloat(), any());
+        verify(vectorRetrieverService).retrieve(eq(2L), anyString(), same(queryVector), anyInt(), anyFloat(), any());
+    }
+
+    @Test
+    void build_multipleDatasets_skipsDatasetsWhenExecutorRejects() {
+        ragChatPromptService = new RagChatPromptService(vectorRetrieverService, aiProperties, task -> {
+            throw new RejectedExecutionException();
+        });
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDatasets("[{\"datasetId\":1,\"isActive\":true},{\"datasetId\":2,\"isActive\":true}]");
+
+        var result = ragChatPromptService.build("云行 AI 是什么？", appConfig);
+
+        assertThat(result.isHasRetrievedContext()).isFalse();
+        verify(vectorRetrieverService, never()).retrieve(anyLong(), anyString(), any(), anyInt(), anyFloat(), any());
+    }
+
     private AppConfig appConfigWithDataset(Long datasetId) {
         AppConfig appConfig = new AppConfig();
         appConfig.setDatasets("[{\"datasetId\":" + datasetId + ",\"isActive\":true}]");
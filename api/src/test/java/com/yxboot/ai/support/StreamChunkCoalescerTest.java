@@ -0,0 +1,197 @@
+package com.yxboot.ai.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+
+/**
+ * 流式输出合并器测试类
+ */
+class StreamChunkCoalescerTest {
+
+    private final List<String> written = new ArrayList<>();
+    private long now;
+
+    @Test
+    void testFlushesWhenByteLimitReached() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(1000, 4);
+
+        coalescer.append("ab");
+        coalescer.append("c");
+        assertEquals(List.of(), written);
+        coalescer.append("d");
+
+        assertEquals(List.of("abcd"), written);
+    }
+
+    @Test
+    void testFlushesWhenTimeWindowPassed() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(50, 1024);
+
+        coalescer.append("a");
+        now += TimeUnit.MILLISECONDS.toNanos(49);
+        coalescer.append("b");
+        assertEquals(List.of(), written);
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        coalescer.append("c");
+        coalescer.append("d");
+
+        assertEquals(List.of("abc"), written);
+        coalescer.close();
+        assertEquals(List.of("abc", "d"), written);
+    }
+
+    @Test
+    void testZeroDelayWritesEachChunk() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(0, 1024);
+
+        coalescer.append("a");
+        coalescer.append("b");
+
+        assertEquals(List.of("a", "b"), written);
+    }
+
+    @Test
+    void testNewlineOnlyChunksArePreserved() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(1000, 1024);
+
+        coalescer.append("# 标题");
+        coalescer.append("\n");
+        coalescer.append("\n");
+        coalescer.append("  ");
+        coalescer.append("");
+        coalescer.append(null);
+        coalescer.append("- 列表");
+        coalescer.close();
+
+        assertEquals(List.of("# 标题\n\n  - 列表"), written);
+    }
+
+    @Test
+    void testCloseAfterDiscardWritesNothing() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(1000, 1024);
+
+        coalescer.append("a");
+        coalescer.discard();
+        coalescer.close();
+        coalescer.append("b");
+
+        assertEquals(List.of(), written);
+    }
+
+    @Test
+    void testSurrogatePairCountsAsFourBytes() throws IOException {
+        StreamChunkCoalescer coalescer = newCoalescer(1000, 8);
+
+        // 😀 为 4 字节，两个即达到上限
+        coalescer.append("😀");
+        assertEquals(List.of(), written);
+        coalescer.append("😀");
+        assertEquals(List.of("😀😀"), written);
+
+        // 代理对拆在两个片段中时合计仍为 4 字节
+        coalescer.append("\uD83D");
+        coalescer.append("\uDE00");
+        coalescer.append("中");
+        assertEquals(List.of("😀😀"), written);
+        coalescer.append("a");
+        assertEquals(List.of("😀😀", "😀中a"), written);
+    }
+
+    @Test
+    void testTimerOnlyMarksDueAndExecutorWrites() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        List<Runnable> deferred = new ArrayList<>();
+        try {
+            StreamChunkCoalescer coalescer = new StreamChunkCoalescer(this::record, 20, 1024, new ConcurrentTaskScheduler(timer),
+                    deferred::add);
+            coalescer.append("a");
+            Thread.sleep(200);
+
+            // 定时器线程不写出，到期写出任务交给 flushExecutor
+            assertEquals(List.of(), written);
+            assertEquals(1, deferred.size());
+            deferred.forEach(Runnable::run);
+            assertEquals(List.of("a"), written);
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDueBufferIsWrittenByNextChunkWhenExecutorRejects() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            StreamChunkCoalescer coalescer = new StreamChunkCoalescer(this::record, 20, 1024, new ConcurrentTaskScheduler(timer),
+                    task -> {
+                        throw new RejectedExecutionException();
+                    });
+            coalescer.append("a");
+            Thread.sleep(200);
+            assertEquals(List.of(), written);
+
+            coalescer.append("b");
+            assertEquals(List.of("ab"), written);
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSlowSinkDoesNotBlockAppend() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> out = new ArrayList<>();
+        StreamChunkCoalescer coalescer = new StreamChunkCoalescer(text -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (out) {
+                out.add(text);
+            }
+        }, 1000, 1, null, null);
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        try {
+            producer.submit(() -> {
+                coalescer.append("a");
+                return null;
+            });
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // 其他线程正在写出时，追加只入队，不等待写出
+            long start = System.nanoTime();
+            coalescer.append("b");
+            coalescer.append("c");
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+            release.countDown();
+            coalescer.close();
+            synchronized (out) {
+                assertEquals(List.of("a", "b", "c"), out);
+            }
+        } finally {
+            producer.shutdownNow();
+        }
+    }
+
+    private StreamChunkCoalescer newCoalescer(long maxDelayMs, int maxBytes) {
+        return new StreamChunkCoalescer(this::record, maxDelayMs, maxBytes, null, null, () -> now);
+    }
+
+    private void record(String text) {
+        written.add(text);
+    }
+}
@@ -0,0 +1,149 @@
+package com.yxboot.modules.ai.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.service.RagChatPromptService;
+import com.yxboot.common.exception.TooManyRequestsException;
+import com.yxboot.config.security.SecurityUser;
+import com.yxboot.config.web.GlobalExceptionHandler;
+import com.yxboot.modules.ai.service.ChatAdmissionService;
+import com.yxboot.modules.ai.service.ChatService;
+import com.yxboot.modules.ai.service.ConversationHistoryService;
+import com.yxboot.modules.ai.service.ConversationService;
+import com.yxboot.modules.ai.service.MessageService;
+import com.yxboot.modules.app.service.AppConfigService;
+import reactor.core.publisher.Flux;
+
+/**
+ * 流式聊天接口测试类：并发已满时在建立 SSE 之前返回 429
+ */
+class ChatControllerTest {
+
+    private static final String BODY = "{\"appId\":100,\"prompt\":\"你好\"}";
+
+    private final ChatService chatService = mock(ChatService.class);
+    private final ChatAdmissionService chatAdmissionService = mock(ChatAdmissionService.class);
+    private final ChatAdmissionService.Permit permit = mock(ChatAdmissionService.Permit.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ChatController controller = new ChatController(chatService, mock(ConversationService.class),
+                mock(MessageService.class), mock(ConversationHistoryService.class), mock(AppConfigService.class),
+                mock(RagChatPromptService.class), chatAdmissionService, new AiProperties());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+        SecurityUser user = new SecurityUser(1L, "user", "", List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        when(chatAdmissionService.admit(any())).thenReturn(permit);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testChatStreamRejectedByAdmission() throws Exception {
+        when(chatAdmissionService.admit(any())).thenThrow(new TooManyRequestsException("当前对话请求过多，请稍后重试", 5));
+
+        // 准入在订阅时执行，拒绝发生在第一个事件之前，仍以 429 响应
+        MvcResult result = mockMvc.perform(post("/v1/api/ai/chat/stream").contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+
+        verify(chatService, never()).reactiveStreamChat(anyLong(), any());
+    }
+
+    @Test
+    void testChatStreamRejectedByExecutorReleasesPermit() throws Exception {
+        when(chatService.reactiveStreamChat(eq(1L), any()))
+                .thenThrow(new TooManyRequestsException("当前对话请求过多，请稍后重试", 5));
+
+        MvcResult result = mockMvc.perform(post("/v1/api/ai/chat/stream").contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"));
+
+        verify(permit).release();
+    }
+
+    @Test
+    void testChatStreamWritesEventsAndReleasesPermit() throws Exception {
+        AtomicReference<Thread> admitThread = new AtomicReference<>();
+        when(chatAdmissionService.admit(any())).thenAnswer(invocation -> {
+            admitThread.set(Thread.currentThread());
+            return permit;
+        });
+        when(chatService.reactiveStreamChat(eq(1L), any())).thenReturn(Flux.just(
+                ServerSentEvent.builder().event("status").data((Object) Map.of("phase", "understanding")).build(),
+                ServerSentEvent.builder().event("end").data((Object) "").build()));
+
+        MvcResult result = mockMvc.perform(post("/v1/api/ai/chat/stream").contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:status")))
+                .andExpect(content().string(containsString("event:end")));
+
+        // 租户查询与准入排队不在请求线程上执行
+        assertNotEquals(Thread.currentThread(), admitThread.get());
+        verify(permit).release();
+    }
+
+    @Test
+    void testChatRejectedByExecutorReturns429BeforeSse() throws Exception {
+        doThrow(new TooManyRequestsException("当前对话请求过多，请稍后重试", 5))
+                .when(chatService).streamChat(eq(1L), any(), any(), any());
+
+        // EventSource 只接受 text/event-stream，429 响应体仍以 JSON 写出
+        mockMvc.perform(post("/v1/api/ai/chat").contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM).content(BODY))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+}
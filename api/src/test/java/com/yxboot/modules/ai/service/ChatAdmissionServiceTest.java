@@ -0,0 +1,126 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.common.exception.TooManyRequestsException;
+import com.yxboot.modules.account.service.TenantQuotaService;
+
+/**
+ * 对话准入控制测试类
+ */
+class ChatAdmissionServiceTest {
+
+    private static final Long TENANT_ID = 1L;
+
+    private final TenantQuotaService tenantQuotaService = mock(TenantQuotaService.class);
+    private final ExecutorService waiter = Executors.newSingleThreadExecutor();
+    private AiProperties aiProperties;
+    private ChatAdmissionService admissionService;
+
+    @BeforeEach
+    void setUp() {
+        aiProperties = new AiProperties();
+        aiProperties.getChatAdmission().setMaxConcurrentStreams(1);
+        aiProperties.getChatAdmission().setQueueTimeoutMs(0L);
+        aiProperties.getChatAdmission().setMaxQueued(1);
+        tenantChatLimit(1);
+        admissionService = new ChatAdmissionService(aiProperties, tenantQuotaService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        waiter.shutdownNow();
+    }
+
+    @Test
+    void testQueuedRequestIsAdmittedWhenPermitReleased() throws Exception {
+        aiProperties.getChatAdmission().setQueueTimeoutMs(5000L);
+        ChatAdmissionService.Permit first = admissionService.admit(null);
+
+        Future<ChatAdmissionService.Permit> queued = waiter.submit(() -> admissionService.admit(null));
+        Thread.sleep(200);
+        first.release();
+
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRejectsImmediatelyWhenQueueIsFull() throws Exception {
+        aiProperties.getChatAdmission().setQueueTimeoutMs(5000L);
+        ChatAdmissionService.Permit first = admissionService.admit(null);
+        Future<ChatAdmissionService.Permit> queued = waiter.submit(() -> admissionService.admit(null));
+        Thread.sleep(200);
+
+        // 唯一的排队位置已被占用，不再阻塞请求线程
+        long start = System.nanoTime();
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(null));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        first.release();
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRejectsAfterQueueTimeout() {
+        aiProperties.getChatAdmission().setQueueTimeoutMs(200L);
+        aiProperties.getChatAdmission().setRetryAfterSeconds(7);
+        admissionService.admit(null);
+
+        long start = System.nanoTime();
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> admissionService.admit(null));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs >= 150 && elapsedMs < 2000, "elapsed " + elapsedMs);
+        assertEquals(7, thrown.getRetryAfterSeconds());
+    }
+
+    @Test
+    void testTenantPermitIsReleasedWhenNodeIsFull() {
+        ChatAdmissionService.Permit node = admissionService.admit(null);
+
+        // 租户许可已获取，节点许可不足时归还租户许可
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+        node.release();
+
+        ChatAdmissionService.Permit tenant = admissionService.admit(TENANT_ID);
+        aiProperties.getChatAdmission().setMaxConcurrentStreams(10);
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+        tenant.release();
+        tenant.release();
+        admissionService.admit(TENANT_ID);
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+    }
+
+    @Test
+    void testTenantPermitsAreRebuiltWhenPlanLimitChanges() {
+        aiProperties.getChatAdmission().setMaxConcurrentStreams(10);
+        ChatAdmissionService.Permit before = admissionService.admit(TENANT_ID);
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+
+        // 套餐升级后按新上限计数，升级前的生成在旧信号量上释放
+        tenantChatLimit(2);
+        admissionService.admit(TENANT_ID);
+        admissionService.admit(TENANT_ID);
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+
+        before.release();
+        assertThrows(TooManyRequestsException.class, () -> admissionService.admit(TENANT_ID));
+    }
+
+    private void tenantChatLimit(int limit) {
+        when(tenantQuotaService.getQuota(TENANT_ID)).thenReturn(new AiProperties.TenantQuota(1, 1, 1, limit));
+    }
+}
@@ -0,0 +1,234 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.rag.RagPromptResult;
+import com.yxboot.ai.service.RagChatPromptService;
+import com.yxboot.common.exception.TooManyRequestsException;
+import com.yxboot.modules.ai.dto.ChatRequestDTO;
+import com.yxboot.modules.ai.entity.Conversation;
+import com.yxboot.modules.ai.entity.Message;
+import com.yxboot.modules.ai.enums.MessageStatus;
+import com.yxboot.modules.app.entity.AppConfig;
+import com.yxboot.modules.app.service.AppConfigService;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * 流式聊天编排测试类
+ */
+class ChatServiceTest {
+
+    private final MessageService messageService = mock(MessageService.class);
+    private final MessageJournal messageJournal = mock(MessageJournal.class);
+    private final ConversationHistoryService conversationHistoryService = mock(ConversationHistoryService.class);
+    private final ConversationService conversationService = mock(ConversationService.class);
+    private final AppConfigService appConfigService = mock(AppConfigService.class);
+    private final RagChatPromptService ragChatPromptService = mock(RagChatPromptService.class);
+    private final ChatModel chatModel = mock(ChatModel.class);
+    private final AiProperties aiProperties = new AiProperties();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final ExecutorService chatTaskExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "chat-task-test"));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private ChatService chatService;
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+        chatTaskExecutor.shutdownNow();
+    }
+
+    @Test
+    void testStreamChatRejectedBeforeSseIsOpened() {
+        aiProperties.getChatAdmission().setRetryAfterSeconds(3);
+        chatService = newService(task -> {
+            throw new RejectedExecutionException();
+        });
+        SseEmitter emitter = mock(SseEmitter.class);
+
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> chatService.streamChat(1L, request(), emitter, finished::incrementAndGet));
+
+        // 许可已释放，SSE 未写出任何内容，由全局异常处理返回 429
+        assertEquals(3, thrown.getRetryAfterSeconds());
+        assertEquals(1, finished.get());
+        verifyNoInteractions(emitter, messageService);
+    }
+
+    @Test
+    void testReactiveStreamChatRejectedBeforeFirstEvent() {
+        chatService = newService(task -> {
+            throw new RejectedExecutionException();
+        });
+
+        // 拒绝发生在返回 Flux 之前，不会先响应 200 再推送 understanding
+        assertThrows(TooManyRequestsException.class, () -> chatService.reactiveStreamChat(1L, request()));
+        verifyNoInteractions(messageService, conversationService);
+    }
+
+    @Test
+    void testReactiveStreamChatRunsBlockingStepsOnChatTaskExecutor() {
+        aiProperties.getChatStream().setCoalesceEnabled(false);
+        chatService = newService(chatTaskExecutor);
+        AtomicReference<String> createThread = new AtomicReference<>();
+        AtomicReference<String> assembleThread = new AtomicReference<>();
+        when(conversationService.createConversation(anyLong(), anyLong(), anyString())).thenAnswer(invocation -> {
+            createThread.set(Thread.currentThread().getName());
+            Conversation conversation = new Conversation();
+            conversation.setConversationId(20L);
+            return conversation;
+        });
+        Message message = new Message();
+        message.setMessageId(30L);
+        when(messageService.createMessage(anyLong(), anyLong(), anyLong(), anyString())).thenReturn(message);
+        when(appConfigService.getByAppId(100L)).thenReturn(new AppConfig());
+        when(ragChatPromptService.build(anyString(), any())).thenReturn(
+                RagPromptResult.builder().userPrompt("你好").build());
+        when(conversationHistoryService.assemble(any(), any(), any(), any())).thenAnswer(invocation -> {
+            assembleThread.set(Thread.currentThread().getName());
+            return new ConversationHistoryService.AssembledHistory(null, List.of());
+        });
+        when(messageJournal.checkpointer(30L)).thenReturn(mock(MessageJournal.Checkpointer.class));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(
+                Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("您好"))))));
+
+        // 逐个请求事件：阻塞调用应始终切换到 chatTaskExecutor，而不是在发起 request 的线程上执行
+        StepVerifier.create(chatService.reactiveStreamChat(1L, request()), 0)
+                .thenRequest(1)
+                .assertNext(event -> assertEquals(Map.of("phase", "understanding"), event.data()))
+                .thenRequest(1)
+                .assertNext(event -> assertEquals("metadata", event.event()))
+                // 检索完成后才请求下一个事件，生成阶段在测试线程的 request 中被订阅
+                .thenAwait(Duration.ofMillis(200))
+                .thenRequest(1)
+                .assertNext(event -> assertEquals(Map.of("phase", "generating"), event.data()))
+                .thenRequest(1)
+                .assertNext(event -> assertEquals(Map.of("chunk", "您好"), event.data()))
+                .thenRequest(1)
+                .assertNext(event -> assertEquals("end", event.event()))
+                .verifyComplete();
+
+        assertEquals("chat-task-test", createThread.get());
+        assertTrue(assembleThread.get().startsWith("chat-task-test"), assembleThread.get());
+    }
+
+    @Test
+    void testCancelDuringRetrievalFailsMessage() throws Exception {
+        chatService = newService(chatTaskExecutor);
+        stubConversationAndMessage();
+        CountDownLatch retrieving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ragChatPromptService.build(anyString(), any())).thenAnswer(invocation -> {
+            retrieving.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return RagPromptResult.builder().userPrompt("你好").build();
+        });
+
+        try {
+            // 检索期间客户端断开，尚未进入生成阶段，消息也应标记为失败而不是停留在处理中
+            StepVerifier.create(chatService.reactiveStreamChat(1L, request()), 2)
+                    .assertNext(event -> assertEquals(Map.of("phase", "understanding"), event.data()))
+                    .assertNext(event -> assertEquals("metadata", event.event()))
+                    .then(() -> assertTrue(await(retrieving)))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            release.countDown();
+        }
+
+        verify(messageJournal, timeout(5000)).complete(30L, "", MessageStatus.FAILED);
+        verifyNoInteractions(chatModel);
+    }
+
+    @Test
+    void testCoalescedStreamOnlyReadsModelOnDemand() {
+        aiProperties.getChatStream().setCoalesceMaxBytes(1);
+        chatService = newService(chatTaskExecutor);
+        stubConversationAndMessage();
+        when(ragChatPromptService.build(anyString(), any())).thenReturn(
+                RagPromptResult.builder().userPrompt("你好").build());
+        when(conversationHistoryService.assemble(any(), any(), any(), any()))
+                .thenReturn(new ConversationHistoryService.AssembledHistory(null, List.of()));
+        when(messageJournal.checkpointer(30L)).thenReturn(mock(MessageJournal.Checkpointer.class));
+        AtomicLong requested = new AtomicLong();
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.range(0, 1000)
+                .map(i -> new ChatResponse(List.of(new Generation(new AssistantMessage("片段" + i)))))
+                .doOnRequest(n -> requested.addAndGet(Math.min(n, 1_000_000L))));
+
+        // 客户端只消费到第一个片段：模型输出不应被提前全部读入内存
+        StepVerifier.create(chatService.reactiveStreamChat(1L, request()), 4)
+                .expectNextCount(3)
+                .assertNext(event -> assertEquals(Map.of("chunk", "片段0"), event.data()))
+                .thenAwait(Duration.ofMillis(200))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertTrue(requested.get() <= 3, "requested " + requested.get());
+    }
+
+    private void stubConversationAndMessage() {
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(20L);
+        when(conversationService.createConversation(anyLong(), anyLong(), anyString())).thenReturn(conversation);
+        Message message = new Message();
+        message.setMessageId(30L);
+        when(messageService.createMessage(anyLong(), anyLong(), anyLong(), anyString())).thenReturn(message);
+        when(appConfigService.getByAppId(100L)).thenReturn(new AppConfig());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private ChatService newService(Executor chatTaskExecutor) {
+        return new ChatService(messageService, messageJournal, mock(ChatStreamRegistry.class),
+                conversationHistoryService, mock(SemanticAnswerCache.class), conversationService,
+                appConfigService, ragChatPromptService, chatModel, aiProperties, chatTaskExecutor,
+                new ConcurrentTaskScheduler(timer));
+    }
+
+    private static ChatRequestDTO request() {
+        ChatRequestDTO request = new ChatRequestDTO();
+        request.setAppId(100L);
+        request.setPrompt("你好");
+        return request;
+    }
+}
@@ -0,0 +1,251 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 流式输出缓冲测试类
+ */
+class ChatStreamBufferTest {
+
+    private final AtomicInteger terminated = new AtomicInteger();
+
+    @Test
+    void testLiveChunksCarrySequenceIds() {
+        ChatStreamBuffer buffer = newBuffer(10, Runnable::run);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        assertTrue(buffer.attach(emitter, 0L));
+        buffer.publish("a");
+        buffer.publish("b");
+        buffer.complete();
+
+        assertEquals(List.of("1:a", "2:b", "end"), emitter.events);
+        assertTrue(emitter.completed);
+        assertEquals(1, terminated.get());
+    }
+
+    @Test
+    void testReconnectReplaysChunksAfterLastEventId() {
+        ChatStreamBuffer buffer = newBuffer(10, Runnable::run);
+        buffer.publish("a");
+        buffer.publish("b");
+        buffer.publish("c");
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertTrue(buffer.attach(emitter, 1L));
+        buffer.publish("d");
+
+        assertEquals(List.of("2:b", "3:c", "4:d"), emitter.events);
+        assertFalse(emitter.completed);
+    }
+
+    @Test
+    void testReconnectFailsWhenChunksWereEvicted() {
+        ChatStreamBuffer buffer = newBuffer(2, Runnable::run);
+        buffer.publish("a");
+        buffer.publish("b");
+        buffer.publish("c");
+
+        assertFalse(buffer.attach(new RecordingEmitter(), 0L));
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertTrue(buffer.attach(emitter, 1L));
+        assertEquals(List.of("2:b", "3:c"), emitter.events);
+    }
+
+    @Test
+    void testAttachAfterCompleteReplaysAndEnds() {
+        ChatStreamBuffer buffer = newBuffer(10, Runnable::run);
+        buffer.publish("a");
+        buffer.complete();
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertTrue(buffer.attach(emitter, 0L));
+
+        assertEquals(List.of("1:a", "end"), emitter.events);
+        assertTrue(emitter.completed);
+    }
+
+    @Test
+    void testFailureCompletesWithError() {
+        ChatStreamBuffer buffer = newBuffer(10, Runnable::run);
+        RecordingEmitter emitter = new RecordingEmitter();
+        buffer.attach(emitter, 0L);
+
+        buffer.publish("a");
+        buffer.fail(new IllegalStateException("模型调用失败"));
+        buffer.fail(new IllegalStateException("重复结束"));
+
+        assertEquals(List.of("1:a"), emitter.events);
+        assertEquals("模型调用失败", emitter.error.getMessage());
+        assertEquals(1, terminated.get());
+    }
+
+    @Test
+    void testBrokenConnectionIsDroppedWithoutAffectingOthers() {
+        ChatStreamBuffer buffer = newBuffer(10, Runnable::run);
+        RecordingEmitter broken = new RecordingEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        buffer.attach(broken, 0L);
+        buffer.attach(healthy, 0L);
+
+        broken.broken = true;
+        buffer.publish("a");
+        broken.broken = false;
+        buffer.publish("b");
+
+        assertEquals(List.of(), broken.events);
+        assertEquals(List.of("1:a", "2:b"), healthy.events);
+    }
+
+    @Test
+    void testSlowConnectionDoesNotBlockPublish() throws Exception {
+        ExecutorService writer = Executors.newFixedThreadPool(2);
+        try {
+            ChatStreamBuffer buffer = newBuffer(10, writer);
+            RecordingEmitter slow = new RecordingEmitter();
+            slow.gate = new CountDownLatch(1);
+            RecordingEmitter fast = new RecordingEmitter();
+            buffer.attach(slow, 0L);
+            buffer.attach(fast, 0L);
+
+            long start = System.nanoTime();
+            for (int i = 1; i <= 5; i++) {
+                buffer.publish(String.valueOf(i));
+            }
+            buffer.complete();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            assertTrue(fast.awaitCompletion());
+            assertFalse(slow.completed);
+
+            slow.gate.countDown();
+            assertTrue(slow.awaitCompletion());
+            assertEquals(List.of("1:1", "2:2", "3:3", "4:4", "5:5", "end"), slow.events);
+            assertEquals(fast.events, slow.events);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void testLaggingConnectionIsClosedWhenChunksAreEvicted() {
+        List<Runnable> deferred = new ArrayList<>();
+        ChatStreamBuffer buffer = newBuffer(2, deferred::add);
+        RecordingEmitter emitter = new RecordingEmitter();
+        buffer.attach(emitter, 0L);
+
+        // 写出任务尚未执行时已有片段被丢弃
+        buffer.publish("a");
+        buffer.publish("b");
+        buffer.publish("c");
+        deferred.forEach(Runnable::run);
+
+        assertEquals(List.of(), emitter.events);
+        assertTrue(emitter.completed);
+    }
+
+    @Test
+    void testConnectionIsClosedWhenWriterQueueIsFull() {
+        // 第二个写出任务提交时队列已满，其余任务直接执行
+        AtomicInteger submitted = new AtomicInteger();
+        ChatStreamBuffer buffer = newBuffer(10, task -> {
+            if (submitted.incrementAndGet() == 2) {
+                throw new RejectedExecutionException("queue full");
+            }
+            task.run();
+        });
+        RecordingEmitter queued = new RecordingEmitter();
+        RecordingEmitter rejected = new RecordingEmitter();
+        buffer.attach(queued, 0L);
+        buffer.attach(rejected, 0L);
+
+        buffer.publish("a");
+        assertTrue(rejected.completed);
+        assertFalse(queued.completed);
+
+        // 被关闭的连接不再参与后续写出
+        buffer.publish("b");
+        assertEquals(List.of("1:a", "2:b"), queued.events);
+        assertEquals(List.of(), rejected.events);
+    }
+
+    private ChatStreamBuffer newBuffer(int capacity, java.util.concurrent.Executor writer) {
+        return new ChatStreamBuffer(1L, 2L, capacity, writer, buffer -> terminated.incrementAndGet());
+    }
+
+    /**
+     * 记录写出事件的 SseEmitter，事件记为 "序号:片段" 或 "end"
+     */
+    static final class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean broken;
+        volatile CountDownLatch gate;
+        volatile boolean completed;
+        volatile Throwable error;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("连接已断开");
+            }
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String id = null;
+            String chunk = null;
+            boolean end = false;
+            for (ResponseBodyEmitter.DataWithMediaType item : builder.build()) {
+                Object data = item.getData();
+                if (data instanceof Map<?, ?> map) {
+                    chunk = String.valueOf(map.get("chunk"));
+                } else if (data instanceof String text) {
+                    for (String line : text.split("\n")) {
+                        if (line.startsWith("id:")) {
+                            id = line.substring(3);
+                        } else if (line.equals("event:end")) {
+                            end = true;
+                        }
+                    }
+                }
+            }
+            synchronized (events) {
+                events.add(end ? "end" : id + ":" + chunk);
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            done.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error = ex;
+            done.countDown();
+        }
+
+        boolean awaitCompletion() throws InterruptedException {
+            return done.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
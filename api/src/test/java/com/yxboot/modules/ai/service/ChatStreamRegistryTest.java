@@ -0,0 +1,90 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import com.yxboot.ai.config.AiProperties;
+
+/**
+ * 流式输出登记表测试类
+ */
+class ChatStreamRegistryTest {
+
+    private AiProperties aiProperties;
+    private ChatStreamRegistry registry;
+    private final AtomicInteger finished = new AtomicInteger();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @BeforeEach
+    void setUp() {
+        aiProperties = new AiProperties();
+        aiProperties.getChatStream().setReplayRetentionSeconds(0);
+        registry = new ChatStreamRegistry(aiProperties, Runnable::run, new ConcurrentTaskScheduler(timer));
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void testBufferIsOnlyVisibleToItsOwner() {
+        ChatStreamBuffer buffer = registry.open(1L, 10L, finished::incrementAndGet);
+
+        assertSame(buffer, registry.get(1L, 10L));
+        assertNull(registry.get(1L, 11L));
+        assertNull(registry.get(1L, null));
+        assertNull(registry.get(2L, 10L));
+    }
+
+    @Test
+    void testFinishCallbackRunsOnceWhenGenerationEnds() {
+        ChatStreamBuffer buffer = registry.open(1L, 10L, finished::incrementAndGet);
+
+        buffer.publish("a");
+        assertEquals(0, finished.get());
+        buffer.complete();
+        buffer.fail(new IllegalStateException());
+
+        assertEquals(1, finished.get());
+    }
+
+    @Test
+    void testFinishedBufferExpiresAfterRetention() throws InterruptedException {
+        ChatStreamBuffer buffer = registry.open(1L, 10L, finished::incrementAndGet);
+        assertNotNull(registry.get(1L, 10L));
+
+        buffer.complete();
+
+        assertNull(awaitRemoval(1L, 10L));
+    }
+
+    @Test
+    void testReopenedMessageIsNotRemovedByPreviousExpiry() throws InterruptedException {
+        aiProperties.getChatStream().setReplayRetentionSeconds(1);
+        ChatStreamBuffer first = registry.open(1L, 10L, finished::incrementAndGet);
+        ChatStreamBuffer second = registry.open(1L, 10L, finished::incrementAndGet);
+
+        first.complete();
+        Thread.sleep(1500);
+
+        assertSame(second, registry.get(1L, 10L));
+    }
+
+    private ChatStreamBuffer awaitRemoval(Long messageId, Long userId) throws InterruptedException {
+        ChatStreamBuffer buffer = registry.get(messageId, userId);
+        for (int i = 0; i < 50 && buffer != null; i++) {
+            Thread.sleep(20);
+            buffer = registry.get(messageId, userId);
+        }
+        return buffer;
+    }
+}
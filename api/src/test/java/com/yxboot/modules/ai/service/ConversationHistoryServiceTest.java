@@ -0,0 +1,184 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.ai.dto.ChatMessageDTO;
+import com.yxboot.modules.ai.entity.Message;
+
+/**
+ * 服务端历史对话组装测试类
+ */
+class ConversationHistoryServiceTest {
+
+    @Mock
+    private MessageService messageService;
+    @Mock
+    private ConversationService conversationService;
+    @Mock
+    private ConversationSummarizer conversationSummarizer;
+
+    private final List<Runnable> summaryTasks = new ArrayList<>();
+    private AiProperties aiProperties;
+    private ConversationHistoryService historyService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        aiProperties = new AiProperties();
+        aiProperties.getChatHistory().setSummaryEnabled(false);
+        // 摘要任务暂存，由测试显式执行
+        historyService = new ConversationHistoryService(messageService, conversationService, conversationSummarizer,
+                aiProperties, summaryTasks::add);
+    }
+
+    @Test
+    void testWindowIsCachedAndCompletedTurnAppended() {
+        when(messageService.listRecentCompletedMessages(eq(1L), isNull(), anyInt()))
+                .thenReturn(List.of(message(10L, "第一个问题", "第一个回答")));
+
+        List<ChatMessageDTO> first = historyService.assemble(1L, null, null, "第二个问题").getMessages();
+        historyService.recordTurn(message(11L, "第二个问题", null), "第二个回答");
+        List<ChatMessageDTO> second = historyService.assemble(1L, null, null, "第三个问题").getMessages();
+
+        assertEquals(2, first.size());
+        assertEquals("user", first.get(0).getRole());
+        assertEquals("第一个回答", first.get(1).getContent());
+        assertEquals(4, second.size());
+        assertEquals("第二个问题", second.get(2).getContent());
+        verify(messageService, times(1)).listRecentCompletedMessages(eq(1L), isNull(), anyInt());
+    }
+
+    @Test
+    void testOldestTurnsAreDroppedWhenOverBudget() {
+        List<Message> messages = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            messages.add(message(id, "question " + id, "answer " + id + " " + "word ".repeat(20)));
+        }
+        when(messageService.listRecentCompletedMessages(eq(1L), isNull(), anyInt())).thenReturn(messages);
+        aiProperties.getChatHistory().setContextTokenBudget(40);
+
+        List<ChatMessageDTO> history = historyService.assemble(1L, null, null, "question 6").getMessages();
+
+        assertEquals(2, history.size());
+        assertEquals("question 5", history.get(0).getContent());
+    }
+
+    @Test
+    void testClientMessagesAreTrimmedFromOldest() {
+        aiProperties.getChatHistory().setContextTokenBudget(30);
+        List<ChatMessageDTO> client = List.of(
+                dto("user", "word ".repeat(40)),
+                dto("assistant", "short answer"),
+                dto("user", "short question"));
+
+        List<ChatMessageDTO> history = historyService.assemble(null, client, null, "hello").getMessages();
+
+        assertEquals(2, history.size());
+        assertEquals("short answer", history.get(0).getContent());
+    }
+
+    @Test
+    void testOlderTurnsAreSummarizedAfterThreshold() {
+        List<Message> messages = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            messages.add(message(id, "question " + id, "answer " + id + " " + "word ".repeat(20)));
+        }
+        when(messageService.listRecentCompletedMessages(eq(1L), isNull(), anyInt())).thenReturn(messages);
+        when(conversationSummarizer.summarize(isNull(), anyList())).thenReturn("用户询问了前两个问题");
+        aiProperties.getChatHistory().setSummaryEnabled(true);
+        aiProperties.getChatHistory().setSummaryTriggerTokens(60);
+        aiProperties.getChatHistory().setSummaryKeepTurns(1);
+
+        // 首次组装时历史超过阈值，提交摘要，本轮不等待摘要
+        ConversationHistoryService.AssembledHistory first = historyService.assemble(1L, null, null, "question 4");
+        assertEquals(1, summaryTasks.size());
+        summaryTasks.get(0).run();
+        ConversationHistoryService.AssembledHistory second = historyService.assemble(1L, null, null, "question 4");
+
+        assertNull(first.getSummary());
+        assertEquals(6, first.getMessages().size());
+        assertEquals("用户询问了前两个问题", second.getSummary());
+        assertEquals(2, second.getMessages().size());
+        assertEquals("question 3", second.getMessages().get(0).getContent());
+        verify(conversationService).updateSummary(eq(1L), eq("用户询问了前两个问题"), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testTurnsBeyondMaxTurnsAreSummarizedBeforeLeavingWindow() {
+        when(messageService.listRecentCompletedMessages(eq(1L), isNull(), anyInt())).thenReturn(List.of());
+        when(conversationSummarizer.summarize(isNull(), anyList())).thenReturn("较早几轮的摘要");
+        aiProperties.getChatHistory().setSummaryEnabled(true);
+        aiProperties.getChatHistory().setMaxTurns(3);
+        aiProperties.getChatHistory().setSummaryKeepTurns(1);
+        aiProperties.getChatHistory().setSummaryTriggerTokens(100000);
+
+        historyService.assemble(1L, null, null, "question 1");
+        for (long id = 1; id <= 4; id++) {
+            historyService.recordTurn(message(id, "question " + id, null), "answer " + id);
+        }
+
+        // 第 4 轮超出 max-turns，最早一轮在移出窗口前提交摘要，而不是等 token 阈值
+        ConversationHistoryService.AssembledHistory pending = historyService.assemble(1L, null, null, "question 5");
+        assertEquals(6, pending.getMessages().size());
+        assertEquals("question 2", pending.getMessages().get(0).getContent());
+        assertEquals(1, summaryTasks.size());
+        summaryTasks.get(0).run();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessageDTO>> summarized = ArgumentCaptor.forClass(List.class);
+        verify(conversationSummarizer).summarize(isNull(), summarized.capture());
+        assertEquals(6, summarized.getValue().size());
+        assertEquals("question 1", summarized.getValue().get(0).getContent());
+
+        ConversationHistoryService.AssembledHistory after = historyService.assemble(1L, null, null, "question 5");
+        assertEquals("较早几轮的摘要", after.getSummary());
+        assertEquals(2, after.getMessages().size());
+        assertEquals("question 4", after.getMessages().get(0).getContent());
+    }
+
+    @Test
+    void testReloadFetchesTurnsWaitingForSummary() {
+        aiProperties.getChatHistory().setSummaryEnabled(true);
+        aiProperties.getChatHistory().setMaxTurns(3);
+        when(messageService.listRecentCompletedMessages(eq(1L), isNull(), anyInt())).thenReturn(List.of());
+
+        historyService.assemble(1L, null, null, "question 1");
+
+        // 重新加载时读取 max-turns 之前尚未摘要的轮次，供摘要使用
+        verify(messageService).listRecentCompletedMessages(eq(1L), isNull(), eq(6));
+    }
+
+    private static Message message(Long id, String question, String answer) {
+        Message message = new Message();
+        message.setMessageId(id);
+        message.setConversationId(1L);
+        message.setCreateTime(LocalDateTime.of(2026, 1, 1, 0, 0).plusMinutes(id));
+        message.setQuestion(question);
+        message.setAnswer(answer);
+        return message;
+    }
+
+    private static ChatMessageDTO dto(String role, String content) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setRole(role);
+        dto.setContent(content);
+        return dto;
+    }
+}
@@ -0,0 +1,138 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.modules.ai.entity.Message;
+import com.yxboot.modules.ai.enums.MessageStatus;
+
+/**
+ * 消息回答写回日志测试类
+ */
+class MessageJournalTest {
+
+    @Mock
+    private MessageService messageService;
+
+    private AiProperties aiProperties;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private MessageJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        aiProperties = new AiProperties();
+        // 只在测试中显式 flush
+        aiProperties.getChatStream().setJournalFlushIntervalMs(60_000L);
+        journal = new MessageJournal(messageService, aiProperties, new ConcurrentTaskScheduler(timer));
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.shutdown();
+        timer.shutdownNow();
+    }
+
+    @Test
+    void testCheckpointsAreCoalescedAndFinalWins() {
+        journal.checkpoint(1L, "部分");
+        journal.checkpoint(1L, "部分回答");
+        journal.checkpoint(2L, "另一条");
+        journal.complete(2L, "另一条回答", MessageStatus.COMPLETED);
+        journal.checkpoint(2L, "迟到的部分回答");
+
+        journal.flush();
+
+        List<Message> finals = captureFinals(1).get(0);
+        assertEquals(1, finals.size());
+        assertEquals(2L, finals.get(0).getMessageId());
+        assertEquals("另一条回答", finals.get(0).getAnswer());
+        assertEquals(MessageStatus.COMPLETED, finals.get(0).getStatus());
+
+        List<Message> partials = capturePartials(1).get(0);
+        assertEquals(1, partials.size());
+        assertEquals(1L, partials.get(0).getMessageId());
+        assertEquals("部分回答", partials.get(0).getAnswer());
+        assertNull(partials.get(0).getStatus());
+    }
+
+    @Test
+    void testFinalUpdatesAreSplitIntoBatches() {
+        aiProperties.getChatStream().setJournalBatchSize(2);
+        for (long id = 1; id <= 5; id++) {
+            journal.complete(id, "回答" + id, MessageStatus.COMPLETED);
+        }
+
+        journal.flush();
+
+        List<List<Message>> batches = captureFinals(3);
+        assertEquals(5, batches.stream().mapToInt(List::size).sum());
+        verify(messageService, never()).updatePartialAnswers(anyList());
+    }
+
+    @Test
+    void testFailedWriteIsRetriedOnNextFlush() {
+        when(messageService.updateAnswers(anyList())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+        journal.complete(1L, "回答", MessageStatus.COMPLETED);
+
+        journal.flush();
+        journal.flush();
+
+        List<List<Message>> batches = captureFinals(2);
+        assertEquals(1L, batches.get(1).get(0).getMessageId());
+        assertEquals("回答", batches.get(1).get(0).getAnswer());
+    }
+
+    @Test
+    void testCheckpointerSavesEveryNChunks() {
+        aiProperties.getChatStream().setCheckpointChunks(3);
+        aiProperties.getChatStream().setCheckpointIntervalMs(0L);
+        MessageJournal.Checkpointer checkpointer = journal.checkpointer(1L);
+        StringBuilder answer = new StringBuilder();
+        for (String chunk : new String[] { "a", "b", "\n", "c" }) {
+            answer.append(chunk);
+            checkpointer.onChunk(answer);
+        }
+
+        journal.flush();
+
+        List<Message> partials = capturePartials(1).get(0);
+        assertEquals("ab\n", partials.get(0).getAnswer());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Message>> captureFinals(int times) {
+        ArgumentCaptor<List<Message>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageService, times(times)).updateAnswers(captor.capture());
+        return copies(captor.getAllValues());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Message>> capturePartials(int times) {
+        ArgumentCaptor<List<Message>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageService, times(times)).updatePartialAnswers(captor.capture());
+        return copies(captor.getAllValues());
+    }
+
+    private static List<List<Message>> copies(List<List<Message>> values) {
+        List<List<Message>> result = new ArrayList<>();
+        values.forEach(value -> result.add(new ArrayList<>(value)));
+        return result;
+    }
+}
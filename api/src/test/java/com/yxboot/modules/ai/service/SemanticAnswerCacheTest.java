@@ -0,0 +1,88 @@
+package com.yxboot.modules.ai.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.embedding.QueryEmbeddingCache;
+import com.yxboot.ai.service.RagChatPromptService;
+import com.yxboot.modules.app.entity.AppConfig;
+import com.yxboot.modules.dataset.service.DatasetVersionService;
+
+/**
+ * 语义回答缓存测试类
+ */
+class SemanticAnswerCacheTest {
+
+    @Mock
+    private QueryEmbeddingCache queryEmbeddingCache;
+    @Mock
+    private RagChatPromptService ragChatPromptService;
+    @Mock
+    private DatasetVersionService datasetVersionService;
+
+    private SemanticAnswerCache cache;
+    private AppConfig appConfig;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        AiProperties aiProperties = new AiProperties();
+        aiProperties.getAnswerCache().setEnabled(true);
+        aiProperties.getAnswerCache().getAppIds().add(7L);
+        cache = new SemanticAnswerCache(queryEmbeddingCache, ragChatPromptService, datasetVersionService, aiProperties);
+
+        appConfig = new AppConfig();
+        appConfig.setAppId(7L);
+        when(ragChatPromptService.getActiveDatasetIds(any())).thenReturn(List.of(1L));
+        when(datasetVersionService.getVersions(anyCollection())).thenReturn(Map.of(1L, 3L));
+        when(queryEmbeddingCache.embed("怎么退款")).thenReturn(new float[] { 1f, 0f, 0f });
+        when(queryEmbeddingCache.embed("如何申请退款")).thenReturn(new float[] { 0.97f, 0.2f, 0f });
+        when(queryEmbeddingCache.embed("怎么开发票")).thenReturn(new float[] { 0f, 1f, 0f });
+    }
+
+    @Test
+    void testSimilarQuestionHitsCachedAnswer() {
+        assertNull(cache.lookup(1L, appConfig, "怎么退款"));
+        cache.complete(1L, "退款步骤");
+
+        assertEquals("退款步骤", cache.lookup(2L, appConfig, "如何申请退款"));
+        assertNull(cache.lookup(3L, appConfig, "怎么开发票"));
+    }
+
+    @Test
+    void testDatasetChangeInvalidatesAnswers() {
+        cache.lookup(1L, appConfig, "怎么退款");
+        cache.complete(1L, "退款步骤");
+        when(datasetVersionService.getVersions(anyCollection())).thenReturn(Map.of(1L, 4L));
+
+        assertNull(cache.lookup(2L, appConfig, "怎么退款"));
+    }
+
+    @Test
+    void testDiscardedAnswerIsNotCached() {
+        cache.lookup(1L, appConfig, "怎么退款");
+        cache.discard(1L);
+        cache.complete(1L, "抱歉，知识库中未找到与您问题相关的信息。");
+
+        assertNull(cache.lookup(2L, appConfig, "怎么退款"));
+    }
+
+    @Test
+    void testAppNotOptedInIsIgnored() {
+        AppConfig other = new AppConfig();
+        other.setAppId(8L);
+
+        assertNull(cache.lookup(1L, other, "怎么退款"));
+        cache.complete(1L, "退款步骤");
+        assertNull(cache.lookup(2L, appConfig, "怎么退款"));
+    }
+}
@@ -0,0 +1,313 @@
+package com.yxboot.modules.dataset.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.yxboot.ai.config.AiProperties;
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.splitter.SplitMode;
+import com.yxboot.ai.service.AiDocumentProcessingService;
+import com.yxboot.ai.service.AiVectorStoreService;
+import com.yxboot.modules.dataset.entity.DatasetDocument;
+import com.yxboot.modules.dataset.entity.DatasetDocumentSegment;
+import com.yxboot.modules.dataset.enums.SegmentType;
+import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
+import com.yxboot.modules.dataset.service.DatasetDocumentService;
+
+/**
+ * 文档入库流水线测试类
+ */
+class DatasetDocumentIngestionPipelineTest {
+
+    private static final int WINDOW_SIZE = 2;
+
+    @Mock
+    private AiDocumentProcessingService documentProcessingService;
+
+    @Mock
+    private DatasetDocumentSegmentService segmentService;
+
+    @Mock
+    private DatasetDocumentService datasetDocumentService;
+
+    @Mock
+    private AiVectorStoreService vectorStoreService;
+
+    private AiProperties aiProperties;
+    private ExecutorService embeddingExecutor;
+    private DatasetDocument document;
+    /** 切分阶段已产出的窗口数 */
+    private final AtomicInteger producedWindows = new AtomicInteger();
+    /** 执行向量化的线程 */
+    private final Set<Thread> vectorizeThreads = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        aiProperties = new AiProperties();
+        aiProperties.getDocument().setPipelineWindowSize(WINDOW_SIZE);
+        aiProperties.getDocument().setPipelineQueueCapacity(1);
+        embeddingExecutor = Executors.newSingleThreadExecutor();
+
+        document = new DatasetDocument();
+        document.setDocumentId(1L);
+        document.setDatasetId(2L);
+
+        when(segmentService.listSegmentsByPositionRange(anyLong(), anyInt(), anyInt())).thenReturn(List.of());
+        when(segmentService.batchCreateSegments(any(), anyList(), anyInt())).thenAnswer(invocation -> {
+            List<DocumentSegment> window = invocation.getArgument(1);
+            int start = invocation.getArgument(2);
+            List<DatasetDocumentSegment> saved = new ArrayList<>(window.size());
+            for (int i = 0; i < window.size(); i++) {
+                DatasetDocumentSegment segment = new DatasetDocumentSegment();
+                segment.setPosition(start + i);
+                segment.setContent(window.get(i).getContent());
+                saved.add(segment);
+            }
+            return saved;
+        });
+        when(vectorStoreService.batchCreateSegmentVectors(anyList(), anyLong(), any())).thenAnswer(invocation -> {
+            vectorizeThreads.add(Thread.currentThread());
+            return ((List<?>) invocation.getArgument(0)).size();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        embeddingExecutor.shutdownNow();
+    }
+
+    @Test
+    void ingest_shouldVectorizeAllWindowsAndFinishOnEndOfStream() {
+        splitInto(5);
+
+        DatasetDocumentIngestionPipeline.IngestionResult result = newPipeline(embeddingExecutor)
+                .ingest(new File("doc.txt"), document, SplitMode.CHARACTER_SPLITTER, IngestLease.NONE);
+
+        assertEquals(10, result.getSavedCount());
+        assertEquals(10, result.getSearchableCount());
+        assertEquals(10, result.getVectorizedCount());
+        verify(datasetDocumentService).updateVectorizedCheckpoint(1L, 10);
+        verify(datasetDocumentService).markSplitCompleted(1L);
+        assertTrue(vectorizeThreads.stream().noneMatch(thread -> thread == Thread.currentThread()));
+    }
+
+    @Test
+    void ingest_shouldReturnForEmptyDocument() {
+        splitInto(0);
+
+        DatasetDocumentIngestionPipeline.IngestionResult result = newPipeline(embeddingExecutor)
+                .ingest(new File("doc.txt"), document, SplitMode.CHARACTER_SPLITTER, IngestLease.NONE);
+
+        assertEquals(0, result.getSavedCount());
+        verify(vectorStoreService, never()).batchCreateSegmentVectors(anyList(), anyLong(), any());
+        verify(datasetDocumentService, never()).markSplitCompleted(anyLong());
+    }
+
+    @Test
+    void ingest_shouldBlockSplittingWhenQueueIsFull() throws Exception {
+        CountDownLatch vectorizing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(vectorStoreService.batchCreateSegmentVectors(anyList(), anyLong(), any())).thenAnswer(invocation -> {
+            vectorizing.countDown();
+            release.await();
+            return ((List<?>) invocation.getArgument(0)).size();
+        });
+        splitInto(6);
+        DatasetDocumentIngestionPipeline pipeline = newPipeline(embeddingExecutor);
+
+        ExecutorService splitThread = Executors.newSingleThreadExecutor();
+        try {
+            Future<DatasetDocumentIngestionPipeline.IngestionResult> future = splitThread.submit(
+                    () -> pipeline.ingest(new File("doc.txt"), document, SplitMode.CHARACTER_SPLITTER,
+                            IngestLease.NONE));
+            assertTrue(vectorizing.await(5, TimeUnit.SECONDS));
+            Thread.sleep(300);
+
+            // 向量化中 1 个 + 队列中 1 个 + 切分线程等待放入的 1 个，之后切分阻塞
+            assertEquals(3, producedWindows.get());
+
+            release.countDown();
+            DatasetDocumentIngestionPipeline.IngestionResult result = future.get(5, TimeUnit.SECONDS);
+            assertEquals(6, producedWindows.get());
+            assertEquals(12, result.getVectorizedCount());
+        } finally {
+            release.countDown();
+            splitThread.shutdownNow();
+        }
+    }
+
+    @Test
+    void ingest_shouldAbortSplittingWhenEmbeddingStageFails() {
+        IllegalStateException failure = new IllegalStateException("向量库不可用");
+        when(vectorStoreService.batchCreateSegmentVectors(anyList(), anyLong(), any())).thenThrow(failure);
+        splitInto(100);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> newPipeline(embeddingExecutor).ingest(new File("doc.txt"), document,
+                        SplitMode.CHARACTER_SPLITTER, IngestLease.NONE));
+
+        assertSame(failure, thrown);
+        assertTrue(producedWindows.get() < 100);
+        verify(datasetDocumentService, never()).updateVectorizedCheckpoint(anyLong(), anyInt());
+    }
+
+    @Test
+    void ingest_shouldVectorizeSynchronouslyWhenExecutorRejects() {
+        splitInto(3);
+
+        DatasetDocumentIngestionPipeline.IngestionResult result = newPipeline(task -> {
+            throw new RejectedExecutionException();
+        }).ingest(new File("doc.txt"), document, SplitMode.CHARACTER_SPLITTER, IngestLease.NONE);
+
+        assertEquals(6, result.getVectorizedCount());
+        assertEquals(Set.of(Thread.currentThread()), vectorizeThreads);
+        verify(datasetDocumentService).updateVectorizedCheckpoint(1L, 6);
+    }
+
+    @Test
+    void ingest_shouldStopBeforeNextWindowWhenLeaseLost() {
+        IngestLease lease = IngestLease.claimed(1L, System.nanoTime(), 60);
+        when(documentProcessingService.loadAndSplitDocument(any(), eq(SplitMode.CHARACTER_SPLITTER), any(), any(),
+                any(), eq(WINDOW_SIZE), any())).thenAnswer(invocation -> {
+                    Consumer<List<DocumentSegment>> consumer = invocation.getArgument(6);
+                    consumer.accept(window(0));
+                    lease.markLost();
+                    consumer.accept(window(1));
+                    return 4;
+                });
+
+        assertThrows(IngestLease.LostException.class, () -> newPipeline(embeddingExecutor)
+                .ingest(new File("doc.txt"), document, SplitMode.CHARACTER_SPLITTER, lease));
+
+        verify(segmentService).batchCreateSegments(any(), anyList(), eq(0));
+        verify(segmentService, never()).batchCreateSegments(any(), anyList(), eq(WINDOW_SIZE));
+    }
+
+    @Test
+    void reembed_shouldVectorizeExistingSegmentsWithoutSplittingOrTruncating() {
+        // position 1 被手工删除，position 2 为父块
+        document.setPersistedPosition(5);
+        document.setVectorizedPosition(0);
+        List<DatasetDocumentSegment> stored = List.of(segment(0, null), segment(2, SegmentType.PARENT),
+                segment(3, SegmentType.CHILD), segment(4, SegmentType.CHILD));
+        stubStoredSegments(stored);
+        List<List<Long>> vectorized = new ArrayList<>();
+        when(vectorStoreService.batchCreateSegmentVectors(anyList(), anyLong(), any())).thenAnswer(invocation -> {
+            List<DatasetDocumentSegment> segments = invocation.getArgument(0);
+            vectorized.add(segments.stream().map(DatasetDocumentSegment::getSegmentId).toList());
+            return segments.size();
+        });
+
+        DatasetDocumentIngestionPipeline.IngestionResult result = newPipeline(embeddingExecutor)
+                .reembed(document, IngestLease.NONE);
+
+        assertEquals(4, result.getSavedCount());
+        assertEquals(3, result.getSearchableCount());
+        assertEquals(3, result.getVectorizedCount());
+        // 复用已有分段 ID，父块不向量化
+        assertEquals(List.of(List.of(100L), List.of(103L), List.of(104L)), vectorized);
+        verify(datasetDocumentService).updateVectorizedCheckpoint(1L, 5);
+        verify(documentProcessingService, never()).loadAndSplitDocument(any(), any(), any(), any(), any(),
+                anyInt(), any());
+        verify(segmentService, never()).deleteSegmentsFromPosition(anyLong(), anyInt());
+        verify(segmentService, never()).batchCreateSegments(any(), anyList(), anyInt());
+        verify(vectorStoreService, never()).batchDeleteSegmentVectors(anyList(), anyLong());
+    }
+
+    @Test
+    void reembed_shouldResumeFromVectorizedCheckpoint() {
+        document.setPersistedPosition(6);
+        document.setVectorizedPosition(4);
+        stubStoredSegments(List.of(segment(0, null), segment(1, null), segment(2, null), segment(3, null),
+                segment(4, null), segment(5, null)));
+
+        DatasetDocumentIngestionPipeline.IngestionResult result = newPipeline(embeddingExecutor)
+                .reembed(document, IngestLease.NONE);
+
+        assertEquals(6, result.getSavedCount());
+        assertEquals(6, result.getVectorizedCount());
+        verify(vectorStoreService).batchCreateSegmentVectors(anyList(), anyLong(), any());
+        verify(datasetDocumentService).updateVectorizedCheckpoint(1L, 6);
+    }
+
+    private DatasetDocumentIngestionPipeline newPipeline(java.util.concurrent.Executor executor) {
+        return new DatasetDocumentIngestionPipeline(documentProcessingService, segmentService,
+                datasetDocumentService, vectorStoreService, aiProperties, executor);
+    }
+
+    /**
+     * 切分阶段按顺序产出 windows 个窗口，每个窗口 WINDOW_SIZE 个分段
+     */
+    private void splitInto(int windows) {
+        when(documentProcessingService.loadAndSplitDocument(any(), eq(SplitMode.CHARACTER_SPLITTER), any(), any(),
+                any(), eq(WINDOW_SIZE), any())).thenAnswer(invocation -> {
+                    Consumer<List<DocumentSegment>> consumer = invocation.getArgument(6);
+                    for (int i = 0; i < windows; i++) {
+                        producedWindows.incrementAndGet();
+                        consumer.accept(window(i));
+                    }
+                    return windows * WINDOW_SIZE;
+                });
+    }
+
+    /**
+     * 数据库中已有的分段，按 position 范围查询
+     */
+    private void stubStoredSegments(List<DatasetDocumentSegment> stored) {
+        when(segmentService.listSegmentsByPositionRange(anyLong(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int from = invocation.getArgument(1);
+            int to = invocation.getArgument(2);
+            return stored.stream().filter(segment -> segment.getPosition() >= from && segment.getPosition() < to)
+                    .toList();
+        });
+    }
+
+    private static DatasetDocumentSegment segment(int position, Integer segmentType) {
+        DatasetDocumentSegment segment = new DatasetDocumentSegment();
+        segment.setSegmentId(100L + position);
+        segment.setPosition(position);
+        segment.setSegmentType(segmentType);
+        segment.setContent("内容 " + position);
+        return segment;
+    }
+
+    private static List<DocumentSegment> window(int index) {
+        List<DocumentSegment> window = new ArrayList<>(WINDOW_SIZE);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            window.add(DocumentSegment.builder()
+                    .id(index + "-" + i)
+                    .title("分段 " + (index * WINDOW_SIZE + i + 1))
+                    .content("内容 " + index + "-" + i)
+                    .build());
+        }
+        return window;
+    }
+}
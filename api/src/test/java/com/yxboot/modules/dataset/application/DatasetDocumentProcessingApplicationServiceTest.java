@@ -7,10 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import com.yxboot.ai.document.splitter.SplitMode;
-import com.yxboot.ai.service.AiDocumentProcessingService;
-import com.yxboot.ai.service.AiVectorStoreService;
 import com.yxboot.modules.dataset.enums.SegmentMethod;
-import com.yxboot.modules.dataset.service.DatasetDocumentSegmentService;
 import com.yxboot.modules.dataset.service.DatasetDocumentService;
 import com.yxboot.modules.dataset.service.DatasetService;
 import com.yxboot.modules.system.service.SysFileService;
@@ -23,20 +20,14 @@ class DatasetDocumentProcessingApplicationServiceTest {
     @Mock
     private DatasetDocumentService datasetDocumentService;
 
-    @Mock
-    private DatasetDocumentSegmentService segmentService;
-
     @Mock
     private SysFileService sysFileService;
 
     @Mock
-    private AiDocumentProcessingService documentProcessingService;
-
-    @Mock
-    private AiVectorStoreService vectorStoreService;
+    private DatasetService datasetService;
 
     @Mock
-    private DatasetService datasetService;
+    private DatasetDocumentIngestionPipeline ingestionPipeline;
 
     private DatasetDocumentProcessingApplicationService applicationService;
 
@@ -45,11 +36,9 @@ class DatasetDocumentProcessingApplicationServiceTest {
         MockitoAnnotations.openMocks(this);
         applicationService = new DatasetDocumentProcessingApplicationService(
                 datasetDocumentService,
-                segmentService,
                 sysFileService,
-                documentProcessingService,
-                vectorStoreService,
-                datasetService);
+                datasetService,
+                ingestionPipeline);
     }
 
     @Test
@@ -0,0 +1,48 @@
+package com.yxboot.modules.dataset.application;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 入库任务租约测试类
+ */
+class IngestLeaseTest {
+
+    @Test
+    void ensureHeld_shouldPassWithinLease() {
+        IngestLease lease = IngestLease.claimed(1L, System.nanoTime(), 60);
+
+        assertTrue(lease.isHeld());
+        assertDoesNotThrow(lease::ensureHeld);
+    }
+
+    @Test
+    void ensureHeld_shouldFailAfterLeaseLost() {
+        IngestLease lease = IngestLease.claimed(1L, System.nanoTime(), 60);
+
+        lease.markLost();
+
+        assertFalse(lease.isHeld());
+        assertThrows(IngestLease.LostException.class, lease::ensureHeld);
+    }
+
+    @Test
+    void ensureHeld_shouldFailWhenLocalDeadlinePassedWithoutRenewal() {
+        long claimedAt = System.nanoTime() - TimeUnit.SECONDS.toNanos(61);
+        IngestLease lease = IngestLease.claimed(1L, claimedAt, 60);
+
+        assertThrows(IngestLease.LostException.class, lease::ensureHeld);
+
+        lease.renewed(System.nanoTime(), 60);
+        assertTrue(lease.isHeld());
+    }
+
+    @Test
+    void none_shouldAlwaysBeHeld() {
+        assertTrue(IngestLease.NONE.isHeld());
+    }
+}
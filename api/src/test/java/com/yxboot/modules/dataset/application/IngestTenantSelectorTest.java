@@ -0,0 +1,89 @@
+package com.yxboot.modules.dataset.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import com.yxboot.modules.dataset.dto.IngestTenantQueueDTO;
+
+/**
+ * 入库任务租户选择测试类
+ */
+class IngestTenantSelectorTest {
+
+    @Test
+    void select_shouldRotateTenantsWithEqualWeight() {
+        IngestTenantSelector selector = new IngestTenantSelector();
+        List<IngestTenantQueueDTO> tenants = List.of(queue(1L, 0, 60), queue(2L, 0, 1), queue(3L, 0, 2));
+
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            IngestTenantQueueDTO selected = selector.select(tenants);
+            selector.markServed(selected.getTenantId(), 1);
+            order.append(selected.getTenantId());
+        }
+
+        assertEquals("123123", order.toString());
+    }
+
+    @Test
+    void select_shouldServeTenantsInProportionToWeight() {
+        IngestTenantSelector selector = new IngestTenantSelector();
+        List<IngestTenantQueueDTO> tenants = List.of(queue(1L, 0, 100), queue(2L, 0, 100), queue(3L, 0, 100));
+        int[] weights = {0, 4, 2, 1};
+        int[] served = new int[4];
+
+        for (int i = 0; i < 70; i++) {
+            IngestTenantQueueDTO selected = selector.select(tenants);
+            int tenantId = selected.getTenantId().intValue();
+            selector.markServed(selected.getTenantId(), weights[tenantId]);
+            served[tenantId]++;
+        }
+
+        assertEquals(40, served[1]);
+        assertEquals(20, served[2]);
+        assertEquals(10, served[3]);
+    }
+
+    @Test
+    void select_shouldNotLetIdleTenantAccumulateCredit() {
+        IngestTenantSelector selector = new IngestTenantSelector();
+        for (int i = 0; i < 10; i++) {
+            selector.markServed(1L, 1);
+        }
+
+        // 租户 2 之前没有排队任务，出现后与租户 1 交替调度，而不是连续调度 10 次追平
+        List<IngestTenantQueueDTO> tenants = List.of(queue(1L, 0, 10), queue(2L, 0, 10));
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            IngestTenantQueueDTO selected = selector.select(tenants);
+            selector.markServed(selected.getTenantId(), 1);
+            order.append(selected.getTenantId());
+        }
+
+        assertEquals("2121", order.toString());
+    }
+
+    @Test
+    void select_shouldPreferHigherPriority() {
+        IngestTenantSelector selector = new IngestTenantSelector();
+        selector.markServed(2L, 1);
+
+        IngestTenantQueueDTO selected = selector.select(List.of(queue(1L, -10, 5), queue(2L, 0, 1)));
+
+        assertEquals(2L, selected.getTenantId());
+    }
+
+    @Test
+    void select_shouldReturnNullWhenNothingQueued() {
+        assertNull(new IngestTenantSelector().select(List.of()));
+    }
+
+    private static IngestTenantQueueDTO queue(Long tenantId, int priority, long queuedCount) {
+        IngestTenantQueueDTO queue = new IngestTenantQueueDTO();
+        queue.setTenantId(tenantId);
+        queue.setPriority(priority);
+        queue.setQueuedCount(queuedCount);
+        return queue;
+    }
+}
@@ -0,0 +1,94 @@
+package com.yxboot.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.yxboot.benchmark.corpus.CorpusGenerator;
+import com.yxboot.benchmark.corpus.CorpusType;
+
+/**
+ * 基准测试入口：参数与 JMH 命令行一致（如 {@code -f 2 -wi 5 CharacterSplitter}）。
+ * <p>
+ * 未指定 -prof 时默认启用 gc 分析器；运行结束后按语料大小把 ops/s 换算为 MB/s，
+ * 并输出每次操作的分配字节数及「每输入字节分配字节数」。
+ */
+public final class BenchmarkRunner {
+
+    private static final double MB = 1024.0 * 1024.0;
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp()) {
+            cli.showHelp();
+            return;
+        }
+        if (cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            new Runner(cli).list();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (cli.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+        printSummary(results);
+    }
+
+    private static void printSummary(Collection<RunResult> results) {
+        List<RunResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing((RunResult r) -> r.getParams().getBenchmark())
+                .thenComparing(r -> paramsLabel(r.getParams())));
+
+        System.out.println();
+        System.out.println("# 吞吐量与分配汇总");
+        System.out.printf("%-58s %-40s %12s %16s %14s%n", "Benchmark", "Params", "MB/s", "alloc B/op",
+                "alloc B/byte");
+        for (RunResult result : sorted) {
+            BenchmarkParams params = result.getParams();
+            String corpus = params.getParam("corpus");
+            if (corpus == null) {
+                continue;
+            }
+            int corpusBytes = CorpusGenerator.utf8Length(CorpusType.valueOf(corpus));
+            double opsPerSecond = result.getPrimaryResult().getScore();
+            double mbPerSecond = opsPerSecond * corpusBytes / MB;
+
+            Map<String, Result> secondary = result.getSecondaryResults();
+            Result alloc = secondary.get(ALLOC_NORM);
+            String allocPerOp = alloc != null ? String.format("%.0f", alloc.getScore()) : "-";
+            String allocPerByte = alloc != null ? String.format("%.2f", alloc.getScore() / corpusBytes) : "-";
+
+            System.out.printf("%-58s %-40s %12.2f %16s %14s%n", shortName(params.getBenchmark()),
+                    paramsLabel(params), mbPerSecond, allocPerOp, allocPerByte);
+        }
+    }
+
+    private static String shortName(String benchmark) {
+        String prefix = BenchmarkRunner.class.getPackageName() + ".";
+        return benchmark.startsWith(prefix) ? benchmark.substring(prefix.length()) : benchmark;
+    }
+
+    private static String paramsLabel(BenchmarkParams params) {
+        List<String> parts = new ArrayList<>();
+        for (String key : params.getParamsKeys()) {
+            parts.add(key + "=" + params.getParam(key));
+        }
+        return String.join(",", parts);
+    }
+}
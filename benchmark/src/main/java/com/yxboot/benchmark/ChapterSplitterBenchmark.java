@@ -0,0 +1,58 @@
+package com.yxboot.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.yxboot.ai.document.Document;
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.analyzer.PdfStructureAnalyzer;
+import com.yxboot.ai.document.analyzer.TextStructureAnalyzer;
+import com.yxboot.ai.document.analyzer.WordStructureAnalyzer;
+import com.yxboot.ai.document.splitter.ChapterSplitter;
+import com.yxboot.benchmark.corpus.CorpusGenerator;
+import com.yxboot.benchmark.corpus.CorpusType;
+
+/**
+ * 智能章节分割器基准测试：结构分析 + 章节转分段，超过 maxChapterLength 的章节会按字符长度二次切分。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ChapterSplitterBenchmark {
+
+    @Param({ "ZH_PROSE", "EN_PROSE", "NUMBERED_HEADINGS", "SINGLE_PARAGRAPH" })
+    public CorpusType corpus;
+
+    @Param({ "2000", "5000" })
+    public int maxChapterLength;
+
+    private String text;
+    private ChapterSplitter chapterSplitter;
+
+    @Setup
+    public void setup() {
+        text = CorpusGenerator.get(corpus);
+        TextStructureAnalyzer textAnalyzer = new TextStructureAnalyzer();
+        chapterSplitter = new ChapterSplitter(new PdfStructureAnalyzer(textAnalyzer),
+                new WordStructureAnalyzer(textAnalyzer), textAnalyzer)
+                .setMaxChapterLength(maxChapterLength);
+    }
+
+    @Benchmark
+    public List<DocumentSegment> chapterSplitter() {
+        return chapterSplitter.split(Document.of(text));
+    }
+}
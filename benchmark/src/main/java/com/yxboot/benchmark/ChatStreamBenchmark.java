@@ -0,0 +1,182 @@
+package com.yxboot.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.yxboot.ai.support.StreamChunkCoalescer;
+import com.yxboot.benchmark.corpus.CorpusGenerator;
+import com.yxboot.benchmark.corpus.CorpusType;
+
+/**
+ * 流式对话输出基准测试：逐 token 推送与合并推送（{@link StreamChunkCoalescer}）的对比。
+ * <p>
+ * 每次操作推送一个模型 token。token 取自中文语料，按 1~3 个字符切分，段落间的换行单独成为 token。
+ * 写出端模拟 SSE：把片段序列化为 {@code data:{"chunk":"..."}} 事件写入 /dev/null 并 flush，
+ * 每次 flush 都是一次真实的 write 系统调用。合并模式使用模拟时钟，每个 token 前进 tokenIntervalMs 毫秒，
+ * 结果与机器速度无关地反映「每个时间窗口合并多少 token」。
+ * <p>
+ * 主结果为每秒推送的 token 数，辅助计数器 {@code flushes} 为每秒 flush 次数。
+ * 用 {@code -t} 指定线程数可模拟多条并发流争用 CPU。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ChatStreamBenchmark {
+
+    private static final int TOKEN_COUNT = 1 << 16;
+    private static final long SEED = 20240601L;
+
+    @Param({ "PER_TOKEN", "COALESCED" })
+    public String mode;
+
+    /** 模型输出 token 的间隔（毫秒），20 ms 约为每秒 50 个 token */
+    @Param({ "20" })
+    public long tokenIntervalMs;
+
+    @Param({ "50" })
+    public long maxDelayMs;
+
+    @Param({ "1024" })
+    public int maxBytes;
+
+    private String[] tokens;
+    private int next;
+    private long now;
+    private SseSink sink;
+    private StreamChunkCoalescer coalescer;
+
+    /**
+     * 每秒 flush 次数，由 JMH 按迭代时长换算
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long flushes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            flushes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        tokens = tokenize(CorpusGenerator.get(CorpusType.ZH_PROSE));
+        sink = new SseSink(openNullStream());
+        coalescer = new StreamChunkCoalescer(sink::write, maxDelayMs, maxBytes, null, null, () -> now);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.out.close();
+    }
+
+    @Benchmark
+    public void pushToken(Counters counters) throws IOException {
+        String token = tokens[next];
+        next = (next + 1) & (TOKEN_COUNT - 1);
+        now += TimeUnit.MILLISECONDS.toNanos(tokenIntervalMs);
+
+        long before = sink.flushes;
+        if ("COALESCED".equals(mode)) {
+            coalescer.append(token);
+        } else {
+            sink.write(token);
+        }
+        counters.flushes += sink.flushes - before;
+    }
+
+    private static String[] tokenize(String text) {
+        Random random = new Random(SEED);
+        List<String> result = new ArrayList<>(TOKEN_COUNT);
+        int pos = 0;
+        while (result.size() < TOKEN_COUNT) {
+            if (pos >= text.length()) {
+                pos = 0;
+            }
+            int end;
+            if (text.charAt(pos) == '\n') {
+                end = pos;
+                while (end < text.length() && text.charAt(end) == '\n') {
+                    end++;
+                }
+            } else {
+                end = Math.min(pos + 1 + random.nextInt(3), text.length());
+                int newline = text.indexOf('\n', pos);
+                if (newline >= 0 && newline < end) {
+                    end = newline;
+                }
+            }
+            result.add(text.substring(pos, end));
+            pos = end;
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static OutputStream openNullStream() throws FileNotFoundException {
+        File devNull = new File("/dev/null");
+        return devNull.exists() ? new FileOutputStream(devNull) : OutputStream.nullOutputStream();
+    }
+
+    /**
+     * 模拟 SseEmitter.send：每个事件序列化一次并 flush 一次
+     */
+    private static final class SseSink {
+        private final OutputStream out;
+        private final StringBuilder event = new StringBuilder(256);
+        private long flushes;
+
+        SseSink(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 8192);
+        }
+
+        void write(String chunk) throws IOException {
+            event.setLength(0);
+            event.append("data:{\"chunk\":\"");
+            appendJsonEscaped(event, chunk);
+            event.append("\"}\n\n");
+            out.write(event.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            flushes++;
+        }
+
+        private static void appendJsonEscaped(StringBuilder sb, String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> sb.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.yxboot.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.yxboot.ai.document.Document;
+import com.yxboot.ai.document.DocumentSegment;
+import com.yxboot.ai.document.splitter.CharacterSplitter;
+import com.yxboot.ai.document.splitter.ParentChildSplitter;
+import com.yxboot.benchmark.corpus.CorpusGenerator;
+import com.yxboot.benchmark.corpus.CorpusType;
+
+/**
+ * 字符长度分割器 / 父子分割器基准测试。
+ * <p>
+ * 每次操作处理一整份语料，吞吐量（ops/s）乘以语料大小即为 MB/s，由 {@link BenchmarkRunner} 汇总输出。
+ * chunk 参数格式为「最大分段长度:重叠长度」；父子分割时该参数作用于子块，父块长度取其 4 倍。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SplitterBenchmark {
+
+    @Param({ "ZH_PROSE", "EN_PROSE", "NUMBERED_HEADINGS", "SINGLE_PARAGRAPH" })
+    public CorpusType corpus;
+
+    @Param({ "300:50", "500:100", "1000:200" })
+    public String chunk;
+
+    private String text;
+    private int maxSegmentLength;
+    private int overlap;
+    private CharacterSplitter characterSplitter;
+    private ParentChildSplitter parentChildSplitter;
+
+    @Setup
+    public void setup() {
+        text = CorpusGenerator.get(corpus);
+        String[] parts = chunk.split(":");
+        maxSegmentLength = Integer.parseInt(parts[0]);
+        overlap = Integer.parseInt(parts[1]);
+        characterSplitter = new CharacterSplitter(maxSegmentLength, overlap);
+        parentChildSplitter = new ParentChildSplitter();
+    }
+
+    @Benchmark
+    public List<DocumentSegment> characterSplitter() {
+        return characterSplitter.split(text);
+    }
+
+    @Benchmark
+    public List<DocumentSegment> parentChildSplitter() {
+        return parentChildSplitter.split(Document.of(text), maxSegmentLength * 4, maxSegmentLength, overlap);
+    }
+}
@@ -0,0 +1,50 @@
+package com.yxboot.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.yxboot.ai.document.analyzer.ChapterInfo;
+import com.yxboot.ai.document.analyzer.TextStructureAnalyzer;
+import com.yxboot.benchmark.corpus.CorpusGenerator;
+import com.yxboot.benchmark.corpus.CorpusType;
+
+/**
+ * 文本结构分析器基准测试：标题候选识别、过滤评分与章节结构构建。
+ * <p>
+ * LARGE_MANUAL 为 5 MB 的多级标题手册，标题识别的逐行开销在这类输入上最明显。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class TextStructureAnalyzerBenchmark {
+
+    @Param({ "ZH_PROSE", "EN_PROSE", "NUMBERED_HEADINGS", "SINGLE_PARAGRAPH", "LARGE_MANUAL" })
+    public CorpusType corpus;
+
+    private String text;
+    private TextStructureAnalyzer textAnalyzer;
+
+    @Setup
+    public void setup() {
+        text = CorpusGenerator.get(corpus);
+        textAnalyzer = new TextStructureAnalyzer();
+    }
+
+    @Benchmark
+    public List<ChapterInfo> analyzeTextStructure() {
+        return textAnalyzer.analyzeTextStructure(text);
+    }
+}
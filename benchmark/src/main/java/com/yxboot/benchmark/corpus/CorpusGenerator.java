@@ -0,0 +1,167 @@
+package com.yxboot.benchmark.corpus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 可复现的基准测试语料生成器。
+ * <p>
+ * 固定随机种子，同一类型每次生成的文本完全相同，不同机器、不同版本之间的结果可以直接对比。
+ * 语料只依赖内置词表，不读取任何外部文件。
+ */
+public final class CorpusGenerator {
+
+    private static final long SEED = 20240601L;
+
+    private static final String[] ZH_WORDS = {
+            "知识库", "向量检索", "文档解析", "分段策略", "大语言模型", "提示词", "工作空间", "多租户", "上下文窗口",
+            "召回率", "准确率", "用户体验", "数据安全", "系统架构", "服务治理", "缓存", "并发", "吞吐量", "延迟",
+            "索引", "检索增强生成", "对话", "会话管理", "权限控制", "部署", "监控", "日志", "配置中心", "消息队列",
+            "我们", "需要", "可以", "通过", "进一步", "对于", "以及", "在此基础上", "同时", "因此", "然而", "此外",
+            "优化", "实现", "支持", "提供", "处理", "分析", "构建", "评估", "改进", "保证", "减少", "提升" };
+
+    private static final String[] EN_WORDS = {
+            "the", "a", "of", "and", "to", "in", "for", "with", "on", "by", "from", "that", "this", "is", "are",
+            "retrieval", "document", "segment", "embedding", "vector", "index", "query", "model", "tenant",
+            "workspace", "latency", "throughput", "cache", "pipeline", "chunk", "overlap", "parser", "analyzer",
+            "context", "window", "prompt", "answer", "conversation", "dataset", "storage", "service", "request",
+            "improves", "reduces", "supports", "requires", "provides", "handles", "builds", "evaluates" };
+
+    private static final String[] ZH_SENTENCE_ENDS = { "。", "。", "。", "！", "？" };
+    private static final String[] EN_SENTENCE_ENDS = { ".", ".", ".", "!", "?" };
+    private static final String[] ZH_NUMERALS = { "一", "二", "三", "四", "五", "六", "七", "八", "九", "十" };
+
+    private static final Map<CorpusType, String> CACHE = new EnumMap<>(CorpusType.class);
+
+    private CorpusGenerator() {
+    }
+
+    /**
+     * 获取指定类型的语料（同一进程内只生成一次）
+     */
+    public static synchronized String get(CorpusType type) {
+        return CACHE.computeIfAbsent(type, CorpusGenerator::generate);
+    }
+
+    /**
+     * 语料的 UTF-8 字节数，用于换算 MB/s
+     */
+    public static int utf8Length(CorpusType type) {
+        return get(type).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static String generate(CorpusType type) {
+        Random random = new Random(SEED + type.ordinal());
+        StringBuilder out = new StringBuilder(type.getTargetBytes());
+        int bytes = 0;
+        int chapter = 0;
+        while (bytes < type.getTargetBytes()) {
+            int mark = out.length();
+            switch (type) {
+                case ZH_PROSE -> appendParagraph(out, random, true);
+                case EN_PROSE -> appendParagraph(out, random, false);
+                case NUMBERED_HEADINGS, LARGE_MANUAL -> appendChapter(out, random, ++chapter);
+                case SINGLE_PARAGRAPH -> {
+                    appendSentence(out, random, random.nextBoolean());
+                    out.append(' ');
+                }
+            }
+            bytes += utf8Bytes(out, mark);
+        }
+        return out.toString().strip();
+    }
+
+    /**
+     * 章 → 节 → 小节三级编号，穿插中文序号、括号编号和英文 Chapter 标题
+     */
+    private static void appendChapter(StringBuilder out, Random random, int chapter) {
+        if (chapter % 4 == 0) {
+            out.append("Chapter ").append(chapter).append(' ').append(title(random, false)).append("\n\n");
+        } else {
+            out.append("第").append(chapter).append("章 ").append(title(random, true)).append("\n\n");
+        }
+        appendParagraph(out, random, true);
+
+        int sections = 2 + random.nextInt(4);
+        for (int section = 1; section <= sections; section++) {
+            out.append(chapter).append('.').append(section).append(' ').append(title(random, true)).append("\n\n");
+            appendParagraph(out, random, random.nextInt(3) > 0);
+
+            int subSections = random.nextInt(4);
+            for (int sub = 1; sub <= subSections; sub++) {
+                out.append(chapter).append('.').append(section).append('.').append(sub).append(' ')
+                        .append(title(random, true)).append("\n\n");
+                appendParagraph(out, random, true);
+            }
+
+            if (random.nextInt(4) == 0) {
+                for (int item = 0; item < 3; item++) {
+                    out.append(ZH_NUMERALS[item]).append("、").append(title(random, true)).append('\n');
+                    out.append('(').append(item + 1).append(") ").append(title(random, true)).append('\n');
+                }
+                out.append('\n');
+            }
+        }
+    }
+
+    private static void appendParagraph(StringBuilder out, Random random, boolean chinese) {
+        int sentences = 3 + random.nextInt(6);
+        for (int i = 0; i < sentences; i++) {
+            appendSentence(out, random, chinese);
+            if (!chinese) {
+                out.append(' ');
+            }
+        }
+        out.append("\n\n");
+    }
+
+    private static void appendSentence(StringBuilder out, Random random, boolean chinese) {
+        int words = 6 + random.nextInt(18);
+        if (chinese) {
+            for (int i = 0; i < words; i++) {
+                out.append(ZH_WORDS[random.nextInt(ZH_WORDS.length)]);
+                if (i > 0 && i < words - 1 && random.nextInt(7) == 0) {
+                    out.append('，');
+                }
+            }
+            out.append(ZH_SENTENCE_ENDS[random.nextInt(ZH_SENTENCE_ENDS.length)]);
+        } else {
+            for (int i = 0; i < words; i++) {
+                String word = EN_WORDS[random.nextInt(EN_WORDS.length)];
+                if (i == 0) {
+                    out.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                } else {
+                    out.append(' ').append(word);
+                }
+            }
+            out.append(EN_SENTENCE_ENDS[random.nextInt(EN_SENTENCE_ENDS.length)]);
+        }
+    }
+
+    private static String title(Random random, boolean chinese) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            if (chinese) {
+                title.append(ZH_WORDS[random.nextInt(ZH_WORDS.length)]);
+            } else {
+                title.append(i == 0 ? "" : " ").append(EN_WORDS[random.nextInt(EN_WORDS.length)]);
+            }
+        }
+        return title.toString();
+    }
+
+    /**
+     * 从 from 开始新追加部分的 UTF-8 字节数（语料只含 BMP 字符）
+     */
+    private static int utf8Bytes(StringBuilder text, int from) {
+        int bytes = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            bytes += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return bytes;
+    }
+}
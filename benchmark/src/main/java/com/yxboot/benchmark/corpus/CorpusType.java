@@ -0,0 +1,33 @@
+package com.yxboot.benchmark.corpus;
+
+/**
+ * 基准测试语料类型（新增类型请追加在末尾：生成语料的随机种子与序号相关）
+ */
+public enum CorpusType {
+
+    /** 中文正文，段落之间空行分隔 */
+    ZH_PROSE(1 << 20),
+
+    /** 英文正文，段落之间空行分隔 */
+    EN_PROSE(1 << 20),
+
+    /** 带多级编号标题的中英文混合文档（第N章 / 1.2 / 1.2.3 / 一、/ (1) / Chapter N） */
+    NUMBERED_HEADINGS(1 << 20),
+
+    /** 不含任何换行的超长单段落，覆盖句子级 / 定长切分路径 */
+    SINGLE_PARAGRAPH(4 << 20),
+
+    /** 5 MB 的多级标题纯文本手册，用于观察标题识别在大文档上的开销 */
+    LARGE_MANUAL(5 << 20);
+
+    /** 目标 UTF-8 字节数 */
+    private final int targetBytes;
+
+    CorpusType(int targetBytes) {
+        this.targetBytes = targetBytes;
+    }
+
+    public int getTargetBytes() {
+        return targetBytes;
+    }
+}
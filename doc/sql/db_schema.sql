@@ -49,6 +49,8 @@ CREATE TABLE `conversation` (
   `user_id` bigint(20) DEFAULT NULL COMMENT '用户ID',
   `app_id` bigint(20) DEFAULT NULL COMMENT '应用 ID',
   `title` varchar(1000) DEFAULT NULL COMMENT '会话标题',
+  `summary` text COMMENT '较早对话的滚动摘要',
+  `summary_until` datetime DEFAULT NULL COMMENT '摘要覆盖到的最后一条消息的创建时间',
   `create_time` datetime DEFAULT NULL COMMENT '创建时间',
   `update_time` datetime DEFAULT NULL COMMENT '更新时间',
   PRIMARY KEY (`conversation_id`)
@@ -65,6 +67,7 @@ CREATE TABLE `dataset` (
   `dataset_desc` varchar(1000) DEFAULT NULL COMMENT '知识库描述',
   `status` varchar(20) DEFAULT NULL COMMENT '状态',
   `embedding_model` varchar(100) NOT NULL DEFAULT '' COMMENT '向量化使用的模型标识，格式 provider:model',
+  `content_version` bigint(20) NOT NULL DEFAULT 0 COMMENT '内容版本号，分段向量写入或删除时递增',
   `creator_id` bigint(20) DEFAULT NULL COMMENT '创建者ID',
   `create_time` datetime DEFAULT NULL COMMENT '创建时间',
   `updator_id` bigint(20) DEFAULT NULL COMMENT '更新者ID',
@@ -89,6 +92,10 @@ CREATE TABLE `dataset_document` (
   `overlap_length` int(11) DEFAULT NULL COMMENT '重叠长度',
   `parent_chunk_size` int(11) NOT NULL DEFAULT 1200 COMMENT 'Parent 块最大长度（仅 parent_child 策略使用）',
   `segment_num` int(11) DEFAULT NULL COMMENT '文档分段数',
+  `vectorized_num` int(11) NOT NULL DEFAULT 0 COMMENT '已向量化分段数',
+  `persisted_position` int(11) NOT NULL DEFAULT 0 COMMENT '检查点：position 小于该值的分段已持久化',
+  `vectorized_position` int(11) NOT NULL DEFAULT 0 COMMENT '检查点：position 小于该值的可检索分段已写入向量库',
+  `split_completed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '切分已完成（重新处理时只重新向量化已有分段）',
   `status` varchar(20) DEFAULT NULL COMMENT '状态(pending-待处理，processing-处理中，completed-处理完成，failed-处理失败)',
   `creator_id` bigint(20) DEFAULT NULL COMMENT '创建者ID',
   `create_time` datetime DEFAULT NULL COMMENT '创建时间',
@@ -113,14 +120,46 @@ CREATE TABLE `dataset_document_segment` (
   `title` varchar(255) DEFAULT NULL COMMENT '标题',
   `content` text COMMENT '内容',
   `content_length` int(11) DEFAULT NULL COMMENT '内容长度',
+  `start_page` int(11) DEFAULT NULL COMMENT '起始页码（仅 PDF）',
+  `end_page` int(11) DEFAULT NULL COMMENT '结束页码（仅 PDF）',
   `creator_id` bigint(20) DEFAULT NULL COMMENT '创建者ID',
   `create_time` datetime DEFAULT NULL COMMENT '创建时间',
   `updator_id` bigint(20) DEFAULT NULL COMMENT '更新者ID',
   `update_time` datetime DEFAULT NULL COMMENT '更新时间',
   PRIMARY KEY (`segment_id`),
-  KEY `idx_parent_segment_id` (`parent_segment_id`)
+  KEY `idx_parent_segment_id` (`parent_segment_id`),
+  KEY `idx_document_position` (`document_id`, `position`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文档分段表';
 
+-- ----------------------------
+-- Table structure for dataset_ingest_job
+-- ----------------------------
+DROP TABLE IF EXISTS `dataset_ingest_job`;
+CREATE TABLE `dataset_ingest_job` (
+  `job_id` bigint(20) NOT NULL COMMENT '任务ID',
+  `tenant_id` bigint(20) DEFAULT NULL COMMENT '所属租户ID',
+  `dataset_id` bigint(20) DEFAULT NULL COMMENT '知识库ID',
+  `document_id` bigint(20) NOT NULL COMMENT '文档ID',
+  `active_document_id` bigint(20) GENERATED ALWAYS AS (IF(`status` IN ('queued', 'running'), `document_id`, NULL)) VIRTUAL COMMENT '活动任务的文档ID（排队中 / 执行中），用于唯一约束',
+  `user_id` bigint(20) DEFAULT NULL COMMENT '提交用户ID',
+  `priority` int(11) NOT NULL DEFAULT 0 COMMENT '优先级，越大越先执行',
+  `status` varchar(20) NOT NULL COMMENT '状态(queued-排队中，running-执行中，succeeded-成功，failed-失败)',
+  `attempts` int(11) NOT NULL DEFAULT 0 COMMENT '已领取次数',
+  `max_attempts` int(11) NOT NULL DEFAULT 3 COMMENT '最大领取次数（租约过期重新排队计入）',
+  `lease_owner` varchar(100) DEFAULT NULL COMMENT '持有租约的工作节点',
+  `lease_until` datetime DEFAULT NULL COMMENT '租约到期时间，执行中由心跳续期',
+  `heartbeat_time` datetime DEFAULT NULL COMMENT '最近心跳时间',
+  `available_time` datetime NOT NULL COMMENT '最早可领取时间',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`job_id`),
+  KEY `idx_status_tenant` (`status`, `tenant_id`, `priority`, `create_time`),
+  KEY `idx_status_lease` (`status`, `lease_until`),
+  UNIQUE KEY `uk_active_document` (`active_document_id`),
+  KEY `idx_document_id` (`document_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文档入库任务队列';
+
 -- ----------------------------
 -- Table structure for invitation
 -- ----------------------------
@@ -153,7 +192,9 @@ CREATE TABLE `message` (
   `answer` text COMMENT '回复',
   `status` varchar(20) DEFAULT NULL COMMENT '状态',
   `create_time` datetime DEFAULT NULL COMMENT '创建时间',
-  PRIMARY KEY (`message_id`)
+  `update_time` datetime DEFAULT NULL COMMENT '最后写入回答的时间',
+  PRIMARY KEY (`message_id`),
+  KEY `idx_conversation_time` (`conversation_id`, `create_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消息表';
 
 -- ----------------------------
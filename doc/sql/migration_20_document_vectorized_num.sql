@@ -0,0 +1,10 @@
+-- 文档入库进度：记录已向量化分段数，进度 = vectorized_num / segment_num
+ALTER TABLE `dataset_document`
+    ADD COLUMN `vectorized_num` INT NOT NULL DEFAULT 0
+        COMMENT '已向量化分段数'
+        AFTER `segment_num`;
+
+-- 已完成的文档视为全部向量化
+UPDATE `dataset_document`
+SET `vectorized_num` = IFNULL(`segment_num`, 0)
+WHERE `status` = 'completed';
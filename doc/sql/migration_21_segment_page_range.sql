@@ -0,0 +1,8 @@
+-- 分段起止页码：PDF 分段记录所在页范围，检索引用时可按页回查原文
+ALTER TABLE `dataset_document_segment`
+    ADD COLUMN `start_page` INT DEFAULT NULL
+        COMMENT '起始页码（仅 PDF）'
+        AFTER `content_length`,
+    ADD COLUMN `end_page` INT DEFAULT NULL
+        COMMENT '结束页码（仅 PDF）'
+        AFTER `start_page`;
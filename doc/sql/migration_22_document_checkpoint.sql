@@ -0,0 +1,12 @@
+-- 文档入库检查点：记录已持久化 / 已写入向量库的分段位置，进程重启后从最后完成的窗口继续
+ALTER TABLE `dataset_document`
+    ADD COLUMN `persisted_position` INT NOT NULL DEFAULT 0
+        COMMENT '检查点：position 小于该值的分段已持久化'
+        AFTER `vectorized_num`,
+    ADD COLUMN `vectorized_position` INT NOT NULL DEFAULT 0
+        COMMENT '检查点：position 小于该值的可检索分段已写入向量库'
+        AFTER `persisted_position`;
+
+-- 按文档 + 位置读取 / 截断分段
+ALTER TABLE `dataset_document_segment`
+    ADD INDEX `idx_document_position` (`document_id`, `position`);
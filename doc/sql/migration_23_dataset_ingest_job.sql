@@ -0,0 +1,25 @@
+-- 文档入库任务队列：上传后只写入任务，由各节点的工作线程按租约领取执行，进程重启后任务不丢失
+CREATE TABLE `dataset_ingest_job` (
+  `job_id` bigint(20) NOT NULL COMMENT '任务ID',
+  `tenant_id` bigint(20) DEFAULT NULL COMMENT '所属租户ID',
+  `dataset_id` bigint(20) DEFAULT NULL COMMENT '知识库ID',
+  `document_id` bigint(20) NOT NULL COMMENT '文档ID',
+  `user_id` bigint(20) DEFAULT NULL COMMENT '提交用户ID',
+  `priority` int(11) NOT NULL DEFAULT 0 COMMENT '优先级，越大越先执行',
+  `status` varchar(20) NOT NULL COMMENT '状态(queued-排队中，running-执行中，succeeded-成功，failed-失败)',
+  `attempts` int(11) NOT NULL DEFAULT 0 COMMENT '已领取次数',
+  `max_attempts` int(11) NOT NULL DEFAULT 3 COMMENT '最大领取次数（租约过期重新排队计入）',
+  `lease_owner` varchar(100) DEFAULT NULL COMMENT '持有租约的工作节点',
+  `lease_until` datetime DEFAULT NULL COMMENT '租约到期时间，执行中由心跳续期',
+  `heartbeat_time` datetime DEFAULT NULL COMMENT '最近心跳时间',
+  `available_time` datetime NOT NULL COMMENT '最早可领取时间',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`job_id`),
+  KEY `idx_status_tenant` (`status`, `tenant_id`, `priority`, `create_time`),
+  KEY `idx_status_lease` (`status`, `lease_until`),
+  KEY `idx_document_id` (`document_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文档入库任务队列';
+
+-- 历史数据无需迁移：应用启动时会为待处理 / 处理中但没有活动任务的文档补建任务
@@ -0,0 +1,3 @@
+-- 按会话读取最近的历史消息（服务端组装对话历史）
+ALTER TABLE `message`
+    ADD INDEX `idx_conversation_time` (`conversation_id`, `create_time`);
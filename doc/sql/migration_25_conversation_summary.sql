@@ -0,0 +1,4 @@
+-- 会话滚动摘要：历史过长时较早的轮次在后台压缩为摘要，提示词使用摘要 + 最近几轮
+ALTER TABLE `conversation`
+    ADD COLUMN `summary` TEXT NULL COMMENT '较早对话的滚动摘要' AFTER `title`,
+    ADD COLUMN `summary_until` DATETIME NULL COMMENT '摘要覆盖到的最后一条消息的创建时间' AFTER `summary`;
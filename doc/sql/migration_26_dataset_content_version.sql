@@ -0,0 +1,5 @@
+-- 知识库内容版本：分段向量写入或删除后递增，语义回答缓存按应用绑定的知识库版本判断是否失效
+ALTER TABLE `dataset`
+    ADD COLUMN `content_version` BIGINT NOT NULL DEFAULT 0
+        COMMENT '内容版本号，分段向量写入或删除时递增'
+        AFTER `embedding_model`;
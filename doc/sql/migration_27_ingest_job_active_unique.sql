@@ -0,0 +1,18 @@
+-- 同一文档同时只能有一个排队中 / 执行中的入库任务：活动任务的 active_document_id 等于 document_id，
+-- 已结束的任务为 NULL（唯一索引允许多个 NULL），并发提交时后插入的一方违反唯一约束
+
+-- 已有重复的活动任务时只保留 job_id 最大的一条，其余标记失败
+UPDATE `dataset_ingest_job` j
+    JOIN `dataset_ingest_job` k
+        ON k.`document_id` = j.`document_id`
+        AND k.`job_id` > j.`job_id`
+        AND k.`status` IN ('queued', 'running')
+SET j.`status` = 'failed', j.`last_error` = '同一文档存在重复的活动任务'
+WHERE j.`status` IN ('queued', 'running');
+
+ALTER TABLE `dataset_ingest_job`
+    ADD COLUMN `active_document_id` bigint(20)
+        GENERATED ALWAYS AS (IF(`status` IN ('queued', 'running'), `document_id`, NULL)) VIRTUAL
+        COMMENT '活动任务的文档ID（排队中 / 执行中），用于唯一约束'
+        AFTER `document_id`,
+    ADD UNIQUE KEY `uk_active_document` (`active_document_id`);
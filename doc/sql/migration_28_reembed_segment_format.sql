@@ -0,0 +1,30 @@
+-- 分段 embedding 输入格式变更：embedding 文本不再拼接 document_id / dataset_id / tenant_id / segment_id / 页码等元数据，
+-- 只保留标题（见 AiVectorStoreService.EMBED_CONTENT_FORMATTER），使相同内容能命中 embedding 缓存。
+-- 历史向量按旧格式计算，与之后写入的向量输入不一致，需要重新向量化。
+--
+-- 执行后重启后端服务（yxboot.ai.document.recover-on-startup 需为 true），启动时会为待处理文档补建入库任务。
+-- split_completed = 1 的文档走重新向量化路径（DatasetDocumentIngestionPipeline.reembed）：
+-- 不读取源文件、不重新切分、不删除分段，按 position 顺序读取数据库中的现有分段（包括手工编辑过的内容），
+-- 重新计算向量并按向量 ID 覆盖写入，分段 ID 与关键词索引保持不变。
+-- 重新向量化期间旧向量仍在向量库中，检索不受影响。
+--
+-- 检查点迁移（migration_22）之前入库的文档 persisted_position 为 0，这里按现有分段回填，
+-- 不能用 segment_num 推算：segment_num 不含父块，且手工删除分段后 position 会有空洞。
+
+ALTER TABLE `dataset_document`
+    ADD COLUMN `split_completed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '切分已完成（重新处理时只重新向量化已有分段）' AFTER `vectorized_position`;
+
+UPDATE `dataset_document` d
+    JOIN (SELECT `document_id`, MAX(`position`) + 1 AS `next_position`
+          FROM `dataset_document_segment`
+          GROUP BY `document_id`) s ON s.`document_id` = d.`document_id`
+SET d.`persisted_position` = GREATEST(d.`persisted_position`, s.`next_position`)
+WHERE d.`status` = 'completed';
+
+UPDATE `dataset_document`
+SET `split_completed` = 1,
+    `status` = 'pending',
+    `vectorized_position` = 0,
+    `vectorized_num` = 0
+WHERE `status` = 'completed'
+  AND `persisted_position` > 0;
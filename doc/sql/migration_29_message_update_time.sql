@@ -0,0 +1,6 @@
+-- 消息最后写入时间：生成中按保存间隔刷新，启动时只把长时间未写入的处理中消息标记为失败，
+-- 不再按创建时间清理，避免误杀其他节点仍在进行中的长时间生成
+ALTER TABLE `message`
+    ADD COLUMN `update_time` DATETIME NULL COMMENT '最后写入回答的时间' AFTER `create_time`;
+
+UPDATE `message` SET `update_time` = `create_time` WHERE `update_time` IS NULL;